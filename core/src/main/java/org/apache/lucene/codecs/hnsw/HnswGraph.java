@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.SparseFixedBitSet;
+
+/**
+ * A hierarchical navigable small-world graph, as described in "Efficient and
+ * robust approximate nearest neighbor search using Hierarchical Navigable
+ * Small World graphs" by Malkov and Yashunin. Every level is a proximity
+ * graph over a subset of the nodes of the level below, and level 0 contains
+ * all nodes. Searches greedily descend from the entry node on the top level
+ * to level 0, where a beam search collects the nearest neighbors.
+ * Nodes are the ordinals of vectors, from 0 to the number of vectors.
+ */
+abstract class HnswGraph {
+
+  /** Sentinel returned by {@link #nextNeighbor()} when all neighbors have been visited. */
+  static final int NO_MORE_NEIGHBORS = Integer.MAX_VALUE;
+
+  /** Random access to the vectors of graph nodes. */
+  interface RandomAccessVectors {
+
+    /** Number of vectors. */
+    int size();
+
+    /**
+     * Return the vector of the given node. The returned array may be reused
+     * on the next call.
+     */
+    float[] vectorValue(int node) throws IOException;
+  }
+
+  /** Number of levels of the graph. */
+  abstract int numLevels();
+
+  /** The node where searches start, on the top level. */
+  abstract int entryNode();
+
+  /** Position this graph on the neighbors of {@code node} on {@code level}. */
+  abstract void seek(int level, int node) throws IOException;
+
+  /** Return the next neighbor of the current node, or {@link #NO_MORE_NEIGHBORS}. */
+  abstract int nextNeighbor() throws IOException;
+
+  /**
+   * Return a queue of the {@code topK} nodes that are the most similar to
+   * {@code query} among the nodes that {@code acceptNodes} accepts, or all
+   * nodes if it is {@code null}. The top of the returned queue is the least
+   * similar node.
+   */
+  static NeighborQueue search(float[] query, int topK, RandomAccessVectors vectors, VectorSimilarityFunction similarityFunction,
+                              HnswGraph graph, Bits acceptNodes) throws IOException {
+    int[] entryPoints = new int[] { graph.entryNode() };
+    for (int level = graph.numLevels() - 1; level > 0; --level) {
+      // greedy search of the closest node on upper levels
+      NeighborQueue closest = searchLevel(query, 1, level, entryPoints, vectors, similarityFunction, graph, null);
+      entryPoints = new int[] { closest.topNode() };
+    }
+    return searchLevel(query, topK, 0, entryPoints, vectors, similarityFunction, graph, acceptNodes);
+  }
+
+  /**
+   * Search a single level of the graph for the {@code topK} nodes that are
+   * the most similar to {@code query}, starting from {@code entryPoints}.
+   * Nodes that are not accepted by {@code acceptNodes} are traversed but not
+   * returned.
+   */
+  static NeighborQueue searchLevel(float[] query, int topK, int level, int[] entryPoints, RandomAccessVectors vectors,
+                                   VectorSimilarityFunction similarityFunction, HnswGraph graph, Bits acceptNodes) throws IOException {
+    final NeighborQueue results = new NeighborQueue(true);
+    final NeighborQueue candidates = new NeighborQueue(false);
+    final SparseFixedBitSet visited = new SparseFixedBitSet(vectors.size());
+    for (int entryPoint : entryPoints) {
+      if (visited.get(entryPoint) == false) {
+        visited.set(entryPoint);
+        final float score = similarityFunction.compare(query, vectors.vectorValue(entryPoint));
+        candidates.add(entryPoint, score);
+        if (acceptNodes == null || acceptNodes.get(entryPoint)) {
+          results.insertWithOverflow(entryPoint, score, topK);
+        }
+      }
+    }
+
+    while (candidates.size() > 0) {
+      final float candidateScore = candidates.topScore();
+      if (results.size() >= topK && candidateScore < results.topScore()) {
+        // the best candidate is worse than the worst result: stop
+        break;
+      }
+      graph.seek(level, candidates.pop());
+      for (int friend = graph.nextNeighbor(); friend != NO_MORE_NEIGHBORS; friend = graph.nextNeighbor()) {
+        if (visited.get(friend)) {
+          continue;
+        }
+        visited.set(friend);
+        final float score = similarityFunction.compare(query, vectors.vectorValue(friend));
+        if (results.size() < topK || score > results.topScore()) {
+          candidates.add(friend, score);
+          if (acceptNodes == null || acceptNodes.get(friend)) {
+            results.insertWithOverflow(friend, score, topK);
+          }
+        }
+      }
+    }
+    return results;
+  }
+}
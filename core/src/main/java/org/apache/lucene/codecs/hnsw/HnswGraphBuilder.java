@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.lucene.codecs.hnsw.HnswGraph.RandomAccessVectors;
+import org.apache.lucene.codecs.hnsw.OnHeapHnswGraph.NeighborArray;
+import org.apache.lucene.index.VectorSimilarityFunction;
+
+/**
+ * Builds an {@link OnHeapHnswGraph} by inserting nodes one by one: every node
+ * gets a random top level with an exponentially decaying probability, and is
+ * connected on every level up to its top level with a diverse subset of the
+ * nearest nodes that a beam search finds among the nodes inserted so far.
+ */
+final class HnswGraphBuilder {
+
+  private final RandomAccessVectors vectors;
+  private final VectorSimilarityFunction similarityFunction;
+  private final int maxConn;
+  private final int maxConn0;
+  private final int beamWidth;
+  private final double levelMultiplier;
+  private final Random random;
+  private final OnHeapHnswGraph graph;
+
+  /**
+   * Create a new builder.
+   * @param vectors            the vectors to index, {@link RandomAccessVectors#vectorValue} must not reuse arrays
+   * @param similarityFunction the function that vectors are compared with
+   * @param maxConn            the maximum number of connections of nodes on levels above 0, level 0 allows twice as many
+   * @param beamWidth          the number of candidate neighbors that are explored when inserting nodes
+   * @param seed               seed of the random generator of levels, so that graphs are reproducible
+   */
+  HnswGraphBuilder(RandomAccessVectors vectors, VectorSimilarityFunction similarityFunction, int maxConn, int beamWidth, long seed) {
+    this.vectors = vectors;
+    this.similarityFunction = similarityFunction;
+    this.maxConn = maxConn;
+    this.maxConn0 = maxConn * 2;
+    this.beamWidth = beamWidth;
+    this.levelMultiplier = 1 / Math.log(maxConn);
+    this.random = new Random(seed);
+    this.graph = new OnHeapHnswGraph(vectors.size());
+  }
+
+  /** Insert all vectors into the graph and return it. */
+  OnHeapHnswGraph build() throws IOException {
+    for (int node = 0; node < vectors.size(); ++node) {
+      addNode(node);
+    }
+    return graph;
+  }
+
+  int maxConn(int level) {
+    return level == 0 ? maxConn0 : maxConn;
+  }
+
+  private int randomLevel() {
+    // 1 - nextDouble() is in (0, 1] so that the log is finite
+    return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+  }
+
+  private void addNode(int node) throws IOException {
+    final float[] value = vectors.vectorValue(node);
+    final int level = randomLevel();
+    final int numLevels = graph.numLevels();
+    graph.addNode(node, level, maxConn(0) + 1);
+    if (graph.entryNode() == -1) {
+      graph.setEntryNode(node);
+      return;
+    }
+
+    int[] entryPoints = new int[] { graph.entryNode() };
+    for (int l = numLevels - 1; l > level; --l) {
+      NeighborQueue closest = HnswGraph.searchLevel(value, 1, l, entryPoints, vectors, similarityFunction, graph, null);
+      entryPoints = new int[] { closest.topNode() };
+    }
+    for (int l = Math.min(level, numLevels - 1); l >= 0; --l) {
+      NeighborQueue candidates = HnswGraph.searchLevel(value, beamWidth, l, entryPoints, vectors, similarityFunction, graph, null);
+      entryPoints = candidates.nodes();
+      connect(node, value, l, candidates);
+    }
+    if (level >= numLevels) {
+      graph.setEntryNode(node);
+    }
+  }
+
+  /** Connect {@code node} with a diverse subset of {@code candidates} in both directions. */
+  private void connect(int node, float[] value, int level, NeighborQueue candidates) throws IOException {
+    final int maxConn = maxConn(level);
+    // sort candidates by decreasing score
+    final int numCandidates = candidates.size();
+    final int[] nodes = new int[numCandidates];
+    final float[] scores = new float[numCandidates];
+    for (int i = numCandidates - 1; i >= 0; --i) {
+      scores[i] = candidates.topScore();
+      nodes[i] = candidates.pop();
+    }
+
+    // Prefer candidates that are closer to the new node than to any of the
+    // neighbors selected so far, so that edges go in different directions.
+    // Fill remaining connections with the nearest discarded candidates.
+    final NeighborArray neighbors = graph.getNeighbors(level, node);
+    final boolean[] selected = new boolean[numCandidates];
+    for (int i = 0; i < numCandidates && neighbors.size < maxConn; ++i) {
+      if (isDiverse(nodes[i], scores[i], neighbors)) {
+        neighbors.add(nodes[i], scores[i]);
+        selected[i] = true;
+      }
+    }
+    for (int i = 0; i < numCandidates && neighbors.size < maxConn; ++i) {
+      if (selected[i] == false) {
+        neighbors.add(nodes[i], scores[i]);
+      }
+    }
+
+    for (int i = 0; i < neighbors.size; ++i) {
+      final NeighborArray friendNeighbors = graph.getNeighbors(level, neighbors.nodes[i]);
+      friendNeighbors.add(node, neighbors.scores[i]);
+      if (friendNeighbors.size > maxConn) {
+        friendNeighbors.removeLeastSimilar();
+      }
+    }
+  }
+
+  private boolean isDiverse(int candidate, float score, NeighborArray neighbors) throws IOException {
+    final float[] candidateValue = vectors.vectorValue(candidate);
+    for (int i = 0; i < neighbors.size; ++i) {
+      if (similarityFunction.compare(candidateValue, vectors.vectorValue(neighbors.nodes[i])) >= score) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
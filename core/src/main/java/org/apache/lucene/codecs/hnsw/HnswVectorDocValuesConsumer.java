@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.hnsw.HnswGraph.RandomAccessVectors;
+import org.apache.lucene.codecs.hnsw.OnHeapHnswGraph.NeighborArray;
+import org.apache.lucene.document.KnnVectorField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.VectorUtil;
+
+/** Writes vector fields and their graphs, and other fields through a delegate format. */
+final class HnswVectorDocValuesConsumer extends DocValuesConsumer {
+
+  private final SegmentWriteState state;
+  private final int maxConn;
+  private final int beamWidth;
+  private DocValuesConsumer delegate;
+  private IndexOutput meta, data;
+
+  HnswVectorDocValuesConsumer(SegmentWriteState state, DocValuesFormat delegateFormat, int maxConn, int beamWidth) throws IOException {
+    this.state = state;
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+    boolean success = false;
+    try {
+      delegate = delegateFormat.fieldsConsumer(state);
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeIndexHeader(data, HnswVectorDocValuesFormat.DATA_CODEC, HnswVectorDocValuesFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeIndexHeader(meta, HnswVectorDocValuesFormat.META_CODEC, HnswVectorDocValuesFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      meta.writeString(delegateFormat.getName());
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void addNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    delegate.addNumericField(field, valuesProducer);
+  }
+
+  @Override
+  public void addBinaryField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    final String dimensionAttribute = field.getAttribute(KnnVectorField.DIMENSION_ATTRIBUTE);
+    if (dimensionAttribute == null) {
+      delegate.addBinaryField(field, valuesProducer);
+    } else {
+      writeVectorField(field, Integer.parseInt(dimensionAttribute),
+          VectorSimilarityFunction.valueOf(field.getAttribute(KnnVectorField.SIMILARITY_ATTRIBUTE)),
+          valuesProducer.getBinary(field));
+    }
+  }
+
+  @Override
+  public void addSortedField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    delegate.addSortedField(field, valuesProducer);
+  }
+
+  @Override
+  public void addSortedNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    delegate.addSortedNumericField(field, valuesProducer);
+  }
+
+  @Override
+  public void addSortedSetField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+    delegate.addSortedSetField(field, valuesProducer);
+  }
+
+  private void writeVectorField(FieldInfo field, int dimension, VectorSimilarityFunction similarityFunction,
+                                BinaryDocValues values) throws IOException {
+    final int vectorNumBytes = dimension * Float.BYTES;
+    final List<float[]> vectors = new ArrayList<>();
+    int[] docs = new int[16];
+    final long vectorsOffset = data.getFilePointer();
+    for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+      final BytesRef bytes = values.binaryValue();
+      if (bytes.length != vectorNumBytes) {
+        throw new IllegalArgumentException("Field \"" + field.name + "\" has vectors of " + dimension
+            + " dimensions, but document " + doc + " has a value of " + bytes.length + " bytes");
+      }
+      data.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+      final float[] vector = new float[dimension];
+      VectorUtil.decode(bytes, vector);
+      docs = ArrayUtil.grow(docs, vectors.size() + 1);
+      docs[vectors.size()] = doc;
+      vectors.add(vector);
+    }
+    final int size = vectors.size();
+    if (size == 0) {
+      return;
+    }
+    final long vectorsLength = data.getFilePointer() - vectorsOffset;
+
+    final OnHeapHnswGraph graph = new HnswGraphBuilder(new RandomAccessVectors() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public float[] vectorValue(int node) {
+        return vectors.get(node);
+      }
+    }, similarityFunction, maxConn, beamWidth, HnswVectorDocValuesFormat.LEVEL_SEED).build();
+    final int maxConn0 = 2 * maxConn;
+
+    // level 0 has fixed-size records so that the neighbors of any node can be read with a single seek
+    final long graphOffset = data.getFilePointer();
+    for (int node = 0; node < size; ++node) {
+      final NeighborArray neighbors = graph.getNeighbors(0, node);
+      data.writeInt(neighbors.size);
+      for (int i = 0; i < maxConn0; ++i) {
+        data.writeInt(i < neighbors.size ? neighbors.nodes[i] : 0);
+      }
+    }
+    final long graphLength = data.getFilePointer() - graphOffset;
+
+    meta.writeInt(field.number);
+    meta.writeVInt(dimension);
+    meta.writeByte((byte) similarityFunction.ordinal());
+    meta.writeVInt(size);
+    meta.writeLong(vectorsOffset);
+    meta.writeLong(vectorsLength);
+    meta.writeLong(graphOffset);
+    meta.writeLong(graphLength);
+    meta.writeVInt(maxConn0);
+    meta.writeVInt(graph.numLevels());
+    meta.writeVInt(graph.entryNode());
+    for (int level = 1; level < graph.numLevels(); ++level) {
+      int numNodes = 0;
+      for (int node = 0; node < size; ++node) {
+        if (graph.getNeighbors(level, node) != null) {
+          numNodes++;
+        }
+      }
+      meta.writeVInt(numNodes);
+      int previousNode = 0;
+      for (int node = 0; node < size; ++node) {
+        final NeighborArray neighbors = graph.getNeighbors(level, node);
+        if (neighbors != null) {
+          meta.writeVInt(node - previousNode);
+          previousNode = node;
+          meta.writeVInt(neighbors.size);
+          for (int i = 0; i < neighbors.size; ++i) {
+            meta.writeVInt(neighbors.nodes[i]);
+          }
+        }
+      }
+    }
+
+    if (size == state.segmentInfo.maxDoc()) {
+      // dense: ordinals are doc IDs
+      meta.writeByte((byte) 0);
+    } else {
+      meta.writeByte((byte) 1);
+      int previousDoc = 0;
+      for (int i = 0; i < size; ++i) {
+        meta.writeVInt(docs[i] - previousDoc);
+        previousDoc = docs[i];
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(delegate, meta, data);
+      } else {
+        IOUtils.closeWhileHandlingException(delegate, meta, data);
+      }
+      delegate = null;
+      meta = data = null;
+    }
+  }
+}
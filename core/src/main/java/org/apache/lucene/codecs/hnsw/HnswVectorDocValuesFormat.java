@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.lucene80.Lucene80DocValuesFormat;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+
+/**
+ * A {@link DocValuesFormat} that indexes the vectors of
+ * {@link org.apache.lucene.document.KnnVectorField}s into a hierarchical
+ * navigable small-world graph, so that their nearest neighbors can be found
+ * without comparing the target with every vector. Other fields are delegated
+ * to {@link Lucene80DocValuesFormat}.
+ *
+ * <p>Files:
+ * <ul>
+ *   <li><code>.vem</code>: the name of the delegate format, and per vector
+ *   field its dimension and similarity function, the location of vectors and
+ *   of the graph in the data file, the upper levels of the graph, and the
+ *   documents that have a vector unless all documents have one</li>
+ *   <li><code>.vec</code>: per vector field the encoded vectors, in order of
+ *   documents, followed by the neighbors of every node on level 0 of the
+ *   graph as fixed-size records</li>
+ * </ul>
+ *
+ * <p>The upper levels of graphs and the documents that have vectors are
+ * loaded in memory while vectors and level 0 are read from disk. Graphs
+ * are rebuilt from scratch on merge, and all vectors of the merged segment
+ * are held in memory while building the graph.
+ *
+ * @lucene.experimental
+ */
+public final class HnswVectorDocValuesFormat extends DocValuesFormat {
+
+  /** Name of this format. */
+  public static final String NAME = "HnswVector";
+
+  /** Default maximum number of connections of nodes on upper levels. */
+  public static final int DEFAULT_MAX_CONN = 16;
+
+  /** Default number of candidates that are explored when inserting nodes. */
+  public static final int DEFAULT_BEAM_WIDTH = 100;
+
+  static final String META_CODEC = "HnswVectorMeta";
+  static final String META_EXTENSION = "vem";
+  static final String DATA_CODEC = "HnswVectorData";
+  static final String DATA_EXTENSION = "vec";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Seed of the random generator of levels, so that graphs are reproducible. */
+  static final long LEVEL_SEED = 42;
+
+  private final int maxConn;
+  private final int beamWidth;
+  private final DocValuesFormat delegate = new Lucene80DocValuesFormat();
+
+  /** Create a format with default parameters. */
+  public HnswVectorDocValuesFormat() {
+    this(DEFAULT_MAX_CONN, DEFAULT_BEAM_WIDTH);
+  }
+
+  /**
+   * Create a new format.
+   * @param maxConn   the maximum number of connections of nodes on levels above 0, level 0 allows twice as many;
+   *                  more connections improve the recall of searches at the expense of size and indexing time
+   * @param beamWidth the number of candidate neighbors that are explored when inserting nodes; wider beams give
+   *                  better graphs at the expense of indexing time
+   */
+  public HnswVectorDocValuesFormat(int maxConn, int beamWidth) {
+    super(NAME);
+    if (maxConn < 2) {
+      throw new IllegalArgumentException("maxConn must be at least 2, got " + maxConn);
+    }
+    if (beamWidth < 1) {
+      throw new IllegalArgumentException("beamWidth must be at least 1, got " + beamWidth);
+    }
+    this.maxConn = maxConn;
+    this.beamWidth = beamWidth;
+  }
+
+  @Override
+  public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new HnswVectorDocValuesConsumer(state, delegate, maxConn, beamWidth);
+  }
+
+  @Override
+  public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new HnswVectorDocValuesProducer(state);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxConn=" + maxConn + ",beamWidth=" + beamWidth + ",delegate=" + delegate + ")";
+  }
+}
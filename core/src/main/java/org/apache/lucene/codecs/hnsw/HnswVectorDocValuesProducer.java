@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.document.KnnVectorField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/** Reads vector fields and their graphs, and other fields through a delegate format. */
+final class HnswVectorDocValuesProducer extends DocValuesProducer {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HnswVectorDocValuesProducer.class);
+
+  private final DocValuesProducer delegate;
+  private final Map<String, HnswVectorValues.FieldEntry> entries = new HashMap<>();
+  private final IndexInput data;
+
+  HnswVectorDocValuesProducer(SegmentReadState state) throws IOException {
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.META_EXTENSION);
+    int version = -1;
+    String delegateName = null;
+    try (ChecksumIndexInput meta = state.directory.openChecksumInput(metaName, state.context)) {
+      Throwable priorE = null;
+      try {
+        version = CodecUtil.checkIndexHeader(meta, HnswVectorDocValuesFormat.META_CODEC,
+            HnswVectorDocValuesFormat.VERSION_START, HnswVectorDocValuesFormat.VERSION_CURRENT,
+            state.segmentInfo.getId(), state.segmentSuffix);
+        delegateName = meta.readString();
+        readFields(state, meta);
+      } catch (Throwable exception) {
+        priorE = exception;
+      } finally {
+        CodecUtil.checkFooter(meta, priorE);
+      }
+    }
+
+    boolean success = false;
+    DocValuesProducer delegate = null;
+    IndexInput data = null;
+    try {
+      delegate = DocValuesFormat.forName(delegateName).fieldsProducer(state);
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, HnswVectorDocValuesFormat.DATA_EXTENSION);
+      data = state.directory.openInput(dataName, state.context);
+      final int version2 = CodecUtil.checkIndexHeader(data, HnswVectorDocValuesFormat.DATA_CODEC,
+          HnswVectorDocValuesFormat.VERSION_START, HnswVectorDocValuesFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch: meta=" + version + ", data=" + version2, data);
+      }
+      // NOTE: like other doc values, only verify the structure of the checksum footer on open
+      CodecUtil.retrieveChecksum(data);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(delegate, data);
+      }
+    }
+    this.delegate = delegate;
+    this.data = data;
+  }
+
+  private void readFields(SegmentReadState state, ChecksumIndexInput meta) throws IOException {
+    for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+      final FieldInfo info = state.fieldInfos.fieldInfo(fieldNumber);
+      if (info == null) {
+        throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+      }
+      final HnswVectorValues.FieldEntry entry = new HnswVectorValues.FieldEntry();
+      entry.dimension = meta.readVInt();
+      final int similarityOrdinal = meta.readByte();
+      if (similarityOrdinal < 0 || similarityOrdinal >= VectorSimilarityFunction.values().length) {
+        throw new CorruptIndexException("Invalid similarity function: " + similarityOrdinal, meta);
+      }
+      entry.similarityFunction = VectorSimilarityFunction.values()[similarityOrdinal];
+      entry.size = meta.readVInt();
+      entry.vectorsOffset = meta.readLong();
+      entry.vectorsLength = meta.readLong();
+      entry.graphOffset = meta.readLong();
+      entry.graphLength = meta.readLong();
+      entry.maxConn0 = meta.readVInt();
+      final int numLevels = meta.readVInt();
+      entry.entryNode = meta.readVInt();
+      entry.levelNodes = new int[numLevels][];
+      entry.levelNeighbors = new int[numLevels][][];
+      for (int level = 1; level < numLevels; ++level) {
+        final int numNodes = meta.readVInt();
+        final int[] nodes = new int[numNodes];
+        final int[][] neighbors = new int[numNodes][];
+        int node = 0;
+        for (int i = 0; i < numNodes; ++i) {
+          node += meta.readVInt();
+          nodes[i] = node;
+          neighbors[i] = new int[meta.readVInt()];
+          for (int j = 0; j < neighbors[i].length; ++j) {
+            neighbors[i][j] = meta.readVInt();
+          }
+        }
+        entry.levelNodes[level] = nodes;
+        entry.levelNeighbors[level] = neighbors;
+      }
+      final byte docsFormat = meta.readByte();
+      if (docsFormat == 1) {
+        entry.docs = new int[entry.size];
+        int doc = 0;
+        for (int i = 0; i < entry.size; ++i) {
+          doc += meta.readVInt();
+          entry.docs[i] = doc;
+        }
+      } else if (docsFormat != 0) {
+        throw new CorruptIndexException("Invalid docs format: " + docsFormat, meta);
+      }
+      entries.put(info.name, entry);
+    }
+  }
+
+  @Override
+  public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+    return delegate.getNumeric(field);
+  }
+
+  @Override
+  public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    final HnswVectorValues.FieldEntry entry = entries.get(field.name);
+    if (entry != null) {
+      return new HnswVectorValues(entry, data);
+    }
+    if (field.getAttribute(KnnVectorField.DIMENSION_ATTRIBUTE) != null) {
+      // all documents that had a vector got deleted before merging
+      return DocValues.emptyBinary();
+    }
+    return delegate.getBinary(field);
+  }
+
+  @Override
+  public SortedDocValues getSorted(FieldInfo field) throws IOException {
+    return delegate.getSorted(field);
+  }
+
+  @Override
+  public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+    return delegate.getSortedNumeric(field);
+  }
+
+  @Override
+  public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+    return delegate.getSortedSet(field);
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(delegate, data);
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    delegate.checkIntegrity();
+    CodecUtil.checksumEntireFile(data);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = BASE_RAM_BYTES_USED + delegate.ramBytesUsed();
+    for (HnswVectorValues.FieldEntry entry : entries.values()) {
+      ramBytesUsed += entry.ramBytesUsed();
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    final List<Accountable> resources = new ArrayList<>();
+    resources.add(Accountables.namedAccountable("delegate", delegate));
+    resources.addAll(Accountables.namedAccountables("field", entries));
+    return Collections.unmodifiableList(resources);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + entries.size() + ",delegate=" + delegate + ")";
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.VectorUtil;
+
+/**
+ * The vectors of a {@link org.apache.lucene.document.KnnVectorField} in a
+ * segment that uses {@link HnswVectorDocValuesFormat}. Values are the encoded
+ * vectors, like for other formats, and {@link #search} additionally finds the
+ * approximate nearest neighbors of a target vector using the graph of the
+ * segment.
+ *
+ * @lucene.experimental
+ */
+public final class HnswVectorValues extends BinaryDocValues {
+
+  /** Metadata of a vector field, loaded in memory. */
+  static final class FieldEntry implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(FieldEntry.class);
+
+    int dimension;
+    VectorSimilarityFunction similarityFunction;
+    int size;
+    long vectorsOffset;
+    long vectorsLength;
+    long graphOffset;
+    long graphLength;
+    int maxConn0;
+    int entryNode;
+    int[][] levelNodes; // per level above 0, sorted nodes of the level
+    int[][][] levelNeighbors; // per level above 0, neighbors of every node of the level
+    int[] docs; // doc IDs of ordinals, null if all documents have a vector
+
+    @Override
+    public long ramBytesUsed() {
+      long ramBytesUsed = BASE_RAM_BYTES_USED + RamUsageEstimator.shallowSizeOf(levelNodes)
+          + RamUsageEstimator.shallowSizeOf(levelNeighbors) + RamUsageEstimator.sizeOf(docs);
+      for (int level = 1; level < levelNodes.length; ++level) {
+        ramBytesUsed += RamUsageEstimator.sizeOf(levelNodes[level]) + RamUsageEstimator.shallowSizeOf(levelNeighbors[level]);
+        for (int[] neighbors : levelNeighbors[level]) {
+          ramBytesUsed += RamUsageEstimator.sizeOf(neighbors);
+        }
+      }
+      return ramBytesUsed;
+    }
+  }
+
+  private final FieldEntry entry;
+  private final IndexInput vectorData;
+  private final IndexInput graphData;
+  private final BytesRef binaryValue;
+  private int ord = -1;
+  private int doc = -1;
+
+  HnswVectorValues(FieldEntry entry, IndexInput data) throws IOException {
+    this.entry = entry;
+    this.vectorData = data.slice("vectors", entry.vectorsOffset, entry.vectorsLength);
+    this.graphData = data.slice("graph", entry.graphOffset, entry.graphLength);
+    this.binaryValue = new BytesRef(new byte[entry.dimension * Float.BYTES]);
+  }
+
+  /** Return the dimension of vectors. */
+  public int dimension() {
+    return entry.dimension;
+  }
+
+  /** Return the function that vectors are compared with. */
+  public VectorSimilarityFunction similarityFunction() {
+    return entry.similarityFunction;
+  }
+
+  /** Return the number of documents that have a vector. */
+  public int size() {
+    return entry.size;
+  }
+
+  private int ordToDoc(int ord) {
+    return entry.docs == null ? ord : entry.docs[ord];
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  @Override
+  public int nextDoc() throws IOException {
+    return advanceToOrd(ord + 1);
+  }
+
+  @Override
+  public int advance(int target) throws IOException {
+    if (entry.docs == null) {
+      return advanceToOrd(target);
+    }
+    int index = Arrays.binarySearch(entry.docs, ord + 1, entry.size, target);
+    if (index < 0) {
+      index = -1 - index;
+    }
+    return advanceToOrd(index);
+  }
+
+  private int advanceToOrd(int ord) {
+    if (ord >= entry.size) {
+      this.ord = entry.size;
+      return doc = NO_MORE_DOCS;
+    }
+    this.ord = ord;
+    return doc = ordToDoc(ord);
+  }
+
+  @Override
+  public boolean advanceExact(int target) throws IOException {
+    doc = target;
+    if (entry.docs == null) {
+      ord = target;
+      return true;
+    }
+    // include the current ordinal, calling advanceExact twice on the same target is legal
+    final int index = Arrays.binarySearch(entry.docs, Math.max(ord, 0), entry.size, target);
+    if (index >= 0) {
+      ord = index;
+      return true;
+    }
+    // position on the last document before the target so that nextDoc() returns the next one
+    ord = -2 - index;
+    return false;
+  }
+
+  @Override
+  public long cost() {
+    return entry.size;
+  }
+
+  @Override
+  public BytesRef binaryValue() throws IOException {
+    vectorData.seek((long) ord * binaryValue.length);
+    vectorData.readBytes(binaryValue.bytes, 0, binaryValue.length);
+    return binaryValue;
+  }
+
+  /**
+   * Return the approximate {@code k} nearest neighbors of {@code target}
+   * among the documents that {@code acceptDocs} accepts, or all documents if
+   * it is {@code null}, sorted by decreasing similarity. {@code fanout}
+   * additional candidates are explored, which improves recall at the expense
+   * of performance. This doesn't change the current document of this
+   * iterator.
+   */
+  public TopDocs search(float[] target, int k, int fanout, Bits acceptDocs) throws IOException {
+    if (target.length != entry.dimension) {
+      throw new IllegalArgumentException("target has " + target.length + " dimensions, but the field has " + entry.dimension);
+    }
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, got " + k);
+    }
+    if (fanout < 0) {
+      throw new IllegalArgumentException("fanout must be non-negative, got " + fanout);
+    }
+    final Bits acceptOrds;
+    if (acceptDocs == null) {
+      acceptOrds = null;
+    } else {
+      acceptOrds = new Bits() {
+        @Override
+        public boolean get(int index) {
+          return acceptDocs.get(ordToDoc(index));
+        }
+
+        @Override
+        public int length() {
+          return entry.size;
+        }
+      };
+    }
+    final int topK = (int) Math.min((long) k + fanout, entry.size);
+    final NeighborQueue results = HnswGraph.search(target, topK, new OffHeapVectors(), entry.similarityFunction,
+        new OffHeapHnswGraph(), acceptOrds);
+    while (results.size() > k) {
+      results.pop();
+    }
+    final ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+    for (int i = scoreDocs.length - 1; i >= 0; --i) {
+      final float score = results.topScore();
+      scoreDocs[i] = new ScoreDoc(ordToDoc(results.pop()), score);
+    }
+    return new TopDocs(new TotalHits(scoreDocs.length, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  /** Reads vectors by ordinal from a clone of the vector data. */
+  private class OffHeapVectors implements HnswGraph.RandomAccessVectors {
+
+    private final IndexInput in = vectorData.clone();
+    private final byte[] bytes = new byte[entry.dimension * Float.BYTES];
+    private final float[] vector = new float[entry.dimension];
+
+    @Override
+    public int size() {
+      return entry.size;
+    }
+
+    @Override
+    public float[] vectorValue(int node) throws IOException {
+      in.seek((long) node * bytes.length);
+      in.readBytes(bytes, 0, bytes.length);
+      VectorUtil.decode(bytes, 0, vector);
+      return vector;
+    }
+  }
+
+  /** Reads level 0 from a clone of the graph data, and upper levels from memory. */
+  private class OffHeapHnswGraph extends HnswGraph {
+
+    private final IndexInput in = graphData.clone();
+    private int[] upperNeighbors; // neighbors of the current node if it is on an upper level
+    private int numNeighbors;
+    private int upTo;
+
+    @Override
+    int numLevels() {
+      return entry.levelNodes.length;
+    }
+
+    @Override
+    int entryNode() {
+      return entry.entryNode;
+    }
+
+    @Override
+    void seek(int level, int node) throws IOException {
+      if (level == 0) {
+        upperNeighbors = null;
+        in.seek((long) node * (1 + entry.maxConn0) * Integer.BYTES);
+        numNeighbors = in.readInt();
+      } else {
+        final int index = Arrays.binarySearch(entry.levelNodes[level], node);
+        assert index >= 0 : "node " + node + " is not on level " + level;
+        upperNeighbors = entry.levelNeighbors[level][index];
+        numNeighbors = upperNeighbors.length;
+      }
+      upTo = 0;
+    }
+
+    @Override
+    int nextNeighbor() throws IOException {
+      if (upTo == numNeighbors) {
+        return NO_MORE_NEIGHBORS;
+      }
+      final int neighbor = upperNeighbors == null ? in.readInt() : upperNeighbors[upTo];
+      upTo++;
+      return neighbor;
+    }
+  }
+}
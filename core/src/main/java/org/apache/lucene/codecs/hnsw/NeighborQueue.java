@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * A heap of graph nodes ordered by score. Nodes and scores are packed into
+ * longs so that the heap doesn't allocate objects: the sortable bits of the
+ * score are in the upper 32 bits and the node in the lower 32 bits.
+ */
+final class NeighborQueue {
+
+  private final boolean minHeap;
+  private long[] heap = new long[8];
+  private int size;
+
+  /**
+   * Create a new queue. If {@code minHeap} is true, the top of the queue is
+   * the node that has the least score, otherwise the node with the greatest
+   * score.
+   */
+  NeighborQueue(boolean minHeap) {
+    this.minHeap = minHeap;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Add a node to this queue. */
+  void add(int node, float score) {
+    if (size + 1 == heap.length) {
+      heap = ArrayUtil.grow(heap, size + 2);
+    }
+    heap[++size] = encode(node, score);
+    upHeap(size);
+  }
+
+  /**
+   * Add a node to this queue if it has less than {@code maxSize} nodes or if
+   * the node is more competitive than the top of the queue, in which case the
+   * top gets evicted. Only makes sense on min heaps.
+   */
+  void insertWithOverflow(int node, float score, int maxSize) {
+    assert minHeap;
+    if (size < maxSize) {
+      add(node, score);
+    } else {
+      final long encoded = encode(node, score);
+      if (encoded > heap[1]) {
+        heap[1] = encoded;
+        downHeap(1);
+      }
+    }
+  }
+
+  /** Return the node at the top of the queue. */
+  int topNode() {
+    return decodeNode(heap[1]);
+  }
+
+  /** Return the score of the node at the top of the queue. */
+  float topScore() {
+    return decodeScore(heap[1]);
+  }
+
+  /** Remove the top of the queue and return its node. */
+  int pop() {
+    final int node = topNode();
+    heap[1] = heap[size--];
+    if (size > 0) {
+      downHeap(1);
+    }
+    return node;
+  }
+
+  /** Return the nodes of this queue, in no particular order. */
+  int[] nodes() {
+    final int[] nodes = new int[size];
+    for (int i = 0; i < size; ++i) {
+      nodes[i] = decodeNode(heap[i + 1]);
+    }
+    return nodes;
+  }
+
+  private long encode(int node, float score) {
+    final long encoded = (((long) NumericUtils.floatToSortableInt(score)) << 32) | (node & 0xFFFFFFFFL);
+    // reverse the order on max heaps
+    return minHeap ? encoded : ~encoded;
+  }
+
+  private int decodeNode(long heapValue) {
+    return (int) (minHeap ? heapValue : ~heapValue);
+  }
+
+  private float decodeScore(long heapValue) {
+    final long encoded = minHeap ? heapValue : ~heapValue;
+    return NumericUtils.sortableIntToFloat((int) (encoded >> 32));
+  }
+
+  private void upHeap(int i) {
+    final long value = heap[i];
+    int j = i >>> 1;
+    while (j > 0 && value < heap[j]) {
+      heap[i] = heap[j];
+      i = j;
+      j = j >>> 1;
+    }
+    heap[i] = value;
+  }
+
+  private void downHeap(int i) {
+    final long value = heap[i];
+    int j = i << 1;
+    int k = j + 1;
+    if (k <= size && heap[k] < heap[j]) {
+      j = k;
+    }
+    while (j <= size && heap[j] < value) {
+      heap[i] = heap[j];
+      i = j;
+      j = i << 1;
+      k = j + 1;
+      if (k <= size && heap[k] < heap[j]) {
+        j = k;
+      }
+    }
+    heap[i] = value;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/** An {@link HnswGraph} whose neighbors are stored on heap, used while building graphs. */
+final class OnHeapHnswGraph extends HnswGraph {
+
+  /** Neighbors of a node on a level, and their scores relative to this node. */
+  static final class NeighborArray {
+    int size;
+    int[] nodes;
+    float[] scores;
+
+    NeighborArray(int initialCapacity) {
+      nodes = new int[initialCapacity];
+      scores = new float[initialCapacity];
+    }
+
+    void add(int node, float score) {
+      if (size == nodes.length) {
+        nodes = ArrayUtil.grow(nodes, size + 1);
+        scores = ArrayUtil.growExact(scores, nodes.length);
+      }
+      nodes[size] = node;
+      scores[size] = score;
+      size++;
+    }
+
+    /** Remove the neighbor that has the least score. */
+    void removeLeastSimilar() {
+      int least = 0;
+      for (int i = 1; i < size; ++i) {
+        if (scores[i] < scores[least]) {
+          least = i;
+        }
+      }
+      size--;
+      nodes[least] = nodes[size];
+      scores[least] = scores[size];
+    }
+  }
+
+  private final int numNodes;
+  private final List<NeighborArray[]> levels = new ArrayList<>();
+  private int entryNode = -1;
+
+  private NeighborArray current;
+  private int upTo;
+
+  OnHeapHnswGraph(int numNodes) {
+    this.numNodes = numNodes;
+  }
+
+  /** Add {@code node} to levels {@code 0} to {@code level} included. */
+  void addNode(int node, int level, int initialCapacity) {
+    while (levels.size() <= level) {
+      levels.add(new NeighborArray[numNodes]);
+    }
+    for (int l = 0; l <= level; ++l) {
+      levels.get(l)[node] = new NeighborArray(initialCapacity);
+    }
+  }
+
+  /** Return the neighbors of {@code node} on {@code level}, or {@code null} if the node is not on this level. */
+  NeighborArray getNeighbors(int level, int node) {
+    return levels.get(level)[node];
+  }
+
+  void setEntryNode(int entryNode) {
+    this.entryNode = entryNode;
+  }
+
+  @Override
+  int numLevels() {
+    return levels.size();
+  }
+
+  @Override
+  int entryNode() {
+    return entryNode;
+  }
+
+  @Override
+  void seek(int level, int node) {
+    current = levels.get(level)[node];
+    upTo = 0;
+  }
+
+  @Override
+  int nextNeighbor() {
+    if (upTo == current.size) {
+      return NO_MORE_NEIGHBORS;
+    }
+    return current.nodes[upTo++];
+  }
+}
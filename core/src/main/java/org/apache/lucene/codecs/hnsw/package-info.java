@@ -0,0 +1,31 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Doc values format that indexes dense vectors into navigable graphs in order
+ * to accelerate nearest-neighbor searches.
+ *
+ * <p>{@link org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat} stores the
+ * vectors of {@link org.apache.lucene.document.KnnVectorField}s together with
+ * a hierarchical navigable small-world graph that links every vector to some
+ * of its nearest neighbors.
+ * {@link org.apache.lucene.codecs.hnsw.HnswVectorValues#search} walks this
+ * graph from a fixed entry point towards the target vector, which only
+ * requires comparing the target with a small fraction of the vectors of a
+ * segment.
+ */
+package org.apache.lucene.codecs.hnsw;
@@ -32,6 +32,7 @@ import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesStatistics;
 import org.apache.lucene.index.EmptyDocValuesProducer;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexFileNames;
@@ -50,6 +51,7 @@ import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.HyperLogLog;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.MathUtil;
 import org.apache.lucene.util.StringHelper;
@@ -165,6 +167,9 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
     }
   }
 
+  /** Precision of the sketch that estimates the number of distinct values, 2^12 registers give a ~1.6% error. */
+  private static final int DISTINCT_VALUES_PRECISION = 12;
+
   private long[] writeValues(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
     DebugUtil.debugDocValues(Lucene80DocValuesConsumer.class, "beforeWriteValues_dvd_fp", data.getFilePointer());
     DebugUtil.debugDocValues(Lucene80DocValuesConsumer.class, "beforeWriteValues_dvm_fp", meta.getFilePointer());
@@ -175,6 +180,7 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
     MinMaxTracker blockMinMax = new MinMaxTracker();
     long gcd = 0;
     Set<Long> uniqueValues = new HashSet<>();
+    HyperLogLog distinctValues = null;
     for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
       for (int i = 0, count = values.docValueCount(); i < count; ++i) {
         long v = values.nextValue();
@@ -201,13 +207,26 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
             && uniqueValues.size() > 256) {
           // 当不同域值的个数超过 256时，说明域值种类太多了，强制设置为null，后面不会对此进行优化
           // 而当域值种类不超过 256时，是可能存在优化空间的
+          distinctValues = new HyperLogLog(DISTINCT_VALUES_PRECISION);
+          for (long uniqueValue : uniqueValues) {
+            distinctValues.add(uniqueValue);
+          }
           uniqueValues = null;
+        } else if (distinctValues != null) {
+          distinctValues.add(v);
         }
       }
 
       numDocsWithValue++;
     }
 
+    if (numDocsWithValue > 0) {
+      // the count of unique values is exact up to 256 distinct values, estimated otherwise
+      final long distinctValueCount = uniqueValues != null ? uniqueValues.size() : distinctValues.cardinality();
+      new DocValuesStatistics(minMax.min, minMax.max, minMax.numValues, numDocsWithValue, distinctValueCount)
+          .write(state.segmentInfo, field);
+    }
+
     minMax.finish();
     blockMinMax.finish();
 
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.ngram;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.OfflineSorter;
+import org.apache.lucene.util.OfflineSorter.ByteSequencesReader;
+import org.apache.lucene.util.OfflineSorter.ByteSequencesWriter;
+import org.apache.lucene.util.packed.DirectMonotonicWriter;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+
+import static org.apache.lucene.codecs.ngram.NGramPostingsFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
+import static org.apache.lucene.codecs.ngram.NGramPostingsFormat.GRAM_LENGTH;
+
+/** Writes postings through a delegate format, and the n-grams of terms. */
+final class NGramFieldsConsumer extends FieldsConsumer {
+
+  // RAM buffer used to sort the (gram, ord) pairs of a field
+  private static final int SORT_BUFFER_MB = 16;
+
+  private final SegmentWriteState state;
+  private FieldsConsumer delegate;
+  private IndexOutput meta, data;
+
+  NGramFieldsConsumer(SegmentWriteState state, PostingsFormat delegateFormat) throws IOException {
+    this.state = state;
+    boolean success = false;
+    try {
+      delegate = delegateFormat.fieldsConsumer(state);
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, NGramPostingsFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeIndexHeader(data, NGramPostingsFormat.DATA_CODEC, NGramPostingsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, NGramPostingsFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeIndexHeader(meta, NGramPostingsFormat.META_CODEC, NGramPostingsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      meta.writeString(delegateFormat.getName());
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void write(Fields fields, NormsProducer norms) throws IOException {
+    delegate.write(fields, norms);
+    for (String field : fields) {
+      final Terms terms = fields.terms(field);
+      if (terms != null) {
+        writeField(state.fieldInfos.fieldInfo(field), terms);
+      }
+    }
+  }
+
+  private void writeField(FieldInfo fieldInfo, Terms terms) throws IOException {
+    final TermsEnum termsEnum = terms.iterator();
+    final PackedLongValues.Builder offsets = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    final long termsStart = data.getFilePointer();
+    int numTerms = 0;
+    // (gram, ord) pairs are spilled to disk and sorted offline since they can be
+    // many times more than the number of terms
+    final Directory tempDir = state.directory;
+    String pairsName = null, sortedPairsName = null;
+    boolean success = false;
+    try {
+      try (IndexOutput pairsOut = tempDir.createTempOutput(state.segmentInfo.name, "ngram_pairs", state.context)) {
+        pairsName = pairsOut.getName();
+        final ByteSequencesWriter pairsWriter = new ByteSequencesWriter(pairsOut);
+        final byte[] pair = new byte[2 * Integer.BYTES];
+        int[] termGrams = new int[16];
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+          if (numTerms == Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("Field \"" + fieldInfo.name + "\" has too many terms to be indexed with "
+                + NGramPostingsFormat.NAME);
+          }
+          offsets.add(data.getFilePointer() - termsStart);
+          data.writeBytes(term.bytes, term.offset, term.length);
+          final int numTermGrams = term.length - GRAM_LENGTH + 1;
+          if (numTermGrams > 0) {
+            termGrams = ArrayUtil.grow(termGrams, numTermGrams);
+            for (int i = 0; i < numTermGrams; ++i) {
+              termGrams[i] = NGramTerms.gram(term.bytes, term.offset + i);
+            }
+            Arrays.sort(termGrams, 0, numTermGrams);
+            // grams and ords are positive so that their big-endian bytes sort like (gram, ord)
+            NumericUtils.intToSortableBytes(numTerms, pair, Integer.BYTES);
+            for (int i = 0; i < numTermGrams; ++i) {
+              if (i == 0 || termGrams[i] != termGrams[i - 1]) {
+                NumericUtils.intToSortableBytes(termGrams[i], pair, 0);
+                pairsWriter.write(pair);
+              }
+            }
+          }
+          numTerms++;
+        }
+        CodecUtil.writeFooter(pairsOut);
+      }
+      if (numTerms > 0) {
+        final OfflineSorter sorter = new OfflineSorter(tempDir, state.segmentInfo.name + "_ngram",
+            OfflineSorter.DEFAULT_COMPARATOR, OfflineSorter.BufferSize.megabytes(SORT_BUFFER_MB),
+            OfflineSorter.MAX_TEMPFILES, 2 * Integer.BYTES, null, 0);
+        sortedPairsName = sorter.sort(pairsName);
+        writeFieldData(fieldInfo, numTerms, termsStart, offsets, sortedPairsName);
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.deleteFiles(tempDir, Arrays.asList(pairsName, sortedPairsName));
+      } else {
+        IOUtils.deleteFilesIgnoringExceptions(tempDir, pairsName, sortedPairsName);
+      }
+    }
+  }
+
+  private void writeFieldData(FieldInfo fieldInfo, int numTerms, long termsStart,
+      PackedLongValues.Builder offsets, String sortedPairsName) throws IOException {
+    offsets.add(data.getFilePointer() - termsStart);
+
+    meta.writeInt(fieldInfo.number);
+    meta.writeVInt(numTerms);
+    meta.writeLong(termsStart);
+    meta.writeLong(data.getFilePointer() - termsStart);
+
+    final long offsetsStart = data.getFilePointer();
+    meta.writeLong(offsetsStart);
+    final DirectMonotonicWriter offsetsWriter = DirectMonotonicWriter.getInstance(meta, data, numTerms + 1L, DIRECT_MONOTONIC_BLOCK_SHIFT);
+    for (PackedLongValues.Iterator it = offsets.build().iterator(); it.hasNext(); ) {
+      offsetsWriter.add(it.next());
+    }
+    offsetsWriter.finish();
+    meta.writeLong(data.getFilePointer() - offsetsStart);
+
+    // write the ordinals of every gram and buffer the dictionary of grams,
+    // which has at most 2^(8*GRAM_LENGTH) entries
+    final long ordsStart = data.getFilePointer();
+    final PackedLongValues.Builder grams = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder counts = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    final PackedLongValues.Builder fps = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+    try (ChecksumIndexInput pairsIn = state.directory.openChecksumInput(sortedPairsName, IOContext.READONCE)) {
+      final ByteSequencesReader reader = new ByteSequencesReader(pairsIn, sortedPairsName);
+      int currentGram = -1;
+      int count = 0;
+      int previousOrd = 0;
+      for (BytesRef pair = reader.next(); pair != null; pair = reader.next()) {
+        final int gram = NumericUtils.sortableBytesToInt(pair.bytes, pair.offset);
+        final int ord = NumericUtils.sortableBytesToInt(pair.bytes, pair.offset + Integer.BYTES);
+        if (gram != currentGram) {
+          if (count > 0) {
+            counts.add(count);
+          }
+          grams.add(gram);
+          fps.add(data.getFilePointer());
+          currentGram = gram;
+          count = 0;
+          previousOrd = 0;
+        }
+        data.writeVInt(ord - previousOrd);
+        previousOrd = ord;
+        count++;
+      }
+      if (count > 0) {
+        counts.add(count);
+      }
+      CodecUtil.checkFooter(pairsIn);
+    }
+
+    meta.writeVInt(Math.toIntExact(grams.size()));
+    meta.writeLong(ordsStart);
+    int previousGram = 0;
+    long previousFP = ordsStart;
+    for (PackedLongValues.Iterator gramIt = grams.build().iterator(), countIt = counts.build().iterator(),
+        fpIt = fps.build().iterator(); gramIt.hasNext(); ) {
+      final int gram = (int) gramIt.next();
+      final long fp = fpIt.next();
+      meta.writeVInt(gram - previousGram);
+      meta.writeVInt((int) countIt.next());
+      meta.writeVLong(fp - previousFP);
+      previousGram = gram;
+      previousFP = fp;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(delegate, data, meta);
+      } else {
+        IOUtils.closeWhileHandlingException(delegate, data, meta);
+      }
+      delegate = null;
+      meta = data = null;
+    }
+  }
+}
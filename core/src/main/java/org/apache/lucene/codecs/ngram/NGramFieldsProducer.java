@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.ngram;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.DirectMonotonicReader;
+
+import static org.apache.lucene.codecs.ngram.NGramPostingsFormat.DIRECT_MONOTONIC_BLOCK_SHIFT;
+
+/** Reads postings through a delegate format, and the n-grams of terms. */
+final class NGramFieldsProducer extends FieldsProducer {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(NGramFieldsProducer.class);
+
+  private final FieldsProducer delegate;
+  private final Map<String, NGramTerms.FieldEntry> entries = new HashMap<>();
+  private final IndexInput data;
+
+  NGramFieldsProducer(SegmentReadState state) throws IOException {
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, NGramPostingsFormat.META_EXTENSION);
+    int version = -1;
+    String delegateName = null;
+    try (ChecksumIndexInput meta = state.directory.openChecksumInput(metaName, state.context)) {
+      Throwable priorE = null;
+      try {
+        version = CodecUtil.checkIndexHeader(meta, NGramPostingsFormat.META_CODEC,
+            NGramPostingsFormat.VERSION_START, NGramPostingsFormat.VERSION_CURRENT,
+            state.segmentInfo.getId(), state.segmentSuffix);
+        delegateName = meta.readString();
+        readFields(state, meta);
+      } catch (Throwable exception) {
+        priorE = exception;
+      } finally {
+        CodecUtil.checkFooter(meta, priorE);
+      }
+    }
+
+    boolean success = false;
+    FieldsProducer delegate = null;
+    IndexInput data = null;
+    try {
+      delegate = PostingsFormat.forName(delegateName).fieldsProducer(state);
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, NGramPostingsFormat.DATA_EXTENSION);
+      data = state.directory.openInput(dataName, state.context);
+      final int version2 = CodecUtil.checkIndexHeader(data, NGramPostingsFormat.DATA_CODEC,
+          NGramPostingsFormat.VERSION_START, NGramPostingsFormat.VERSION_CURRENT,
+          state.segmentInfo.getId(), state.segmentSuffix);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch: meta=" + version + ", data=" + version2, data);
+      }
+      // NOTE: like doc values, only verify the structure of the checksum footer on open
+      CodecUtil.retrieveChecksum(data);
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(delegate, data);
+      }
+    }
+    this.delegate = delegate;
+    this.data = data;
+  }
+
+  private void readFields(SegmentReadState state, ChecksumIndexInput meta) throws IOException {
+    for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+      final FieldInfo info = state.fieldInfos.fieldInfo(fieldNumber);
+      if (info == null) {
+        throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+      }
+      final NGramTerms.FieldEntry entry = new NGramTerms.FieldEntry();
+      entry.numTerms = meta.readVInt();
+      entry.termsOffset = meta.readLong();
+      entry.termsLength = meta.readLong();
+      entry.offsetsOffset = meta.readLong();
+      entry.offsetsMeta = DirectMonotonicReader.loadMeta(meta, entry.numTerms + 1L, DIRECT_MONOTONIC_BLOCK_SHIFT);
+      entry.offsetsLength = meta.readLong();
+      final int numGrams = meta.readVInt();
+      entry.grams = new int[numGrams];
+      entry.gramCounts = new int[numGrams];
+      entry.gramOffsets = new long[numGrams];
+      int gram = 0;
+      long fp = meta.readLong();
+      for (int i = 0; i < numGrams; ++i) {
+        gram += meta.readVInt();
+        entry.grams[i] = gram;
+        entry.gramCounts[i] = meta.readVInt();
+        fp += meta.readVLong();
+        entry.gramOffsets[i] = fp;
+      }
+      entries.put(info.name, entry);
+    }
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return delegate.iterator();
+  }
+
+  @Override
+  public Terms terms(String field) throws IOException {
+    final Terms terms = delegate.terms(field);
+    final NGramTerms.FieldEntry entry = entries.get(field);
+    if (terms == null || entry == null) {
+      return terms;
+    }
+    return new NGramTerms(terms, entry, data);
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(delegate, data);
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    delegate.checkIntegrity();
+    CodecUtil.checksumEntireFile(data);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = BASE_RAM_BYTES_USED + delegate.ramBytesUsed();
+    for (NGramTerms.FieldEntry entry : entries.values()) {
+      ramBytesUsed += entry.ramBytesUsed();
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    final List<Accountable> resources = new ArrayList<>();
+    resources.add(Accountables.namedAccountable("delegate", delegate));
+    resources.addAll(Accountables.namedAccountables("field", entries));
+    return Collections.unmodifiableList(resources);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + entries.size() + ",delegate=" + delegate + ")";
+  }
+}
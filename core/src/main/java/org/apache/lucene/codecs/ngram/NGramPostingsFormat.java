@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.ngram;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene84.Lucene84PostingsFormat;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+
+/**
+ * A {@link PostingsFormat} that delegates postings to another format, and
+ * additionally stores, for every field, the {@link #GRAM_LENGTH}-grams of
+ * bytes of its terms together with the ordinals of the terms that contain
+ * them. This allows {@link org.apache.lucene.search.NGramWildcardQuery} to answer infix wildcard
+ * queries without checking every term of the field.
+ *
+ * <p>Files:
+ * <ul>
+ *   <li><code>.ngm</code>: the name of the delegate format, and per field
+ *   the number of terms, the location of terms and their offsets in the data
+ *   file, and the dictionary of n-grams with the location of their term ordinals</li>
+ *   <li><code>.ngd</code>: per field the concatenated bytes of all terms,
+ *   their monotonic offsets, and the delta-encoded ordinals of the terms that
+ *   contain every n-gram</li>
+ * </ul>
+ *
+ * <p>The n-gram dictionary is loaded in memory while terms and ordinals
+ * are read from disk.
+ *
+ * @lucene.experimental
+ */
+public final class NGramPostingsFormat extends PostingsFormat {
+
+  /** Name of this format. */
+  public static final String NAME = "NGram";
+
+  /** Number of bytes of n-grams. */
+  public static final int GRAM_LENGTH = 3;
+
+  static final String META_CODEC = "NGramIndexMeta";
+  static final String META_EXTENSION = "ngm";
+  static final String DATA_CODEC = "NGramIndexData";
+  static final String DATA_EXTENSION = "ngd";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  static final int DIRECT_MONOTONIC_BLOCK_SHIFT = 16;
+
+  private final PostingsFormat delegate;
+
+  /** Create a format that delegates postings to {@link Lucene84PostingsFormat}. */
+  public NGramPostingsFormat() {
+    this(new Lucene84PostingsFormat());
+  }
+
+  /** Create a format that delegates postings to the given format. */
+  public NGramPostingsFormat(PostingsFormat delegate) {
+    super(NAME);
+    this.delegate = delegate;
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new NGramFieldsConsumer(state, delegate);
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new NGramFieldsProducer(state);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(delegate=" + delegate + ")";
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.ngram;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.FilterLeafReader.FilterTerms;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.packed.DirectMonotonicReader;
+
+/**
+ * {@link Terms} that also give access to the n-grams of terms.
+ *
+ * @lucene.internal
+ */
+public final class NGramTerms extends FilterTerms {
+
+  /** Encode the {@link NGramPostingsFormat#GRAM_LENGTH} bytes starting at {@code offset} as an int. */
+  public static int gram(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 16) | ((bytes[offset + 1] & 0xFF) << 8) | (bytes[offset + 2] & 0xFF);
+  }
+
+  /** Per-field metadata, loaded in memory. */
+  static final class FieldEntry implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(FieldEntry.class);
+
+    int numTerms;
+    long termsOffset;
+    long termsLength;
+    DirectMonotonicReader.Meta offsetsMeta;
+    long offsetsOffset;
+    long offsetsLength;
+    int[] grams; // sorted
+    int[] gramCounts; // number of terms that contain every gram
+    long[] gramOffsets; // where the ordinals of the terms that contain every gram start
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + offsetsMeta.ramBytesUsed() + RamUsageEstimator.sizeOf(grams)
+          + RamUsageEstimator.sizeOf(gramCounts) + RamUsageEstimator.sizeOf(gramOffsets);
+    }
+  }
+
+  private final FieldEntry entry;
+  private final IndexInput data;
+
+  NGramTerms(Terms in, FieldEntry entry, IndexInput data) {
+    super(in);
+    this.entry = entry;
+    this.data = data;
+  }
+
+  // forward methods that FilterTerms doesn't, so that automaton queries use the
+  // optimized implementation of the delegate format
+
+  @Override
+  public TermsEnum intersect(CompiledAutomaton compiled, BytesRef startTerm) throws IOException {
+    return in.intersect(compiled, startTerm);
+  }
+
+  @Override
+  public BytesRef getMin() throws IOException {
+    return in.getMin();
+  }
+
+  @Override
+  public BytesRef getMax() throws IOException {
+    return in.getMax();
+  }
+
+  /**
+   * Return the ordinals, in increasing order, of the terms that contain all
+   * the given grams.
+   */
+  public int[] intersect(int[] grams) throws IOException {
+    assert grams.length > 0;
+    final int[] indexes = new int[grams.length];
+    for (int i = 0; i < grams.length; ++i) {
+      final int index = Arrays.binarySearch(entry.grams, grams[i]);
+      if (index < 0) {
+        return new int[0];
+      }
+      indexes[i] = index;
+    }
+    // start from the rarest gram
+    Arrays.sort(indexes);
+    int rarest = 0;
+    for (int i = 1; i < indexes.length; ++i) {
+      if (entry.gramCounts[indexes[i]] < entry.gramCounts[indexes[rarest]]) {
+        rarest = i;
+      }
+    }
+    final IndexInput in = data.clone();
+    int[] ords = new int[entry.gramCounts[indexes[rarest]]];
+    in.seek(entry.gramOffsets[indexes[rarest]]);
+    for (int i = 0, ord = 0; i < ords.length; ++i) {
+      ord += in.readVInt();
+      ords[i] = ord;
+    }
+    int numOrds = ords.length;
+    for (int i = 0; i < indexes.length && numOrds > 0; ++i) {
+      if (i == rarest || indexes[i] == indexes[rarest]) {
+        continue;
+      }
+      // retain ordinals that also contain this gram
+      in.seek(entry.gramOffsets[indexes[i]]);
+      final int count = entry.gramCounts[indexes[i]];
+      int newNumOrds = 0;
+      for (int j = 0, k = 0, ord = 0; j < count && k < numOrds; ++j) {
+        ord += in.readVInt();
+        while (k < numOrds && ords[k] < ord) {
+          k++;
+        }
+        if (k < numOrds && ords[k] == ord) {
+          ords[newNumOrds++] = ord;
+          k++;
+        }
+      }
+      numOrds = newNumOrds;
+    }
+    return ArrayUtil.copyOfSubArray(ords, 0, numOrds);
+  }
+
+  /** Return a lookup of terms by ordinal, which must be used from a single thread. */
+  public TermLookup termLookup() throws IOException {
+    return new TermLookup();
+  }
+
+  /** Reads terms by ordinal. */
+  public final class TermLookup {
+
+    private final IndexInput terms;
+    private final LongValues offsets;
+    private final BytesRefBuilder term = new BytesRefBuilder();
+
+    private TermLookup() throws IOException {
+      this.terms = data.slice("terms", entry.termsOffset, entry.termsLength);
+      this.offsets = DirectMonotonicReader.getInstance(entry.offsetsMeta,
+          data.randomAccessSlice(entry.offsetsOffset, entry.offsetsLength));
+    }
+
+    /** Return the term that has the given ordinal, the returned bytes are only valid until the next call. */
+    public BytesRef term(int ord) throws IOException {
+      final long start = offsets.get(ord);
+      final int length = (int) (offsets.get(ord + 1L) - start);
+      term.grow(length);
+      term.setLength(length);
+      terms.seek(start);
+      terms.readBytes(term.bytes(), 0, length);
+      return term.get();
+    }
+  }
+}
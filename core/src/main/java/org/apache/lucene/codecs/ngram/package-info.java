@@ -0,0 +1,30 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Postings format that indexes the n-grams of the terms of a field in order
+ * to accelerate infix wildcard queries.
+ *
+ * <p>{@link org.apache.lucene.codecs.ngram.NGramPostingsFormat} wraps another
+ * postings format and additionally records, for every n-gram of bytes that
+ * occurs in a term, the ordinals of the terms that contain it.
+ * {@link org.apache.lucene.search.NGramWildcardQuery} uses this
+ * structure to only verify the terms that contain all n-grams of the
+ * literal parts of the pattern, instead of running the automaton against
+ * every term of the field.
+ */
+package org.apache.lucene.codecs.ngram;
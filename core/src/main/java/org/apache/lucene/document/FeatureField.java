@@ -17,6 +17,7 @@
 package org.apache.lucene.document;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Objects;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -472,6 +473,37 @@ public final class FeatureField extends Field {
     return q;
   }
 
+  /**
+   * Return a new {@link Query} that will score documents as the dot product
+   * of {@code featureWeights} with their feature values, ie.
+   * {@code sum(w_i * S_i)} where {@code w_i} is the weight of feature
+   * {@code i} and {@code S_i} is the value of this feature in the document.
+   * Documents that have none of the features don't match. This is typically
+   * useful to run queries that have been expanded into a weighted bag of
+   * features, and is more efficient than a {@link BooleanQuery} of
+   * {@link #newLinearQuery linear queries}, especially when the number of
+   * features is large: upper bounds of the scores of every feature are
+   * computed on blocks of documents from the maximum indexed value, which
+   * is exact since feature values are stored with reduced precision, and
+   * used to skip blocks that can't be competitive when total hit counts are
+   * not requested.
+   * @param fieldName       field that stores features
+   * @param featureWeights  map from feature names to their weights, which must be in (0,64]
+   * @throws IllegalArgumentException if {@code featureWeights} is empty or has weights that are not in (0,64]
+   */
+  public static Query newLinearVectorQuery(String fieldName, Map<String, Float> featureWeights) {
+    if (featureWeights.isEmpty()) {
+      throw new IllegalArgumentException("featureWeights must not be empty");
+    }
+    for (Map.Entry<String, Float> entry : featureWeights.entrySet()) {
+      final float weight = entry.getValue();
+      if (weight <= 0 || weight > MAX_WEIGHT) {
+        throw new IllegalArgumentException("weight must be in (0, " + MAX_WEIGHT + "], got: " + weight + " for feature " + entry.getKey());
+      }
+    }
+    return new FeatureVectorQuery(fieldName, featureWeights);
+  }
+
   /**
    * Return a new {@link Query} that will score documents as
    * {@code weight * Math.log(scalingFactor + S)} where S is the value of the static feature.
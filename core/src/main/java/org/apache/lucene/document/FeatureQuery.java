@@ -136,45 +136,57 @@ final class FeatureQuery extends Query {
 
         final SimScorer scorer = function.scorer(boost);
         final ImpactsEnum impacts = termsEnum.impacts(PostingsEnum.FREQS);
-        final ImpactsDISI impactsDisi = new ImpactsDISI(impacts, impacts, scorer);
-
-        return new Scorer(this) {
-
-          @Override
-          public int docID() {
-            return impacts.docID();
-          }
-
-          @Override
-          public float score() throws IOException {
-            return scorer.score(impacts.freq(), 1L);
-          }
-
-          @Override
-          public DocIdSetIterator iterator() {
-            return impactsDisi;
-          }
-
-          @Override
-          public int advanceShallow(int target) throws IOException {
-            return impactsDisi.advanceShallow(target);
-          }
-
-          @Override
-          public float getMaxScore(int upTo) throws IOException {
-            return impactsDisi.getMaxScore(upTo);
-          }
-
-          @Override
-          public void setMinCompetitiveScore(float minScore) {
-            impactsDisi.setMinCompetitiveScore(minScore);
-          }
-        };
+        return new FeatureScorer(this, impacts, scorer);
       }
 
     };
   }
 
+  /** A {@link Scorer} that scores a single feature and skips non-competitive blocks using impacts. */
+  static final class FeatureScorer extends Scorer {
+
+    private final ImpactsEnum impacts;
+    private final ImpactsDISI impactsDisi;
+    private final SimScorer scorer;
+
+    FeatureScorer(Weight weight, ImpactsEnum impacts, SimScorer scorer) {
+      super(weight);
+      this.impacts = impacts;
+      this.impactsDisi = new ImpactsDISI(impacts, impacts, scorer);
+      this.scorer = scorer;
+    }
+
+    @Override
+    public int docID() {
+      return impacts.docID();
+    }
+
+    @Override
+    public float score() throws IOException {
+      return scorer.score(impacts.freq(), 1L);
+    }
+
+    @Override
+    public DocIdSetIterator iterator() {
+      return impactsDisi;
+    }
+
+    @Override
+    public int advanceShallow(int target) throws IOException {
+      return impactsDisi.advanceShallow(target);
+    }
+
+    @Override
+    public float getMaxScore(int upTo) throws IOException {
+      return impactsDisi.getMaxScore(upTo);
+    }
+
+    @Override
+    public void setMinCompetitiveScore(float minScore) {
+      impactsDisi.setMinCompetitiveScore(minScore);
+    }
+  }
+
   @Override
   public void visit(QueryVisitor visitor) {
     if (visitor.acceptField(fieldName)) {
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.lucene.document.FeatureField.LinearFunction;
+import org.apache.lucene.document.FeatureQuery.FeatureScorer;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DisjunctionSumScorer;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MaxScoreScorer;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.similarities.Similarity.SimScorer;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Query that scores documents by the dot product of a vector of weighted
+ * features with the feature values of documents, ie. the sum of
+ * {@code w_i * S_i} over all features {@code i} that a document has.
+ * Features are looked up with a single {@link TermsEnum} per segment in term
+ * order. When only top scores are needed, the per-feature scorers are
+ * combined with a {@link MaxScoreScorer} so that blocks of documents whose
+ * impacts show that they can't be competitive get skipped, otherwise they are
+ * combined with a plain {@link DisjunctionSumScorer} over postings.
+ */
+final class FeatureVectorQuery extends Query {
+
+  private final String fieldName;
+  // sorted in term order
+  private final BytesRef[] features;
+  private final float[] weights;
+
+  FeatureVectorQuery(String fieldName, Map<String, Float> featureWeights) {
+    this.fieldName = Objects.requireNonNull(fieldName);
+    final int numFeatures = featureWeights.size();
+    final BytesRef[] features = new BytesRef[numFeatures];
+    int i = 0;
+    for (String feature : featureWeights.keySet()) {
+      features[i++] = new BytesRef(Objects.requireNonNull(feature));
+    }
+    Arrays.sort(features);
+    this.features = features;
+    this.weights = new float[numFeatures];
+    for (i = 0; i < numFeatures; ++i) {
+      weights[i] = featureWeights.get(features[i].utf8ToString());
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (sameClassAs(obj) == false) {
+      return false;
+    }
+    FeatureVectorQuery that = (FeatureVectorQuery) obj;
+    return fieldName.equals(that.fieldName) &&
+        Arrays.equals(features, that.features) &&
+        Arrays.equals(weights, that.weights);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = classHash();
+    h = 31 * h + fieldName.hashCode();
+    h = 31 * h + Arrays.hashCode(features);
+    h = 31 * h + Arrays.hashCode(weights);
+    return h;
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+    return new Weight(this) {
+
+      @Override
+      public boolean isCacheable(LeafReaderContext ctx) {
+        return false;
+      }
+
+      @Override
+      public void extractTerms(Set<Term> terms) {
+        if (scoreMode.needsScores()) {
+          for (BytesRef feature : features) {
+            terms.add(new Term(fieldName, feature));
+          }
+        }
+      }
+
+      @Override
+      public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+        String desc = "weight(" + getQuery() + " in " + doc + ")";
+
+        Terms terms = context.reader().terms(fieldName);
+        if (terms == null) {
+          return Explanation.noMatch(desc + ". Field " + fieldName + " doesn't exist.");
+        }
+        TermsEnum termsEnum = terms.iterator();
+        LinearFunction function = new LinearFunction();
+        List<Explanation> subs = new ArrayList<>();
+        double score = 0; // sum into a double before casting into a float
+        for (int i = 0; i < features.length; ++i) {
+          if (termsEnum.seekExact(features[i]) == false) {
+            continue;
+          }
+          PostingsEnum postings = termsEnum.postings(null, PostingsEnum.FREQS);
+          if (postings.advance(doc) != doc) {
+            continue;
+          }
+          Explanation sub = function.explain(fieldName, features[i].utf8ToString(), boost * weights[i], postings.freq());
+          score += sub.getValue().floatValue();
+          subs.add(sub);
+        }
+        if (subs.isEmpty()) {
+          return Explanation.noMatch(desc + ". No feature is set.");
+        }
+        return Explanation.match((float) score, desc + ", sum of:", subs);
+      }
+
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        Terms terms = context.reader().terms(fieldName);
+        if (terms == null) {
+          return null;
+        }
+        // features are sorted, so seeks only ever move forward
+        TermsEnum termsEnum = terms.iterator();
+        LinearFunction function = new LinearFunction();
+        // impacts can only help skip when top scores are needed
+        final boolean topScores = scoreMode == ScoreMode.TOP_SCORES;
+        final int flags = scoreMode.needsScores() ? PostingsEnum.FREQS : PostingsEnum.NONE;
+        List<Scorer> scorers = new ArrayList<>();
+        for (int i = 0; i < features.length; ++i) {
+          if (termsEnum.seekExact(features[i])) {
+            final SimScorer simScorer = function.scorer(boost * weights[i]);
+            if (topScores) {
+              scorers.add(new FeatureScorer(this, termsEnum.impacts(flags), simScorer));
+            } else {
+              scorers.add(new PostingsFeatureScorer(this, termsEnum.postings(null, flags), simScorer));
+            }
+          }
+        }
+        if (scorers.isEmpty()) {
+          return null;
+        } else if (scorers.size() == 1) {
+          return scorers.get(0);
+        } else if (topScores) {
+          return new MaxScoreScorer(this, scorers);
+        }
+        return new DisjunctionSumScorer(this, scorers, scoreMode);
+      }
+
+    };
+  }
+
+  /** A {@link Scorer} that scores a single feature without reading impacts. */
+  private static final class PostingsFeatureScorer extends Scorer {
+
+    private final PostingsEnum postings;
+    private final SimScorer scorer;
+
+    PostingsFeatureScorer(Weight weight, PostingsEnum postings, SimScorer scorer) {
+      super(weight);
+      this.postings = postings;
+      this.scorer = scorer;
+    }
+
+    @Override
+    public int docID() {
+      return postings.docID();
+    }
+
+    @Override
+    public float score() throws IOException {
+      return scorer.score(postings.freq(), 1L);
+    }
+
+    @Override
+    public DocIdSetIterator iterator() {
+      return postings;
+    }
+
+    @Override
+    public float getMaxScore(int upTo) throws IOException {
+      return Float.MAX_VALUE;
+    }
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(fieldName)) {
+      visitor.visitLeaf(this);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    StringBuilder sb = new StringBuilder("FeatureVectorQuery(field=").append(fieldName).append(", features={");
+    for (int i = 0; i < features.length; ++i) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(features[i].utf8ToString()).append('=').append(weights[i]);
+    }
+    return sb.append("})").toString();
+  }
+
+}
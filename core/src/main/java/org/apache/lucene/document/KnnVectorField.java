@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.VectorUtil;
+
+/**
+ * A field that stores a dense vector of floats per document, which can be
+ * searched for the nearest neighbors of a target vector with
+ * {@link #newKnnQuery}. All vectors of a field must have the same dimension
+ * and be compared with the same {@link VectorSimilarityFunction}.
+ * <p>
+ * Vectors are stored as {@link DocValuesType#BINARY binary doc values}. In
+ * order for nearest-neighbor searches to be fast, the field should use
+ * {@link org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat}, which
+ * additionally indexes vectors into a navigable graph, eg.
+ * <pre class="prettyprint">
+ * IndexWriterConfig iwc = new IndexWriterConfig();
+ * iwc.setCodec(new Lucene87Codec() {
+ *   &#64;Override
+ *   public DocValuesFormat getDocValuesFormatForField(String field) {
+ *     if ("vector".equals(field)) {
+ *       return new HnswVectorDocValuesFormat();
+ *     }
+ *     return super.getDocValuesFormatForField(field);
+ *   }
+ * });
+ * </pre>
+ * Otherwise, queries fall back to comparing the target with all vectors.
+ *
+ * @lucene.experimental
+ */
+public final class KnnVectorField extends Field {
+
+  /** Maximum number of dimensions of vectors. */
+  public static final int MAX_DIMENSIONS = 1024;
+
+  // allowed error on the square length of unit vectors, to account for rounding
+  private static final float UNIT_LENGTH_TOLERANCE = 1e-4f;
+
+  /** Name of the {@link FieldInfo} attribute that records the dimension of vectors. */
+  public static final String DIMENSION_ATTRIBUTE = KnnVectorField.class.getSimpleName() + ".dimension";
+  /** Name of the {@link FieldInfo} attribute that records the similarity function of vectors. */
+  public static final String SIMILARITY_ATTRIBUTE = KnnVectorField.class.getSimpleName() + ".similarity";
+
+  /**
+   * Create a field type for vectors of the given dimension that get compared
+   * with the given similarity function.
+   */
+  public static FieldType createFieldType(int dimension, VectorSimilarityFunction similarityFunction) {
+    if (dimension <= 0 || dimension > MAX_DIMENSIONS) {
+      throw new IllegalArgumentException("dimension must be in [1, " + MAX_DIMENSIONS + "], got " + dimension);
+    }
+    FieldType type = new FieldType();
+    type.setDocValuesType(DocValuesType.BINARY);
+    type.putAttribute(DIMENSION_ATTRIBUTE, Integer.toString(dimension));
+    type.putAttribute(SIMILARITY_ATTRIBUTE, similarityFunction.name());
+    type.freeze();
+    return type;
+  }
+
+  /** Create a new vector field whose vectors get compared with {@link VectorSimilarityFunction#EUCLIDEAN}. */
+  public KnnVectorField(String name, float[] vector) {
+    this(name, vector, VectorSimilarityFunction.EUCLIDEAN);
+  }
+
+  /**
+   * Create a new vector field.
+   * @param name               field name
+   * @param vector             the vector, whose values must be finite, and whose length must be 1
+   *                           with {@link VectorSimilarityFunction#DOT_PRODUCT}
+   * @param similarityFunction the function that vectors get compared with
+   * @throws IllegalArgumentException if the vector has no or more than {@link #MAX_DIMENSIONS} dimensions,
+   *         non-finite values, or a length that is not 1 with {@link VectorSimilarityFunction#DOT_PRODUCT}
+   */
+  public KnnVectorField(String name, float[] vector, VectorSimilarityFunction similarityFunction) {
+    super(name, createFieldType(vector.length, similarityFunction));
+    checkVector(vector);
+    if (similarityFunction == VectorSimilarityFunction.DOT_PRODUCT) {
+      checkUnitVector(vector);
+    }
+    fieldsData = VectorUtil.encode(vector);
+  }
+
+  /** Return the vector of this field. */
+  public float[] vectorValue() {
+    BytesRef bytes = binaryValue();
+    float[] vector = new float[bytes.length / Float.BYTES];
+    VectorUtil.decode(bytes, vector);
+    return vector;
+  }
+
+  static void checkVector(float[] vector) {
+    for (float v : vector) {
+      if (Float.isFinite(v) == false) {
+        throw new IllegalArgumentException("vector values must be finite, got " + v);
+      }
+    }
+  }
+
+  // dot products are only similarities between vectors of length 1
+  private static void checkUnitVector(float[] vector) {
+    final float squareLength = VectorUtil.dotProduct(vector, vector);
+    if (Math.abs(squareLength - 1) > UNIT_LENGTH_TOLERANCE) {
+      throw new IllegalArgumentException("vectors compared with " + VectorSimilarityFunction.DOT_PRODUCT
+          + " must have a length of 1, got " + Math.sqrt(squareLength));
+    }
+  }
+
+  /**
+   * Return a new {@link Query} that matches the {@code k} documents whose
+   * vectors are the most similar to {@code target}, scored by their
+   * similarity. The search is approximate on segments whose field uses
+   * {@link org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat}.
+   * @param field   the vector field
+   * @param target  the vector to find neighbors of
+   * @param k       number of documents to return
+   * @throws IllegalArgumentException if {@code k} is less than 1
+   */
+  public static Query newKnnQuery(String field, float[] target, int k) {
+    return newKnnQuery(field, target, k, KnnVectorQuery.DEFAULT_FANOUT);
+  }
+
+  /**
+   * Same as {@link #newKnnQuery(String, float[], int)} but also explores
+   * {@code fanout} additional candidates on every segment, which improves
+   * the recall of approximate searches at the expense of performance.
+   */
+  public static Query newKnnQuery(String field, float[] target, int k, int fanout) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, got " + k);
+    }
+    if (fanout < 0) {
+      throw new IllegalArgumentException("fanout must be non-negative, got " + fanout);
+    }
+    checkVector(target);
+    return new KnnVectorQuery(field, target.clone(), k, fanout);
+  }
+}
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.lucene.codecs.hnsw.HnswVectorValues;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.VectorUtil;
+
+/**
+ * Query that matches the {@code k} documents whose {@link KnnVectorField}
+ * vectors are the most similar to a target vector. Neighbors are computed on
+ * every segment when the query gets rewritten, using the graph of
+ * {@link HnswVectorValues} when the field uses
+ * {@link org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat} and by
+ * comparing the target with every vector otherwise. The global top
+ * {@code k} is then rewritten into a query that matches these documents with
+ * their similarity as a score.
+ */
+final class KnnVectorQuery extends Query {
+
+  /** Default number of additional candidates that are explored on every segment. */
+  static final int DEFAULT_FANOUT = 50;
+
+  private static final TopDocs NO_RESULTS = new TopDocs(new TotalHits(0, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]);
+
+  private final String field;
+  private final float[] target;
+  private final int k;
+  private final int fanout;
+
+  KnnVectorQuery(String field, float[] target, int k, int fanout) {
+    this.field = Objects.requireNonNull(field);
+    this.target = Objects.requireNonNull(target);
+    this.k = k;
+    this.fanout = fanout;
+  }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final TopDocs[] perLeafResults = new TopDocs[leaves.size()];
+    for (LeafReaderContext ctx : leaves) {
+      final TopDocs results = searchLeaf(ctx.reader());
+      for (ScoreDoc scoreDoc : results.scoreDocs) {
+        scoreDoc.doc += ctx.docBase;
+      }
+      perLeafResults[ctx.ord] = results;
+    }
+    final TopDocs topK = TopDocs.merge(k, perLeafResults);
+    if (topK.scoreDocs.length == 0) {
+      return new MatchNoDocsQuery("no vectors for field " + field);
+    }
+    return createRewrittenQuery(reader, topK);
+  }
+
+  private TopDocs searchLeaf(LeafReader reader) throws IOException {
+    final FieldInfo info = reader.getFieldInfos().fieldInfo(field);
+    if (info == null) {
+      return NO_RESULTS;
+    }
+    final String dimension = info.getAttribute(KnnVectorField.DIMENSION_ATTRIBUTE);
+    if (dimension == null) {
+      throw new IllegalArgumentException("Field \"" + field + "\" is not a " + KnnVectorField.class.getSimpleName());
+    }
+    if (Integer.parseInt(dimension) != target.length) {
+      throw new IllegalArgumentException("Field \"" + field + "\" has vectors of " + dimension
+          + " dimensions, but the target has " + target.length);
+    }
+    final BinaryDocValues values = reader.getBinaryDocValues(field);
+    if (values == null) {
+      return NO_RESULTS;
+    }
+    if (values instanceof HnswVectorValues) {
+      return ((HnswVectorValues) values).search(target, k, fanout, reader.getLiveDocs());
+    }
+    final VectorSimilarityFunction similarityFunction =
+        VectorSimilarityFunction.valueOf(info.getAttribute(KnnVectorField.SIMILARITY_ATTRIBUTE));
+    return exhaustiveSearch(values, similarityFunction, reader.getLiveDocs(), Math.min(k, reader.maxDoc()));
+  }
+
+  /** Compare the target with the vectors of all live documents. */
+  private TopDocs exhaustiveSearch(BinaryDocValues values, VectorSimilarityFunction similarityFunction,
+                                   Bits liveDocs, int topK) throws IOException {
+    final PriorityQueue<ScoreDoc> queue = new PriorityQueue<ScoreDoc>(topK) {
+      @Override
+      protected boolean lessThan(ScoreDoc a, ScoreDoc b) {
+        if (a.score == b.score) {
+          return a.doc > b.doc;
+        }
+        return a.score < b.score;
+      }
+    };
+    final float[] vector = new float[target.length];
+    for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+      if (liveDocs != null && liveDocs.get(doc) == false) {
+        continue;
+      }
+      final BytesRef bytes = values.binaryValue();
+      if (bytes.length != vector.length * Float.BYTES) {
+        throw new IllegalArgumentException("Field \"" + field + "\" has vectors of " + vector.length
+            + " dimensions, but document " + doc + " has a value of " + bytes.length + " bytes");
+      }
+      VectorUtil.decode(bytes, vector);
+      final float score = similarityFunction.compare(target, vector);
+      if (queue.size() < topK) {
+        queue.add(new ScoreDoc(doc, score));
+      } else if (score > queue.top().score) {
+        final ScoreDoc top = queue.top();
+        top.doc = doc;
+        top.score = score;
+        queue.updateTop();
+      }
+    }
+    final ScoreDoc[] scoreDocs = new ScoreDoc[queue.size()];
+    for (int i = scoreDocs.length - 1; i >= 0; --i) {
+      scoreDocs[i] = queue.pop();
+    }
+    return new TopDocs(new TotalHits(scoreDocs.length, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  private Query createRewrittenQuery(IndexReader reader, TopDocs topK) {
+    final int len = topK.scoreDocs.length;
+    final ScoreDoc[] scoreDocs = topK.scoreDocs.clone();
+    Arrays.sort(scoreDocs, (a, b) -> Integer.compare(a.doc, b.doc));
+    final int[] docs = new int[len];
+    final float[] scores = new float[len];
+    for (int i = 0; i < len; ++i) {
+      docs[i] = scoreDocs[i].doc;
+      scores[i] = scoreDocs[i].score;
+    }
+    // segmentStarts[i] is the index of the first document of leaf i in docs
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final int[] segmentStarts = new int[leaves.size() + 1];
+    for (int i = 0; i < leaves.size(); ++i) {
+      int index = Arrays.binarySearch(docs, leaves.get(i).docBase);
+      segmentStarts[i] = index < 0 ? -1 - index : index;
+    }
+    segmentStarts[leaves.size()] = len;
+    return new DocAndScoreQuery(k, docs, scores, segmentStarts, reader.getContext().id());
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (sameClassAs(obj) == false) {
+      return false;
+    }
+    KnnVectorQuery that = (KnnVectorQuery) obj;
+    return field.equals(that.field) &&
+        Arrays.equals(target, that.target) &&
+        k == that.k &&
+        fanout == that.fanout;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = classHash();
+    h = 31 * h + field.hashCode();
+    h = 31 * h + Arrays.hashCode(target);
+    h = 31 * h + k;
+    h = 31 * h + fanout;
+    return h;
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      visitor.visitLeaf(this);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    return "KnnVectorQuery(field=" + this.field + ", target=" + Arrays.toString(target) + ", k=" + k + ", fanout=" + fanout + ")";
+  }
+
+  /**
+   * Matches a fixed set of documents, with a fixed score each, of the reader
+   * that {@link KnnVectorQuery} got rewritten against.
+   */
+  static final class DocAndScoreQuery extends Query {
+
+    private final int k;
+    private final int[] docs; // sorted top-level doc IDs
+    private final float[] scores;
+    private final int[] segmentStarts;
+    private final Object contextIdentity;
+
+    DocAndScoreQuery(int k, int[] docs, float[] scores, int[] segmentStarts, Object contextIdentity) {
+      this.k = k;
+      this.docs = docs;
+      this.scores = scores;
+      this.segmentStarts = segmentStarts;
+      this.contextIdentity = contextIdentity;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+      if (searcher.getIndexReader().getContext().id() != contextIdentity) {
+        throw new IllegalStateException("This query was rewritten against a different reader");
+      }
+      return new Weight(this) {
+
+        @Override
+        public void extractTerms(Set<Term> terms) {}
+
+        @Override
+        public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+          final int index = Arrays.binarySearch(docs, segmentStarts[context.ord], segmentStarts[context.ord + 1],
+              doc + context.docBase);
+          if (index < 0) {
+            return Explanation.noMatch("not in the top " + k + " nearest neighbors");
+          }
+          return Explanation.match(scores[index] * boost, "within the top " + k + " nearest neighbors");
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext context) throws IOException {
+          final int lower = segmentStarts[context.ord];
+          final int upper = segmentStarts[context.ord + 1];
+          if (lower == upper) {
+            return null;
+          }
+          return new DocAndScoreScorer(this, context.docBase, lower, upper, boost);
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext ctx) {
+          return true;
+        }
+      };
+    }
+
+    private class DocAndScoreScorer extends Scorer {
+
+      private final int docBase;
+      private final int lower;
+      private final int upper;
+      private final float boost;
+      private int upTo;
+
+      DocAndScoreScorer(Weight weight, int docBase, int lower, int upper, float boost) {
+        super(weight);
+        this.docBase = docBase;
+        this.lower = lower;
+        this.upper = upper;
+        this.boost = boost;
+        this.upTo = lower - 1;
+      }
+
+      @Override
+      public int docID() {
+        if (upTo < lower) {
+          return -1;
+        } else if (upTo >= upper) {
+          return DocIdSetIterator.NO_MORE_DOCS;
+        }
+        return docs[upTo] - docBase;
+      }
+
+      @Override
+      public DocIdSetIterator iterator() {
+        return new DocIdSetIterator() {
+          @Override
+          public int docID() {
+            return DocAndScoreScorer.this.docID();
+          }
+
+          @Override
+          public int nextDoc() {
+            if (upTo < upper) {
+              upTo++;
+            }
+            return docID();
+          }
+
+          @Override
+          public int advance(int target) throws IOException {
+            return slowAdvance(target);
+          }
+
+          @Override
+          public long cost() {
+            return upper - lower;
+          }
+        };
+      }
+
+      @Override
+      public float getMaxScore(int upTo) {
+        float maxScore = 0;
+        for (int i = lower; i < upper; ++i) {
+          maxScore = Math.max(maxScore, scores[i]);
+        }
+        return maxScore * boost;
+      }
+
+      @Override
+      public float score() {
+        return scores[upTo] * boost;
+      }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (sameClassAs(obj) == false) {
+        return false;
+      }
+      DocAndScoreQuery that = (DocAndScoreQuery) obj;
+      return contextIdentity == that.contextIdentity &&
+          Arrays.equals(docs, that.docs) &&
+          Arrays.equals(scores, that.scores);
+    }
+
+    @Override
+    public int hashCode() {
+      int h = classHash();
+      h = 31 * h + contextIdentity.hashCode();
+      h = 31 * h + Arrays.hashCode(docs);
+      h = 31 * h + Arrays.hashCode(scores);
+      return h;
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      visitor.visitLeaf(this);
+    }
+
+    @Override
+    public String toString(String field) {
+      return "DocAndScoreQuery(k=" + k + ", docs=" + docs.length + ")";
+    }
+  }
+}
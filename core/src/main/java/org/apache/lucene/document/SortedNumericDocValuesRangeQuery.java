@@ -18,8 +18,10 @@ package org.apache.lucene.document;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.function.LongPredicate;
 
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesStatistics;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -27,12 +29,16 @@ import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.search.ConstantScoreScorer;
 import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.Weight;
 
@@ -115,7 +121,24 @@ abstract class SortedNumericDocValuesRangeQuery extends Query {
         if (values == null) {
           return null;
         }
+        final DocValuesStatistics statistics = context.reader().getDocValuesStatistics(field);
+        if (statistics != null) {
+          if (statistics.getMaxValue() < lowerValue || statistics.getMinValue() > upperValue) {
+            // no value of this segment is in the range
+            return null;
+          }
+          if (statistics.getMinValue() >= lowerValue && statistics.getMaxValue() <= upperValue) {
+            // all values of this segment are in the range
+            return new ConstantScoreScorer(this, score(), scoreMode, values);
+          }
+        }
         final NumericDocValues singleton = DocValues.unwrapSingleton(values);
+        if (singleton != null) {
+          final DocIdSetIterator sortedIterator = getSortedIterator(context.reader(), singleton);
+          if (sortedIterator != null) {
+            return new ConstantScoreScorer(this, score(), scoreMode, sortedIterator);
+          }
+        }
         final TwoPhaseIterator iterator;
         if (singleton != null) {
           iterator = new TwoPhaseIterator(singleton) {
@@ -157,4 +180,100 @@ abstract class SortedNumericDocValuesRangeQuery extends Query {
     };
   }
 
+  /**
+   * If the segment is sorted on this field first, then documents that match
+   * the range are contiguous, so we can find the range of doc IDs with two
+   * binary searches instead of comparing the value of every document. Returns
+   * {@code null} if the segment is not sorted on this field.
+   */
+  private DocIdSetIterator getSortedIterator(LeafReader reader, NumericDocValues values) throws IOException {
+    final Sort indexSort = reader.getMetaData().getSort();
+    if (indexSort == null) {
+      return null;
+    }
+    final SortField sortField = indexSort.getSort()[0];
+    if (field.equals(sortField.getField()) == false) {
+      return null;
+    }
+    final SortField.Type type = sortField instanceof SortedNumericSortField
+        ? ((SortedNumericSortField) sortField).getNumericType()
+        : sortField.getType();
+    if (type != SortField.Type.LONG && type != SortField.Type.INT) {
+      // floating-point values are not sorted by their raw long bits
+      return null;
+    }
+    final long missingValue = sortField.getMissingValue() == null ? 0L : ((Number) sortField.getMissingValue()).longValue();
+
+    final int minDoc;
+    final int maxDoc;
+    if (sortField.getReverse()) {
+      minDoc = firstDoc(reader, missingValue, value -> value <= upperValue);
+      maxDoc = firstDoc(reader, missingValue, value -> value < lowerValue);
+    } else {
+      minDoc = firstDoc(reader, missingValue, value -> value >= lowerValue);
+      maxDoc = firstDoc(reader, missingValue, value -> value > upperValue);
+    }
+    if (minDoc >= maxDoc) {
+      return DocIdSetIterator.empty();
+    }
+    if (missingValue < lowerValue || missingValue > upperValue) {
+      // documents without a value sort outside of [minDoc, maxDoc)
+      return DocIdSetIterator.range(minDoc, maxDoc);
+    }
+    // documents without a value may be interleaved, only return documents that have a value
+    return new DocIdSetIterator() {
+
+      int doc = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        if (target >= maxDoc) {
+          return doc = NO_MORE_DOCS;
+        }
+        doc = values.advance(Math.max(target, minDoc));
+        if (doc >= maxDoc) {
+          doc = NO_MORE_DOCS;
+        }
+        return doc;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc - minDoc;
+      }
+    };
+  }
+
+  /**
+   * Return the first doc ID whose value matches the given predicate, assuming
+   * that the predicate does not match any document before a given doc ID and
+   * matches all documents after it.
+   */
+  private int firstDoc(LeafReader reader, long missingValue, LongPredicate predicate) throws IOException {
+    int lo = 0;
+    int hi = reader.maxDoc();
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      // doc values iterators are forward-only, so we need a new instance for every probe
+      final NumericDocValues values = DocValues.unwrapSingleton(getValues(reader, field));
+      final long value = values.advanceExact(mid) ? values.longValue() : missingValue;
+      if (predicate.test(value)) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return lo;
+  }
+
 }
@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.util.CollectionUtil;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * A {@link ConcurrentMergeScheduler} that adapts merging to the load of the
+ * application, as reported by a {@link LoadSignal}, eg. the ratio of the
+ * current search p99 latency to its target, or of CPU utilization to a
+ * threshold.
+ *
+ * <p>The scheduler maintains a merge capacity in {@code (0, 1]}. Every
+ * {@link #setUpdateIntervalMS update interval} while merges are running, the
+ * signal is read: a load above {@code 1} halves the capacity so that merges
+ * back off quickly when searches suffer, while a load below {@code 1} raises
+ * the capacity proportionally to the remaining headroom so that merges
+ * gradually absorb idle resources. The capacity then drives:
+ * <ul>
+ *   <li>the number of large merges that may run concurrently, between
+ *   {@code 1} and {@link #getMaxThreadCount}: this is the CPU budget of
+ *   merges, expressed in threads; larger merges are stopped first, like
+ *   when there are more merges than {@link #getMaxThreadCount},</li>
+ *   <li>the IO rate of every running large merge, interpolated
+ *   geometrically between the bounds of {@link #setIORateRange}.</li>
+ * </ul>
+ * Small merges, and forced merges, are not affected: they run like with
+ * {@link ConcurrentMergeScheduler}, and forced merges don't count against
+ * the number of large merges that may run concurrently. Disabling
+ * {@link #disableAutoIOThrottle auto IO throttling} still lets the capacity
+ * control concurrency, but not IO rates.
+ *
+ * <p>{@link #getMergeStats} exposes the progress and throughput of running
+ * merges.
+ *
+ * @lucene.experimental
+ */
+public class AdaptiveMergeScheduler extends ConcurrentMergeScheduler {
+
+  /**
+   * Reports the current load of the application to an
+   * {@link AdaptiveMergeScheduler}.
+   */
+  @FunctionalInterface
+  public interface LoadSignal {
+
+    /**
+     * Return the current load, relative to the highest load that is
+     * acceptable: values above {@code 1} make merges back off while values
+     * below {@code 1} let them speed up. Negative and {@code NaN} values are
+     * ignored. This method is called periodically from a background thread
+     * and must not block.
+     */
+    double getLoad();
+  }
+
+  /** Point-in-time statistics about a running merge. */
+  public static final class MergeStats {
+
+    private final String threadName;
+    private final long estimatedMergeBytes;
+    private final long bytesWritten;
+    private final long runTimeNS;
+    private final long stoppedNS;
+    private final long pausedNS;
+    private final double mbPerSec;
+
+    MergeStats(String threadName, long estimatedMergeBytes, long bytesWritten, long runTimeNS,
+               long stoppedNS, long pausedNS, double mbPerSec) {
+      this.threadName = threadName;
+      this.estimatedMergeBytes = estimatedMergeBytes;
+      this.bytesWritten = bytesWritten;
+      this.runTimeNS = runTimeNS;
+      this.stoppedNS = stoppedNS;
+      this.pausedNS = pausedNS;
+      this.mbPerSec = mbPerSec;
+    }
+
+    /** Return the name of the thread that runs the merge. */
+    public String getThreadName() {
+      return threadName;
+    }
+
+    /** Return the estimated size of the merged segment, in bytes. */
+    public long getEstimatedMergeBytes() {
+      return estimatedMergeBytes;
+    }
+
+    /** Return the number of bytes that the merge has written so far. */
+    public long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    /**
+     * Return an estimate of the fraction of the merge that is done, in
+     * {@code [0, 1]}, based on the number of bytes written so far.
+     */
+    public double getProgress() {
+      if (estimatedMergeBytes <= 0) {
+        return 0;
+      }
+      return Math.min(1, (double) bytesWritten / estimatedMergeBytes);
+    }
+
+    /** Return how long the merge has been running, in nanoseconds. */
+    public long getRunTimeNS() {
+      return runTimeNS;
+    }
+
+    /** Return how long the merge has been stopped, in nanoseconds. */
+    public long getStoppedNS() {
+      return stoppedNS;
+    }
+
+    /** Return how long the merge has been paused to rate limit IO, in nanoseconds. */
+    public long getPausedNS() {
+      return pausedNS;
+    }
+
+    /** Return the average write throughput of the merge since it started, in MB per second. */
+    public double getThroughputMBPerSec() {
+      if (runTimeNS <= 0) {
+        return 0;
+      }
+      return (bytesWritten / 1024. / 1024.) / (runTimeNS / 1000000000.);
+    }
+
+    /** Return the current IO rate limit of the merge, in MB per second, {@code 0} if it is stopped. */
+    public double getMBPerSec() {
+      return mbPerSec;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%s(progress=%.1f%%,throughput=%.1f MB/sec,rate=%.1f MB/sec)",
+          threadName, 100 * getProgress(), getThroughputMBPerSec(), mbPerSec);
+    }
+  }
+
+  /** Capacity never goes below this value, so that merges always make progress. */
+  private static final double MIN_CAPACITY = 1.0 / 64;
+  /** Factor that capacity is multiplied by when the application is overloaded. */
+  private static final double DECREASE_FACTOR = 0.5;
+  /** Capacity increment when the application is idle. */
+  private static final double INCREASE_STEP = 0.25;
+
+  private final LoadSignal loadSignal;
+  private long updateIntervalMS = 1000;
+  private double minMBPerSec = MIN_MERGE_MB_PER_SEC;
+  private double maxMBPerSec = MAX_MERGE_MB_PER_SEC;
+  private double capacity = 1;
+  private double load = Double.NaN;
+  private boolean closing;
+  private Thread monitor;
+
+  /** Create a new {@link AdaptiveMergeScheduler} that adapts merging to the given signal. */
+  public AdaptiveMergeScheduler(LoadSignal loadSignal) {
+    if (loadSignal == null) {
+      throw new IllegalArgumentException("loadSignal must not be null");
+    }
+    this.loadSignal = loadSignal;
+  }
+
+  /** Set how often the load signal is read while merges are running. Default is 1 second. */
+  public synchronized void setUpdateIntervalMS(long updateIntervalMS) {
+    if (updateIntervalMS <= 0) {
+      throw new IllegalArgumentException("updateIntervalMS must be > 0, got " + updateIntervalMS);
+    }
+    this.updateIntervalMS = updateIntervalMS;
+  }
+
+  /** See {@link #setUpdateIntervalMS}. */
+  public synchronized long getUpdateIntervalMS() {
+    return updateIntervalMS;
+  }
+
+  /**
+   * Set the IO rate of large merges, in MB per second, at the lowest and at
+   * the full capacity. Defaults to the bounds that
+   * {@link ConcurrentMergeScheduler} auto-throttles IO within.
+   */
+  public synchronized void setIORateRange(double minMBPerSec, double maxMBPerSec) {
+    if (minMBPerSec > 0 == false) {
+      throw new IllegalArgumentException("minMBPerSec must be > 0, got " + minMBPerSec);
+    }
+    if (maxMBPerSec < minMBPerSec) {
+      throw new IllegalArgumentException("maxMBPerSec must be >= minMBPerSec, got " + maxMBPerSec + " < " + minMBPerSec);
+    }
+    this.minMBPerSec = minMBPerSec;
+    this.maxMBPerSec = maxMBPerSec;
+    updateMergeThreads();
+  }
+
+  /** Return the last load that has been read from the signal, or {@code NaN} if none has been read yet. */
+  public synchronized double getLoad() {
+    return load;
+  }
+
+  /** Return the current merge capacity, in {@code (0, 1]}. */
+  public synchronized double getMergeCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Return how many large merges may currently run concurrently, or
+   * {@link #AUTO_DETECT_MERGES_AND_THREADS} if the maximum thread count
+   * hasn't been resolved yet.
+   */
+  public synchronized int getActiveThreadCount() {
+    final int maxThreadCount = getMaxThreadCount();
+    if (maxThreadCount == AUTO_DETECT_MERGES_AND_THREADS) {
+      return AUTO_DETECT_MERGES_AND_THREADS;
+    }
+    return Math.max(1, (int) Math.round(capacity * maxThreadCount));
+  }
+
+  /** Return the IO rate that large merges currently run at, in MB per second. */
+  public synchronized double getTargetMBPerSec() {
+    return minMBPerSec * Math.pow(maxMBPerSec / minMBPerSec, capacity);
+  }
+
+  /**
+   * Read the load signal and adjust the capacity, and merges accordingly.
+   * This is called periodically while merges are running, but may also be
+   * called by applications that want merges to react to a change of load
+   * immediately.
+   */
+  public synchronized void update() {
+    final double newLoad = loadSignal.getLoad();
+    if (Double.isNaN(newLoad) || newLoad < 0) {
+      return;
+    }
+    final double oldCapacity = capacity;
+    load = newLoad;
+    if (newLoad > 1) {
+      capacity = Math.max(MIN_CAPACITY, capacity * DECREASE_FACTOR);
+    } else {
+      capacity = Math.min(1, capacity + INCREASE_STEP * (1 - newLoad));
+    }
+    if (verbose() && capacity != oldCapacity) {
+      message(String.format(Locale.ROOT, "load=%.2f: change capacity from %.3f to %.3f, now %d active threads at %.1f MB/sec",
+          newLoad, oldCapacity, capacity, getActiveThreadCount(), getTargetMBPerSec()));
+    }
+    updateMergeThreads();
+  }
+
+  /** Return statistics about the merges that are currently running. */
+  public synchronized List<MergeStats> getMergeStats() {
+    final List<MergeStats> stats = new ArrayList<>();
+    final long now = System.nanoTime();
+    for (MergeThread mergeThread : mergeThreads) {
+      if (mergeThread.isAlive() == false) {
+        continue;
+      }
+      final MergePolicy.OneMerge merge = mergeThread.merge;
+      final long mergeStartNS = merge.mergeStartNS;
+      final MergeRateLimiter rateLimiter = mergeThread.rateLimiter;
+      stats.add(new MergeStats(mergeThread.getName(), merge.estimatedMergeBytes, rateLimiter.getTotalBytesWritten(),
+          mergeStartNS == -1 ? 0 : now - mergeStartNS, rateLimiter.getTotalStoppedNS(), rateLimiter.getTotalPausedNS(),
+          rateLimiter.getMBPerSec()));
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  @Override
+  public synchronized void merge(MergeSource mergeSource, MergeTrigger trigger) throws IOException {
+    if (trigger == MergeTrigger.CLOSING) {
+      // like ConcurrentMergeScheduler, let merges finish as fast as possible on close
+      closing = true;
+    }
+    super.merge(mergeSource, trigger);
+    if (closing == false && monitor == null && mergeThreads.isEmpty() == false) {
+      monitor = new LoadMonitorThread();
+      monitor.start();
+    }
+  }
+
+  @Override
+  protected synchronized void updateMergeThreads() {
+    if (closing) {
+      super.updateMergeThreads();
+      return;
+    }
+
+    targetMBPerSec = getTargetMBPerSec();
+    super.updateMergeThreads();
+
+    // ConcurrentMergeScheduler stops the largest merges beyond the maximum
+    // thread count, also stop the ones beyond the current capacity, except
+    // forced merges which the application explicitly asked for
+    final List<MergeThread> bigMerges = new ArrayList<>();
+    for (MergeThread mergeThread : mergeThreads) {
+      if (mergeThread.isAlive()
+          && mergeThread.merge.maxNumSegments == -1
+          && mergeThread.merge.estimatedMergeBytes >= MIN_BIG_MERGE_MB * 1024 * 1024) {
+        bigMerges.add(mergeThread);
+      }
+    }
+    CollectionUtil.timSort(bigMerges);
+    final int numStopped = bigMerges.size() - getActiveThreadCount();
+    for (int i = 0; i < numStopped; ++i) {
+      final MergeThread mergeThread = bigMerges.get(i);
+      if (verbose() && mergeThread.rateLimiter.getMBPerSec() != 0.0) {
+        message("merge thread " + mergeThread.getName() + " now stop, capacity=" + capacity);
+      }
+      mergeThread.rateLimiter.setMBPerSec(0.0);
+    }
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    final Thread monitor;
+    synchronized (this) {
+      closing = true;
+      monitor = this.monitor;
+    }
+    if (monitor != null) {
+      monitor.interrupt();
+      try {
+        monitor.join();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ", capacity=" + getMergeCapacity() + ", load=" + getLoad();
+  }
+
+  /** Periodically reads the load signal while merges are running. */
+  private class LoadMonitorThread extends Thread {
+
+    LoadMonitorThread() {
+      super("Lucene Merge Load Monitor");
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          Thread.sleep(getUpdateIntervalMS());
+          synchronized (AdaptiveMergeScheduler.this) {
+            if (closing || mergeThreadCount() == 0) {
+              // the next merge starts a new monitor
+              monitor = null;
+              return;
+            }
+            update();
+          }
+        }
+      } catch (InterruptedException e) {
+        // closed
+      } finally {
+        synchronized (AdaptiveMergeScheduler.this) {
+          if (monitor == this) {
+            monitor = null;
+          }
+        }
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package org.apache.lucene.index;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -30,6 +31,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesProducer;
@@ -62,11 +68,13 @@ import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.FutureArrays;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.StringHelper;
 import org.apache.lucene.util.SuppressForbidden;
 import org.apache.lucene.util.Version;
 import org.apache.lucene.util.automaton.Automata;
 import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.bkd.BKDConfig;
 
 import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
 
@@ -465,6 +473,46 @@ public final class CheckIndex implements Closeable {
   
   private boolean checksumsOnly;
 
+  private double sampleRate = 1;
+  private long sampleSeed;
+
+  /** See {@link #setSampleRate}. */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Set the fraction of terms whose postings get checked, of documents whose
+   * stored fields and term vectors get checked, and of points leaves that get
+   * checked, in {@code (0, 1]}. Checksums of all files are still verified, as
+   * well as all other structures, so a low rate gives a fast safety check on
+   * large indices while only logical checks that require visiting all
+   * postings, documents or points are skipped. Samples only depend on the
+   * segment and on the {@link #setSampleSeed seed}. Defaults to {@code 1},
+   * which checks everything.
+   * @lucene.experimental
+   */
+  public void setSampleRate(double sampleRate) {
+    if (sampleRate > 0 == false || sampleRate > 1) {
+      throw new IllegalArgumentException("sampleRate must be in (0, 1], got " + sampleRate);
+    }
+    this.sampleRate = sampleRate;
+  }
+
+  /** See {@link #setSampleSeed}. */
+  public long getSampleSeed() {
+    return sampleSeed;
+  }
+
+  /**
+   * Set the seed of the random choice of samples when the {@link #setSampleRate sample rate}
+   * is less than 1, so that successive checks can cover different samples.
+   * @lucene.experimental
+   */
+  public void setSampleSeed(long sampleSeed) {
+    this.sampleSeed = sampleSeed;
+  }
+
   /** Set infoStream where messages should go.  If null, no
    *  messages are printed.  If verbose is true then more
    *  details are printed. */
@@ -505,9 +553,26 @@ public final class CheckIndex implements Closeable {
    *  segments, on a large index it can take quite a long
    *  time to run. */
   public Status checkIndex(List<String> onlySegments) throws IOException {
+    return checkIndex(onlySegments, null);
+  }
+
+  /** Returns a {@link Status} instance detailing
+   *  the state of the index.
+   *
+   *  @param onlySegments list of specific segment names to check, or null to check all segments
+   *  @param executor executor to check segments, and the independent tests
+   *         of every segment, concurrently; or null to run all checks in the
+   *         calling thread
+   *
+   *  <p>When an executor is provided, messages of every segment are buffered
+   *  until the segment has been checked, and then printed to the info stream
+   *  in segment order. The returned {@link Status} doesn't depend on the
+   *  order in which checks complete.
+   *
+   *  @lucene.experimental */
+  public Status checkIndex(List<String> onlySegments, Executor executor) throws IOException {
     ensureOpen();
     long startNS = System.nanoTime();
-    NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
     SegmentInfos sis = null;
     Status result = new Status();
     result.dir = dir;
@@ -607,6 +672,9 @@ public final class CheckIndex implements Closeable {
     result.newSegments.clear();
     result.maxSegmentName = -1;
 
+    final SegmentInfos segmentInfos = sis;
+    final List<SegmentCommitInfo> segmentsToCheck = new ArrayList<>();
+    final List<FutureTask<SegmentCheck>> segmentChecks = new ArrayList<>();
     for(int i=0;i<numSegments;i++) {
       final SegmentCommitInfo info = sis.info(i);
       long segmentName = Long.parseLong(info.info.name.substring(1), Character.MAX_RADIX);
@@ -618,175 +686,37 @@ public final class CheckIndex implements Closeable {
       }
       Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
       result.segmentInfos.add(segInfoStat);
-      msg(infoStream, "  " + (1+i) + " of " + numSegments + ": name=" + info.info.name + " maxDoc=" + info.info.maxDoc());
       segInfoStat.name = info.info.name;
       segInfoStat.maxDoc = info.info.maxDoc();
-      
-      final Version version = info.info.getVersion();
       if (info.info.maxDoc() <= 0) {
         throw new RuntimeException("illegal number of documents: maxDoc=" + info.info.maxDoc());
       }
+      final int segmentOrd = i;
+      segmentsToCheck.add(info);
+      segmentChecks.add(new FutureTask<>(() -> checkSegment(segmentInfos, segmentOrd, segInfoStat, executor)));
+    }
 
-      int toLoseDocCount = info.info.maxDoc();
-
-      SegmentReader reader = null;
-      Sort previousIndexSort = null;
-
-      try {
-        msg(infoStream, "    version=" + (version == null ? "3.0" : version));
-        msg(infoStream, "    id=" + StringHelper.idToString(info.info.getId()));
-        final Codec codec = info.info.getCodec();
-        msg(infoStream, "    codec=" + codec);
-        segInfoStat.codec = codec;
-        msg(infoStream, "    compound=" + info.info.getUseCompoundFile());
-        segInfoStat.compound = info.info.getUseCompoundFile();
-        msg(infoStream, "    numFiles=" + info.files().size());
-        Sort indexSort = info.info.getIndexSort();
-        if (indexSort != null) {
-          msg(infoStream, "    sort=" + indexSort);
-          if (previousIndexSort != null) {
-            if (previousIndexSort.equals(indexSort) == false) {
-              throw new RuntimeException("index sort changed from " + previousIndexSort + " to " + indexSort);
-            }
-          } else {
-            previousIndexSort = indexSort;
-          }
-        }
-        segInfoStat.numFiles = info.files().size();
-        segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
-        msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
-        Map<String,String> diagnostics = info.info.getDiagnostics();
-        segInfoStat.diagnostics = diagnostics;
-        if (diagnostics.size() > 0) {
-          msg(infoStream, "    diagnostics = " + diagnostics);
-        }
-
-        if (!info.hasDeletions()) {
-          msg(infoStream, "    no deletions");
-          segInfoStat.hasDeletions = false;
-        } else {
-          msg(infoStream, "    has deletions [delGen=" + info.getDelGen() + "]");
-          segInfoStat.hasDeletions = true;
-          segInfoStat.deletionsGen = info.getDelGen();
-        }
-        
-        long startOpenReaderNS = System.nanoTime();
-        if (infoStream != null)
-          infoStream.print("    test: open reader.........");
-        reader = new SegmentReader(info, sis.getIndexCreatedVersionMajor(), IOContext.DEFAULT);
-        msg(infoStream, String.format(Locale.ROOT, "OK [took %.3f sec]", nsToSec(System.nanoTime()-startOpenReaderNS)));
-
-        segInfoStat.openReaderPassed = true;
-        
-        long startIntegrityNS = System.nanoTime();
-        if (infoStream != null)
-          infoStream.print("    test: check integrity.....");
-        reader.checkIntegrity();
-        msg(infoStream, String.format(Locale.ROOT, "OK [took %.3f sec]", nsToSec(System.nanoTime()-startIntegrityNS)));
-
-        if (reader.maxDoc() != info.info.maxDoc()) {
-          throw new RuntimeException("SegmentReader.maxDoc() " + reader.maxDoc() + " != SegmentInfo.maxDoc " + info.info.maxDoc());
-        }
-        
-        final int numDocs = reader.numDocs();
-        toLoseDocCount = numDocs;
-        
-        if (reader.hasDeletions()) {
-          if (reader.numDocs() != info.info.maxDoc() - info.getDelCount()) {
-            throw new RuntimeException("delete count mismatch: info=" + (info.info.maxDoc() - info.getDelCount()) + " vs reader=" + reader.numDocs());
-          }
-          if ((info.info.maxDoc() - reader.numDocs()) > reader.maxDoc()) {
-            throw new RuntimeException("too many deleted docs: maxDoc()=" + reader.maxDoc() + " vs del count=" + (info.info.maxDoc() - reader.numDocs()));
-          }
-          if (info.info.maxDoc() - reader.numDocs() != info.getDelCount()) {
-            throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.maxDoc() - reader.numDocs()));
-          }
+    ConcurrentTasks.execute(segmentChecks, executor);
+    try {
+      // collect results in segment order, so that the status and output don't depend on scheduling
+      for (int i = 0; i < segmentChecks.size(); ++i) {
+        final SegmentCheck check = ConcurrentTasks.await(segmentChecks.get(i));
+        if (executor != null && infoStream != null) {
+          infoStream.print(check.output.toString(IOUtils.UTF_8));
+        }
+        if (check.error != null) {
+          result.totLoseDocCount += check.toLoseDocCount;
+          result.numBadSegments++;
         } else {
-          if (info.getDelCount() != 0) {
-            throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.maxDoc() - reader.numDocs()));
-          }
+          // Keeper
+          result.newSegments.add(segmentsToCheck.get(i).clone());
         }
-        
-        if (checksumsOnly == false) {
-          // Test Livedocs
-          segInfoStat.liveDocStatus = testLiveDocs(reader, infoStream, failFast);
-
-          // Test Fieldinfos
-          segInfoStat.fieldInfoStatus = testFieldInfos(reader, infoStream, failFast);
-
-          // Test Field Norms
-          segInfoStat.fieldNormStatus = testFieldNorms(reader, infoStream, failFast);
-
-          // Test the Term Index
-          segInfoStat.termIndexStatus = testPostings(reader, infoStream, verbose, doSlowChecks, failFast);
-
-          // Test Stored Fields
-          segInfoStat.storedFieldStatus = testStoredFields(reader, infoStream, failFast);
-
-          // Test Term Vectors
-          segInfoStat.termVectorStatus = testTermVectors(reader, infoStream, verbose, doSlowChecks, failFast);
-
-          // Test Docvalues
-          segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
-
-          // Test PointValues
-          segInfoStat.pointsStatus = testPoints(reader, infoStream, failFast);
-
-          // Test index sort
-          segInfoStat.indexSortStatus = testSort(reader, indexSort, infoStream, failFast);
-
-          // Rethrow the first exception we encountered
-          //  This will cause stats for failed segments to be incremented properly
-          if (segInfoStat.liveDocStatus.error != null) {
-            throw new RuntimeException("Live docs test failed");
-          } else if (segInfoStat.fieldInfoStatus.error != null) {
-            throw new RuntimeException("Field Info test failed");
-          } else if (segInfoStat.fieldNormStatus.error != null) {
-            throw new RuntimeException("Field Norm test failed");
-          } else if (segInfoStat.termIndexStatus.error != null) {
-            throw new RuntimeException("Term Index test failed");
-          } else if (segInfoStat.storedFieldStatus.error != null) {
-            throw new RuntimeException("Stored Field test failed");
-          } else if (segInfoStat.termVectorStatus.error != null) {
-            throw new RuntimeException("Term Vector test failed");
-          } else if (segInfoStat.docValuesStatus.error != null) {
-            throw new RuntimeException("DocValues test failed");
-          } else if (segInfoStat.pointsStatus.error != null) {
-            throw new RuntimeException("Points test failed");
-          }
-        }
-        final String softDeletesField = reader.getFieldInfos().getSoftDeletesField();
-        if (softDeletesField != null) {
-          checkSoftDeletes(softDeletesField, info, reader, infoStream, failFast);
-        }
-        msg(infoStream, "");
-        
-        if (verbose) {
-          msg(infoStream, "detailed segment RAM usage: ");
-          msg(infoStream, Accountables.toString(reader));
-        }
-
-      } catch (Throwable t) {
-        if (failFast) {
-          throw IOUtils.rethrowAlways(t);
-        }
-        msg(infoStream, "FAILED");
-        String comment;
-        comment = "exorciseIndex() would remove reference to this segment";
-        msg(infoStream, "    WARNING: " + comment + "; full exception:");
-        if (infoStream != null)
-          t.printStackTrace(infoStream);
-        msg(infoStream, "");
-        result.totLoseDocCount += toLoseDocCount;
-        result.numBadSegments++;
-        continue;
-      } finally {
-        if (reader != null)
-          reader.close();
       }
-
-      // Keeper
-      result.newSegments.add(info.clone());
+    } finally {
+      for (FutureTask<SegmentCheck> segmentCheck : segmentChecks) {
+        // no-op if the check completed, otherwise don't start it
+        segmentCheck.cancel(false);
+      }
     }
 
     if (0 == result.numBadSegments) {
@@ -809,6 +739,279 @@ public final class CheckIndex implements Closeable {
     return result;
   }
 
+  /** Result of checking a single segment. */
+  private static class SegmentCheck {
+    /** Buffered messages of this check, only used when running on an executor. */
+    ByteArrayOutputStream output;
+    /** First error that made the segment fail, or null if the segment is clean. */
+    Throwable error;
+    /** How many documents would be lost if the segment was removed. */
+    int toLoseDocCount;
+  }
+
+  /**
+   * Check the segment at index {@code i} of {@code sis}. When {@code executor}
+   * is not null, messages are buffered in the returned {@link SegmentCheck}
+   * so that checks of different segments can run concurrently, and the tests
+   * of this segment are run concurrently too.
+   */
+  private SegmentCheck checkSegment(SegmentInfos sis, int i, Status.SegmentInfoStatus segInfoStat, Executor executor) throws IOException {
+    final SegmentCheck check = new SegmentCheck();
+    final PrintStream infoStream;
+    if (executor != null && this.infoStream != null) {
+      check.output = new ByteArrayOutputStream();
+      infoStream = new PrintStream(check.output, true, IOUtils.UTF_8);
+    } else {
+      infoStream = this.infoStream;
+    }
+    final NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
+    final int numSegments = sis.size();
+    final SegmentCommitInfo info = sis.info(i);
+    msg(infoStream, "  " + (1+i) + " of " + numSegments + ": name=" + info.info.name + " maxDoc=" + info.info.maxDoc());
+    final Version version = info.info.getVersion();
+
+    int toLoseDocCount = info.info.maxDoc();
+
+    SegmentReader reader = null;
+    Sort previousIndexSort = null;
+
+    try {
+      msg(infoStream, "    version=" + (version == null ? "3.0" : version));
+      msg(infoStream, "    id=" + StringHelper.idToString(info.info.getId()));
+      final Codec codec = info.info.getCodec();
+      msg(infoStream, "    codec=" + codec);
+      segInfoStat.codec = codec;
+      msg(infoStream, "    compound=" + info.info.getUseCompoundFile());
+      segInfoStat.compound = info.info.getUseCompoundFile();
+      msg(infoStream, "    numFiles=" + info.files().size());
+      Sort indexSort = info.info.getIndexSort();
+      if (indexSort != null) {
+        msg(infoStream, "    sort=" + indexSort);
+        if (previousIndexSort != null) {
+          if (previousIndexSort.equals(indexSort) == false) {
+            throw new RuntimeException("index sort changed from " + previousIndexSort + " to " + indexSort);
+          }
+        } else {
+          previousIndexSort = indexSort;
+        }
+      }
+      segInfoStat.numFiles = info.files().size();
+      segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
+      msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
+      Map<String,String> diagnostics = info.info.getDiagnostics();
+      segInfoStat.diagnostics = diagnostics;
+      if (diagnostics.size() > 0) {
+        msg(infoStream, "    diagnostics = " + diagnostics);
+      }
+
+      if (!info.hasDeletions()) {
+        msg(infoStream, "    no deletions");
+        segInfoStat.hasDeletions = false;
+      } else {
+        msg(infoStream, "    has deletions [delGen=" + info.getDelGen() + "]");
+        segInfoStat.hasDeletions = true;
+        segInfoStat.deletionsGen = info.getDelGen();
+      }
+      
+      long startOpenReaderNS = System.nanoTime();
+      if (infoStream != null)
+        infoStream.print("    test: open reader.........");
+      reader = new SegmentReader(info, sis.getIndexCreatedVersionMajor(), IOContext.DEFAULT);
+      msg(infoStream, String.format(Locale.ROOT, "OK [took %.3f sec]", nsToSec(System.nanoTime()-startOpenReaderNS)));
+
+      segInfoStat.openReaderPassed = true;
+      
+      long startIntegrityNS = System.nanoTime();
+      if (infoStream != null)
+        infoStream.print("    test: check integrity.....");
+      reader.checkIntegrity();
+      msg(infoStream, String.format(Locale.ROOT, "OK [took %.3f sec]", nsToSec(System.nanoTime()-startIntegrityNS)));
+
+      if (reader.maxDoc() != info.info.maxDoc()) {
+        throw new RuntimeException("SegmentReader.maxDoc() " + reader.maxDoc() + " != SegmentInfo.maxDoc " + info.info.maxDoc());
+      }
+      
+      final int numDocs = reader.numDocs();
+      toLoseDocCount = numDocs;
+      
+      if (reader.hasDeletions()) {
+        if (reader.numDocs() != info.info.maxDoc() - info.getDelCount()) {
+          throw new RuntimeException("delete count mismatch: info=" + (info.info.maxDoc() - info.getDelCount()) + " vs reader=" + reader.numDocs());
+        }
+        if ((info.info.maxDoc() - reader.numDocs()) > reader.maxDoc()) {
+          throw new RuntimeException("too many deleted docs: maxDoc()=" + reader.maxDoc() + " vs del count=" + (info.info.maxDoc() - reader.numDocs()));
+        }
+        if (info.info.maxDoc() - reader.numDocs() != info.getDelCount()) {
+          throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.maxDoc() - reader.numDocs()));
+        }
+      } else {
+        if (info.getDelCount() != 0) {
+          throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.maxDoc() - reader.numDocs()));
+        }
+      }
+      
+      if (checksumsOnly == false) {
+        final SegmentReader segmentReader = reader;
+        final Sort sort = indexSort;
+        // a seed that only depends on the segment, so that sampling is reproducible
+        final long seed = sampleSeed ^ Arrays.hashCode(info.info.getId());
+        // these tests are independent, so they may run concurrently
+        final SegmentTestRunner tests = new SegmentTestRunner(infoStream, executor);
+
+        // Test Livedocs
+        final FutureTask<Status.LiveDocStatus> liveDocStatus = tests.add(out -> testLiveDocs(segmentReader, out, failFast));
+
+        // Test Fieldinfos
+        final FutureTask<Status.FieldInfoStatus> fieldInfoStatus = tests.add(out -> testFieldInfos(segmentReader, out, failFast));
+
+        // Test Field Norms
+        final FutureTask<Status.FieldNormStatus> fieldNormStatus = tests.add(out -> testFieldNorms(segmentReader, out, failFast));
+
+        // Test the Term Index
+        final FutureTask<Status.TermIndexStatus> termIndexStatus = tests.add(out -> testPostings(segmentReader, out, verbose, doSlowChecks, failFast,
+            sampleRate, seed));
+
+        // Test Stored Fields
+        final FutureTask<Status.StoredFieldStatus> storedFieldStatus = tests.add(out -> testStoredFields(segmentReader, out, failFast,
+            sampleRate, seed));
+
+        // Test Term Vectors
+        final FutureTask<Status.TermVectorStatus> termVectorStatus = tests.add(out -> testTermVectors(segmentReader, out, verbose, doSlowChecks, failFast,
+            sampleRate, seed));
+
+        // Test Docvalues
+        final FutureTask<Status.DocValuesStatus> docValuesStatus = tests.add(out -> testDocValues(segmentReader, out, failFast));
+
+        // Test PointValues
+        final FutureTask<Status.PointsStatus> pointsStatus = tests.add(out -> testPoints(segmentReader, out, failFast, sampleRate, seed));
+
+        // Test index sort
+        final FutureTask<Status.IndexSortStatus> indexSortStatus = tests.add(out -> testSort(segmentReader, sort, out, failFast));
+
+        tests.run();
+        segInfoStat.liveDocStatus = ConcurrentTasks.await(liveDocStatus);
+        segInfoStat.fieldInfoStatus = ConcurrentTasks.await(fieldInfoStatus);
+        segInfoStat.fieldNormStatus = ConcurrentTasks.await(fieldNormStatus);
+        segInfoStat.termIndexStatus = ConcurrentTasks.await(termIndexStatus);
+        segInfoStat.storedFieldStatus = ConcurrentTasks.await(storedFieldStatus);
+        segInfoStat.termVectorStatus = ConcurrentTasks.await(termVectorStatus);
+        segInfoStat.docValuesStatus = ConcurrentTasks.await(docValuesStatus);
+        segInfoStat.pointsStatus = ConcurrentTasks.await(pointsStatus);
+        segInfoStat.indexSortStatus = ConcurrentTasks.await(indexSortStatus);
+
+        // Rethrow the first exception we encountered
+        //  This will cause stats for failed segments to be incremented properly
+        if (segInfoStat.liveDocStatus.error != null) {
+          throw new RuntimeException("Live docs test failed");
+        } else if (segInfoStat.fieldInfoStatus.error != null) {
+          throw new RuntimeException("Field Info test failed");
+        } else if (segInfoStat.fieldNormStatus.error != null) {
+          throw new RuntimeException("Field Norm test failed");
+        } else if (segInfoStat.termIndexStatus.error != null) {
+          throw new RuntimeException("Term Index test failed");
+        } else if (segInfoStat.storedFieldStatus.error != null) {
+          throw new RuntimeException("Stored Field test failed");
+        } else if (segInfoStat.termVectorStatus.error != null) {
+          throw new RuntimeException("Term Vector test failed");
+        } else if (segInfoStat.docValuesStatus.error != null) {
+          throw new RuntimeException("DocValues test failed");
+        } else if (segInfoStat.pointsStatus.error != null) {
+          throw new RuntimeException("Points test failed");
+        }
+      }
+      final String softDeletesField = reader.getFieldInfos().getSoftDeletesField();
+      if (softDeletesField != null) {
+        checkSoftDeletes(softDeletesField, info, reader, infoStream, failFast);
+      }
+      msg(infoStream, "");
+      
+      if (verbose) {
+        msg(infoStream, "detailed segment RAM usage: ");
+        msg(infoStream, Accountables.toString(reader));
+      }
+
+    } catch (Throwable t) {
+      if (failFast) {
+        throw IOUtils.rethrowAlways(t);
+      }
+      msg(infoStream, "FAILED");
+      String comment;
+      comment = "exorciseIndex() would remove reference to this segment";
+      msg(infoStream, "    WARNING: " + comment + "; full exception:");
+      if (infoStream != null)
+        t.printStackTrace(infoStream);
+      msg(infoStream, "");
+      check.error = t;
+      check.toLoseDocCount = toLoseDocCount;
+    } finally {
+      if (reader != null)
+        reader.close();
+    }
+    return check;
+  }
+
+  /** A test of a segment that prints its messages to the given stream. */
+  private interface SegmentTest<T> {
+    T run(PrintStream infoStream) throws IOException;
+  }
+
+  /**
+   * Runs the tests of a segment, concurrently if an executor is provided. In
+   * that case, the messages of every test are buffered and printed in the
+   * order in which tests were added, so that the output doesn't depend on
+   * scheduling.
+   */
+  private static class SegmentTestRunner {
+
+    private final PrintStream infoStream;
+    private final Executor executor;
+    private final List<FutureTask<?>> tasks = new ArrayList<>();
+    private final List<ByteArrayOutputStream> outputs = new ArrayList<>();
+
+    SegmentTestRunner(PrintStream infoStream, Executor executor) {
+      this.infoStream = infoStream;
+      this.executor = executor;
+    }
+
+    <T> FutureTask<T> add(SegmentTest<T> test) throws IOException {
+      final ByteArrayOutputStream output;
+      final PrintStream out;
+      if (executor != null && infoStream != null) {
+        output = new ByteArrayOutputStream();
+        out = new PrintStream(output, true, IOUtils.UTF_8);
+      } else {
+        output = null;
+        out = infoStream;
+      }
+      final FutureTask<T> task = new FutureTask<>(() -> test.run(out));
+      tasks.add(task);
+      outputs.add(output);
+      return task;
+    }
+
+    /** Run all tests, and rethrow the first exception if any test failed. */
+    void run() throws IOException {
+      ConcurrentTasks.execute(tasks, executor);
+      Throwable error = null;
+      // wait for all tests, even if one failed, since the reader gets closed afterwards
+      for (int i = 0; i < tasks.size(); ++i) {
+        try {
+          ConcurrentTasks.await(tasks.get(i));
+        } catch (Throwable t) {
+          if (error == null) {
+            error = t;
+          }
+        }
+        if (outputs.get(i) != null) {
+          infoStream.print(outputs.get(i).toString(IOUtils.UTF_8));
+        }
+      }
+      if (error != null) {
+        throw IOUtils.rethrowAlways(error);
+      }
+    }
+  }
+
   /**
    * Tests index sort order.
    * @lucene.experimental
@@ -1119,8 +1322,14 @@ public final class CheckIndex implements Closeable {
    * checks Fields api is consistent with itself.
    * searcher is optional, to verify with queries. Can be null.
    */
+  /**
+   * Check all fields and terms. If {@code sampler} is not null, only the
+   * postings of a {@code sampleRate} fraction of terms are checked, and
+   * checks that require visiting the postings of all terms are skipped.
+   */
   private static Status.TermIndexStatus checkFields(Fields fields, Bits liveDocs, int maxDoc, FieldInfos fieldInfos,
-      NormsProducer normsProducer, boolean doPrint, boolean isVectors, PrintStream infoStream, boolean verbose, boolean doSlowChecks) throws IOException {
+      NormsProducer normsProducer, boolean doPrint, boolean isVectors, PrintStream infoStream, boolean verbose, boolean doSlowChecks,
+      Random sampler, double sampleRate) throws IOException {
     // TODO: we should probably return our own stats thing...?!
     long startNS;
     if (doPrint) {
@@ -1281,7 +1490,10 @@ public final class CheckIndex implements Closeable {
         }
         sumDocFreq += docFreq;
 
-        postings = termsEnum.postings(postings, PostingsEnum.ALL);
+        final boolean checkPostings = sampler == null || sampler.nextDouble() < sampleRate;
+        if (checkPostings) {
+          postings = termsEnum.postings(postings, PostingsEnum.ALL);
+        }
 
         if (hasFreqs == false) {
           if (termsEnum.totalTermFreq() != termsEnum.docFreq()) {
@@ -1304,6 +1516,20 @@ public final class CheckIndex implements Closeable {
             }
           }
         }
+
+        if (checkPostings == false) {
+          // only check term statistics, we can't know whether all docs of this term are deleted
+          status.termCount++;
+          final long totalTermFreq = termsEnum.totalTermFreq();
+          if (docFreq > terms.getDocCount()) {
+            throw new RuntimeException("term " + term + " docFreq=" + docFreq + " > docCount=" + terms.getDocCount());
+          }
+          if (totalTermFreq < docFreq) {
+            throw new RuntimeException("totalTermFreq: " + totalTermFreq + " is out of bounds, docFreq=" + docFreq);
+          }
+          sumTotalTermFreq += totalTermFreq;
+          continue;
+        }
         
         int lastDoc = -1;
         int docCount = 0;
@@ -1656,11 +1882,11 @@ public final class CheckIndex implements Closeable {
         }
         
         final int v = fieldTerms.getDocCount();
-        if (visitedDocs.cardinality() != v) {
+        if (sampler == null && visitedDocs.cardinality() != v) {
           throw new RuntimeException("docCount for field " + field + "=" + v + " != recomputed docCount=" + visitedDocs.cardinality());
         }
 
-        if (fieldInfo.hasNorms() && isVectors == false) {
+        if (fieldInfo.hasNorms() && isVectors == false && sampler == null) {
           final NumericDocValues norms = normsProducer.getNorms(fieldInfo);
           // Cross-check terms with norms
           for (int doc = norms.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = norms.nextDoc()) {
@@ -1847,6 +2073,17 @@ public final class CheckIndex implements Closeable {
    * @lucene.experimental
    */
   public static Status.TermIndexStatus testPostings(CodecReader reader, PrintStream infoStream, boolean verbose, boolean doSlowChecks, boolean failFast) throws IOException {
+    return testPostings(reader, infoStream, verbose, doSlowChecks, failFast, 1, 0);
+  }
+
+  /**
+   * Test the term index, only checking the postings of a {@code sampleRate}
+   * fraction of terms that is randomly chosen with the given {@code seed}.
+   * @see CheckIndex#setSampleRate
+   * @lucene.experimental
+   */
+  public static Status.TermIndexStatus testPostings(CodecReader reader, PrintStream infoStream, boolean verbose, boolean doSlowChecks, boolean failFast,
+                                                    double sampleRate, long seed) throws IOException {
 
     // TODO: we should go and verify term vectors match, if
     // doSlowChecks is on...
@@ -1865,7 +2102,8 @@ public final class CheckIndex implements Closeable {
       if (normsProducer != null) {
         normsProducer = normsProducer.getMergeInstance();
       }
-      status = checkFields(fields, reader.getLiveDocs(), maxDoc, fieldInfos, normsProducer, true, false, infoStream, verbose, doSlowChecks);
+      status = checkFields(fields, reader.getLiveDocs(), maxDoc, fieldInfos, normsProducer, true, false, infoStream, verbose, doSlowChecks,
+          newSampler(sampleRate, seed), sampleRate);
     } catch (Throwable e) {
       if (failFast) {
         throw IOUtils.rethrowAlways(e);
@@ -1886,6 +2124,17 @@ public final class CheckIndex implements Closeable {
    * @lucene.experimental
    */
   public static Status.PointsStatus testPoints(CodecReader reader, PrintStream infoStream, boolean failFast) throws IOException {
+    return testPoints(reader, infoStream, failFast, 1, 0);
+  }
+
+  /**
+   * Test the points index, only visiting about a {@code sampleRate} fraction
+   * of leaves that is randomly chosen with the given {@code seed}.
+   * @see CheckIndex#setSampleRate
+   * @lucene.experimental
+   */
+  public static Status.PointsStatus testPoints(CodecReader reader, PrintStream infoStream, boolean failFast,
+                                               double sampleRate, long seed) throws IOException {
     if (infoStream != null) {
       infoStream.print("    test: points..............");
     }
@@ -1924,15 +2173,24 @@ public final class CheckIndex implements Closeable {
               throw new RuntimeException("estimatePointCount should return 0 when no cells match");
             }
 
-            VerifyPointsVisitor visitor = new VerifyPointsVisitor(fieldInfo.name, reader.maxDoc(), values);
+            final Random sampler = newSampler(sampleRate, seed);
+            VerifyPointsVisitor visitor;
+            if (sampler == null) {
+              visitor = new VerifyPointsVisitor(fieldInfo.name, reader.maxDoc(), values);
+            } else {
+              visitor = new SampledVerifyPointsVisitor(fieldInfo.name, reader.maxDoc(), values, sampler, sampleRate);
+            }
             values.intersect(visitor);
 
-            if (visitor.getPointCountSeen() != size) {
-              throw new RuntimeException("point values for field \"" + fieldInfo.name + "\" claims to have size=" + size + " points, but in fact has " + visitor.getPointCountSeen());
-            }
+            // counts are only meaningful when all leaves are visited
+            if (sampler == null) {
+              if (visitor.getPointCountSeen() != size) {
+                throw new RuntimeException("point values for field \"" + fieldInfo.name + "\" claims to have size=" + size + " points, but in fact has " + visitor.getPointCountSeen());
+              }
 
-            if (visitor.getDocCountSeen() != docCount) {
-              throw new RuntimeException("point values for field \"" + fieldInfo.name + "\" claims to have docCount=" + docCount + " but in fact has " + visitor.getDocCountSeen());
+              if (visitor.getDocCountSeen() != docCount) {
+                throw new RuntimeException("point values for field \"" + fieldInfo.name + "\" claims to have docCount=" + docCount + " but in fact has " + visitor.getDocCountSeen());
+              }
             }
 
             status.totalValuePoints += visitor.getPointCountSeen();
@@ -2121,6 +2379,33 @@ public final class CheckIndex implements Closeable {
     }
   }
 
+  /**
+   * Verifies the points of a random sample of leaves. Every cell is visited
+   * with a probability such that the probability to reach a leaf is about
+   * {@code sampleRate}, assuming leaves hold
+   * {@link BKDConfig#DEFAULT_MAX_POINTS_IN_LEAF_NODE} points.
+   */
+  private static class SampledVerifyPointsVisitor extends VerifyPointsVisitor {
+
+    private final Random sampler;
+    private final double cellRate;
+
+    SampledVerifyPointsVisitor(String fieldName, int maxDoc, PointValues values, Random sampler, double sampleRate) throws IOException {
+      super(fieldName, maxDoc, values);
+      this.sampler = sampler;
+      final double numLeaves = Math.max(1, Math.ceil((double) values.size() / BKDConfig.DEFAULT_MAX_POINTS_IN_LEAF_NODE));
+      // compare() is called once per level on the path from the root to a leaf
+      final double numLevels = 1 + Math.ceil(Math.log(numLeaves) / Math.log(2));
+      this.cellRate = Math.pow(sampleRate, 1 / numLevels);
+    }
+
+    @Override
+    public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+      final Relation relation = super.compare(minPackedValue, maxPackedValue);
+      return sampler.nextDouble() < cellRate ? relation : Relation.CELL_OUTSIDE_QUERY;
+    }
+  }
+
   private static class ConstantRelationIntersectVisitor implements IntersectVisitor {
     private final Relation relation;
 
@@ -2149,6 +2434,17 @@ public final class CheckIndex implements Closeable {
    * @lucene.experimental
    */
   public static Status.StoredFieldStatus testStoredFields(CodecReader reader, PrintStream infoStream, boolean failFast) throws IOException {
+    return testStoredFields(reader, infoStream, failFast, 1, 0);
+  }
+
+  /**
+   * Test the stored fields of a {@code sampleRate} fraction of documents that
+   * is randomly chosen with the given {@code seed}.
+   * @see CheckIndex#setSampleRate
+   * @lucene.experimental
+   */
+  public static Status.StoredFieldStatus testStoredFields(CodecReader reader, PrintStream infoStream, boolean failFast,
+                                                          double sampleRate, long seed) throws IOException {
     long startNS = System.nanoTime();
     final Status.StoredFieldStatus status = new Status.StoredFieldStatus();
 
@@ -2160,7 +2456,11 @@ public final class CheckIndex implements Closeable {
       // Scan stored fields for all documents
       final Bits liveDocs = reader.getLiveDocs();
       StoredFieldsReader storedFields = reader.getFieldsReader().getMergeInstance();
+      final Random sampler = newSampler(sampleRate, seed);
       for (int j = 0; j < reader.maxDoc(); ++j) {
+        if (sampler != null && sampler.nextDouble() >= sampleRate) {
+          continue;
+        }
         // Intentionally pull even deleted documents to
         // make sure they too are not corrupt:
         DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor();
@@ -2173,7 +2473,7 @@ public final class CheckIndex implements Closeable {
       }      
 
       // Validate docCount
-      if (status.docCount != reader.numDocs()) {
+      if (sampler == null && status.docCount != reader.numDocs()) {
         throw new RuntimeException("docCount=" + status.docCount + " but saw " + status.docCount + " undeleted docs");
       }
 
@@ -2527,6 +2827,17 @@ public final class CheckIndex implements Closeable {
    * @lucene.experimental
    */
   public static Status.TermVectorStatus testTermVectors(CodecReader reader, PrintStream infoStream, boolean verbose, boolean doSlowChecks, boolean failFast) throws IOException {
+    return testTermVectors(reader, infoStream, verbose, doSlowChecks, failFast, 1, 0);
+  }
+
+  /**
+   * Test the term vectors of a {@code sampleRate} fraction of documents that
+   * is randomly chosen with the given {@code seed}.
+   * @see CheckIndex#setSampleRate
+   * @lucene.experimental
+   */
+  public static Status.TermVectorStatus testTermVectors(CodecReader reader, PrintStream infoStream, boolean verbose, boolean doSlowChecks, boolean failFast,
+                                                        double sampleRate, long seed) throws IOException {
     long startNS = System.nanoTime();
     final Status.TermVectorStatus status = new Status.TermVectorStatus();
     final FieldInfos fieldInfos = reader.getFieldInfos();
@@ -2555,7 +2866,11 @@ public final class CheckIndex implements Closeable {
 
       if (vectorsReader != null) {
         vectorsReader = vectorsReader.getMergeInstance();
+        final Random sampler = newSampler(sampleRate, seed);
         for (int j = 0; j < reader.maxDoc(); ++j) {
+          if (sampler != null && sampler.nextDouble() >= sampleRate) {
+            continue;
+          }
           // Intentionally pull/visit (but don't count in
           // stats) deleted documents to make sure they too
           // are not corrupt:
@@ -2566,7 +2881,7 @@ public final class CheckIndex implements Closeable {
           
           if (tfv != null) {
             // First run with no deletions:
-            checkFields(tfv, null, 1, fieldInfos, null, false, true, infoStream, verbose, doSlowChecks);
+            checkFields(tfv, null, 1, fieldInfos, null, false, true, infoStream, verbose, doSlowChecks, null, 1);
             
             // Only agg stats if the doc is live:
             final boolean doStats = liveDocs == null || liveDocs.get(j);
@@ -2803,6 +3118,8 @@ public final class CheckIndex implements Closeable {
     boolean doSlowChecks = false;
     boolean verbose = false;
     boolean doChecksumsOnly = false;
+    int threadCount = 1;
+    double sampleRate = 1;
     List<String> onlySegments = new ArrayList<>();
     String indexPath = null;
     String dirImpl = null;
@@ -2905,6 +3222,24 @@ public final class CheckIndex implements Closeable {
         }
         i++;
         opts.dirImpl = args[i];
+      } else if ("-threadCount".equals(arg)) {
+        if (i == args.length - 1) {
+          throw new IllegalArgumentException("ERROR: missing value for -threadCount option");
+        }
+        i++;
+        opts.threadCount = Integer.parseInt(args[i]);
+        if (opts.threadCount <= 0) {
+          throw new IllegalArgumentException("ERROR: -threadCount must be at least 1, got " + opts.threadCount);
+        }
+      } else if ("-sample".equals(arg)) {
+        if (i == args.length - 1) {
+          throw new IllegalArgumentException("ERROR: missing value for -sample option");
+        }
+        i++;
+        opts.sampleRate = Double.parseDouble(args[i]);
+        if (opts.sampleRate <= 0 || opts.sampleRate > 1) {
+          throw new IllegalArgumentException("ERROR: -sample must be in (0, 1], got " + opts.sampleRate);
+        }
       } else {
         if (opts.indexPath != null) {
           throw new IllegalArgumentException("ERROR: unexpected extra argument '" + args[i] + "'");
@@ -2916,7 +3251,7 @@ public final class CheckIndex implements Closeable {
 
     if (opts.indexPath == null) {
       throw new IllegalArgumentException("\nERROR: index path not specified" +
-                         "\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-slow] [-segment X] [-segment Y] [-dir-impl X]\n" +
+                         "\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-slow] [-segment X] [-segment Y] [-dir-impl X] [-threadCount N] [-sample R]\n" +
                          "\n" +
                          "  -exorcise: actually write a new segments_N file, removing any problematic segments\n" +
                          "  -fast: just verify file checksums, omitting logical integrity checks\n" + 
@@ -2928,6 +3263,9 @@ public final class CheckIndex implements Closeable {
                          "              You can't use this with the -exorcise option\n" +
                          "  -dir-impl X: use a specific " + FSDirectory.class.getSimpleName() + " implementation. " +
                          "If no package is specified the " + FSDirectory.class.getPackage().getName() + " package will be used.\n" +
+                         "  -threadCount N: check segments and their parts using N threads\n" +
+                         "  -sample R: only verify a random fraction R of terms, documents and point cells,\n" +
+                         "             file checksums are still fully verified\n" +
                          "\n" +
                          "**WARNING**: -exorcise *LOSES DATA*. This should only be used on an emergency basis as it will cause\n" +
                          "documents (perhaps many) to be permanently removed from the index.  Always make\n" +
@@ -2954,6 +3292,10 @@ public final class CheckIndex implements Closeable {
       throw new IllegalArgumentException("ERROR: cannot specify both -fast and -slow");
     }
 
+    if (opts.sampleRate < 1 && opts.doExorcise) {
+      throw new IllegalArgumentException("ERROR: cannot specify both -exorcise and -sample");
+    }
+
     return opts;
   }
 
@@ -2966,8 +3308,19 @@ public final class CheckIndex implements Closeable {
     setDoSlowChecks(opts.doSlowChecks);
     setChecksumsOnly(opts.doChecksumsOnly);
     setInfoStream(opts.out, opts.verbose);
+    setSampleRate(opts.sampleRate);
 
-    Status result = checkIndex(opts.onlySegments);
+    final Status result;
+    if (opts.threadCount > 1) {
+      final ExecutorService executor = Executors.newFixedThreadPool(opts.threadCount, new NamedThreadFactory("CheckIndex"));
+      try {
+        result = checkIndex(opts.onlySegments, executor);
+      } finally {
+        executor.shutdown();
+      }
+    } else {
+      result = checkIndex(opts.onlySegments);
+    }
     if (result.missingSegments) {
       return 1;
     }
@@ -3016,6 +3369,11 @@ public final class CheckIndex implements Closeable {
     }
   }
 
+  /** Return a random generator of samples, or null if everything should be checked. */
+  private static Random newSampler(double sampleRate, long seed) {
+    return sampleRate < 1 ? new Random(seed) : null;
+  }
+
   private static double nsToSec(long ns) {
     return ns/1000000000.0;
   }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * Runs {@link FutureTask}s on an {@link Executor} while the calling thread
+ * helps: tasks that the executor rejects or didn't start yet when they are
+ * waited for get run by the calling thread. This way, waiting never
+ * deadlocks, even if all threads of the executor are busy, possibly waiting
+ * on tasks themselves.
+ */
+final class ConcurrentTasks {
+
+  private ConcurrentTasks() {}
+
+  /**
+   * Start running the given tasks on the executor, if not null. Tasks that the
+   * executor rejects get run by {@link #await}.
+   */
+  static void execute(List<? extends Runnable> tasks, Executor executor) {
+    if (executor != null) {
+      for (Runnable task : tasks) {
+        try {
+          executor.execute(task);
+        } catch (@SuppressWarnings("unused") RejectedExecutionException e) {
+          // will be run by the calling thread
+        }
+      }
+    }
+  }
+
+  /**
+   * Wait for the given task to complete and return its result. If the task
+   * didn't start yet, it gets run in the calling thread.
+   */
+  static <T> T await(FutureTask<T> task) throws IOException {
+    task.run(); // no-op if the task is running or done
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      throw IOUtils.rethrowAlways(e.getCause());
+    }
+  }
+
+  /**
+   * Run the given tasks, concurrently if the executor is not null, and return
+   * their results in order. All tasks are waited for, even if some of them
+   * fail, in which case the first failure is rethrown with subsequent ones
+   * suppressed.
+   */
+  static <T> List<T> invokeAll(List<FutureTask<T>> tasks, Executor executor) throws IOException {
+    execute(tasks, executor);
+    final List<T> results = new ArrayList<>(tasks.size());
+    Throwable th = null;
+    for (FutureTask<T> task : tasks) {
+      try {
+        results.add(await(task));
+      } catch (Throwable t) {
+        th = IOUtils.useOrSuppress(th, t);
+      }
+    }
+    if (th != null) {
+      throw IOUtils.rethrowAlways(th);
+    }
+    return results;
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * Bookkeeping and read-time merging of doc values patches. Instead of
+ * rewriting the whole column of a field when its doc values get updated,
+ * {@link ReadersAndUpdates} may write a new generation that only contains
+ * the updated documents: a patch. Patches get applied on top of the
+ * generations they were written on when doc values are read, the most
+ * recent generation that has a value for a document wins. The generations
+ * that the current generation of a field patches, are recorded as
+ * attributes of the {@link FieldInfo}.
+ */
+final class DocValuesPatches {
+
+  private static final String PREFIX = DocValuesPatches.class.getSimpleName();
+  private static final String OWNER_KEY = PREFIX + ".owner";
+  private static final String GENS_KEY = PREFIX + ".gens";
+  private static final String STATISTICS_PREFIX = DocValuesStatistics.class.getSimpleName() + ".";
+
+  private DocValuesPatches() {}
+
+  /**
+   * Return the generations that the current generation of the field
+   * patches, oldest first, or {@code null} if the current generation holds
+   * all values of the field. The first generation holds all values of the
+   * field, while the next ones are patches.
+   */
+  static long[] read(SegmentInfo segmentInfo, FieldInfo fieldInfo) {
+    // Attributes get copied over when merging or updating doc values. Only
+    // trust generations that have been recorded for this generation of this segment.
+    if (owner(segmentInfo, fieldInfo).equals(fieldInfo.getAttribute(OWNER_KEY)) == false) {
+      return null;
+    }
+    final String[] gens = fieldInfo.getAttribute(GENS_KEY).split(",");
+    final long[] result = new long[gens.length];
+    for (int i = 0; i < gens.length; ++i) {
+      result[i] = Long.parseLong(gens[i]);
+    }
+    return result;
+  }
+
+  /** Record that the current generation of the field patches the given generations. */
+  static void write(SegmentInfo segmentInfo, FieldInfo fieldInfo, long[] gens) {
+    assert gens.length > 0;
+    final StringBuilder sb = new StringBuilder();
+    for (long gen : gens) {
+      assert gen < fieldInfo.getDocValuesGen();
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(gen);
+    }
+    fieldInfo.putAttribute(OWNER_KEY, owner(segmentInfo, fieldInfo));
+    fieldInfo.putAttribute(GENS_KEY, sb.toString());
+  }
+
+  /**
+   * Return whether the doc values format recorded the same attributes on a
+   * field before and after writing a patch, which is required for previous
+   * generations to be readable with the attributes of the patch. Attributes
+   * that describe the generation itself, like statistics, are ignored.
+   */
+  static boolean sameFormatAttributes(Map<String,String> before, Map<String,String> after) {
+    return formatAttributes(before).equals(formatAttributes(after));
+  }
+
+  private static Map<String,String> formatAttributes(Map<String,String> attributes) {
+    final Map<String,String> formatAttributes = new HashMap<>(attributes);
+    formatAttributes.keySet().removeIf(key -> key.startsWith(PREFIX + ".") || key.startsWith(STATISTICS_PREFIX));
+    return formatAttributes;
+  }
+
+  private static String owner(SegmentInfo segmentInfo, FieldInfo fieldInfo) {
+    return StringHelper.idToString(segmentInfo.getId()) + "_" + fieldInfo.getDocValuesGen();
+  }
+
+  /** Apply the given generations of a numeric field on top of each other, oldest first. */
+  static NumericDocValues patch(NumericDocValues[] gens) {
+    final PatchedIterator<NumericDocValues> iterator = new PatchedIterator<>(gens);
+    return new NumericDocValues() {
+      @Override
+      public long longValue() throws IOException {
+        return iterator.current.longValue();
+      }
+
+      @Override
+      public boolean advanceExact(int target) throws IOException {
+        return iterator.advanceExact(target);
+      }
+
+      @Override
+      public int docID() {
+        return iterator.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return iterator.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return iterator.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return iterator.cost();
+      }
+    };
+  }
+
+  /** Apply the given generations of a binary field on top of each other, oldest first. */
+  static BinaryDocValues patch(BinaryDocValues[] gens) {
+    final PatchedIterator<BinaryDocValues> iterator = new PatchedIterator<>(gens);
+    return new BinaryDocValues() {
+      @Override
+      public BytesRef binaryValue() throws IOException {
+        return iterator.current.binaryValue();
+      }
+
+      @Override
+      public boolean advanceExact(int target) throws IOException {
+        return iterator.advanceExact(target);
+      }
+
+      @Override
+      public int docID() {
+        return iterator.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return iterator.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return iterator.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return iterator.cost();
+      }
+    };
+  }
+
+  /**
+   * Iterates over the union of documents of several generations, and
+   * exposes the most recent generation that has a value for the current
+   * document.
+   */
+  private static final class PatchedIterator<T extends DocValuesIterator> extends DocValuesIterator {
+
+    private final T[] gens;
+    // whether gens have a value for their current doc, which may not be the case after advanceExact
+    private final boolean[] exists;
+    private int doc = -1;
+    T current;
+
+    PatchedIterator(T[] gens) {
+      // generations may not have values for the field, eg. if it was added by an update
+      this.gens = Arrays.stream(gens).filter(gen -> gen != null).toArray(n -> Arrays.copyOf(gens, n));
+      this.exists = new boolean[this.gens.length];
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      int min = NO_MORE_DOCS;
+      for (int i = 0; i < gens.length; ++i) {
+        final T gen = gens[i];
+        if (gen.docID() < target) {
+          gen.advance(target);
+        } else if (exists[i] == false && gen.docID() != NO_MORE_DOCS) {
+          // advanceExact() left this gen on a document that doesn't have a value
+          gen.nextDoc();
+        }
+        exists[i] = true;
+        min = Math.min(min, gen.docID());
+      }
+      current = null;
+      if (min != NO_MORE_DOCS) {
+        for (int i = gens.length - 1; i >= 0; --i) {
+          if (gens[i].docID() == min) {
+            current = gens[i];
+            break;
+          }
+        }
+      }
+      return doc = min;
+    }
+
+    @Override
+    public boolean advanceExact(int target) throws IOException {
+      doc = target;
+      current = null;
+      // most recent generations first, older ones may stay behind
+      for (int i = gens.length - 1; i >= 0; --i) {
+        final T gen = gens[i];
+        if (gen.docID() < target) {
+          exists[i] = gen.advanceExact(target);
+        }
+        if (gen.docID() == target && exists[i]) {
+          current = gen;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public long cost() {
+      long cost = 0;
+      for (T gen : gens) {
+        cost += gen.cost();
+      }
+      return cost;
+    }
+  }
+}
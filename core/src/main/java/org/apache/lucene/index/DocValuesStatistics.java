@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * Per-segment statistics about the values of a {@link DocValuesType#NUMERIC}
+ * or {@link DocValuesType#SORTED_NUMERIC} field. They are computed by the
+ * doc values format when the field is flushed, merged or updated, and stored
+ * as attributes of the {@link FieldInfo}, so that they can be used to skip
+ * entire segments without reading any doc values.
+ *
+ * Statistics are optional: formats are not required to record them, and
+ * they are not available on segments that were written before they were
+ * introduced. Like {@link PointValues} statistics, they do not take deleted
+ * documents into account.
+ *
+ * @see LeafReader#getDocValuesStatistics(String)
+ * @lucene.experimental
+ */
+public final class DocValuesStatistics {
+
+  private static final String PREFIX = DocValuesStatistics.class.getSimpleName();
+  private static final String OWNER_KEY = PREFIX + ".owner";
+  private static final String MIN_KEY = PREFIX + ".min";
+  private static final String MAX_KEY = PREFIX + ".max";
+  private static final String VALUE_COUNT_KEY = PREFIX + ".valueCount";
+  private static final String DOC_COUNT_KEY = PREFIX + ".docCount";
+  private static final String DISTINCT_COUNT_KEY = PREFIX + ".distinctCount";
+
+  private final long minValue;
+  private final long maxValue;
+  private final long valueCount;
+  private final int docCount;
+  private final long distinctValueCount;
+
+  /** Sole constructor. */
+  public DocValuesStatistics(long minValue, long maxValue, long valueCount, int docCount, long distinctValueCount) {
+    if (docCount <= 0) {
+      throw new IllegalArgumentException("docCount must be > 0, got " + docCount);
+    }
+    if (minValue > maxValue) {
+      throw new IllegalArgumentException("minValue must be <= maxValue, got " + minValue + " > " + maxValue);
+    }
+    if (valueCount < docCount) {
+      throw new IllegalArgumentException("valueCount must be >= docCount, got " + valueCount + " < " + docCount);
+    }
+    this.minValue = minValue;
+    this.maxValue = maxValue;
+    this.valueCount = valueCount;
+    this.docCount = docCount;
+    this.distinctValueCount = distinctValueCount;
+  }
+
+  /** Return the minimum value of the field in the segment. */
+  public long getMinValue() {
+    return minValue;
+  }
+
+  /** Return the maximum value of the field in the segment. */
+  public long getMaxValue() {
+    return maxValue;
+  }
+
+  /** Return the total number of values of the field in the segment. */
+  public long getValueCount() {
+    return valueCount;
+  }
+
+  /** Return the number of documents that have at least one value for the field. */
+  public int getDocCount() {
+    return docCount;
+  }
+
+  /** Return an estimate of the number of distinct values of the field in the segment. */
+  public long getDistinctValueCount() {
+    return distinctValueCount;
+  }
+
+  /**
+   * Record these statistics on the given {@link FieldInfo}. This must be called
+   * by doc values formats while writing the doc values of {@code fieldInfo} for
+   * the segment identified by {@code segmentInfo}.
+   */
+  public void write(SegmentInfo segmentInfo, FieldInfo fieldInfo) {
+    fieldInfo.putAttribute(OWNER_KEY, owner(segmentInfo, fieldInfo));
+    fieldInfo.putAttribute(MIN_KEY, Long.toString(minValue));
+    fieldInfo.putAttribute(MAX_KEY, Long.toString(maxValue));
+    fieldInfo.putAttribute(VALUE_COUNT_KEY, Long.toString(valueCount));
+    fieldInfo.putAttribute(DOC_COUNT_KEY, Integer.toString(docCount));
+    fieldInfo.putAttribute(DISTINCT_COUNT_KEY, Long.toString(distinctValueCount));
+  }
+
+  /**
+   * Read statistics that have been recorded on the given {@link FieldInfo} for
+   * the segment identified by {@code segmentInfo}, or {@code null} if no
+   * statistics are available.
+   */
+  public static DocValuesStatistics read(SegmentInfo segmentInfo, FieldInfo fieldInfo) {
+    if (fieldInfo == null) {
+      return null;
+    }
+    // Attributes get copied over when merging or updating doc values. Only
+    // trust statistics that have been written for this generation of this segment.
+    if (owner(segmentInfo, fieldInfo).equals(fieldInfo.getAttribute(OWNER_KEY)) == false) {
+      return null;
+    }
+    return new DocValuesStatistics(
+        Long.parseLong(fieldInfo.getAttribute(MIN_KEY)),
+        Long.parseLong(fieldInfo.getAttribute(MAX_KEY)),
+        Long.parseLong(fieldInfo.getAttribute(VALUE_COUNT_KEY)),
+        Integer.parseInt(fieldInfo.getAttribute(DOC_COUNT_KEY)),
+        Long.parseLong(fieldInfo.getAttribute(DISTINCT_COUNT_KEY)));
+  }
+
+  /**
+   * Forget about statistics that have been recorded on the given
+   * {@link FieldInfo}, eg. because they only describe a patch of the values
+   * of the field.
+   */
+  static void invalidate(FieldInfo fieldInfo) {
+    if (fieldInfo.getAttribute(OWNER_KEY) != null) {
+      fieldInfo.putAttribute(OWNER_KEY, "");
+    }
+  }
+
+  private static String owner(SegmentInfo segmentInfo, FieldInfo fieldInfo) {
+    return StringHelper.idToString(segmentInfo.getId()) + "_" + fieldInfo.getDocValuesGen();
+  }
+
+  @Override
+  public String toString() {
+    return "DocValuesStatistics(min=" + minValue + ",max=" + maxValue + ",valueCount=" + valueCount
+        + ",docCount=" + docCount + ",distinctValueCount=" + distinctValueCount + ")";
+  }
+}
@@ -371,6 +371,11 @@ final class DocumentsWriter implements Closeable, Accountable {
   private boolean preUpdate() throws IOException {
     ensureOpen();
     boolean hasEvents = false;
+    final IndexWriterRAMBudget.Member ramBudgetMember = flushControl.ramBudgetMember;
+    if (ramBudgetMember != null) {
+      // block if writers that share the RAM budget are stalled, helping flush other writers
+      ramBudgetMember.getBudget().waitIfStalled(ramBudgetMember);
+    }
     while (flushControl.anyStalledThreads() || (flushControl.numQueuedFlushes() > 0 && config.checkPendingFlushOnUpdate)) {
       // Help out flushing any queued DWPTs so we can un-stall:
       // Try pick up pending threads here if possible
@@ -394,6 +399,11 @@ final class DocumentsWriter implements Closeable, Accountable {
         hasEvents |= doFlush(nextPendingFlush);
       }
     }
+    final IndexWriterRAMBudget.Member ramBudgetMember = flushControl.ramBudgetMember;
+    if (ramBudgetMember != null) {
+      // this writer flushes itself through its flush policy if it is the largest one
+      ramBudgetMember.getBudget().maybeFlush(ramBudgetMember);
+    }
 
     return hasEvents;
   }
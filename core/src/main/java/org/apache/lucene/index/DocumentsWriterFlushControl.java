@@ -78,6 +78,8 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
   private final DocumentsWriter documentsWriter;
   private final LiveIndexWriterConfig config;
   private final InfoStream infoStream;
+  // set if the writer shares a RAM budget with other writers
+  volatile IndexWriterRAMBudget.Member ramBudgetMember;
 
   DocumentsWriterFlushControl(DocumentsWriter documentsWriter, LiveIndexWriterConfig config) {
     this.infoStream = config.getInfoStream();
@@ -274,8 +276,26 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
     }
 
     stallControl.updateStalled(stall);
+    updateRAMBudget();
     return stall;
   }
+
+  /** Register the writer with the {@link IndexWriterRAMBudget} of its config, if any. */
+  synchronized void registerRAMBudget(IndexWriter writer) {
+    final IndexWriterRAMBudget ramBudget = config.getRAMBudget();
+    if (ramBudget != null && closed == false) {
+      assert ramBudgetMember == null;
+      ramBudgetMember = ramBudget.register(writer);
+      updateRAMBudget();
+    }
+  }
+
+  private void updateRAMBudget() {
+    assert Thread.holdsLock(this);
+    if (ramBudgetMember != null) {
+      ramBudgetMember.update(activeBytes + getDeleteBytesUsed(), flushBytes);
+    }
+  }
   
   public synchronized void waitForFlush() {
     while (flushingWriters.size() != 0) {
@@ -396,6 +416,9 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
   public synchronized void close() {
     // set by DW to signal that we are closing. in this case we try to not stall any threads anymore etc.
     closed = true;
+    if (ramBudgetMember != null) {
+      ramBudgetMember.unregister();
+    }
   }
 
   /**
@@ -408,6 +431,7 @@ final class DocumentsWriterFlushControl implements Accountable, Closeable {
   synchronized void doOnDelete() {
     // pass null this is a global delete no update
     flushPolicy.onDelete(this, null);
+    updateRAMBudget();
   }
 
   /** Returns heap bytes currently consumed by buffered deletes/updates that would be
@@ -116,6 +116,11 @@ public abstract class FilterCodecReader extends CodecReader {
     return in.getMetaData();
   }
 
+  @Override
+  public DocValuesStatistics getDocValuesStatistics(String field) throws IOException {
+    return in.getDocValuesStatistics(field);
+  }
+
   @Override
   protected void doClose() throws IOException {
     in.doClose();
@@ -52,6 +52,12 @@ package org.apache.lucene.index;
  * largest ram consuming {@link DocumentsWriterPerThread} will be marked as
  * pending iff the global active RAM consumption is {@code >=} the configured max RAM
  * buffer.
+ * <p>
+ * If {@link IndexWriterConfig#setRAMBudget(IndexWriterRAMBudget)} is set, the
+ * largest ram consuming {@link DocumentsWriterPerThread} will also be marked as
+ * pending iff all writers that share the budget exceed it and this writer is the
+ * one that uses the most RAM, and pending deletes get applied if they use more
+ * RAM than the active {@link DocumentsWriterPerThread}s.
  */
 class FlushByRamOrCountsPolicy extends FlushPolicy {
 
@@ -62,6 +68,11 @@ class FlushByRamOrCountsPolicy extends FlushPolicy {
       if (infoStream.isEnabled("FP")) {
         infoStream.message("FP", "force apply deletes bytesUsed=" + control.getDeleteBytesUsed() + " vs ramBufferMB=" + indexWriterConfig.getRAMBufferSizeMB());
       }
+    } else if (flushOnRAMBudget(control) && control.getDeleteBytesUsed() > control.activeBytes()) {
+      control.setApplyAllDeletes();
+      if (infoStream.isEnabled("FP")) {
+        infoStream.message("FP", "force apply deletes bytesUsed=" + control.getDeleteBytesUsed() + " vs ramBudget=" + indexWriterConfig.getRAMBudget());
+      }
     }
   }
 
@@ -82,6 +93,23 @@ class FlushByRamOrCountsPolicy extends FlushPolicy {
         markLargestWriterPending(control, perThread);
       }
     }
+    if (perThread.isFlushPending() == false && flushOnRAMBudget(control)) {
+      if (infoStream.isEnabled("FP")) {
+        infoStream.message("FP", "trigger flush: activeBytes=" + control.activeBytes() + " deleteBytes=" + control.getDeleteBytesUsed() + " vs ramBudget=" + indexWriterConfig.getRAMBudget());
+      }
+      markLargestWriterPending(control, perThread);
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the writers that share the
+   * {@link IndexWriterConfig#getRAMBudget() RAM budget} of this writer exceed it
+   * and this writer is the one that uses the most RAM.
+   */
+  protected boolean flushOnRAMBudget(DocumentsWriterFlushControl control) {
+    final IndexWriterRAMBudget.Member ramBudgetMember = control.ramBudgetMember;
+    return ramBudgetMember != null
+        && ramBudgetMember.getBudget().shouldFlush(ramBudgetMember, control.activeBytes() + control.getDeleteBytesUsed());
   }
   
   /**
@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.IntConsumer;
 
@@ -36,6 +38,7 @@ import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.RamUsageEstimator;
 
@@ -153,6 +156,12 @@ final class FrozenBufferedUpdates {
   /** Applies pending delete-by-term, delete-by-query and doc values updates to all segments in the index, returning
    *  the number of new deleted or updated documents. */
   long apply(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
+    return apply(segStates, null);
+  }
+
+  /** Like {@link #apply(BufferedUpdatesStream.SegmentState[])}, but resolves deletes and updates of every segment as a
+   *  separate task on the given executor if it is not null. */
+  long apply(BufferedUpdatesStream.SegmentState[] segStates, Executor executor) throws IOException {
     assert applyLock.isHeldByCurrentThread();
     if (delGen == -1) {
       // we were not yet pushed
@@ -166,13 +175,60 @@ final class FrozenBufferedUpdates {
       assert privateSegment == segStates[0].reader.getOriginalSegmentInfo();
     }
 
-    totalDelCount += applyTermDeletes(segStates);
-    totalDelCount += applyQueryDeletes(segStates);
-    totalDelCount += applyDocValuesUpdates(segStates);
+    if (executor == null || segStates.length <= 1) {
+      totalDelCount += applyTermDeletes(segStates);
+      totalDelCount += applyQueryDeletes(segStates);
+      totalDelCount += applyDocValuesUpdates(segStates);
+    } else {
+      totalDelCount += applyConcurrently(segStates, executor);
+    }
 
     return totalDelCount;
   }
 
+  /** Resolves deletes and updates of every segment as a separate task. Segments have their own
+   *  {@link ReadersAndUpdates}, so tasks never compete for the same deletes or updates. */
+  private long applyConcurrently(BufferedUpdatesStream.SegmentState[] segStates, Executor executor) throws IOException {
+    long startNS = System.nanoTime();
+
+    final List<FutureTask<Long>> tasks = new ArrayList<>(segStates.length);
+    for (BufferedUpdatesStream.SegmentState segState : segStates) {
+      tasks.add(new FutureTask<>(() -> {
+        long delCount = 0;
+        if (deleteTerms.size() > 0) {
+          delCount += applyTermDeletes(segState);
+        }
+        if (deleteQueries.length > 0) {
+          delCount += applyQueryDeletes(segState);
+        }
+        if (fieldUpdates.isEmpty() == false) {
+          delCount += applyDocValuesUpdates(segState);
+        }
+        return delCount;
+      }));
+    }
+    // Tasks that haven't been picked up by the executor yet are run by the current thread, so that we make progress
+    // even if the executor is busy, e.g. with the indexing threads that are waiting for these deletes.
+    // All tasks are waited for, even if some failed, since segment states get released when we return:
+    long delCount = 0;
+    for (long taskDelCount : ConcurrentTasks.invokeAll(tasks, executor)) {
+      delCount += taskDelCount;
+    }
+
+    if (infoStream.isEnabled("BD")) {
+      infoStream.message("BD",
+                         String.format(Locale.ROOT, "applyConcurrently took %.2f msec for %d segments, %d del terms, %d queries and %d field updates; %d new deletions/updates",
+                                       (System.nanoTime()-startNS)/1000000.,
+                                       segStates.length,
+                                       deleteTerms.size(),
+                                       deleteQueries.length,
+                                       fieldUpdatesCount,
+                                       delCount));
+    }
+
+    return delCount;
+  }
+
   private long applyDocValuesUpdates(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
 
     if (fieldUpdates.isEmpty()) {
@@ -184,23 +240,7 @@ final class FrozenBufferedUpdates {
     long updateCount = 0;
 
     for (BufferedUpdatesStream.SegmentState segState : segStates) {
-
-      if (delGen < segState.delGen) {
-        // segment is newer than this deletes packet
-        continue;
-      }
-
-      if (segState.rld.refCount() == 1) {
-        // This means we are the only remaining reference to this segment, meaning
-        // it was merged away while we were running, so we can safely skip running
-        // because we will run on the newly merged segment next:
-        continue;
-      }
-      final boolean isSegmentPrivateDeletes = privateSegment != null;
-      if (fieldUpdates.isEmpty() == false) {
-        updateCount += applyDocValuesUpdates(segState, fieldUpdates, delGen, isSegmentPrivateDeletes);
-      }
-
+      updateCount += applyDocValuesUpdates(segState);
     }
 
     if (infoStream.isEnabled("BD")) {
@@ -215,6 +255,22 @@ final class FrozenBufferedUpdates {
     return updateCount;
   }
 
+  private long applyDocValuesUpdates(BufferedUpdatesStream.SegmentState segState) throws IOException {
+    if (delGen < segState.delGen) {
+      // segment is newer than this deletes packet
+      return 0;
+    }
+
+    if (segState.rld.refCount() == 1) {
+      // This means we are the only remaining reference to this segment, meaning
+      // it was merged away while we were running, so we can safely skip running
+      // because we will run on the newly merged segment next:
+      return 0;
+    }
+    final boolean isSegmentPrivateDeletes = privateSegment != null;
+    return applyDocValuesUpdates(segState, fieldUpdates, delGen, isSegmentPrivateDeletes);
+  }
+
   private static long applyDocValuesUpdates(BufferedUpdatesStream.SegmentState segState,
                                             Map<String, FieldUpdatesBuffer> updates,
                                             long delGen,
@@ -346,58 +402,7 @@ final class FrozenBufferedUpdates {
 
     long delCount = 0;
     for (BufferedUpdatesStream.SegmentState segState : segStates) {
-
-      if (delGen < segState.delGen) {
-        // segment is newer than this deletes packet
-        continue;
-      }
-      
-      if (segState.rld.refCount() == 1) {
-        // This means we are the only remaining reference to this segment, meaning
-        // it was merged away while we were running, so we can safely skip running
-        // because we will run on the newly merged segment next:
-        continue;
-      }
-
-      final LeafReaderContext readerContext = segState.reader.getContext();
-      for (int i = 0; i < deleteQueries.length; i++) {
-        Query query = deleteQueries[i];
-        int limit;
-        if (delGen == segState.delGen) {
-          assert privateSegment != null;
-          limit = deleteQueryLimits[i];
-        } else {
-          limit = Integer.MAX_VALUE;
-        }
-        final IndexSearcher searcher = new IndexSearcher(readerContext.reader());
-        searcher.setQueryCache(null);
-        query = searcher.rewrite(query);
-        final Weight weight = searcher.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1);
-        final Scorer scorer = weight.scorer(readerContext);
-        if (scorer != null) {
-          final DocIdSetIterator it = scorer.iterator();
-          if (segState.rld.sortMap != null && limit != Integer.MAX_VALUE) {
-            assert privateSegment != null;
-            // This segment was sorted on flush; we must apply seg-private deletes carefully in this case:
-            int docID;
-            while ((docID = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-              // The limit is in the pre-sorted doc space:
-              if (segState.rld.sortMap.newToOld(docID) < limit) {
-                if (segState.rld.delete(docID)) {
-                  delCount++;
-                }
-              }
-            }
-          } else {
-            int docID;
-            while ((docID = it.nextDoc()) < limit) {
-              if (segState.rld.delete(docID)) {
-                delCount++;
-              }
-            }
-          }
-        }
-      }
+      delCount += applyQueryDeletes(segState);
     }
 
     if (infoStream.isEnabled("BD")) {
@@ -412,6 +417,63 @@ final class FrozenBufferedUpdates {
     return delCount;
   }
   
+  private long applyQueryDeletes(BufferedUpdatesStream.SegmentState segState) throws IOException {
+    if (delGen < segState.delGen) {
+      // segment is newer than this deletes packet
+      return 0;
+    }
+
+    if (segState.rld.refCount() == 1) {
+      // This means we are the only remaining reference to this segment, meaning
+      // it was merged away while we were running, so we can safely skip running
+      // because we will run on the newly merged segment next:
+      return 0;
+    }
+
+    long delCount = 0;
+    final LeafReaderContext readerContext = segState.reader.getContext();
+    for (int i = 0; i < deleteQueries.length; i++) {
+      Query query = deleteQueries[i];
+      int limit;
+      if (delGen == segState.delGen) {
+        assert privateSegment != null;
+        limit = deleteQueryLimits[i];
+      } else {
+        limit = Integer.MAX_VALUE;
+      }
+      final IndexSearcher searcher = new IndexSearcher(readerContext.reader());
+      searcher.setQueryCache(null);
+      query = searcher.rewrite(query);
+      final Weight weight = searcher.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1);
+      final Scorer scorer = weight.scorer(readerContext);
+      if (scorer != null) {
+        final DocIdSetIterator it = scorer.iterator();
+        if (segState.rld.sortMap != null && limit != Integer.MAX_VALUE) {
+          assert privateSegment != null;
+          // This segment was sorted on flush; we must apply seg-private deletes carefully in this case:
+          int docID;
+          while ((docID = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            // The limit is in the pre-sorted doc space:
+            if (segState.rld.sortMap.newToOld(docID) < limit) {
+              if (segState.rld.delete(docID)) {
+                delCount++;
+              }
+            }
+          }
+        } else {
+          int docID;
+          while ((docID = it.nextDoc()) < limit) {
+            if (segState.rld.delete(docID)) {
+              delCount++;
+            }
+          }
+        }
+      }
+    }
+
+    return delCount;
+  }
+
   private long applyTermDeletes(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
 
     if (deleteTerms.size() == 0) {
@@ -426,37 +488,7 @@ final class FrozenBufferedUpdates {
     long delCount = 0;
 
     for (BufferedUpdatesStream.SegmentState segState : segStates) {
-      assert segState.delGen != delGen: "segState.delGen=" + segState.delGen + " vs this.gen=" + delGen;
-      if (segState.delGen > delGen) {
-        // our deletes don't apply to this segment
-        continue;
-      }
-      if (segState.rld.refCount() == 1) {
-        // This means we are the only remaining reference to this segment, meaning
-        // it was merged away while we were running, so we can safely skip running
-        // because we will run on the newly merged segment next:
-        continue;
-      }
-
-      FieldTermIterator iter = deleteTerms.iterator();
-      BytesRef delTerm;
-      TermDocsIterator termDocsIterator = new TermDocsIterator(segState.reader, true);
-      while ((delTerm = iter.next()) != null) {
-        final DocIdSetIterator iterator = termDocsIterator.nextTerm(iter.field(), delTerm);
-        if (iterator != null) {
-          int docID;
-          while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-            // NOTE: there is no limit check on the docID
-            // when deleting by Term (unlike by Query)
-            // because on flush we apply all Term deletes to
-            // each segment.  So all Term deleting here is
-            // against prior segments:
-            if (segState.rld.delete(docID)) {
-              delCount++;
-            }
-          }
-        }
-      }
+      delCount += applyTermDeletes(segState);
     }
 
     if (infoStream.isEnabled("BD")) {
@@ -471,6 +503,42 @@ final class FrozenBufferedUpdates {
     return delCount;
   }
   
+  private long applyTermDeletes(BufferedUpdatesStream.SegmentState segState) throws IOException {
+    assert segState.delGen != delGen: "segState.delGen=" + segState.delGen + " vs this.gen=" + delGen;
+    if (segState.delGen > delGen) {
+      // our deletes don't apply to this segment
+      return 0;
+    }
+    if (segState.rld.refCount() == 1) {
+      // This means we are the only remaining reference to this segment, meaning
+      // it was merged away while we were running, so we can safely skip running
+      // because we will run on the newly merged segment next:
+      return 0;
+    }
+
+    long delCount = 0;
+    FieldTermIterator iter = deleteTerms.iterator();
+    BytesRef delTerm;
+    TermDocsIterator termDocsIterator = new TermDocsIterator(segState.reader, true);
+    while ((delTerm = iter.next()) != null) {
+      final DocIdSetIterator iterator = termDocsIterator.nextTerm(iter.field(), delTerm);
+      if (iterator != null) {
+        int docID;
+        while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          // NOTE: there is no limit check on the docID
+          // when deleting by Term (unlike by Query)
+          // because on flush we apply all Term deletes to
+          // each segment.  So all Term deleting here is
+          // against prior segments:
+          if (segState.rld.delete(docID)) {
+            delCount++;
+          }
+        }
+      }
+    }
+    return delCount;
+  }
+
   public void setDelGen(long delGen) {
     assert this.delGen == -1: "delGen was already previously set to " + this.delGen;
     this.delGen = delGen;
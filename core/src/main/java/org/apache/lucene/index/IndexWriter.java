@@ -31,7 +31,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -1092,7 +1096,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
           enableTestPoints, this::newSegmentName,
           config, directoryOrig, directory, globalFieldNumberMap);
       readerPool = new ReaderPool(directory, directoryOrig, segmentInfos, globalFieldNumberMap,
-          bufferedUpdatesStream::getCompletedDelGen, infoStream, conf.getSoftDeletesField(), reader);
+          bufferedUpdatesStream::getCompletedDelGen, infoStream, conf.getSoftDeletesField(),
+          conf.getMaxDocValuesPatches(), reader);
       if (config.getReaderPooling()) {
         readerPool.enableReaderPooling();
       }
@@ -1129,6 +1134,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
         messageState();
       }
 
+      docWriter.flushControl.registerRAMBudget(this);
       success = true;
 
     } finally {
@@ -3712,6 +3718,11 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
   // order is commitLock -> IW
   private final Object commitLock = new Object();
 
+  // Guards nextGroupCommit
+  private final Object groupCommitLock = new Object();
+  // The group commit that commitAsync callers currently join, null if none is pending
+  private CompletableFuture<Long> nextGroupCommit;
+
   /**
    * <p>Commits all pending changes (added and deleted
    * documents, segment merges, added
@@ -3753,6 +3764,70 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
     return commitInternal(config.getMergePolicy());
   }
 
+  /**
+   * Commits all pending changes like {@link #commit()}, but coalesces
+   * concurrent calls into group commits: calls that happen while a commit is
+   * running all join the next commit, which then flushes and syncs the
+   * changes of all of them at once. This is useful when many threads need
+   * their own changes to be durable, eg. after every client request, since
+   * commit throughput then scales with the number of threads rather than
+   * being bound by the latency of syncing files.
+   *
+   * <p>The returned future completes once all changes that were made before
+   * this method was called are durable, with the sequence number of the
+   * commit, or -1 if there were no changes to commit, or exceptionally if
+   * the commit failed. The commit is run on the
+   * {@link IndexWriterConfig#setCommitExecutor(Executor) commit executor}
+   * if one is configured, and otherwise by the first thread of each group,
+   * which then blocks until its group is committed while other threads of
+   * the group return immediately.</p>
+   *
+   * @see #commit()
+   * @lucene.experimental
+   */
+  public final CompletableFuture<Long> commitAsync() {
+    ensureOpen();
+    final CompletableFuture<Long> groupCommit;
+    final boolean leader;
+    synchronized (groupCommitLock) {
+      leader = nextGroupCommit == null;
+      if (leader) {
+        nextGroupCommit = new CompletableFuture<>();
+      }
+      groupCommit = nextGroupCommit;
+    }
+    if (leader) {
+      final Runnable task = () -> runGroupCommit(groupCommit);
+      final Executor executor = config.getCommitExecutor();
+      if (executor == null) {
+        task.run();
+      } else {
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          task.run();
+        }
+      }
+    }
+    return groupCommit;
+  }
+
+  private void runGroupCommit(CompletableFuture<Long> groupCommit) {
+    try {
+      // wait for the running commit, if any, so that as many threads as possible join this group
+      synchronized (commitLock) {
+        synchronized (groupCommitLock) {
+          assert nextGroupCommit == groupCommit;
+          // threads that call commitAsync from now on may have changes that this commit misses
+          nextGroupCommit = null;
+        }
+      }
+      groupCommit.complete(commit());
+    } catch (Throwable t) {
+      groupCommit.completeExceptionally(t);
+    }
+  }
+
   /** Returns true if there may be changes that have not been
    *  committed.  There are cases where this may return true
    *  when there are no actual "real" changes to the index,
@@ -5142,7 +5217,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
           // _0.nvm;
           // _0.fnm
           filesToSync = toSync.files(false);
-          directory.sync(filesToSync); //强制持久化
+          syncFiles(filesToSync); //强制持久化
           success = true;
         } finally {
           if (!success) {
@@ -5190,6 +5265,23 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
     testPoint("finishStartCommit");
   }
 
+  /** Syncs the given files, concurrently on the commit executor if one is configured. */
+  private void syncFiles(Collection<String> files) throws IOException {
+    final Executor executor = config.getCommitExecutor();
+    if (executor == null || files.size() <= 1) {
+      directory.sync(files);
+      return;
+    }
+    final List<FutureTask<Void>> tasks = new ArrayList<>(files.size());
+    for (String file : files) {
+      tasks.add(new FutureTask<>(() -> {
+        directory.sync(Collections.singleton(file));
+        return null;
+      }));
+    }
+    ConcurrentTasks.invokeAll(tasks, executor);
+  }
+
   /** If {@link DirectoryReader#open(IndexWriter)} has
    *  been called (ie, this writer is in near real-time
    *  mode), then after a merge completes, this class can be
@@ -5701,7 +5793,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
         try (Closeable finalizer = () -> finishApply(segStates, success.get(), delFiles)) {
           assert finalizer != null; // access the finalizer to prevent a warning
           // don't hold IW monitor lock here so threads are free concurrently resolve deletes/updates:
-          delCount = updates.apply(segStates);
+          delCount = updates.apply(segStates, config.getApplyDeletesExecutor());
           success.set(true);
         }
 
@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -535,4 +536,76 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     this.softDeletesField = softDeletesField;
     return this;
   }
+
+  /**
+   * Expert: sets the {@link Executor} to resolve deletes and doc values updates on. When set, a packet of buffered
+   * deletes and updates is resolved against every segment as a separate task on this executor, rather than against
+   * one segment after the other by the thread that applies the packet, which helps delete-heavy workloads like
+   * upserts on indices that have many segments. The applying thread still waits for all segments to be done, and
+   * resolves segments itself when the executor is busy or rejects tasks, so it is fine to use an executor that is
+   * shared with indexing threads.
+   *
+   * The default value for this is <code>null</code>, which resolves deletes and updates in the applying thread.
+   *
+   * @see #getApplyDeletesExecutor()
+   */
+  public IndexWriterConfig setApplyDeletesExecutor(Executor applyDeletesExecutor) {
+    this.applyDeletesExecutor = applyDeletesExecutor;
+    return this;
+  }
+
+  /**
+   * Expert: sets the {@link Executor} to commit on. Group commits of {@link IndexWriter#commitAsync()} run as tasks on
+   * this executor, and commits sync index files concurrently as separate tasks on this executor rather than one after
+   * the other, which helps on storage devices that can serve several syncs in parallel. The committing thread still
+   * waits for all files to be synced, and syncs files itself when the executor is busy or rejects tasks.
+   *
+   * The default value for this is <code>null</code>, which commits in the committing thread.
+   *
+   * @see #getCommitExecutor()
+   */
+  public IndexWriterConfig setCommitExecutor(Executor commitExecutor) {
+    this.commitExecutor = commitExecutor;
+    return this;
+  }
+
+  /**
+   * Expert: sets the maximum number of patches that numeric and binary doc values updates may write on top of a full
+   * column of doc values. By default, updating the doc values of a field in a segment rewrites the values of all
+   * documents of the segment for this field, which is costly when few documents of a large segment get updated. When
+   * this is greater than zero, updates are instead written as a patch that only contains the updated documents, and
+   * get applied on top of the previous generations when doc values are read. Once a field has
+   * {@code maxDocValuesPatches} patches, the next update rewrites the full column again, so that readers never need
+   * to apply more than this number of patches. Merges also compact patches away.
+   *
+   * Updates that remove the value of a document, and updates of a field that doesn't have doc values in a segment yet,
+   * always rewrite the full column.
+   *
+   * The default value for this is <code>0</code>, which always rewrites the full column.
+   *
+   * @see #getMaxDocValuesPatches()
+   */
+  public IndexWriterConfig setMaxDocValuesPatches(int maxDocValuesPatches) {
+    if (maxDocValuesPatches < 0) {
+      throw new IllegalArgumentException("maxDocValuesPatches must be >= 0, got " + maxDocValuesPatches);
+    }
+    this.maxDocValuesPatches = maxDocValuesPatches;
+    return this;
+  }
+
+  /**
+   * Expert: sets an {@link IndexWriterRAMBudget} that this writer shares with other writers. In addition to flushing
+   * according to its own {@link #setRAMBufferSizeMB(double) RAM buffer}, the writer flushes its largest buffer when
+   * all writers that share the budget together exceed it and this writer is the one that uses the most RAM, and its
+   * indexing threads get stalled when flushes of the writers that share the budget can't keep up. This allows many
+   * writers in the same JVM to use large buffers while bounding their total RAM usage.
+   *
+   * The default value for this is <code>null</code>, which only flushes according to the RAM buffer of this writer.
+   *
+   * @see #getRAMBudget()
+   */
+  public IndexWriterConfig setRAMBudget(IndexWriterRAMBudget ramBudget) {
+    this.ramBudget = ramBudget;
+    return this;
+  }
 }
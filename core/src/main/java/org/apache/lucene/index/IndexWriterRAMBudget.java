@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+/**
+ * A RAM budget that is shared by several {@link IndexWriter}s, typically when
+ * many indexes are hosted in the same JVM. Writers register with the budget
+ * via {@link IndexWriterConfig#setRAMBudget(IndexWriterRAMBudget)} and report
+ * the RAM that their indexing buffers and buffered deletes use.
+ * <p>
+ * When the RAM used by the active buffers of all writers exceeds the budget,
+ * the largest writer flushes its largest buffer: the {@link FlushPolicy} of
+ * this writer marks it flush pending if the writer is indexing, otherwise an
+ * indexing thread of another writer flushes it via
+ * {@link IndexWriter#flushNextBuffer()}. If flushes can't keep up and the net
+ * RAM of all writers, including buffers that are being flushed, exceeds twice
+ * the budget, indexing threads of all writers are stalled until flushes catch
+ * up, like a single writer does with its own RAM buffer.
+ * <p>
+ * The budget applies in addition to the
+ * {@link IndexWriterConfig#setRAMBufferSizeMB(double) RAM buffer} of each
+ * writer, which may be set to {@link IndexWriterConfig#DISABLE_AUTO_FLUSH} so
+ * that writers only flush by RAM according to the shared budget.
+ *
+ * @lucene.experimental
+ */
+public final class IndexWriterRAMBudget {
+
+  /** A writer that is registered with a budget. */
+  static final class Member {
+
+    private final IndexWriterRAMBudget budget;
+    final IndexWriter writer;
+    // written under the lock of the writer's DocumentsWriterFlushControl
+    private volatile long activeBytes;
+    private volatile long flushBytes;
+    private volatile boolean closed;
+    // whether a thread of another writer is flushing this writer
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private Member(IndexWriterRAMBudget budget, IndexWriter writer) {
+      this.budget = budget;
+      this.writer = writer;
+    }
+
+    IndexWriterRAMBudget getBudget() {
+      return budget;
+    }
+
+    /** Report the bytes used by active buffers and deletes, and by flushing buffers. */
+    void update(long activeBytes, long flushBytes) {
+      if (closed == false) {
+        final long activeDelta = activeBytes - this.activeBytes;
+        final long flushDelta = flushBytes - this.flushBytes;
+        this.activeBytes = activeBytes;
+        this.flushBytes = flushBytes;
+        budget.update(activeDelta, flushDelta);
+      }
+    }
+
+    /** Stop accounting for this writer. */
+    void unregister() {
+      if (closed == false) {
+        closed = true;
+        budget.members.remove(this);
+        budget.update(-activeBytes, -flushBytes);
+      }
+    }
+  }
+
+  private volatile double ramBudgetMB;
+  private final List<Member> members = new CopyOnWriteArrayList<>();
+  private final AtomicLong activeBytes = new AtomicLong();
+  private final AtomicLong netBytes = new AtomicLong();
+  private int numWaiting; // guarded by this
+  private volatile boolean anyWaiting;
+
+  /** Create a budget of {@code ramBudgetMB} megabytes. */
+  public IndexWriterRAMBudget(double ramBudgetMB) {
+    setRAMBudgetMB(ramBudgetMB);
+  }
+
+  /**
+   * Change the budget. This takes effect on the next indexing operation of
+   * registered writers.
+   */
+  public void setRAMBudgetMB(double ramBudgetMB) {
+    if (ramBudgetMB <= 0.0 || Double.isNaN(ramBudgetMB)) {
+      throw new IllegalArgumentException("ramBudgetMB must be > 0.0, got " + ramBudgetMB);
+    }
+    this.ramBudgetMB = ramBudgetMB;
+    synchronized (this) {
+      // the stall limit might have been raised
+      notifyAll();
+    }
+  }
+
+  /** Return the budget in megabytes. */
+  public double getRAMBudgetMB() {
+    return ramBudgetMB;
+  }
+
+  /**
+   * Return the net RAM, in bytes, that registered writers use for buffered
+   * documents and deletes, including buffers that are being flushed.
+   */
+  public long ramBytesUsed() {
+    return netBytes.get();
+  }
+
+  /** Return the number of writers that are registered with this budget. */
+  public int getNumWriters() {
+    return members.size();
+  }
+
+  private long limitBytes() {
+    return (long) (ramBudgetMB * 1024 * 1024);
+  }
+
+  private long stallLimitBytes() {
+    return 2 * limitBytes();
+  }
+
+  Member register(IndexWriter writer) {
+    final Member member = new Member(this, writer);
+    members.add(member);
+    return member;
+  }
+
+  private void update(long activeDelta, long flushDelta) {
+    activeBytes.addAndGet(activeDelta);
+    netBytes.addAndGet(activeDelta + flushDelta);
+    if (activeDelta + flushDelta < 0 && anyWaiting && isStalled() == false) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Return whether the given writer should flush its largest buffer, given
+   * that its active buffers and deletes currently use {@code bytes}. This is
+   * the case if all writers together exceed the budget and this writer is
+   * the one that uses the most RAM.
+   */
+  boolean shouldFlush(Member member, long bytes) {
+    if (activeBytes.get() - member.activeBytes + bytes < limitBytes()) {
+      return false;
+    }
+    return isLargest(member, bytes);
+  }
+
+  /**
+   * Return whether no other writer that is not being flushed uses more than
+   * {@code bytes} of RAM.
+   */
+  private boolean isLargest(Member member, long bytes) {
+    for (Member other : members) {
+      if (other != member && other.flushing.get() == false && other.activeBytes > bytes) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return whether indexing threads should be stalled. Like for a single
+   * writer, threads are only stalled if ongoing flushes can bring the net RAM
+   * back under the stall limit.
+   */
+  private boolean isStalled() {
+    final long limit = stallLimitBytes();
+    return netBytes.get() > limit && activeBytes.get() < limit;
+  }
+
+  /**
+   * Flush the largest buffer of the writer that uses the most RAM, if this
+   * writer is not the calling writer. This must be called without holding any
+   * lock since it flushes another writer in the calling thread.
+   */
+  private boolean flushLargestWriter(Member caller) {
+    Member largest = null;
+    for (Member member : members) {
+      if (member != caller && member.flushing.get() == false && member.activeBytes > 0
+          && (largest == null || member.activeBytes > largest.activeBytes)) {
+        largest = member;
+      }
+    }
+    if (largest == null || largest.flushing.compareAndSet(false, true) == false) {
+      return false;
+    }
+    try {
+      return largest.writer.flushNextBuffer();
+    } catch (IOException | AlreadyClosedException e) {
+      // failed flushes are tragic and close the writer that is being flushed, its
+      // own users will get notified, so don't fail the operation of the calling writer
+      final InfoStream infoStream = largest.writer.getConfig().getInfoStream();
+      if (infoStream.isEnabled("RAMB")) {
+        infoStream.message("RAMB", "failed to flush on behalf of another writer: " + e);
+      }
+      return false;
+    } finally {
+      largest.flushing.set(false);
+    }
+  }
+
+  /**
+   * Called by indexing threads of the given writer after an indexing
+   * operation: if writers exceed the budget and another writer uses the most
+   * RAM, flush its largest buffer in the calling thread.
+   */
+  void maybeFlush(Member caller) {
+    // if the calling writer is the largest one, it is up to its own flush policy
+    // to flush it, rather than flushing smaller writers into tiny segments
+    if (activeBytes.get() >= limitBytes() && isLargest(caller, caller.activeBytes) == false) {
+      flushLargestWriter(caller);
+    }
+  }
+
+  /**
+   * Called by indexing threads of the given writer before an indexing
+   * operation: block as long as writers exceed the stall limit, helping
+   * flush other writers in the meantime.
+   */
+  void waitIfStalled(Member caller) {
+    while (caller.closed == false && isStalled()) {
+      if (flushLargestWriter(caller)) {
+        continue;
+      }
+      synchronized (this) {
+        if (caller.closed == false && isStalled()) {
+          numWaiting++;
+          anyWaiting = true;
+          try {
+            // Defensive, wait for up to 1 second and check again in case we missed a notification
+            wait(1000);
+          } catch (InterruptedException e) {
+            throw new ThreadInterruptedException(e);
+          } finally {
+            anyWaiting = --numWaiting > 0;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "IndexWriterRAMBudget(ramBudgetMB=" + ramBudgetMB + ",numWriters=" + members.size()
+        + ",ramBytesUsed=" + ramBytesUsed() + ")";
+  }
+}
@@ -231,6 +231,15 @@ public abstract class LeafReader extends IndexReader {
    *  are no point fields. */
   public abstract PointValues getPointValues(String field) throws IOException;
 
+  /** Returns segment-level {@link DocValuesStatistics} for the given numeric
+   *  or sorted numeric doc values field, or null if they are not available.
+   *  This default implementation returns null. Notably, {@link FilterLeafReader}
+   *  doesn't delegate this method since it may change doc values.
+   *  @lucene.experimental */
+  public DocValuesStatistics getDocValuesStatistics(String field) throws IOException {
+    return null;
+  }
+
   /**
    * Checks consistency of this reader.
    * <p>
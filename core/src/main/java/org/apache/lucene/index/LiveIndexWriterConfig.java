@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -120,6 +121,18 @@ public class LiveIndexWriterConfig {
   /** Amount of time to wait for merges returned by MergePolicy.findFullFlushMerges(...) */
   protected volatile long maxFullFlushMergeWaitMillis;
 
+  /** {@link Executor} to resolve deletes and doc values updates against segments concurrently, or null */
+  protected Executor applyDeletesExecutor = null;
+
+  /** {@link Executor} to run group commits and to sync files concurrently, or null */
+  protected Executor commitExecutor = null;
+
+  /** Maximum number of doc values patches to write on top of a full column of doc values */
+  protected int maxDocValuesPatches = 0;
+
+  /** {@link IndexWriterRAMBudget} shared with other writers, or null */
+  protected IndexWriterRAMBudget ramBudget = null;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -481,6 +494,45 @@ public class LiveIndexWriterConfig {
     return maxFullFlushMergeWaitMillis;
   }
 
+  /**
+   * Returns the {@link Executor} that deletes and doc values updates get resolved on, or {@code null} if they get
+   * resolved by the thread that applies them.
+   *
+   * @see IndexWriterConfig#setApplyDeletesExecutor(Executor)
+   */
+  public Executor getApplyDeletesExecutor() {
+    return applyDeletesExecutor;
+  }
+
+  /**
+   * Returns the {@link Executor} that group commits run on and that files get synced on, or {@code null} if commits
+   * run in the committing thread and sync files one after the other.
+   *
+   * @see IndexWriterConfig#setCommitExecutor(Executor)
+   */
+  public Executor getCommitExecutor() {
+    return commitExecutor;
+  }
+
+  /**
+   * Returns the maximum number of patches that doc values updates may write on top of a full column of doc values.
+   *
+   * @see IndexWriterConfig#setMaxDocValuesPatches(int)
+   */
+  public int getMaxDocValuesPatches() {
+    return maxDocValuesPatches;
+  }
+
+  /**
+   * Returns the {@link IndexWriterRAMBudget} that this writer shares with other writers, or {@code null} if this
+   * writer only flushes by RAM according to its own {@link #getRAMBufferSizeMB() RAM buffer}.
+   *
+   * @see IndexWriterConfig#setRAMBudget(IndexWriterRAMBudget)
+   */
+  public IndexWriterRAMBudget getRAMBudget() {
+    return ramBudget;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -505,6 +557,10 @@ public class LiveIndexWriterConfig {
     sb.append("checkPendingFlushOnUpdate=").append(isCheckPendingFlushOnUpdate()).append("\n");
     sb.append("softDeletesField=").append(getSoftDeletesField()).append("\n");
     sb.append("maxFullFlushMergeWaitMillis=").append(getMaxFullFlushMergeWaitMillis()).append("\n");
+    sb.append("applyDeletesExecutor=").append(getApplyDeletesExecutor()).append("\n");
+    sb.append("commitExecutor=").append(getCommitExecutor()).append("\n");
+    sb.append("maxDocValuesPatches=").append(getMaxDocValuesPatches()).append("\n");
+    sb.append("ramBudget=").append(getRAMBudget()).append("\n");
     return sb.toString();
   }
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link MergePolicy} that merges small segments together when
+ * {@link IndexWriter#getReader(boolean, boolean) near-real-time readers} are
+ * opened or {@link IndexWriter#commit() commits} are made, so that the
+ * segments that have just been flushed are not exposed one by one. All other
+ * merges are delegated to the wrapped merge policy.
+ *
+ * Merges on refresh are only waited for if
+ * {@link IndexWriterConfig#setMaxFullFlushMergeWaitMillis(long)} is set to a
+ * positive value. If merges don't complete in time, the reader or commit
+ * falls back to the unmerged segments while merges complete in the
+ * background.
+ *
+ * @see MergePolicy#findFullFlushMerges(MergeTrigger, SegmentInfos, MergeContext)
+ * @lucene.experimental
+ */
+public class MergeOnRefreshMergePolicy extends FilterMergePolicy {
+
+  /** Default maximum size of segments to merge on refresh, in MB. */
+  public static final double DEFAULT_MAX_SEGMENT_SIZE_MB = 10;
+
+  private long maxSegmentSizeBytes = (long) (DEFAULT_MAX_SEGMENT_SIZE_MB * 1024 * 1024);
+
+  /** Create a new {@link MergeOnRefreshMergePolicy} that delegates regular merges to {@code in}. */
+  public MergeOnRefreshMergePolicy(MergePolicy in) {
+    super(in);
+  }
+
+  /**
+   * Set the maximum size of segments that get merged on refresh. Only
+   * segments that are smaller than this size are merged together, which
+   * bounds the time that merging takes. Default is
+   * {@value #DEFAULT_MAX_SEGMENT_SIZE_MB}.
+   */
+  public MergeOnRefreshMergePolicy setMaxSegmentSizeMB(double mb) {
+    if (mb < 0.0) {
+      throw new IllegalArgumentException("maxSegmentSizeMB must be >= 0, got " + mb);
+    }
+    mb *= 1024 * 1024;
+    maxSegmentSizeBytes = mb > Long.MAX_VALUE ? Long.MAX_VALUE : (long) mb;
+    return this;
+  }
+
+  /** Return the maximum size of segments that get merged on refresh, in MB. */
+  public double getMaxSegmentSizeMB() {
+    return maxSegmentSizeBytes / 1024. / 1024.;
+  }
+
+  @Override
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    final List<SegmentCommitInfo> smallSegments = new ArrayList<>();
+    for (SegmentCommitInfo info : segmentInfos) {
+      if (merging.contains(info) == false && liveSize(info, mergeContext) < maxSegmentSizeBytes) {
+        smallSegments.add(info);
+      }
+    }
+    if (smallSegments.size() < 2) {
+      return null;
+    }
+    final MergeSpecification spec = new MergeSpecification();
+    spec.add(new OneMerge(smallSegments));
+    return spec;
+  }
+
+  /**
+   * Size of the segment pro-rated by deletes. This doesn't delegate to the
+   * wrapped policy, which may not want to merge anything, eg.
+   * {@link NoMergePolicy}.
+   */
+  private static long liveSize(SegmentCommitInfo info, MergeContext mergeContext) throws IOException {
+    final long byteSize = info.sizeInBytes();
+    final int maxDoc = info.info.maxDoc();
+    if (maxDoc <= 0) {
+      return byteSize;
+    }
+    final double delRatio = (double) mergeContext.numDeletesToMerge(info) / maxDoc;
+    return (long) (byteSize * (1.0 - delRatio));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxSegmentSizeMB=" + getMaxSegmentSizeMB() + "," + in + ")";
+  }
+}
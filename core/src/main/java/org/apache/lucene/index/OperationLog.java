@@ -0,0 +1,611 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A write-ahead log of the operations that have been applied to an
+ * {@link IndexWriter}, which makes them durable without committing the
+ * writer. Operations are opaque bytes, eg. a serialized document and its ID,
+ * that get recorded together with the sequence number that the writer
+ * returned for them. {@link #sync()} fsyncs all operations that have been
+ * added so far, and concurrent calls are batched into a single fsync.
+ *
+ * The log is split into generations, one file per generation. Every
+ * generation has a small sync marker file that records how many bytes of the
+ * generation are known to be durable: after a crash, data past this mark may
+ * have been lost or garbled and is truncated, while invalid data before the
+ * mark is reported as a corruption.
+ *
+ * {@link #commit(IndexWriter)} rolls over to a new generation, records it in
+ * the commit user data of the writer through
+ * {@link IndexWriter#setLiveCommitData(Iterable)}, commits the writer and
+ * then deletes older generations since their operations are durable in the
+ * index. After a crash, {@link #replay(long, OperationVisitor)} replays the
+ * operations that were added since the last commit: pass it the generation
+ * returned by {@link #getGeneration(Map)} on the user data of the last
+ * commit.
+ *
+ * Operations must be added after the writer returned their sequence number,
+ * which guarantees that operations of previous generations are included in
+ * the commit that rolled over. Operations that are added concurrently with a
+ * commit may be both in the commit and in the log, so replaying operations
+ * should be idempotent, eg. {@link IndexWriter#updateDocument} rather than
+ * {@link IndexWriter#addDocument}. Sequence numbers are only comparable
+ * within a single writer session, which is why every instance of this class
+ * starts a new generation.
+ *
+ * NOTE: this class writes to a file system path rather than a
+ * {@link org.apache.lucene.store.Directory} since it needs to fsync files
+ * that are still being appended to. Only one instance may use a given path
+ * at a time.
+ *
+ * @lucene.experimental
+ */
+public final class OperationLog implements Closeable {
+
+  /** Key of the commit user data that stores the generation to replay from. */
+  public static final String GENERATION_KEY = "operation_log_generation";
+
+  /** Prefix of the file names of generations. */
+  static final String FILE_PREFIX = "oplog_";
+  /** Suffix of the file names of sync markers. */
+  static final String SYNC_MARKER_SUFFIX = ".sync";
+  private static final int MAGIC = 0x4f504c47; // "OPLG"
+  private static final int VERSION = 0;
+  static final int HEADER_LENGTH = 2 * Integer.BYTES + Long.BYTES;
+  // length, seqNo, checksum
+  static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES + Integer.BYTES;
+  // sync markers have two slots that are written alternately so that a torn write
+  // never loses the previous mark, each slot stores a length and its checksum
+  private static final int SYNC_MARKER_SLOT_LENGTH = Long.BYTES + Integer.BYTES;
+
+  /** Consumes operations that are replayed from the log. */
+  @FunctionalInterface
+  public interface OperationVisitor {
+    /** Called for every operation in the order that operations have been added. */
+    void visit(long seqNo, BytesRef operation) throws IOException;
+  }
+
+  private final Path path;
+  private final Object syncLock = new Object();
+  private final Object commitLock = new Object();
+  private final CRC32 crc = new CRC32();
+
+  // guarded by this
+  private long generation;
+  private FileChannel channel;
+  private FileChannel syncMarker;
+  private long bytesWritten;
+  private long generationStart; // value of bytesWritten when the generation started
+  private boolean closed;
+
+  // guarded by syncLock, but read without the lock to skip syncing
+  private volatile long bytesSynced;
+  // guarded by syncLock
+  private final CRC32 syncMarkerCrc = new CRC32();
+  private int syncMarkerSlot;
+
+  /**
+   * Open a log in the given directory, creating the directory if it doesn't
+   * exist. Generations that already exist in the directory are kept so that
+   * they can be replayed, except for invalid data past the sync mark of the
+   * last one which gets truncated, and operations get added to a new
+   * generation.
+   */
+  public OperationLog(Path path) throws IOException {
+    this.path = Files.createDirectories(path);
+    long maxGeneration = -1;
+    for (long gen : listGenerations()) {
+      maxGeneration = Math.max(maxGeneration, gen);
+    }
+    if (maxGeneration != -1) {
+      // the previous session may have crashed before syncing its last operations
+      truncateTornTail(maxGeneration);
+    }
+    synchronized (this) {
+      openGeneration(maxGeneration + 1);
+    }
+  }
+
+  /**
+   * Return the generation that operations are currently added to.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Return the generation that operations need to be replayed from given the
+   * user data of a commit, or {@code 0} if the commit has not been made by
+   * {@link #commit(IndexWriter)}, in which case all generations need to be
+   * replayed.
+   */
+  public static long getGeneration(Map<String,String> commitUserData) {
+    final String generation = commitUserData.get(GENERATION_KEY);
+    return generation == null ? 0 : Long.parseLong(generation);
+  }
+
+  /**
+   * Add an operation to the log. {@code seqNo} is the sequence number that
+   * the {@link IndexWriter} returned for the operation. The operation is not
+   * durable until {@link #sync()} is called.
+   */
+  public void add(long seqNo, BytesRef operation) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + operation.length);
+    buffer.putInt(operation.length);
+    buffer.putLong(seqNo);
+    buffer.put(operation.bytes, operation.offset, operation.length);
+    synchronized (this) {
+      ensureOpen();
+      crc.reset();
+      crc.update(buffer.array(), Integer.BYTES, Long.BYTES + operation.length);
+      buffer.putInt((int) crc.getValue());
+      buffer.flip();
+      writeFully(channel, buffer);
+      bytesWritten += buffer.limit();
+    }
+  }
+
+  /**
+   * Make all operations that have been added so far durable. Calls that
+   * happen while another thread is syncing wait for it and only sync again if
+   * some of their operations have not been synced already, so that
+   * concurrent indexing threads share fsyncs.
+   */
+  public void sync() throws IOException {
+    final long target;
+    synchronized (this) {
+      ensureOpen();
+      target = bytesWritten;
+    }
+    if (bytesSynced >= target) {
+      return;
+    }
+    synchronized (syncLock) {
+      if (bytesSynced >= target) {
+        // another thread synced our operations while we were waiting
+        return;
+      }
+      final FileChannel channel;
+      final FileChannel syncMarker;
+      final long toSync;
+      final long generationStart;
+      synchronized (this) {
+        ensureOpen();
+        channel = this.channel;
+        syncMarker = this.syncMarker;
+        toSync = bytesWritten;
+        generationStart = this.generationStart;
+      }
+      channel.force(false);
+      writeSyncMark(syncMarker, HEADER_LENGTH + toSync - generationStart);
+      bytesSynced = toSync;
+    }
+  }
+
+  /**
+   * Sync operations of the current generation and start a new generation.
+   * Return the new generation.
+   */
+  public long rollGeneration() throws IOException {
+    synchronized (syncLock) {
+      final FileChannel previous;
+      final FileChannel previousSyncMarker;
+      final long toSync;
+      final long previousStart;
+      final long newGeneration;
+      synchronized (this) {
+        ensureOpen();
+        previous = channel;
+        previousSyncMarker = syncMarker;
+        toSync = bytesWritten;
+        previousStart = generationStart;
+        newGeneration = generation + 1;
+        openGeneration(newGeneration);
+      }
+      closeGeneration(previous, previousSyncMarker, HEADER_LENGTH + toSync - previousStart);
+      bytesSynced = toSync;
+      return newGeneration;
+    }
+  }
+
+  /**
+   * Delete generations that are less than {@code generation}.
+   */
+  public void deleteGenerationsBefore(long generation) throws IOException {
+    synchronized (this) {
+      ensureOpen();
+      if (generation > this.generation) {
+        throw new IllegalArgumentException("Cannot delete the current generation " + this.generation
+            + ", got generation " + generation);
+      }
+    }
+    final List<Path> toDelete = new ArrayList<>();
+    for (long gen : listGenerations()) {
+      if (gen < generation) {
+        toDelete.add(path.resolve(fileName(gen)));
+        toDelete.add(path.resolve(syncMarkerFileName(gen)));
+      }
+    }
+    IOUtils.deleteFilesIfExist(toDelete);
+  }
+
+  /**
+   * Commit {@code writer} and truncate the log: roll over to a new
+   * generation, record it in the commit user data of the writer, commit and
+   * delete generations whose operations are now durable in the index. Other
+   * entries of the live commit data of the writer are preserved. Return the
+   * sequence number of the commit.
+   *
+   * @see IndexWriter#commit()
+   */
+  public long commit(IndexWriter writer) throws IOException {
+    synchronized (commitLock) {
+      // all operations of previous generations have been applied to the writer
+      final long generation = rollGeneration();
+      final Map<String,String> commitUserData = new HashMap<>();
+      final Iterable<Map.Entry<String,String>> liveCommitData = writer.getLiveCommitData();
+      if (liveCommitData != null) {
+        for (Map.Entry<String,String> entry : liveCommitData) {
+          commitUserData.put(entry.getKey(), entry.getValue());
+        }
+      }
+      commitUserData.put(GENERATION_KEY, Long.toString(generation));
+      writer.setLiveCommitData(commitUserData.entrySet());
+      final long seqNo = writer.commit();
+      deleteGenerationsBefore(generation);
+      return seqNo;
+    }
+  }
+
+  /**
+   * Replay operations of generations that are greater than or equal to
+   * {@code fromGeneration} and less than the current generation, in the
+   * order that they have been added. This is typically called right after
+   * opening the log, with the generation of the last commit, in order to
+   * re-apply operations that were lost by a crash.
+   *
+   * Corruptions trigger a {@link CorruptIndexException}. A partially written
+   * operation at the end of the last generation, because the process crashed
+   * before it got synced, is not a corruption: it is truncated when the log
+   * gets opened.
+   */
+  public void replay(long fromGeneration, OperationVisitor visitor) throws IOException {
+    final long currentGeneration = getGeneration();
+    final List<Long> generations = new ArrayList<>();
+    for (long gen : listGenerations()) {
+      if (gen >= fromGeneration && gen < currentGeneration) {
+        generations.add(gen);
+      }
+    }
+    generations.sort(null);
+    for (long gen : generations) {
+      read(path.resolve(fileName(gen)), gen, visitor, -1);
+    }
+  }
+
+  /**
+   * Truncate the invalid data that the given generation may end with if the
+   * process crashed before it got synced, so that the generation remains
+   * readable once newer generations get added. A generation whose header
+   * has not been synced and is invalid is deleted.
+   */
+  private void truncateTornTail(long gen) throws IOException {
+    final Path file = path.resolve(fileName(gen));
+    final long length = read(file, gen, (seqNo, operation) -> {}, readSyncMark(gen));
+    if (length == -1) {
+      // crashed right after creating the generation
+      IOUtils.deleteFilesIfExist(file, path.resolve(syncMarkerFileName(gen)));
+      IOUtils.fsync(path, true);
+    } else if (length < Files.size(file)) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(length);
+        channel.force(true);
+      }
+    }
+  }
+
+  /**
+   * Read operations of the given generation and return the number of bytes
+   * of the file up to the end of the last valid operation. If
+   * {@code syncedLength} is not negative, reading stops at the first invalid
+   * operation that starts at or after {@code syncedLength}, since data that
+   * has not been synced may have been lost or garbled by a crash, and
+   * {@code -1} is returned if nothing has been synced and the header is
+   * invalid. Any other invalid data triggers a {@link CorruptIndexException}.
+   */
+  private static long read(Path file, long gen, OperationVisitor visitor, long syncedLength) throws IOException {
+    final CRC32 crc = new CRC32();
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = in.size();
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      try {
+        readFully(in, header);
+      } catch (EOFException e) {
+        if (syncedLength == 0) {
+          return -1;
+        }
+        throw new CorruptIndexException("truncated header", file.toString(), e);
+      }
+      header.flip();
+      final int magic = header.getInt();
+      final int version = header.getInt();
+      final long headerGeneration = header.getLong();
+      if (magic != MAGIC || version != VERSION || headerGeneration != gen) {
+        if (syncedLength == 0) {
+          return -1;
+        }
+        throw new CorruptIndexException("invalid header: magic=" + magic + ", version=" + version
+            + ", generation=" + headerGeneration, file.toString());
+      }
+      final ByteBuffer recordHeader = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+      final ByteBuffer checksum = ByteBuffer.allocate(Integer.BYTES);
+      ByteBuffer operation = ByteBuffer.allocate(0);
+      while (true) {
+        final long position = in.position();
+        if (position == size) {
+          return position;
+        }
+        final boolean torn = syncedLength >= 0 && position >= syncedLength;
+        if (size - position < RECORD_OVERHEAD) {
+          if (torn) {
+            return position;
+          }
+          throw new CorruptIndexException("truncated operation at position " + position, file.toString());
+        }
+        recordHeader.clear();
+        readFully(in, recordHeader);
+        recordHeader.flip();
+        final int length = recordHeader.getInt();
+        final long seqNo = recordHeader.getLong();
+        if (length < 0) {
+          if (torn) {
+            return position;
+          }
+          throw new CorruptIndexException("invalid length " + length + " for operation at position " + position,
+              file.toString());
+        }
+        final long end = position + RECORD_OVERHEAD + length;
+        if (end > size) {
+          if (torn) {
+            return position;
+          }
+          throw new CorruptIndexException("truncated operation at position " + position, file.toString());
+        }
+        if (operation.capacity() < length) {
+          operation = ByteBuffer.allocate(length);
+        }
+        operation.clear().limit(length);
+        readFully(in, operation);
+        checksum.clear();
+        readFully(in, checksum);
+        checksum.flip();
+        crc.reset();
+        crc.update(recordHeader.array(), Integer.BYTES, Long.BYTES);
+        crc.update(operation.array(), 0, length);
+        if (checksum.getInt() != (int) crc.getValue()) {
+          if (torn) {
+            return position;
+          }
+          throw new CorruptIndexException("checksum mismatch for operation at position " + position, file.toString());
+        }
+        visitor.visit(seqNo, new BytesRef(operation.array(), 0, length));
+      }
+    }
+  }
+
+  private List<Long> listGenerations() throws IOException {
+    final List<Long> generations = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, FILE_PREFIX + "*")) {
+      for (Path file : stream) {
+        final String fileName = file.getFileName().toString();
+        if (fileName.endsWith(SYNC_MARKER_SUFFIX)) {
+          continue;
+        }
+        final String suffix = fileName.substring(FILE_PREFIX.length());
+        try {
+          generations.add(Long.parseLong(suffix, Character.MAX_RADIX));
+        } catch (NumberFormatException e) {
+          // not one of our files
+        }
+      }
+    }
+    return generations;
+  }
+
+  private static String fileName(long generation) {
+    return FILE_PREFIX + Long.toString(generation, Character.MAX_RADIX);
+  }
+
+  private static String syncMarkerFileName(long generation) {
+    return fileName(generation) + SYNC_MARKER_SUFFIX;
+  }
+
+  /** Create files of a new generation and make it the current one. */
+  private void openGeneration(long generation) throws IOException {
+    assert Thread.holdsLock(this);
+    final FileChannel syncMarker = FileChannel.open(path.resolve(syncMarkerFileName(generation)),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    boolean success = false;
+    try {
+      this.channel = createGeneration(generation);
+      this.syncMarker = syncMarker;
+      this.generation = generation;
+      this.generationStart = bytesWritten;
+      success = true;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(syncMarker);
+      }
+    }
+  }
+
+  /** Sync a generation, record that it is fully synced and close it. */
+  private void closeGeneration(FileChannel channel, FileChannel syncMarker, long length) throws IOException {
+    assert Thread.holdsLock(syncLock);
+    try {
+      channel.force(false);
+      writeSyncMark(syncMarker, length);
+      syncMarker.force(false);
+    } finally {
+      IOUtils.close(channel, syncMarker);
+    }
+  }
+
+  /**
+   * Record that the first {@code length} bytes of a generation are durable.
+   * This must be called after these bytes have been synced. The mark itself
+   * doesn't need to be synced: if it gets lost, the previous mark is used,
+   * which only makes recovery treat more data as possibly torn.
+   */
+  private void writeSyncMark(FileChannel syncMarker, long length) throws IOException {
+    assert Thread.holdsLock(syncLock);
+    final ByteBuffer slot = ByteBuffer.allocate(SYNC_MARKER_SLOT_LENGTH);
+    slot.putLong(length);
+    syncMarkerCrc.reset();
+    syncMarkerCrc.update(slot.array(), 0, Long.BYTES);
+    slot.putInt((int) syncMarkerCrc.getValue());
+    slot.flip();
+    long position = (long) syncMarkerSlot * SYNC_MARKER_SLOT_LENGTH;
+    while (slot.hasRemaining()) {
+      position += syncMarker.write(slot, position);
+    }
+    syncMarkerSlot ^= 1;
+  }
+
+  /**
+   * Return the number of bytes of the given generation that are known to be
+   * durable, or {@code 0} if no sync has been recorded.
+   */
+  private long readSyncMark(long generation) throws IOException {
+    final Path file = path.resolve(syncMarkerFileName(generation));
+    if (Files.exists(file) == false) {
+      return 0;
+    }
+    final CRC32 crc = new CRC32();
+    long syncedLength = 0;
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      final ByteBuffer slot = ByteBuffer.allocate(SYNC_MARKER_SLOT_LENGTH);
+      for (int i = 0; i < 2; ++i) {
+        slot.clear();
+        long position = (long) i * SYNC_MARKER_SLOT_LENGTH;
+        while (slot.hasRemaining()) {
+          final int read = in.read(slot, position);
+          if (read == -1) {
+            break;
+          }
+          position += read;
+        }
+        if (slot.hasRemaining()) {
+          continue;
+        }
+        slot.flip();
+        final long length = slot.getLong();
+        crc.reset();
+        crc.update(slot.array(), 0, Long.BYTES);
+        // slots that don't match their checksum are torn writes
+        if (slot.getInt() == (int) crc.getValue()) {
+          syncedLength = Math.max(syncedLength, length);
+        }
+      }
+    }
+    return syncedLength;
+  }
+
+  private FileChannel createGeneration(long generation) throws IOException {
+    final FileChannel channel = FileChannel.open(path.resolve(fileName(generation)),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    boolean success = false;
+    try {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putLong(generation);
+      header.flip();
+      writeFully(channel, header);
+      // make sure that the file survives a crash
+      IOUtils.fsync(path, true);
+      success = true;
+      return channel;
+    } finally {
+      if (success == false) {
+        IOUtils.closeWhileHandlingException(channel);
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) == -1) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  private void ensureOpen() {
+    assert Thread.holdsLock(this);
+    if (closed) {
+      throw new AlreadyClosedException("this OperationLog is closed");
+    }
+  }
+
+  /** Sync pending operations and close the log. */
+  @Override
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+      }
+      closeGeneration(channel, syncMarker, HEADER_LENGTH + bytesWritten - generationStart);
+      bytesSynced = bytesWritten;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(path=" + path + ",generation=" + getGeneration() + ")";
+  }
+}
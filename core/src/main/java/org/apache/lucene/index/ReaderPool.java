@@ -61,6 +61,7 @@ final class ReaderPool implements Closeable {
   private final InfoStream infoStream;
   private final SegmentInfos segmentInfos;
   private final String softDeletesField;
+  private final int maxDocValuesPatches;
   // This is a "write once" variable (like the organic dye
   // on a DVD-R that may or may not be heated by a laser and
   // then cooled to permanently record the event): it's
@@ -79,6 +80,12 @@ final class ReaderPool implements Closeable {
   ReaderPool(Directory directory, Directory originalDirectory, SegmentInfos segmentInfos,
              FieldInfos.FieldNumbers fieldNumbers, LongSupplier completedDelGenSupplier, InfoStream infoStream,
              String softDeletesField, StandardDirectoryReader reader) throws IOException {
+    this(directory, originalDirectory, segmentInfos, fieldNumbers, completedDelGenSupplier, infoStream, softDeletesField, 0, reader);
+  }
+
+  ReaderPool(Directory directory, Directory originalDirectory, SegmentInfos segmentInfos,
+             FieldInfos.FieldNumbers fieldNumbers, LongSupplier completedDelGenSupplier, InfoStream infoStream,
+             String softDeletesField, int maxDocValuesPatches, StandardDirectoryReader reader) throws IOException {
     this.directory = directory;
     this.originalDirectory = originalDirectory;
     this.segmentInfos = segmentInfos;
@@ -86,6 +93,7 @@ final class ReaderPool implements Closeable {
     this.completedDelGenSupplier = completedDelGenSupplier;
     this.infoStream = infoStream;
     this.softDeletesField = softDeletesField;
+    this.maxDocValuesPatches = maxDocValuesPatches;
     if (reader != null) {
       // Pre-enroll all segment readers into the reader pool; this is necessary so
       // any in-memory NRT live docs are correctly carried over, and so NRT readers
@@ -102,7 +110,7 @@ final class ReaderPool implements Closeable {
         // 并且将它作为readerMap的key，用来区分不同的段。
         // 另外readerMap的value，即ReadersAndUpdates对象，它同样描述了段中的数据，
         readerMap.put(newReader.getOriginalSegmentInfo(), new ReadersAndUpdates(segmentInfos.getIndexCreatedVersionMajor(),
-            newReader, newPendingDeletes(newReader, newReader.getOriginalSegmentInfo())));
+            newReader, newPendingDeletes(newReader, newReader.getOriginalSegmentInfo()), maxDocValuesPatches));
       }
     }
   }
@@ -383,7 +391,7 @@ final class ReaderPool implements Closeable {
       if (create == false) {
         return null;
       }
-      rld = new ReadersAndUpdates(segmentInfos.getIndexCreatedVersionMajor(), info, newPendingDeletes(info));
+      rld = new ReadersAndUpdates(segmentInfos.getIndexCreatedVersionMajor(), info, newPendingDeletes(info), maxDocValuesPatches);
       // Steal initial reference:
       readerMap.put(info, rld);
     } else {
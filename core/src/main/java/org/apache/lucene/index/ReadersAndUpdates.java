@@ -19,9 +19,11 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -36,6 +38,7 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.FieldInfosFormat;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext;
@@ -67,6 +70,9 @@ final class ReadersAndUpdates {
   // the major version this index was created with
   private final int indexCreatedVersionMajor;
 
+  // Maximum number of patches that may be written on top of a full column of doc values
+  private final int maxDocValuesPatches;
+
   // https://www.amazingkoala.com.cn/Lucene/Index/2020/1209/184.html
   // isMerging这个布尔值相用来描述一个段是否正在参与段的合并操作。如果一个段正在合并中，并且该段中的有些文档满足DocValues的更新条件
   // （更新方式见文章文档的增删改（上）），那么更新信息将被暂存到图3红框标注的mergingNumericUpdates中，
@@ -93,17 +99,18 @@ final class ReadersAndUpdates {
 
   final AtomicLong ramBytesUsed = new AtomicLong();
 
-  ReadersAndUpdates(int indexCreatedVersionMajor, SegmentCommitInfo info, PendingDeletes pendingDeletes) {
+  ReadersAndUpdates(int indexCreatedVersionMajor, SegmentCommitInfo info, PendingDeletes pendingDeletes, int maxDocValuesPatches) {
     this.info = info;
     this.pendingDeletes = pendingDeletes;
     this.indexCreatedVersionMajor = indexCreatedVersionMajor;
+    this.maxDocValuesPatches = maxDocValuesPatches;
   }
 
   /** Init from a previously opened SegmentReader.
    *
    * <p>NOTE: steals incoming ref from reader. */
-  ReadersAndUpdates(int indexCreatedVersionMajor, SegmentReader reader, PendingDeletes pendingDeletes) throws IOException {
-    this(indexCreatedVersionMajor, reader.getOriginalSegmentInfo(), pendingDeletes);
+  ReadersAndUpdates(int indexCreatedVersionMajor, SegmentReader reader, PendingDeletes pendingDeletes, int maxDocValuesPatches) throws IOException {
+    this(indexCreatedVersionMajor, reader.getOriginalSegmentInfo(), pendingDeletes, maxDocValuesPatches);
     this.reader = reader;
     pendingDeletes.onNewReader(reader, info);
   }
@@ -308,109 +315,259 @@ final class ReadersAndUpdates {
                                                info,
                                                bytes/1024./1024.));
       }
-      final long nextDocValuesGen = info.getNextDocValuesGen();
-      final String segmentSuffix = Long.toString(nextDocValuesGen, Character.MAX_RADIX);
       final IOContext updatesContext = new IOContext(new FlushInfo(info.info.maxDoc(), bytes));
       final FieldInfo fieldInfo = infos.fieldInfo(field);
       assert fieldInfo != null;
-      fieldInfo.setDocValuesGen(nextDocValuesGen);
-      final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
-      // separately also track which files were created for this gen
-      final TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(dir);
-      final SegmentWriteState state = new SegmentWriteState(null, trackingDir, info.info, fieldInfos, null, updatesContext, segmentSuffix);
-      try (final DocValuesConsumer fieldsConsumer = dvFormat.fieldsConsumer(state)) {
-        Function<FieldInfo, DocValuesFieldUpdates.Iterator> updateSupplier = (info) -> {
-          if (info != fieldInfo) {
-            throw new IllegalArgumentException("expected field info for field: " + fieldInfo.name + " but got: " + info.name);
-          }
-          DocValuesFieldUpdates.Iterator[] subs = new DocValuesFieldUpdates.Iterator[updatesToApply.size()];
-          for(int i=0;i<subs.length;i++) {
-            subs[i] = updatesToApply.get(i).iterator();
-          }
-          return  DocValuesFieldUpdates.mergedIterator(subs);
-        };
-        pendingDeletes.onDocValuesUpdate(fieldInfo, updateSupplier.apply(fieldInfo));
-        if (type == DocValuesType.BINARY) {
-          fieldsConsumer.addBinaryField(fieldInfo, new EmptyDocValuesProducer() {
-            @Override
-            public BinaryDocValues getBinary(FieldInfo fieldInfoIn) throws IOException {
-              DocValuesFieldUpdates.Iterator iterator = updateSupplier.apply(fieldInfo);
-              final MergedDocValues<BinaryDocValues> mergedDocValues = new MergedDocValues<>(
-                  reader.getBinaryDocValues(field),
-                  DocValuesFieldUpdates.Iterator.asBinaryDocValues(iterator), iterator);
-              // Merge sort of the original doc values with updated doc values:
-              return new BinaryDocValues() {
-                @Override
-                public BytesRef binaryValue() throws IOException {
-                  return mergedDocValues.currentValuesSupplier.binaryValue();
-                }
-                @Override
-                public boolean advanceExact(int target) {
-                  return mergedDocValues.advanceExact(target);
-                }
-                @Override
-                public int docID() {
-                  return mergedDocValues.docID();
-                }
-                @Override
-                public int nextDoc() throws IOException {
-                  return mergedDocValues.nextDoc();
-                }
+      long[] patchedGens = patchedDocValuesGens(fieldInfo, reader, updatesToApply);
+      final int patchDocCount = patchedGens == null ? -1 : countDocs(updatesToApply);
+      Function<FieldInfo, DocValuesFieldUpdates.Iterator> updateSupplier = (info) -> {
+        if (info != fieldInfo) {
+          throw new IllegalArgumentException("expected field info for field: " + fieldInfo.name + " but got: " + info.name);
+        }
+        DocValuesFieldUpdates.Iterator[] subs = new DocValuesFieldUpdates.Iterator[updatesToApply.size()];
+        for(int i=0;i<subs.length;i++) {
+          subs[i] = updatesToApply.get(i).iterator();
+        }
+        return  DocValuesFieldUpdates.mergedIterator(subs);
+      };
+      while (true) {
+        final long nextDocValuesGen = info.getNextDocValuesGen();
+        final String segmentSuffix = Long.toString(nextDocValuesGen, Character.MAX_RADIX);
+        final Map<String,String> previousAttributes = new HashMap<>(fieldInfo.attributes());
+        fieldInfo.setDocValuesGen(nextDocValuesGen);
+        final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
+        // separately also track which files were created for this gen
+        final TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(dir);
+        final SegmentWriteState state = new SegmentWriteState(null, trackingDir, info.info, fieldInfos, null, updatesContext, segmentSuffix);
+        try (final DocValuesConsumer fieldsConsumer = dvFormat.fieldsConsumer(state)) {
+          if (patchedGens != null) {
+            // only write the updated documents, previous generations get applied below at read time
+            if (type == DocValuesType.BINARY) {
+              fieldsConsumer.addBinaryField(fieldInfo, new EmptyDocValuesProducer() {
                 @Override
-                public int advance(int target) {
-                  return mergedDocValues.advance(target);
+                public BinaryDocValues getBinary(FieldInfo fieldInfoIn) {
+                  final DocValuesFieldUpdates.Iterator iterator = updateSupplier.apply(fieldInfo);
+                  return new BinaryDocValues() {
+                    @Override
+                    public BytesRef binaryValue() {
+                      return iterator.binaryValue();
+                    }
+                    @Override
+                    public boolean advanceExact(int target) {
+                      throw new UnsupportedOperationException();
+                    }
+                    @Override
+                    public int docID() {
+                      return iterator.docID();
+                    }
+                    @Override
+                    public int nextDoc() {
+                      return iterator.nextDoc();
+                    }
+                    @Override
+                    public int advance(int target) {
+                      throw new UnsupportedOperationException();
+                    }
+                    @Override
+                    public long cost() {
+                      return patchDocCount;
+                    }
+                  };
                 }
+              });
+            } else {
+              fieldsConsumer.addNumericField(fieldInfo, new EmptyDocValuesProducer() {
                 @Override
-                public long cost() {
-                  return mergedDocValues.cost();
+                public NumericDocValues getNumeric(FieldInfo fieldInfoIn) {
+                  final DocValuesFieldUpdates.Iterator iterator = updateSupplier.apply(fieldInfo);
+                  return new NumericDocValues() {
+                    @Override
+                    public long longValue() {
+                      return iterator.longValue();
+                    }
+                    @Override
+                    public boolean advanceExact(int target) {
+                      throw new UnsupportedOperationException();
+                    }
+                    @Override
+                    public int docID() {
+                      return iterator.docID();
+                    }
+                    @Override
+                    public int nextDoc() {
+                      return iterator.nextDoc();
+                    }
+                    @Override
+                    public int advance(int target) {
+                      throw new UnsupportedOperationException();
+                    }
+                    @Override
+                    public long cost() {
+                      return patchDocCount;
+                    }
+                  };
                 }
-              };
+              });
             }
-          });
+          } else if (type == DocValuesType.BINARY) {
+            fieldsConsumer.addBinaryField(fieldInfo, new EmptyDocValuesProducer() {
+              @Override
+              public BinaryDocValues getBinary(FieldInfo fieldInfoIn) throws IOException {
+                DocValuesFieldUpdates.Iterator iterator = updateSupplier.apply(fieldInfo);
+                final MergedDocValues<BinaryDocValues> mergedDocValues = new MergedDocValues<>(
+                    reader.getBinaryDocValues(field),
+                    DocValuesFieldUpdates.Iterator.asBinaryDocValues(iterator), iterator);
+                // Merge sort of the original doc values with updated doc values:
+                return new BinaryDocValues() {
+                  @Override
+                  public BytesRef binaryValue() throws IOException {
+                    return mergedDocValues.currentValuesSupplier.binaryValue();
+                  }
+                  @Override
+                  public boolean advanceExact(int target) {
+                    return mergedDocValues.advanceExact(target);
+                  }
+                  @Override
+                  public int docID() {
+                    return mergedDocValues.docID();
+                  }
+                  @Override
+                  public int nextDoc() throws IOException {
+                    return mergedDocValues.nextDoc();
+                  }
+                  @Override
+                  public int advance(int target) {
+                    return mergedDocValues.advance(target);
+                  }
+                  @Override
+                  public long cost() {
+                    return mergedDocValues.cost();
+                  }
+                };
+              }
+            });
+          } else {
+            // write the numeric updates to a new gen'd docvalues file
+            fieldsConsumer.addNumericField(fieldInfo, new EmptyDocValuesProducer() {
+              @Override
+              public NumericDocValues getNumeric(FieldInfo fieldInfoIn) throws IOException {
+                DocValuesFieldUpdates.Iterator iterator = updateSupplier.apply(fieldInfo);
+                final MergedDocValues<NumericDocValues> mergedDocValues = new MergedDocValues<>(
+                    reader.getNumericDocValues(field),
+                    DocValuesFieldUpdates.Iterator.asNumericDocValues(iterator), iterator);
+                // Merge sort of the original doc values with updated doc values:
+                return new NumericDocValues() {
+                  @Override
+                  public long longValue() throws IOException {
+                    return mergedDocValues.currentValuesSupplier.longValue();
+                  }
+                  @Override
+                  public boolean advanceExact(int target) {
+                    return mergedDocValues.advanceExact(target);
+                  }
+                  @Override
+                  public int docID() {
+                    return mergedDocValues.docID();
+                  }
+                  @Override
+                  public int nextDoc() throws IOException {
+                    return mergedDocValues.nextDoc();
+                  }
+                  @Override
+                  public int advance(int target) {
+                    return mergedDocValues.advance(target);
+                  }
+                  @Override
+                  public long cost() {
+                    return mergedDocValues.cost();
+                  }
+                };
+              }
+            });
+          }
+        }
+        if (patchedGens != null && DocValuesPatches.sameFormatAttributes(previousAttributes, fieldInfo.attributes()) == false) {
+          // the format doesn't write the field like it did for previous generations anymore, eg. because its
+          // configuration changed, so they might not be readable anymore: rewrite the full column instead
+          IOUtils.deleteFilesIgnoringExceptions(dir, trackingDir.getCreatedFiles());
+          info.advanceNextWriteDocValuesGen();
+          patchedGens = null;
+          continue;
+        }
+        pendingDeletes.onDocValuesUpdate(fieldInfo, updateSupplier.apply(fieldInfo));
+        info.advanceDocValuesGen();
+        assert !fieldFiles.containsKey(fieldInfo.number);
+        if (patchedGens != null) {
+          DocValuesPatches.write(info.info, fieldInfo, patchedGens);
+          // statistics that the format recorded only describe the patch
+          DocValuesStatistics.invalidate(fieldInfo);
+          // the patch needs the files of the generations it applies to
+          final Set<String> files = new HashSet<>(trackingDir.getCreatedFiles());
+          final Set<String> previousFiles = info.getDocValuesUpdatesFiles().get(fieldInfo.number);
+          if (previousFiles != null) {
+            files.addAll(previousFiles);
+          }
+          fieldFiles.put(fieldInfo.number, files);
         } else {
-          // write the numeric updates to a new gen'd docvalues file
-          fieldsConsumer.addNumericField(fieldInfo, new EmptyDocValuesProducer() {
-            @Override
-            public NumericDocValues getNumeric(FieldInfo fieldInfoIn) throws IOException {
-              DocValuesFieldUpdates.Iterator iterator = updateSupplier.apply(fieldInfo);
-              final MergedDocValues<NumericDocValues> mergedDocValues = new MergedDocValues<>(
-                  reader.getNumericDocValues(field),
-                  DocValuesFieldUpdates.Iterator.asNumericDocValues(iterator), iterator);
-              // Merge sort of the original doc values with updated doc values:
-              return new NumericDocValues() {
-                @Override
-                public long longValue() throws IOException {
-                  return mergedDocValues.currentValuesSupplier.longValue();
-                }
-                @Override
-                public boolean advanceExact(int target) {
-                  return mergedDocValues.advanceExact(target);
-                }
-                @Override
-                public int docID() {
-                  return mergedDocValues.docID();
-                }
-                @Override
-                public int nextDoc() throws IOException {
-                  return mergedDocValues.nextDoc();
-                }
-                @Override
-                public int advance(int target) {
-                  return mergedDocValues.advance(target);
-                }
-                @Override
-                public long cost() {
-                  return mergedDocValues.cost();
-                }
-              };
-            }
-          });
+          fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
         }
+        break;
+      }
+    }
+  }
+
+  /**
+   * Return the generations that a patch of the given field would apply to,
+   * oldest first, or {@code null} if the full column of doc values needs to
+   * be rewritten. This must be called before the generation of the field is
+   * advanced.
+   */
+  private long[] patchedDocValuesGens(FieldInfo fieldInfo, SegmentReader reader, List<DocValuesFieldUpdates> updates) {
+    if (maxDocValuesPatches == 0) {
+      return null;
+    }
+    final FieldInfo current = reader.getFieldInfos().fieldInfo(fieldInfo.name);
+    if (current == null || current.getDocValuesType() != fieldInfo.getDocValuesType()) {
+      // there are no values to patch yet
+      return null;
+    }
+    assert current.getDocValuesGen() == fieldInfo.getDocValuesGen();
+    final long[] previousGens = DocValuesPatches.read(info.info, fieldInfo);
+    final long[] gens;
+    if (previousGens == null) {
+      gens = new long[] { fieldInfo.getDocValuesGen() };
+    } else if (previousGens.length >= maxDocValuesPatches) {
+      // compact
+      return null;
+    } else {
+      gens = Arrays.copyOf(previousGens, previousGens.length + 1);
+      gens[previousGens.length] = fieldInfo.getDocValuesGen();
+    }
+    DocValuesFieldUpdates.Iterator[] subs = new DocValuesFieldUpdates.Iterator[updates.size()];
+    for (int i = 0; i < subs.length; i++) {
+      subs[i] = updates.get(i).iterator();
+    }
+    DocValuesFieldUpdates.Iterator iterator = DocValuesFieldUpdates.mergedIterator(subs);
+    for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+      if (iterator.hasValue() == false) {
+        // patches can't remove values from previous generations
+        return null;
       }
-      info.advanceDocValuesGen();
-      assert !fieldFiles.containsKey(fieldInfo.number);
-      fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
     }
+    return gens;
+  }
+
+  private static int countDocs(List<DocValuesFieldUpdates> updates) {
+    DocValuesFieldUpdates.Iterator[] subs = new DocValuesFieldUpdates.Iterator[updates.size()];
+    for (int i = 0; i < subs.length; i++) {
+      subs[i] = updates.get(i).iterator();
+    }
+    DocValuesFieldUpdates.Iterator iterator = DocValuesFieldUpdates.mergedIterator(subs);
+    int count = 0;
+    while (iterator.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+      count++;
+    }
+    return count;
   }
 
   /**
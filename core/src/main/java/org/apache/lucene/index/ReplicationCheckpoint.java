@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.store.BufferedChecksumIndexInput;
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersIndexInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.Directory;
+
+/**
+ * A point-in-time view of an index that a {@link ReplicationSource} publishes
+ * so that replicas can open it through a {@link ReplicationTarget}: the
+ * serialized {@link SegmentInfos} together with the name, length and checksum
+ * of every file that it references. Checkpoints can be sent over the wire
+ * with {@link #writeTo(DataOutput)} and {@link #readFrom(DataInput)}.
+ *
+ * @lucene.experimental
+ */
+public final class ReplicationCheckpoint {
+
+  /** Length and checksum of a file of a checkpoint. */
+  public static final class FileMetaData {
+
+    private final long length;
+    private final long checksum;
+
+    /** Sole constructor. */
+    public FileMetaData(long length, long checksum) {
+      this.length = length;
+      this.checksum = checksum;
+    }
+
+    /** Return the length of the file in bytes. */
+    public long getLength() {
+      return length;
+    }
+
+    /** Return the checksum that is recorded in the footer of the file. */
+    public long getChecksum() {
+      return checksum;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != getClass()) {
+        return false;
+      }
+      FileMetaData that = (FileMetaData) obj;
+      return length == that.length && checksum == that.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(length) + Long.hashCode(checksum);
+    }
+
+    @Override
+    public String toString() {
+      return "FileMetaData(length=" + length + ",checksum=" + checksum + ")";
+    }
+  }
+
+  private static final int VERSION_START = 0;
+  private static final int VERSION_CURRENT = VERSION_START;
+
+  private final long version;
+  private final long generation;
+  private final byte[] infosBytes;
+  private final Map<String,FileMetaData> files;
+  // only set on the primary, the infos whose files are protected from deletion
+  final SegmentInfos infos;
+
+  ReplicationCheckpoint(long version, long generation, byte[] infosBytes, Map<String,FileMetaData> files, SegmentInfos infos) {
+    this.version = version;
+    this.generation = generation;
+    this.infosBytes = infosBytes;
+    this.files = Collections.unmodifiableMap(new TreeMap<>(files));
+    this.infos = infos;
+  }
+
+  /** Return the {@link SegmentInfos#getVersion() version} of the segment infos of this checkpoint. */
+  public long getVersion() {
+    return version;
+  }
+
+  /** Return the files that the segment infos of this checkpoint reference, by name. */
+  public Map<String,FileMetaData> getFiles() {
+    return files;
+  }
+
+  /** Read the segment infos of this checkpoint, whose files must be in {@code directory}. */
+  SegmentInfos readSegmentInfos(Directory directory) throws IOException {
+    ByteBuffersDataInput in = new ByteBuffersDataInput(Collections.singletonList(ByteBuffer.wrap(infosBytes)));
+    return SegmentInfos.readCommit(directory,
+        new BufferedChecksumIndexInput(new ByteBuffersIndexInput(in, "ReplicationCheckpoint(version=" + version + ")")),
+        generation);
+  }
+
+  /** Serialize this checkpoint. */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeVInt(VERSION_CURRENT);
+    out.writeVLong(version);
+    out.writeZLong(generation);
+    out.writeVInt(infosBytes.length);
+    out.writeBytes(infosBytes, infosBytes.length);
+    out.writeVInt(files.size());
+    for (Map.Entry<String,FileMetaData> entry : files.entrySet()) {
+      out.writeString(entry.getKey());
+      out.writeVLong(entry.getValue().getLength());
+      out.writeLong(entry.getValue().getChecksum());
+    }
+  }
+
+  /** Read a checkpoint that has been serialized with {@link #writeTo(DataOutput)}. */
+  public static ReplicationCheckpoint readFrom(DataInput in) throws IOException {
+    final int format = in.readVInt();
+    if (format < VERSION_START || format > VERSION_CURRENT) {
+      throw new IllegalArgumentException("Unsupported checkpoint format " + format + ", expected a format in ["
+          + VERSION_START + ", " + VERSION_CURRENT + "]");
+    }
+    final long version = in.readVLong();
+    final long generation = in.readZLong();
+    final byte[] infosBytes = new byte[in.readVInt()];
+    in.readBytes(infosBytes, 0, infosBytes.length);
+    final int numFiles = in.readVInt();
+    final Map<String,FileMetaData> files = new TreeMap<>();
+    for (int i = 0; i < numFiles; ++i) {
+      final String name = in.readString();
+      final long length = in.readVLong();
+      final long checksum = in.readLong();
+      files.put(name, new FileMetaData(length, checksum));
+    }
+    return new ReplicationCheckpoint(version, generation, infosBytes, files, null);
+  }
+
+  @Override
+  public String toString() {
+    return "ReplicationCheckpoint(version=" + version + ",files=" + files.size() + ")";
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.store.ByteBuffersIndexOutput;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * The primary side of segment replication: publishes near-real-time
+ * {@link ReplicationCheckpoint checkpoints} of an {@link IndexWriter} that
+ * replicas can copy and open with a {@link ReplicationTarget}, instead of
+ * indexing documents themselves.
+ *
+ * The files of a checkpoint are protected from deletion by the writer until
+ * the checkpoint is {@link #release released}, so that replicas have time to
+ * copy them. Deletes are written to disk on every {@link #publish()} since
+ * replicas can only see files.
+ *
+ * @lucene.experimental
+ */
+public final class ReplicationSource implements Closeable {
+
+  private final IndexWriter writer;
+  private final Set<ReplicationCheckpoint> published = new HashSet<>();
+  // files never change once written, so their metadata can be cached until they are unused
+  private final Map<String,ReplicationCheckpoint.FileMetaData> metaDataCache = new HashMap<>();
+  private DirectoryReader reader;
+  private boolean closed;
+
+  /** Create a new source that publishes checkpoints of the given writer. */
+  public ReplicationSource(IndexWriter writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Refresh the near-real-time view of the writer and return it as a
+   * checkpoint. The checkpoint must be {@link #release released} once
+   * replicas are done copying its files.
+   */
+  public synchronized ReplicationCheckpoint publish() throws IOException {
+    ensureOpen();
+    if (reader == null) {
+      reader = DirectoryReader.open(writer, true, true);
+    } else {
+      final DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer, true);
+      if (newReader != null) {
+        reader.close();
+        reader = newReader;
+      }
+    }
+    final SegmentInfos infos = ((StandardDirectoryReader) reader).getSegmentInfos();
+
+    final ByteBuffersDataOutput infosBytes = new ByteBuffersDataOutput();
+    try (ByteBuffersIndexOutput out = new ByteBuffersIndexOutput(infosBytes, "ReplicationSource", "ReplicationSource")) {
+      infos.write(out);
+    }
+
+    final Map<String,ReplicationCheckpoint.FileMetaData> files = new HashMap<>();
+    for (String file : infos.files(false)) {
+      ReplicationCheckpoint.FileMetaData metaData = metaDataCache.get(file);
+      if (metaData == null) {
+        try (IndexInput in = writer.getDirectory().openInput(file, IOContext.READONCE)) {
+          metaData = new ReplicationCheckpoint.FileMetaData(in.length(), CodecUtil.retrieveChecksum(in));
+        }
+        metaDataCache.put(file, metaData);
+      }
+      files.put(file, metaData);
+    }
+
+    writer.incRefDeleter(infos);
+    final ReplicationCheckpoint checkpoint = new ReplicationCheckpoint(infos.getVersion(), infos.getGeneration(),
+        infosBytes.toArrayCopy(), files, infos);
+    published.add(checkpoint);
+    return checkpoint;
+  }
+
+  /**
+   * Open the given file of a published checkpoint for reading, eg. to send it
+   * to a replica.
+   */
+  public synchronized IndexInput openInput(ReplicationCheckpoint checkpoint, String fileName) throws IOException {
+    ensureOpen();
+    ensurePublished(checkpoint);
+    if (checkpoint.getFiles().containsKey(fileName) == false) {
+      throw new IllegalArgumentException("File " + fileName + " is not part of " + checkpoint);
+    }
+    return writer.getDirectory().openInput(fileName, IOContext.READONCE);
+  }
+
+  /**
+   * Release a checkpoint that has been returned by {@link #publish()}, which
+   * allows the writer to delete its files once they are not used anymore.
+   */
+  public synchronized void release(ReplicationCheckpoint checkpoint) throws IOException {
+    ensureOpen();
+    ensurePublished(checkpoint);
+    published.remove(checkpoint);
+    writer.decRefDeleter(checkpoint.infos);
+    final Set<String> liveFiles = new HashSet<>();
+    for (ReplicationCheckpoint other : published) {
+      liveFiles.addAll(other.getFiles().keySet());
+    }
+    metaDataCache.keySet().retainAll(liveFiles);
+  }
+
+  private void ensurePublished(ReplicationCheckpoint checkpoint) {
+    if (published.contains(checkpoint) == false) {
+      throw new IllegalArgumentException(checkpoint + " has not been published by this source or has been released already");
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new AlreadyClosedException("this ReplicationSource is closed");
+    }
+  }
+
+  /** Release all checkpoints and close the near-real-time reader. This doesn't close the writer. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    final List<Closeable> toClose = new ArrayList<>();
+    if (writer.isOpen()) {
+      for (ReplicationCheckpoint checkpoint : published) {
+        toClose.add(() -> writer.decRefDeleter(checkpoint.infos));
+      }
+    }
+    toClose.add(reader);
+    published.clear();
+    metaDataCache.clear();
+    IOUtils.close(toClose);
+  }
+}
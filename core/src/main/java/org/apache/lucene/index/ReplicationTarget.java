@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * The replica side of segment replication: copies the files of a
+ * {@link ReplicationCheckpoint} that it doesn't have yet into its directory
+ * and opens a {@link DirectoryReader} on the checkpoint without committing.
+ * Files are copied through a pluggable {@link FileTransport} and verified
+ * against the checksums of the checkpoint before they are used.
+ *
+ * The directory of a target must not be written by an {@link IndexWriter}.
+ *
+ * @lucene.experimental
+ */
+public final class ReplicationTarget {
+
+  /** Copies files of a checkpoint from the primary. */
+  @FunctionalInterface
+  public interface FileTransport {
+    /** Write the content of file {@code fileName} of the primary to {@code out}. */
+    void copyFile(String fileName, IndexOutput out) throws IOException;
+  }
+
+  /**
+   * Return a {@link FileTransport} that reads files from a local
+   * {@link Directory}, typically the directory of the primary's writer.
+   */
+  public static FileTransport directoryTransport(Directory source) {
+    return (fileName, out) -> {
+      try (IndexInput in = source.openInput(fileName, IOContext.READONCE)) {
+        out.copyBytes(in, in.length());
+      }
+    };
+  }
+
+  private final Directory directory;
+
+  /** Create a new target that replicates checkpoints into {@code directory}. */
+  public ReplicationTarget(Directory directory) {
+    this.directory = directory;
+  }
+
+  /** Return the directory that checkpoints are replicated into. */
+  public Directory getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Return the files of {@code checkpoint} that need to be copied, because
+   * the directory doesn't have them or has different content under the same
+   * name.
+   */
+  public Map<String,ReplicationCheckpoint.FileMetaData> missingFiles(ReplicationCheckpoint checkpoint) throws IOException {
+    final Map<String,ReplicationCheckpoint.FileMetaData> missingFiles = new TreeMap<>();
+    for (Map.Entry<String,ReplicationCheckpoint.FileMetaData> entry : checkpoint.getFiles().entrySet()) {
+      if (entry.getValue().equals(localMetaData(entry.getKey())) == false) {
+        missingFiles.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return missingFiles;
+  }
+
+  private ReplicationCheckpoint.FileMetaData localMetaData(String fileName) throws IOException {
+    try (IndexInput in = directory.openInput(fileName, IOContext.READONCE)) {
+      return new ReplicationCheckpoint.FileMetaData(in.length(), CodecUtil.retrieveChecksum(in));
+    } catch (NoSuchFileException | FileNotFoundException e) {
+      return null;
+    } catch (CorruptIndexException e) {
+      // eg. a partial copy, needs to be copied again
+      return null;
+    }
+  }
+
+  /**
+   * Copy the files of {@code checkpoint} that are missing through
+   * {@code transport} and open a reader on it. If {@code oldReader} is not
+   * {@code null}, segments that didn't change are shared with it. The
+   * returned reader doesn't prevent the files of the checkpoint from
+   * being removed by {@link #deleteUnusedFiles}.
+   */
+  public synchronized DirectoryReader open(ReplicationCheckpoint checkpoint, FileTransport transport,
+                                           DirectoryReader oldReader) throws IOException {
+    for (Map.Entry<String,ReplicationCheckpoint.FileMetaData> entry : missingFiles(checkpoint).entrySet()) {
+      copyFile(entry.getKey(), entry.getValue(), transport);
+    }
+    final SegmentInfos infos = checkpoint.readSegmentInfos(directory);
+    final List<? extends LeafReader> oldReaders = oldReader == null ? null : getSegmentReaders(oldReader);
+    return StandardDirectoryReader.open(directory, infos, oldReaders);
+  }
+
+  private static List<LeafReader> getSegmentReaders(DirectoryReader reader) {
+    final List<LeafReader> segmentReaders = new ArrayList<>();
+    for (LeafReaderContext context : reader.leaves()) {
+      if (context.reader() instanceof SegmentReader == false) {
+        throw new IllegalArgumentException("oldReader must only have segment readers, got " + context.reader());
+      }
+      segmentReaders.add(context.reader());
+    }
+    return segmentReaders;
+  }
+
+  private void copyFile(String fileName, ReplicationCheckpoint.FileMetaData metaData, FileTransport transport) throws IOException {
+    String tmpFileName = null;
+    boolean success = false;
+    try {
+      try (IndexOutput out = directory.createTempOutput(IndexFileNames.parseSegmentName(fileName), "copy", IOContext.DEFAULT)) {
+        tmpFileName = out.getName();
+        transport.copyFile(fileName, out);
+      }
+      try (IndexInput in = directory.openInput(tmpFileName, IOContext.READONCE)) {
+        if (in.length() != metaData.getLength()) {
+          throw new CorruptIndexException("expected length " + metaData.getLength() + " but got " + in.length(), in);
+        }
+        final long checksum = CodecUtil.checksumEntireFile(in);
+        if (checksum != metaData.getChecksum()) {
+          throw new CorruptIndexException("expected checksum " + metaData.getChecksum() + " but got " + checksum, in);
+        }
+      }
+      IOUtils.deleteFilesIgnoringExceptions(directory, fileName);
+      directory.rename(tmpFileName, fileName);
+      success = true;
+    } finally {
+      if (success == false && tmpFileName != null) {
+        IOUtils.deleteFilesIgnoringExceptions(directory, tmpFileName);
+      }
+    }
+  }
+
+  /**
+   * Delete files of the directory that are neither referenced by one of the
+   * given checkpoints, typically the ones that readers are still open on, nor
+   * by the last commit of the directory if any.
+   */
+  public synchronized void deleteUnusedFiles(Collection<ReplicationCheckpoint> checkpoints) throws IOException {
+    final Set<String> usedFiles = new HashSet<>();
+    for (ReplicationCheckpoint checkpoint : checkpoints) {
+      usedFiles.addAll(checkpoint.getFiles().keySet());
+    }
+    if (DirectoryReader.indexExists(directory)) {
+      usedFiles.addAll(SegmentInfos.readLatestCommit(directory).files(true));
+    }
+    final List<String> toDelete = new ArrayList<>();
+    for (String file : directory.listAll()) {
+      if (usedFiles.contains(file) == false
+          && file.startsWith(IndexFileNames.SEGMENTS) == false
+          && file.equals(IndexWriter.WRITE_LOCK_NAME) == false) {
+        toDelete.add(file);
+      }
+    }
+    IOUtils.deleteFilesIgnoringExceptions(directory, toDelete);
+  }
+}
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
@@ -43,8 +44,13 @@ class SegmentDocValuesProducer extends DocValuesProducer {
       RamUsageEstimator.shallowSizeOfInstance(SegmentDocValuesProducer.class);
 
   final Map<String,DocValuesProducer> dvProducersByField = new HashMap<>();
+  // fields whose current generation is a patch -> producers of all generations to apply, oldest first
+  final Map<String,DocValuesProducer[]> patchedProducersByField = new HashMap<>();
+  // fields whose current generation is a patch -> generations that it applies to, oldest first
+  final Map<String,long[]> patchedGensByField = new HashMap<>();
   final Set<DocValuesProducer> dvProducers = Collections.newSetFromMap(new IdentityHashMap<DocValuesProducer,Boolean>());
   final List<Long> dvGens = new ArrayList<>();
+  private DocValuesProducer baseProducer;
   
   /**
    * Creates a new producer that handles updated docvalues fields
@@ -56,27 +62,20 @@ class SegmentDocValuesProducer extends DocValuesProducer {
    */
   SegmentDocValuesProducer(SegmentCommitInfo si, Directory dir, FieldInfos coreInfos, FieldInfos allInfos, SegmentDocValues segDocValues) throws IOException {
     try {
-      DocValuesProducer baseProducer = null;
       for (FieldInfo fi : allInfos) {
         if (fi.getDocValuesType() == DocValuesType.NONE) {
           continue;
         }
-        long docValuesGen = fi.getDocValuesGen();
-        if (docValuesGen == -1) {
-          if (baseProducer == null) {
-            // the base producer gets the original fieldinfos it wrote
-            baseProducer = segDocValues.getDocValuesProducer(docValuesGen, si, dir, coreInfos);
-            dvGens.add(docValuesGen);
-            dvProducers.add(baseProducer);
+        dvProducersByField.put(fi.name, getProducer(fi.getDocValuesGen(), fi, si, dir, coreInfos, segDocValues));
+        final long[] patchedGens = DocValuesPatches.read(si.info, fi);
+        if (patchedGens != null) {
+          final DocValuesProducer[] producers = new DocValuesProducer[patchedGens.length + 1];
+          for (int i = 0; i < patchedGens.length; ++i) {
+            producers[i] = getProducer(patchedGens[i], fi, si, dir, coreInfos, segDocValues);
           }
-          dvProducersByField.put(fi.name, baseProducer);
-        } else {
-          assert !dvGens.contains(docValuesGen);
-          // otherwise, producer sees only the one fieldinfo it wrote
-          final DocValuesProducer dvp = segDocValues.getDocValuesProducer(docValuesGen, si, dir, new FieldInfos(new FieldInfo[]{fi}));
-          dvGens.add(docValuesGen);
-          dvProducers.add(dvp);
-          dvProducersByField.put(fi.name, dvp);
+          producers[patchedGens.length] = dvProducersByField.get(fi.name);
+          patchedProducersByField.put(fi.name, producers);
+          patchedGensByField.put(fi.name, patchedGens);
         }
       }
     } catch (Throwable t) {
@@ -89,8 +88,37 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     }
   }
 
+  private DocValuesProducer getProducer(long docValuesGen, FieldInfo fi, SegmentCommitInfo si, Directory dir,
+                                        FieldInfos coreInfos, SegmentDocValues segDocValues) throws IOException {
+    if (docValuesGen == -1) {
+      if (baseProducer == null) {
+        // the base producer gets the original fieldinfos it wrote
+        baseProducer = segDocValues.getDocValuesProducer(docValuesGen, si, dir, coreInfos);
+        dvGens.add(docValuesGen);
+        dvProducers.add(baseProducer);
+      }
+      return baseProducer;
+    } else {
+      // every other generation belongs to a single field
+      assert !dvGens.contains(docValuesGen);
+      // otherwise, producer sees only the one fieldinfo it wrote
+      final DocValuesProducer dvp = segDocValues.getDocValuesProducer(docValuesGen, si, dir, new FieldInfos(new FieldInfo[]{fi}));
+      dvGens.add(docValuesGen);
+      dvProducers.add(dvp);
+      return dvp;
+    }
+  }
+
   @Override
   public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+    DocValuesProducer[] patchedProducers = patchedProducersByField.get(field.name);
+    if (patchedProducers != null) {
+      NumericDocValues[] gens = new NumericDocValues[patchedProducers.length];
+      for (int i = 0; i < gens.length; ++i) {
+        gens[i] = patchedProducers[i].getNumeric(field);
+      }
+      return DocValuesPatches.patch(gens);
+    }
     DocValuesProducer dvProducer = dvProducersByField.get(field.name);
     assert dvProducer != null;
     return dvProducer.getNumeric(field);
@@ -98,11 +126,58 @@ class SegmentDocValuesProducer extends DocValuesProducer {
 
   @Override
   public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    DocValuesProducer[] patchedProducers = patchedProducersByField.get(field.name);
+    if (patchedProducers != null) {
+      BinaryDocValues[] gens = new BinaryDocValues[patchedProducers.length];
+      for (int i = 0; i < gens.length; ++i) {
+        gens[i] = patchedProducers[i].getBinary(field);
+      }
+      return DocValuesPatches.patch(gens);
+    }
     DocValuesProducer dvProducer = dvProducersByField.get(field.name);
     assert dvProducer != null;
     return dvProducer.getBinary(field);
   }
 
+  /**
+   * Return iterators over the documents whose values of {@code field} changed
+   * since generation {@code sinceGen} of the field, or {@code null} if this
+   * can't be computed without reading all values, ie. if the current
+   * generation of the field is not a patch on top of {@code sinceGen}. Since
+   * patches never remove values, all returned documents have a value.
+   */
+  List<DocIdSetIterator> getUpdatedDocs(FieldInfo field, long sinceGen) throws IOException {
+    if (field.getDocValuesGen() == sinceGen) {
+      return Collections.emptyList();
+    }
+    final long[] patchedGens = patchedGensByField.get(field.name);
+    if (patchedGens == null) {
+      return null;
+    }
+    int index = patchedGens.length - 1;
+    while (index >= 0 && patchedGens[index] != sinceGen) {
+      index--;
+    }
+    if (index < 0) {
+      return null;
+    }
+    final DocValuesProducer[] producers = patchedProducersByField.get(field.name);
+    final List<DocIdSetIterator> updatedDocs = new ArrayList<>();
+    for (int i = index + 1; i < producers.length; ++i) {
+      switch (field.getDocValuesType()) {
+        case NUMERIC:
+          updatedDocs.add(producers[i].getNumeric(field));
+          break;
+        case BINARY:
+          updatedDocs.add(producers[i].getBinary(field));
+          break;
+        default:
+          throw new AssertionError("patches are only supported on numeric and binary fields, got " + field.getDocValuesType());
+      }
+    }
+    return updatedDocs;
+  }
+
   @Override
   public SortedDocValues getSorted(FieldInfo field) throws IOException {
     DocValuesProducer dvProducer = dvProducersByField.get(field.name);
@@ -142,6 +217,12 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     ramBytesUsed += dvGens.size() * LONG_RAM_BYTES_USED;
     ramBytesUsed += dvProducers.size() * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
     ramBytesUsed += dvProducersByField.size() * 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+    for (DocValuesProducer[] producers : patchedProducersByField.values()) {
+      ramBytesUsed += 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.shallowSizeOf(producers);
+    }
+    for (long[] gens : patchedGensByField.values()) {
+      ramBytesUsed += 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.sizeOf(gens);
+    }
     for (DocValuesProducer producer : dvProducers) {
       ramBytesUsed += producer.ramBytesUsed();
     }
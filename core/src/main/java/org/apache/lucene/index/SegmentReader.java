@@ -350,6 +350,17 @@ public final class SegmentReader extends CodecReader {
     return metaData;
   }
 
+  @Override
+  public DocValuesStatistics getDocValuesStatistics(String field) {
+    ensureOpen();
+    final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+    if (fieldInfo == null
+        || (fieldInfo.getDocValuesType() != DocValuesType.NUMERIC && fieldInfo.getDocValuesType() != DocValuesType.SORTED_NUMERIC)) {
+      return null;
+    }
+    return DocValuesStatistics.read(si.info, fieldInfo);
+  }
+
   /**
    * Returns the original SegmentInfo passed to the segment reader on creation time.
    * {@link #getSegmentInfo()} returns a clone of this instance.
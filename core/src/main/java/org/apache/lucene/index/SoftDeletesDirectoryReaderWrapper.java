@@ -48,7 +48,7 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
    * @param field the soft deletes field
    */
   public SoftDeletesDirectoryReaderWrapper(DirectoryReader in, String field) throws IOException {
-    this(in, new SoftDeletesSubReaderWrapper(Collections.emptyMap(), field));
+    this(in, new SoftDeletesSubReaderWrapper(Collections.emptyMap(), Collections.emptyMap(), field));
   }
 
   private SoftDeletesDirectoryReaderWrapper(DirectoryReader in, SoftDeletesSubReaderWrapper wrapper) throws IOException {
@@ -60,6 +60,7 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
   @Override
   protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) throws IOException {
     Map<CacheKey, LeafReader> readerCache = new HashMap<>();
+    Map<CacheKey, SoftDeletesFilterCodecReader> coreCache = new HashMap<>();
     for (LeafReader reader : getSequentialSubReaders()) {
       // we try to reuse the life docs instances here if the reader cache key didn't change
       if (reader instanceof SoftDeletesFilterLeafReader && reader.getReaderCacheHelper() != null) {
@@ -67,9 +68,12 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
       } else if (reader instanceof SoftDeletesFilterCodecReader && reader.getReaderCacheHelper() != null) {
         readerCache.put(((SoftDeletesFilterCodecReader) reader).reader.getReaderCacheHelper().getKey(), reader);
       }
-
+      // and to update them incrementally if only deletes or doc values changed
+      if (reader instanceof SoftDeletesFilterCodecReader && reader.getCoreCacheHelper() != null) {
+        coreCache.put(reader.getCoreCacheHelper().getKey(), (SoftDeletesFilterCodecReader) reader);
+      }
     }
-    return new SoftDeletesDirectoryReaderWrapper(in, new SoftDeletesSubReaderWrapper(readerCache, field));
+    return new SoftDeletesDirectoryReaderWrapper(in, new SoftDeletesSubReaderWrapper(readerCache, coreCache, field));
   }
 
   @Override
@@ -79,12 +83,16 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
 
   private static class SoftDeletesSubReaderWrapper extends SubReaderWrapper {
     private final Map<CacheKey, LeafReader> mapping;
+    private final Map<CacheKey, SoftDeletesFilterCodecReader> coreMapping;
     private final String field;
 
-    public SoftDeletesSubReaderWrapper(Map<CacheKey, LeafReader> oldReadersCache, String field) {
+    public SoftDeletesSubReaderWrapper(Map<CacheKey, LeafReader> oldReadersCache,
+                                       Map<CacheKey, SoftDeletesFilterCodecReader> oldCoresCache, String field) {
       Objects.requireNonNull(field, "Field must not be null");
       assert oldReadersCache != null;
+      assert oldCoresCache != null;
       this.mapping = oldReadersCache;
+      this.coreMapping = oldCoresCache;
       this.field = field;
     }
 
@@ -108,6 +116,13 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
         return mapping.get(readerCacheHelper.getKey());
       }
       try {
+        CacheHelper coreCacheHelper = reader.getCoreCacheHelper();
+        if (coreCacheHelper != null && coreMapping.containsKey(coreCacheHelper.getKey())) {
+          LeafReader wrapped = wrapIncrementally(reader, field, coreMapping.get(coreCacheHelper.getKey()));
+          if (wrapped != null) {
+            return wrapped;
+          }
+        }
         return SoftDeletesDirectoryReaderWrapper.wrap(reader, field);
       } catch (IOException e) {
         throw new UncheckedIOException(e);
@@ -132,10 +147,65 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
       int numDeletes = reader.numDeletedDocs() + numSoftDeletes;
       int numDocs = reader.maxDoc() - numDeletes;
       assert assertDocCounts(numDocs, numSoftDeletes, reader);
-      return reader instanceof CodecReader ? new SoftDeletesFilterCodecReader((CodecReader) reader, bits, numDocs)
+      return reader instanceof CodecReader ? new SoftDeletesFilterCodecReader((CodecReader) reader, bits, numDocs, docValuesGen(reader, field))
           : new SoftDeletesFilterLeafReader(reader, bits, numDocs);
   }
 
+  /**
+   * Wrap a new reader of the same segment as {@code previous} by only applying
+   * the changes to the soft deletes field that happened since {@code previous}
+   * was opened, or return {@code null} if these changes are not known. This is
+   * the case when the current generation of the soft deletes field is a
+   * {@link DocValuesPatches patch} on top of the generation of
+   * {@code previous}: only the documents of the patches need to be read.
+   */
+  private static LeafReader wrapIncrementally(LeafReader reader, String field, SoftDeletesFilterCodecReader previous) throws IOException {
+    if (previous.docValuesGen == -2 || reader instanceof SegmentReader == false) {
+      return null;
+    }
+    SegmentReader segmentReader = (SegmentReader) reader;
+    FieldInfo fieldInfo = segmentReader.getFieldInfos().fieldInfo(field);
+    if (fieldInfo == null || segmentReader.getDocValuesReader() instanceof SegmentDocValuesProducer == false) {
+      return null;
+    }
+    List<DocIdSetIterator> updatedDocs = ((SegmentDocValuesProducer) segmentReader.getDocValuesReader())
+        .getUpdatedDocs(fieldInfo, previous.docValuesGen);
+    if (updatedDocs == null) {
+      return null;
+    }
+    // live docs only ever lose documents within a segment, and patches only add soft deletes
+    FixedBitSet bits = previous.bits.clone();
+    Bits liveDocs = reader.getLiveDocs();
+    if (liveDocs instanceof FixedBitSet) {
+      bits.and((FixedBitSet) liveDocs);
+    } else if (liveDocs != null) {
+      for (int doc = 0; doc < bits.length(); ++doc) {
+        if (liveDocs.get(doc) == false) {
+          bits.clear(doc);
+        }
+      }
+    }
+    for (DocIdSetIterator iterator : updatedDocs) {
+      for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+        bits.clear(doc);
+      }
+    }
+    int numDocs = bits.cardinality();
+    assert assertDocCounts(numDocs, reader.numDocs() - numDocs, reader);
+    return new SoftDeletesFilterCodecReader(segmentReader, bits, numDocs, fieldInfo.getDocValuesGen());
+  }
+
+  /** Return the generation of the soft deletes field, or -2 if unknown. */
+  private static long docValuesGen(LeafReader reader, String field) {
+    if (reader instanceof SegmentReader) {
+      FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+      if (fieldInfo != null) {
+        return fieldInfo.getDocValuesGen();
+      }
+    }
+    return -2;
+  }
+
   private static boolean assertDocCounts(int expectedNumDocs, int numSoftDeletes, LeafReader reader) {
     if (reader instanceof SegmentReader) {
       SegmentReader segmentReader = (SegmentReader) reader;
@@ -199,13 +269,15 @@ public final class SoftDeletesDirectoryReaderWrapper extends FilterDirectoryRead
     private final LeafReader reader;
     private final FixedBitSet bits;
     private final int numDocs;
+    private final long docValuesGen; // generation of the soft deletes field that bits reflect, -2 if unknown
     private final CacheHelper readerCacheHelper;
 
-    private SoftDeletesFilterCodecReader(CodecReader reader, FixedBitSet bits, int numDocs) {
+    private SoftDeletesFilterCodecReader(CodecReader reader, FixedBitSet bits, int numDocs, long docValuesGen) {
       super(reader);
       this.reader = reader;
       this.bits = bits;
       this.numDocs = numDocs;
+      this.docValuesGen = docValuesGen;
       this.readerCacheHelper = reader.getReaderCacheHelper() == null ? null :
           new DelegatingCacheHelper(reader.getReaderCacheHelper());
     }
@@ -19,7 +19,10 @@ package org.apache.lucene.index;
 
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
 import java.util.function.Supplier;
 
 import org.apache.lucene.search.BooleanClause;
@@ -41,11 +44,41 @@ import org.apache.lucene.util.IOSupplier;
  * provided query. This allows for instance to keep documents alive based on time or any other constraint in the index.
  * The main purpose for this merge policy is to implement retention policies for document modification to vanish in the
  * index. Using this merge policy allows to control when soft deletes are claimed by merges.
+ * <p>
+ * The number of deletes to merge of a segment is cached until the segment gets new deletes, doc values updates,
+ * or the retention query changes according to {@link Query#equals(Object)}, so that merge policies that
+ * frequently check deletes don't re-run the retention query on segments that didn't change.
  * @lucene.experimental
  */
 public final class SoftDeletesRetentionMergePolicy extends OneMergeWrappingMergePolicy {
   private final String field;
   private final Supplier<Query> retentionQuerySupplier;
+  // segment -> number of deletes to merge last time the retention query was run on it
+  private final Map<SegmentCommitInfo, RetentionCacheEntry> retentionCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /** Number of deletes to merge of a segment, for a given generation of the segment and retention query. */
+  private static final class RetentionCacheEntry {
+    final Query query;
+    final int delCount;
+    final long delGen;
+    final long docValuesGen;
+    final int numDeletesToMerge;
+
+    RetentionCacheEntry(Query query, int delCount, SegmentCommitInfo info, int numDeletesToMerge) {
+      this.query = query;
+      this.delCount = delCount;
+      this.delGen = info.getDelGen();
+      this.docValuesGen = info.getDocValuesGen();
+      this.numDeletesToMerge = numDeletesToMerge;
+    }
+
+    boolean matches(Query query, int delCount, SegmentCommitInfo info) {
+      // deletes never get undone, so an equal count means equal deletes
+      return this.delCount == delCount && delGen == info.getDelGen() && docValuesGen == info.getDocValuesGen()
+          && this.query.equals(query);
+    }
+  }
+
   /**
    * Creates a new {@link SoftDeletesRetentionMergePolicy}
    * @param field the soft deletes field
@@ -132,11 +165,16 @@ public final class SoftDeletesRetentionMergePolicy extends OneMergeWrappingMerge
   public int numDeletesToMerge(SegmentCommitInfo info, int delCount, IOSupplier<CodecReader> readerSupplier) throws IOException {
     final int numDeletesToMerge = super.numDeletesToMerge(info, delCount, readerSupplier);
     if (numDeletesToMerge != 0 && info.getSoftDelCount() > 0) {
+      final Query retentionQuery = retentionQuerySupplier.get();
+      final RetentionCacheEntry cached = retentionCache.get(info);
+      if (cached != null && cached.matches(retentionQuery, delCount, info)) {
+        return cached.numDeletesToMerge;
+      }
       final CodecReader reader = readerSupplier.get();
       if (reader.getLiveDocs() != null) {
         BooleanQuery.Builder builder = new BooleanQuery.Builder();
         builder.add(new DocValuesFieldExistsQuery(field), BooleanClause.Occur.FILTER);
-        builder.add(retentionQuerySupplier.get(), BooleanClause.Occur.FILTER);
+        builder.add(retentionQuery, BooleanClause.Occur.FILTER);
         Scorer scorer = getScorer(builder.build(), FilterCodecReader.wrapLiveDocs(reader, null, reader.maxDoc()));
         if (scorer != null) {
           DocIdSetIterator iterator = scorer.iterator();
@@ -147,6 +185,7 @@ public final class SoftDeletesRetentionMergePolicy extends OneMergeWrappingMerge
               numDeletedDocs--;
             }
           }
+          retentionCache.put(info, new RetentionCacheEntry(retentionQuery, delCount, info, numDeletedDocs));
           return numDeletedDocs;
         }
       }
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * A {@link MergePolicy} for time-series indices that only merges segments
+ * whose documents fall into the same time window. Windows are computed from
+ * the maximum value of a one-dimensional {@code long} or {@code int} point
+ * field, eg. a {@link org.apache.lucene.document.LongPoint} timestamp: a
+ * segment belongs to window {@code floor(max / windowSize)}. Segments that
+ * don't have the field are grouped together.
+ *
+ * The wrapped merge policy is run independently on the segments of every
+ * window, so that eg. a {@link TieredMergePolicy} keeps segment counts
+ * tiered per window. Since old and new documents never get merged together,
+ * segments keep tight min/max values on the point field, which allows range
+ * queries on recent data to skip old segments entirely.
+ *
+ * Forced merges also run per window, so {@code maxSegmentCount} applies to
+ * every window rather than to the index as a whole.
+ *
+ * NOTE: the min/max values of the point field are read from the segment's
+ * points index the first time that a segment is considered for merging, and
+ * cached until the segment goes away.
+ *
+ * @lucene.experimental
+ */
+public class TimeWindowMergePolicy extends FilterMergePolicy {
+
+  /** Window of segments that don't have values for the field. */
+  private static final long NO_VALUES_WINDOW = Long.MIN_VALUE;
+
+  private final String field;
+  private final long windowSize;
+  // segment name -> window, segments never change their points
+  private final Map<String, Long> windows = new ConcurrentHashMap<>();
+
+  /**
+   * Create a new {@link TimeWindowMergePolicy} that groups segments into
+   * windows of {@code windowSize} values of {@code field} and merges
+   * segments within the same window using a {@link TieredMergePolicy}.
+   */
+  public TimeWindowMergePolicy(String field, long windowSize) {
+    this(new TieredMergePolicy(), field, windowSize);
+  }
+
+  /**
+   * Create a new {@link TimeWindowMergePolicy} that groups segments into
+   * windows of {@code windowSize} values of {@code field} and merges
+   * segments within the same window using {@code in}.
+   */
+  public TimeWindowMergePolicy(MergePolicy in, String field, long windowSize) {
+    super(in);
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("windowSize must be > 0, got " + windowSize);
+    }
+    this.field = field;
+    this.windowSize = windowSize;
+  }
+
+  /** Return the point field that windows are computed from. */
+  public String getField() {
+    return field;
+  }
+
+  /** Return the size of windows. */
+  public long getWindowSize() {
+    return windowSize;
+  }
+
+  @Override
+  public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext)
+      throws IOException {
+    MergeSpecification spec = null;
+    for (SegmentInfos window : groupByWindow(segmentInfos).values()) {
+      spec = merge(spec, in.findMerges(mergeTrigger, window, mergeContext));
+    }
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+                                             Map<SegmentCommitInfo,Boolean> segmentsToMerge, MergeContext mergeContext) throws IOException {
+    MergeSpecification spec = null;
+    for (SegmentInfos window : groupByWindow(segmentInfos).values()) {
+      spec = merge(spec, in.findForcedMerges(window, maxSegmentCount, segmentsToMerge, mergeContext));
+    }
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+    MergeSpecification spec = null;
+    for (SegmentInfos window : groupByWindow(segmentInfos).values()) {
+      spec = merge(spec, in.findForcedDeletesMerges(window, mergeContext));
+    }
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+    MergeSpecification spec = null;
+    for (SegmentInfos window : groupByWindow(segmentInfos).values()) {
+      spec = merge(spec, in.findFullFlushMerges(mergeTrigger, window, mergeContext));
+    }
+    return spec;
+  }
+
+  private static MergeSpecification merge(MergeSpecification spec, MergeSpecification windowSpec) {
+    if (windowSpec == null) {
+      return spec;
+    }
+    if (spec == null) {
+      return windowSpec;
+    }
+    for (OneMerge merge : windowSpec.merges) {
+      spec.add(merge);
+    }
+    return spec;
+  }
+
+  /** Split the given segments into one {@link SegmentInfos} per window, ordered by window. */
+  private Map<Long, SegmentInfos> groupByWindow(SegmentInfos segmentInfos) throws IOException {
+    final Map<Long, SegmentInfos> groups = new TreeMap<>();
+    final Set<String> liveSegments = new HashSet<>();
+    for (SegmentCommitInfo info : segmentInfos) {
+      liveSegments.add(info.info.name);
+      Long window = windows.get(info.info.name);
+      if (window == null) {
+        window = computeWindow(info);
+        windows.put(info.info.name, window);
+      }
+      SegmentInfos group = groups.get(window);
+      if (group == null) {
+        group = new SegmentInfos(segmentInfos.getIndexCreatedVersionMajor());
+        groups.put(window, group);
+      }
+      group.add(info);
+    }
+    // forget about segments that have been merged away
+    windows.keySet().retainAll(liveSegments);
+    return groups;
+  }
+
+  private long computeWindow(SegmentCommitInfo info) throws IOException {
+    final SegmentInfo si = info.info;
+    final Codec codec = si.getCodec();
+    Directory cfsDir = null;
+    boolean success = false;
+    try {
+      cfsDir = si.getUseCompoundFile() ? codec.compoundFormat().getCompoundReader(si.dir, si, IOContext.READ) : si.dir;
+      final FieldInfos fieldInfos = codec.fieldInfosFormat().read(cfsDir, si, "", IOContext.READONCE);
+      final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+      final long window;
+      if (fieldInfo == null || fieldInfo.getPointDimensionCount() == 0) {
+        window = NO_VALUES_WINDOW;
+      } else {
+        if (fieldInfo.getPointDimensionCount() != 1
+            || (fieldInfo.getPointNumBytes() != Long.BYTES && fieldInfo.getPointNumBytes() != Integer.BYTES)) {
+          throw new IllegalArgumentException("Field \"" + field + "\" must be indexed as a one-dimensional long or int point, got "
+              + fieldInfo.getPointDimensionCount() + " dimensions of " + fieldInfo.getPointNumBytes() + " bytes");
+        }
+        try (PointsReader reader = codec.pointsFormat().fieldsReader(new SegmentReadState(cfsDir, si, fieldInfos, IOContext.READ))) {
+          final PointValues values = reader.getValues(field);
+          if (values == null || values.size() == 0) {
+            window = NO_VALUES_WINDOW;
+          } else {
+            final byte[] maxPackedValue = values.getMaxPackedValue();
+            final long max = fieldInfo.getPointNumBytes() == Long.BYTES
+                ? NumericUtils.sortableBytesToLong(maxPackedValue, 0)
+                : NumericUtils.sortableBytesToInt(maxPackedValue, 0);
+            window = Math.floorDiv(max, windowSize);
+          }
+        }
+      }
+      success = true;
+      return window;
+    } finally {
+      if (cfsDir != si.dir) {
+        if (success) {
+          IOUtils.close(cfsDir);
+        } else {
+          IOUtils.closeWhileHandlingException(cfsDir);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(field=" + field + ",windowSize=" + windowSize + "," + in + ")";
+  }
+}
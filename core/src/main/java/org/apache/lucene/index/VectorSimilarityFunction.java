@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import org.apache.lucene.util.VectorUtil;
+
+/**
+ * Similarity functions of float vectors. Scores are non-negative and higher
+ * scores mean that vectors are more similar.
+ *
+ * @lucene.experimental
+ */
+public enum VectorSimilarityFunction {
+
+  /** Similarity based on the euclidean distance, computed as {@code 1 / (1 + squareDistance(v1, v2))}. */
+  EUCLIDEAN {
+    @Override
+    public float compare(float[] v1, float[] v2) {
+      return 1 / (1 + VectorUtil.squareDistance(v1, v2));
+    }
+  },
+
+  /**
+   * Similarity based on the dot product, computed as {@code (1 + dotProduct(v1, v2)) / 2}.
+   * NOTE: this requires vectors to have a length of 1, in which case this is
+   * equivalent to the cosine similarity, and scores are between 0 and 1.
+   * {@link org.apache.lucene.document.KnnVectorField} rejects indexed vectors
+   * that don't have a length of 1, and scores of other vectors are clamped to
+   * 0 so that they are never negative.
+   */
+  DOT_PRODUCT {
+    @Override
+    public float compare(float[] v1, float[] v2) {
+      return Math.max(0f, (1 + VectorUtil.dotProduct(v1, v2)) / 2);
+    }
+  };
+
+  /** Return the similarity of the given vectors. */
+  public abstract float compare(float[] v1, float[] v2);
+}
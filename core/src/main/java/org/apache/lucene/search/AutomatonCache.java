@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+
+import static org.apache.lucene.util.RamUsageEstimator.LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY;
+
+/**
+ * A bounded cache of the automata that {@link FuzzyQuery}, {@link RegexpQuery}
+ * and {@link WildcardQuery} compile from their patterns. Building these
+ * automata, and in particular determinizing them, is expensive, while user
+ * queries tend to repeat the same patterns over and over again.
+ *
+ * Entries are keyed by the pattern and the parameters that the automata depend
+ * on (eg. the maximum number of edits, whether transpositions are allowed and
+ * the length of the common prefix for fuzzy queries), but not by field, so
+ * that queries on different fields share automata. The least-recently used
+ * entries are evicted when either the maximum number of entries or the
+ * maximum amount of RAM is exceeded.
+ *
+ * This class is thread-safe. Automata are built outside of the lock, so
+ * concurrent lookups of the same missing entry may both build it. Cached
+ * automata are shared by all queries that use them, so their memory usage is
+ * only accounted for by the cache, not by the queries' {@code ramBytesUsed}.
+ *
+ * NOTE: {@link RegexpQuery} instances that use a custom
+ * {@link org.apache.lucene.util.automaton.AutomatonProvider} are never cached.
+ *
+ * @see #getDefaultCache()
+ * @lucene.experimental
+ */
+public final class AutomatonCache implements Accountable {
+
+  /** Default maximum number of entries of the {@link #getDefaultCache() default cache}. */
+  public static final int DEFAULT_MAX_SIZE = 256;
+  /** Default maximum RAM usage of the {@link #getDefaultCache() default cache}. */
+  public static final long DEFAULT_MAX_RAM_BYTES_USED = 16 * 1024 * 1024;
+
+  private static AutomatonCache DEFAULT_CACHE = new AutomatonCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_RAM_BYTES_USED);
+
+  /**
+   * Return the cache that queries use by default, or {@code null} if caching
+   * is disabled.
+   */
+  public static AutomatonCache getDefaultCache() {
+    return DEFAULT_CACHE;
+  }
+
+  /**
+   * Expert: set the cache that queries use, or {@code null} to disable caching.
+   * This only affects queries that are created after this call.
+   * @lucene.internal
+   */
+  public static void setDefaultCache(AutomatonCache cache) {
+    DEFAULT_CACHE = cache;
+  }
+
+  private final int maxSize;
+  private final long maxRamBytesUsed;
+  // access-ordered so that the eldest entry is the least-recently used one
+  private final Map<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+  // these variables are only modified under the lock
+  private volatile long ramBytesUsed;
+  private volatile long hitCount;
+  private volatile long missCount;
+  private volatile long cacheCount;
+
+  /**
+   * Create a new cache that holds at most {@code maxSize} entries and
+   * {@code maxRamBytesUsed} bytes.
+   */
+  public AutomatonCache(int maxSize, long maxRamBytesUsed) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must be >= 0, got " + maxSize);
+    }
+    if (maxRamBytesUsed < 0) {
+      throw new IllegalArgumentException("maxRamBytesUsed must be >= 0, got " + maxRamBytesUsed);
+    }
+    this.maxSize = maxSize;
+    this.maxRamBytesUsed = maxRamBytesUsed;
+  }
+
+  /** Return the automata for all edit distances from 0 to {@code maxEdits} of a {@link FuzzyQuery}. */
+  CompiledAutomaton[] getFuzzyAutomata(String term, int maxEdits, int prefixLength, boolean transpositions,
+                                       Supplier<CompiledAutomaton[]> builder) {
+    final Key key = new Key(Key.FUZZY, term, maxEdits, prefixLength, transpositions ? 1 : 0);
+    return (CompiledAutomaton[]) get(key, () -> {
+      final CompiledAutomaton[] automata = builder.get();
+      long ramBytesUsed = RamUsageEstimator.shallowSizeOf(automata);
+      for (CompiledAutomaton automaton : automata) {
+        ramBytesUsed += automaton.ramBytesUsed();
+      }
+      return new Entry(automata, ramBytesUsed);
+    });
+  }
+
+  /** Return the automaton of a {@link RegexpQuery}. */
+  CachedAutomaton getRegexpAutomaton(String regexp, int syntaxFlags, int matchFlags, int maxDeterminizedStates,
+                                     Supplier<CachedAutomaton> builder) {
+    final Key key = new Key(Key.REGEXP, regexp, syntaxFlags, matchFlags, maxDeterminizedStates);
+    return getAutomaton(key, builder);
+  }
+
+  /** Return the automaton of a {@link WildcardQuery}. */
+  CachedAutomaton getWildcardAutomaton(String wildcard, int maxDeterminizedStates, Supplier<CachedAutomaton> builder) {
+    final Key key = new Key(Key.WILDCARD, wildcard, maxDeterminizedStates, 0, 0);
+    return getAutomaton(key, builder);
+  }
+
+  private CachedAutomaton getAutomaton(Key key, Supplier<CachedAutomaton> builder) {
+    return (CachedAutomaton) get(key, () -> {
+      final CachedAutomaton automaton = builder.get();
+      return new Entry(automaton, automaton.ramBytesUsed());
+    });
+  }
+
+  private Object get(Key key, Supplier<Entry> builder) {
+    synchronized (this) {
+      final Entry entry = cache.get(key);
+      if (entry != null) {
+        hitCount++;
+        return entry.value;
+      }
+      missCount++;
+    }
+    // build outside of the lock, this is the expensive part
+    final Entry entry = builder.get();
+    final long entryRamBytesUsed = LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + key.ramBytesUsed() + entry.ramBytesUsed;
+    synchronized (this) {
+      if (maxSize > 0 && entryRamBytesUsed <= maxRamBytesUsed) {
+        final Entry previous = cache.put(key, entry);
+        if (entry.value instanceof CachedAutomaton) {
+          ((CachedAutomaton) entry.value).cached = true;
+        }
+        if (previous == null) {
+          cacheCount++;
+          ramBytesUsed += entryRamBytesUsed;
+        } else {
+          // another thread built the same entry concurrently
+          ramBytesUsed += entry.ramBytesUsed - previous.ramBytesUsed;
+        }
+        evictIfNecessary();
+      }
+    }
+    return entry.value;
+  }
+
+  private void evictIfNecessary() {
+    assert Thread.holdsLock(this);
+    for (Iterator<Map.Entry<Key, Entry>> iterator = cache.entrySet().iterator();
+        iterator.hasNext() && (cache.size() > maxSize || ramBytesUsed > maxRamBytesUsed); ) {
+      final Map.Entry<Key, Entry> eldest = iterator.next();
+      iterator.remove();
+      ramBytesUsed -= LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + eldest.getKey().ramBytesUsed() + eldest.getValue().ramBytesUsed;
+    }
+  }
+
+  /** Remove all entries from this cache. */
+  public synchronized void clear() {
+    cache.clear();
+    ramBytesUsed = 0;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  /**
+   * Return the total number of lookups in this cache.
+   * @see #getHitCount()
+   * @see #getMissCount()
+   */
+  public long getTotalCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /** Return the number of lookups that found a cached entry. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Return the number of lookups that had to build automata. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /** Return the number of entries that are currently stored in the cache. */
+  public synchronized long getCacheSize() {
+    return cache.size();
+  }
+
+  /** Return the total number of entries that have been added to the cache. */
+  public long getCacheCount() {
+    return cacheCount;
+  }
+
+  /**
+   * Return the number of entries that have been removed from the cache,
+   * either to stay under the maximum configured size or RAM usage, or
+   * because the cache was {@link #clear() cleared}.
+   */
+  public long getEvictionCount() {
+    return getCacheCount() - getCacheSize();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxSize=" + maxSize + ",maxRamBytesUsed=" + maxRamBytesUsed + ")";
+  }
+
+  /** An automaton together with its compiled form. */
+  static final class CachedAutomaton implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(CachedAutomaton.class);
+
+    final Automaton automaton;
+    final CompiledAutomaton compiled;
+    // whether the cache accounts for the RAM usage of this automaton
+    volatile boolean cached;
+
+    CachedAutomaton(Automaton automaton, CompiledAutomaton compiled) {
+      this.automaton = automaton;
+      this.compiled = compiled;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + automaton.ramBytesUsed() + compiled.ramBytesUsed();
+    }
+  }
+
+  private static final class Entry {
+
+    final Object value;
+    final long ramBytesUsed;
+
+    Entry(Object value, long ramBytesUsed) {
+      this.value = value;
+      this.ramBytesUsed = ramBytesUsed;
+    }
+  }
+
+  private static final class Key implements Accountable {
+
+    static final int FUZZY = 0;
+    static final int REGEXP = 1;
+    static final int WILDCARD = 2;
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+    private final int type;
+    private final String pattern;
+    // type-dependent parameters of the automaton
+    private final int param1, param2, param3;
+
+    Key(int type, String pattern, int param1, int param2, int param3) {
+      this.type = type;
+      this.pattern = Objects.requireNonNull(pattern);
+      this.param1 = param1;
+      this.param2 = param2;
+      this.param3 = param3;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != getClass()) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return type == that.type
+          && param1 == that.param1
+          && param2 == that.param2
+          && param3 == that.param3
+          && pattern.equals(that.pattern);
+    }
+
+    @Override
+    public int hashCode() {
+      int h = type;
+      h = 31 * h + pattern.hashCode();
+      h = 31 * h + param1;
+      h = 31 * h + param2;
+      h = 31 * h + param3;
+      return h;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(pattern);
+    }
+  }
+}
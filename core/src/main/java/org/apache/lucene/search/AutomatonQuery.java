@@ -18,6 +18,7 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
@@ -56,6 +57,8 @@ public class AutomatonQuery extends MultiTermQuery implements Accountable {
   /** term containing the field, and possibly some pattern structure */
   protected final Term term;
   protected final boolean automatonIsBinary;
+  // used to compile derived automata, eg. slices of this automaton
+  final int maxDeterminizedStates;
 
   private final long ramBytesUsed; // cache
 
@@ -106,12 +109,43 @@ public class AutomatonQuery extends MultiTermQuery implements Accountable {
     this.term = term;
     this.automaton = automaton;
     this.automatonIsBinary = isBinary;
+    this.maxDeterminizedStates = maxDeterminizedStates;
     // TODO: we could take isFinite too, to save a bit of CPU in CompiledAutomaton ctor?:
     this.compiled = new CompiledAutomaton(automaton, null, true, maxDeterminizedStates, isBinary);
 
     this.ramBytesUsed = BASE_RAM_BYTES + term.ramBytesUsed() + automaton.ramBytesUsed() + compiled.ramBytesUsed();
   }
 
+  /**
+   * Create a new AutomatonQuery from an automaton that has already been
+   * compiled, typically retrieved from an {@link AutomatonCache}.
+   */
+  AutomatonQuery(final Term term, AutomatonCache.CachedAutomaton cached, int maxDeterminizedStates) {
+    super(term.field());
+    this.term = term;
+    this.automaton = cached.automaton;
+    this.automatonIsBinary = false;
+    this.maxDeterminizedStates = maxDeterminizedStates;
+    this.compiled = cached.compiled;
+
+    if (cached.cached) {
+      // shared with other queries, the cache accounts for it
+      this.ramBytesUsed = BASE_RAM_BYTES + term.ramBytesUsed();
+    } else {
+      this.ramBytesUsed = BASE_RAM_BYTES + term.ramBytesUsed() + automaton.ramBytesUsed() + compiled.ramBytesUsed();
+    }
+  }
+
+  /**
+   * Compile the automaton that {@code builder} returns the same way as
+   * {@link #AutomatonQuery(Term, Automaton, int)} does.
+   */
+  static AutomatonCache.CachedAutomaton compile(Supplier<Automaton> builder, int maxDeterminizedStates) {
+    final Automaton automaton = builder.get();
+    return new AutomatonCache.CachedAutomaton(automaton,
+        new CompiledAutomaton(automaton, null, true, maxDeterminizedStates, false));
+  }
+
   @Override
   protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
     return compiled.getTermsEnum(terms);
@@ -30,6 +30,14 @@ import org.apache.lucene.search.BooleanClause.Occur;
 
 final class Boolean2ScorerSupplier extends ScorerSupplier {
 
+  /**
+   * Minimum number of clauses of a pure disjunction for top scores to be
+   * computed with {@link MaxScoreScorer} rather than {@link WANDScorer}. WAND
+   * reorders its clauses on every candidate, which gets costly when there
+   * are many clauses, while MaxScore only does it once per block.
+   */
+  static final int MIN_CLAUSES_FOR_MAX_SCORE = 32;
+
   private final Weight weight;
   private final Map<BooleanClause.Occur, Collection<ScorerSupplier>> subs;
   private final ScoreMode scoreMode;
@@ -199,6 +207,9 @@ final class Boolean2ScorerSupplier extends ScorerSupplier {
       }
 
       if (scoreMode == ScoreMode.TOP_SCORES) {
+        if (minShouldMatch == 0 && optionalScorers.size() >= MIN_CLAUSES_FOR_MAX_SCORE) {
+          return new MaxScoreScorer(weight, optionalScorers);
+        }
         return new WANDScorer(weight, optionalScorers, minShouldMatch);
       } else if (minShouldMatch > 1) {
         return new MinShouldMatchSumScorer(weight, optionalScorers, minShouldMatch);
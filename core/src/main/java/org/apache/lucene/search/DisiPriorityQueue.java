@@ -120,6 +120,12 @@ public final class DisiPriorityQueue implements Iterable<DisiWrapper> {
     return heap[0];
   }
 
+  /** Remove all entries from this queue. */
+  void clear() {
+    Arrays.fill(heap, 0, size, null);
+    size = 0;
+  }
+
   DisiWrapper updateTop(DisiWrapper topReplacement) {
     heap[0] = topReplacement;
     return updateTop();
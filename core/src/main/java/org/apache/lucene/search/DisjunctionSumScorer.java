@@ -21,14 +21,16 @@ import java.io.IOException;
 import java.util.List;
 
 /** A Scorer for OR like queries, counterpart of <code>ConjunctionScorer</code>.
+ * @lucene.internal
  */
-final class DisjunctionSumScorer extends DisjunctionScorer {
+public final class DisjunctionSumScorer extends DisjunctionScorer {
 
   /** Construct a <code>DisjunctionScorer</code>.
    * @param weight The weight to be used.
    * @param subScorers Array of at least two subscorers.
+   * @param scoreMode How the produced scorers will be consumed.
    */
-  DisjunctionSumScorer(Weight weight, List<Scorer> subScorers, ScoreMode scoreMode) throws IOException {
+  public DisjunctionSumScorer(Weight weight, List<Scorer> subScorers, ScoreMode scoreMode) throws IOException {
     super(weight, subScorers, scoreMode);
   }
 
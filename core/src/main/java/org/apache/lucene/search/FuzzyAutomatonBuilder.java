@@ -31,9 +31,9 @@ class FuzzyAutomatonBuilder {
 
   private final String term;
   private final int maxEdits;
-  private final LevenshteinAutomata levBuilder;
-  private final String prefix;
-  private final int termLength;
+  private final int prefixLength;
+  private final boolean transpositions;
+  private final int[] codePoints;
 
   FuzzyAutomatonBuilder(String term, int maxEdits, int prefixLength, boolean transpositions) {
     if (maxEdits < 0 || maxEdits > LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
@@ -44,16 +44,22 @@ class FuzzyAutomatonBuilder {
     }
     this.term = term;
     this.maxEdits = maxEdits;
-    int[] codePoints = stringToUTF32(term);
-    this.termLength = codePoints.length;
-    prefixLength = Math.min(prefixLength, codePoints.length);
-    int[] suffix = new int[codePoints.length - prefixLength];
-    System.arraycopy(codePoints, prefixLength, suffix, 0, suffix.length);
-    this.levBuilder = new LevenshteinAutomata(suffix, Character.MAX_CODE_POINT, transpositions);
-    this.prefix = UnicodeUtil.newString(codePoints, 0, prefixLength);
+    this.codePoints = stringToUTF32(term);
+    this.prefixLength = Math.min(prefixLength, codePoints.length);
+    this.transpositions = transpositions;
   }
 
   CompiledAutomaton[] buildAutomatonSet() {
+    final AutomatonCache cache = AutomatonCache.getDefaultCache();
+    if (cache == null) {
+      return doBuildAutomatonSet();
+    }
+    return cache.getFuzzyAutomata(term, maxEdits, prefixLength, transpositions, this::doBuildAutomatonSet);
+  }
+
+  private CompiledAutomaton[] doBuildAutomatonSet() {
+    LevenshteinAutomata levBuilder = newLevenshteinAutomata();
+    String prefix = UnicodeUtil.newString(codePoints, 0, prefixLength);
     CompiledAutomaton[] compiled = new CompiledAutomaton[maxEdits + 1];
     for (int i = 0; i <= maxEdits; i++) {
       try {
@@ -67,15 +73,25 @@ class FuzzyAutomatonBuilder {
   }
 
   CompiledAutomaton buildMaxEditAutomaton() {
+    if (AutomatonCache.getDefaultCache() != null) {
+      // the cache holds automata for all edit distances
+      return buildAutomatonSet()[maxEdits];
+    }
     try {
-      return new CompiledAutomaton(levBuilder.toAutomaton(maxEdits, prefix), true, false);
+      return new CompiledAutomaton(newLevenshteinAutomata().toAutomaton(maxEdits, UnicodeUtil.newString(codePoints, 0, prefixLength)), true, false);
     } catch (TooComplexToDeterminizeException e) {
       throw new FuzzyTermsEnum.FuzzyTermsException(term, e);
     }
   }
 
+  private LevenshteinAutomata newLevenshteinAutomata() {
+    int[] suffix = new int[codePoints.length - prefixLength];
+    System.arraycopy(codePoints, prefixLength, suffix, 0, suffix.length);
+    return new LevenshteinAutomata(suffix, Character.MAX_CODE_POINT, transpositions);
+  }
+
   int getTermLength() {
-    return this.termLength;
+    return codePoints.length;
   }
 
   private static int[] stringToUTF32(String text) {
@@ -45,6 +45,10 @@ import org.apache.lucene.index.Term;
  * entirely consumed; and doc values otherwise, ie. in the case that another
  * part of the query is already leading iteration but we still need the ability
  * to verify that some documents match.
+ * Doc values are also used regardless of how iteration is led when the segment
+ * has an index sort and they can iterate matches without verifying values,
+ * which happens with range queries on the field that the index is sorted on
+ * since matching documents can be found with a binary search.
  * <p><b>NOTE</b>This query currently only works well with point range/exact
  * queries and their equivalent doc values queries.
  * @lucene.experimental
@@ -141,7 +145,17 @@ public final class IndexOrDocValuesQuery extends Query {
       @Override
       public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
         // Bulk scorers need to consume the entire set of docs, so using an
-        // index structure should perform better
+        // index structure should perform better, unless doc values can iterate
+        // matches directly, eg. if the segment is sorted on the field
+        if (context.reader().getMetaData().getSort() != null) {
+          final ScorerSupplier dvScorerSupplier = dvWeight.scorerSupplier(context);
+          if (dvScorerSupplier != null) {
+            final Scorer dvScorer = dvScorerSupplier.get(Long.MAX_VALUE);
+            if (dvScorer.twoPhaseIterator() == null) {
+              return new DefaultBulkScorer(dvScorer);
+            }
+          }
+        }
         return indexWeight.bulkScorer(context);
       }
 
@@ -161,6 +175,14 @@ public final class IndexOrDocValuesQuery extends Query {
             // an arbitrary 8x penalty to doc values.
             final long threshold = cost() >>> 3;
             if (threshold <= leadCost) {
+              if (context.reader().getMetaData().getSort() != null) {
+                // Doc values are still preferred if they don't need to verify
+                // values, which only happens on sorted segments
+                final Scorer dvScorer = dvScorerSupplier.get(leadCost);
+                if (dvScorer.twoPhaseIterator() == null) {
+                  return dvScorer;
+                }
+              }
               return indexScorerSupplier.get(leadCost);
             } else {
               return dvScorerSupplier.get(leadCost);
@@ -41,6 +41,7 @@ import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.RoaringDocIdSet;
 
@@ -485,7 +486,9 @@ public class LRUQueryCache implements QueryCache, Accountable {
   /**
    * Default cache implementation: uses {@link RoaringDocIdSet} for sets that
    * have a density &lt; 1% and a {@link BitDocIdSet} over a {@link FixedBitSet}
-   * otherwise.
+   * otherwise, unless the matching documents form few long runs of consecutive
+   * doc IDs, as is typical of filters on the index sort field, in which case a
+   * {@link RoaringDocIdSet} is used too since it encodes runs compactly.
    */
   protected DocIdSet cacheImpl(BulkScorer scorer, int maxDoc) throws IOException {
     if (scorer.cost() * 100 >= maxDoc) {
@@ -512,6 +515,12 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
     }, null);
+    if ((long) bitSet.runCount() << 8 <= maxDoc) {
+      // Run containers take 32 bits per run, so this is at least 8x smaller than
+      // the bit set. We only pay for the lost random-access on sets that are
+      // very clustered.
+      return new RoaringDocIdSet.Builder(maxDoc).add(new BitSetIterator(bitSet, cost[0])).build();
+    }
     return new BitDocIdSet(bitSet, cost[0]);
   }
 
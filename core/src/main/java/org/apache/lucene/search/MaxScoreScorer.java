@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import static org.apache.lucene.search.WANDScorer.scaleMaxScore;
+import static org.apache.lucene.search.WANDScorer.scaleMinScore;
+import static org.apache.lucene.search.WANDScorer.scalingFactor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * This implements the block-max MaxScore algorithm for dynamic pruning of
+ * pure disjunctions, described in "Optimization Strategies for Complex
+ * Queries" by Strohman, Turtle and Croft and in "Faster BlockMax WAND with
+ * Variable-sized Blocks" by Mallia, Ottaviano, Porciani, Tonellotto and
+ * Venturini.
+ * Like {@link WANDScorer}, this scorer maintains a feedback loop with the
+ * collector in order to know at any time the minimum score that is required
+ * in order for a hit to be competitive. For every block of doc IDs, clauses
+ * are sorted by their {@link Scorer#getMaxScore(int) max score} on the block
+ * and split into non-essential clauses, the clauses of lowest max scores whose
+ * sum is less than the minimum competitive score, and essential clauses.
+ * Only essential clauses are used to find candidates, and non-essential
+ * clauses are only advanced as long as the candidate may still be
+ * competitive.
+ * Unlike {@link WANDScorer}, this scorer doesn't need to reorder clauses on
+ * every candidate, only once per block, which makes it faster on disjunctions
+ * that have many clauses.
+ * @lucene.internal
+ */
+public final class MaxScoreScorer extends Scorer {
+
+  private static final Comparator<DisiWrapper> MAX_SCORE_COMPARATOR = Comparator.comparingLong(w -> w.maxScore);
+
+  private final int scalingFactor;
+  // scaled min competitive score
+  private long minCompetitiveScore = 0;
+  // whether the min competitive score changed since clauses were last partitioned
+  private boolean partitionOutdated;
+
+  // all clauses, sorted by max score on the current block
+  private final DisiWrapper[] clauses;
+  // maxScoreSums[i] is the sum of the max scores of clauses[0..i]
+  private final long[] maxScoreSums;
+  // clauses[0..numNonEssential) are non-essential, other clauses are in 'essential'
+  private int numNonEssential;
+  // priority queue of essential clauses, ordered by doc ID
+  private final DisiPriorityQueue essential;
+
+  private final long cost;
+  private final MaxScoreSumPropagator maxScorePropagator;
+
+  private int upTo = -1; // upper bound for which max scores are valid
+  private int doc = -1;
+  private float score;
+
+  /**
+   * Create a scorer that computes the sum of the scores of the given
+   * {@code scorers} on documents that match any of them. Sub scorers should
+   * implement {@link Scorer#advanceShallow(int)} and
+   * {@link Scorer#getMaxScore(int)} for pruning to be effective.
+   */
+  public MaxScoreScorer(Weight weight, Collection<Scorer> scorers) throws IOException {
+    super(weight);
+
+    OptionalInt scalingFactor = OptionalInt.empty();
+    for (Scorer scorer : scorers) {
+      scorer.advanceShallow(0);
+      float maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+      if (maxScore != 0 && Float.isFinite(maxScore)) {
+        // 0 and +Infty should not impact the scale
+        scalingFactor = OptionalInt.of(Math.min(scalingFactor.orElse(Integer.MAX_VALUE), scalingFactor(maxScore)));
+      }
+    }
+    // Use a scaling factor of 0 if all max scores are either 0 or +Infty
+    this.scalingFactor = scalingFactor.orElse(0);
+
+    clauses = new DisiWrapper[scorers.size()];
+    long cost = 0;
+    int i = 0;
+    for (Scorer scorer : scorers) {
+      clauses[i++] = new DisiWrapper(scorer);
+      cost += scorer.iterator().cost();
+    }
+    this.cost = cost;
+    maxScoreSums = new long[clauses.length];
+    essential = new DisiPriorityQueue(clauses.length);
+    this.maxScorePropagator = new MaxScoreSumPropagator(scorers);
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    assert minScore >= 0;
+    long scaledMinScore = scaleMinScore(minScore, scalingFactor);
+    assert scaledMinScore >= minCompetitiveScore;
+    if (scaledMinScore > minCompetitiveScore) {
+      minCompetitiveScore = scaledMinScore;
+      partitionOutdated = true;
+    }
+    maxScorePropagator.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public Collection<ChildScorable> getChildren() throws IOException {
+    List<ChildScorable> matchingChildren = new ArrayList<>();
+    for (DisiWrapper w : clauses) {
+      if (w.doc < doc) {
+        w.doc = w.iterator.advance(doc);
+      }
+      if (w.doc == doc) {
+        matchingChildren.add(new ChildScorable(w.scorer, "SHOULD"));
+      }
+    }
+    return matchingChildren;
+  }
+
+  @Override
+  public DocIdSetIterator iterator() {
+    return TwoPhaseIterator.asDocIdSetIterator(twoPhaseIterator());
+  }
+
+  @Override
+  public TwoPhaseIterator twoPhaseIterator() {
+    DocIdSetIterator approximation = new DocIdSetIterator() {
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return moveToNextCandidate(target);
+      }
+
+      @Override
+      public long cost() {
+        return cost;
+      }
+    };
+    return new TwoPhaseIterator(approximation) {
+
+      @Override
+      public boolean matches() throws IOException {
+        return computeScore();
+      }
+
+      @Override
+      public float matchCost() {
+        // maximum number of scorer that matches() might advance
+        return numNonEssential;
+      }
+    };
+  }
+
+  /**
+   * Compute max scores of clauses on the block of doc IDs that starts at
+   * {@code target}, and partition clauses into essential and non-essential
+   * clauses.
+   */
+  private void updateMaxScores(int target) throws IOException {
+    // Like WANDScorer, only use essential clauses to compute the next block
+    // boundary: taking non-essential clauses into account would move the
+    // boundary less far and make us recompute max scores too often.
+    int newUpTo = DocIdSetIterator.NO_MORE_DOCS;
+    for (int i = numNonEssential; i < clauses.length; ++i) {
+      DisiWrapper w = clauses[i];
+      if (w.doc <= newUpTo) {
+        newUpTo = Math.min(w.scorer.advanceShallow(Math.max(w.doc, target)), newUpTo);
+      }
+    }
+    upTo = newUpTo;
+
+    for (DisiWrapper w : clauses) {
+      if (w.doc > upTo) {
+        // this clause can't match on this block
+        w.maxScore = 0;
+      } else {
+        w.scorer.advanceShallow(Math.max(w.doc, target));
+        w.maxScore = scaleMaxScore(w.scorer.getMaxScore(upTo), scalingFactor);
+      }
+    }
+    Arrays.sort(clauses, MAX_SCORE_COMPARATOR);
+    long maxScoreSum = 0;
+    for (int i = 0; i < clauses.length; ++i) {
+      maxScoreSum += clauses[i].maxScore;
+      maxScoreSums[i] = maxScoreSum;
+    }
+
+    partition(target);
+  }
+
+  /**
+   * Split clauses into non-essential clauses, whose sum of max scores is less
+   * than the min competitive score, and essential clauses, which are advanced
+   * to {@code target}.
+   */
+  private void partition(int target) throws IOException {
+    numNonEssential = 0;
+    while (numNonEssential < clauses.length && maxScoreSums[numNonEssential] < minCompetitiveScore) {
+      numNonEssential++;
+    }
+    essential.clear();
+    for (int i = numNonEssential; i < clauses.length; ++i) {
+      DisiWrapper w = clauses[i];
+      if (w.doc < target) {
+        w.doc = w.iterator.advance(target);
+      }
+      essential.add(w);
+    }
+    partitionOutdated = false;
+  }
+
+  /** Move to the next doc on or after {@code target} that is matched by an essential clause. */
+  private int moveToNextCandidate(int target) throws IOException {
+    while (true) {
+      if (target > upTo) {
+        updateMaxScores(target);
+      } else if (partitionOutdated) {
+        partition(target);
+      }
+
+      if (essential.size() == 0) {
+        // the sum of the max scores of all clauses is less than the minimum
+        // competitive score on this block, move to the next block
+        if (upTo == DocIdSetIterator.NO_MORE_DOCS) {
+          return doc = DocIdSetIterator.NO_MORE_DOCS;
+        }
+        target = upTo + 1;
+        continue;
+      }
+
+      DisiWrapper top = essential.top();
+      while (top.doc < target) {
+        top.doc = top.iterator.advance(target);
+        top = essential.updateTop();
+      }
+
+      if (top.doc > upTo) {
+        if (upTo == DocIdSetIterator.NO_MORE_DOCS) {
+          return doc = DocIdSetIterator.NO_MORE_DOCS;
+        }
+        // non-essential clauses might match before the next candidate,
+        // move to the next block
+        target = upTo + 1;
+        continue;
+      }
+
+      return doc = top.doc;
+    }
+  }
+
+  /**
+   * Compute the score of the current doc, advancing non-essential clauses
+   * only as long as the doc may be competitive. Returns {@code false} if the
+   * doc is not competitive.
+   */
+  private boolean computeScore() throws IOException {
+    double score = 0;
+    // scaled upper bound of the score of the current doc
+    long maxScore = 0;
+    for (DisiWrapper w = essential.topList(); w != null; w = w.next) {
+      final float s = w.scorer.score();
+      score += s;
+      maxScore += scaleMaxScore(s, scalingFactor);
+    }
+    // advance non-essential clauses by descending max score
+    for (int i = numNonEssential - 1; i >= 0; --i) {
+      if (maxScore + maxScoreSums[i] < minCompetitiveScore) {
+        return false;
+      }
+      final DisiWrapper w = clauses[i];
+      if (w.doc < doc) {
+        w.doc = w.iterator.advance(doc);
+      }
+      if (w.doc == doc) {
+        final float s = w.scorer.score();
+        score += s;
+        maxScore += scaleMaxScore(s, scalingFactor);
+      }
+    }
+    if (maxScore < minCompetitiveScore) {
+      return false;
+    }
+    this.score = (float) score;
+    return true;
+  }
+
+  @Override
+  public float score() throws IOException {
+    return score;
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    // Propagate to improve score bounds
+    maxScorePropagator.advanceShallow(target);
+    if (target <= upTo) {
+      return upTo;
+    }
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    return maxScorePropagator.getMaxScore(upTo);
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+}
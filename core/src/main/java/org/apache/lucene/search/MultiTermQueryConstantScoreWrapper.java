@@ -39,7 +39,9 @@ import org.apache.lucene.util.DocIdSetBuilder;
  * It tries to rewrite per-segment as a boolean query
  * that returns a constant score and otherwise fills a
  * bit set with matches and builds a Scorer on top of
- * this bit set.
+ * this bit set. {@link AutomatonQuery automaton queries} on fields that have
+ * many terms may intersect ranges of terms concurrently when the searcher has
+ * an executor.
  */
 final class MultiTermQueryConstantScoreWrapper<Q extends MultiTermQuery> extends Query {
 
@@ -109,6 +111,14 @@ final class MultiTermQueryConstantScoreWrapper<Q extends MultiTermQuery> extends
 
   @Override
   public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+    // shared by all segments so that the common prefix of the automaton is only computed once per query
+    final SlicedAutomatonIntersection slicedIntersection;
+    if (searcher.getExecutor() != null && query instanceof AutomatonQuery) {
+      final AutomatonQuery automatonQuery = (AutomatonQuery) query;
+      slicedIntersection = new SlicedAutomatonIntersection(automatonQuery.compiled, automatonQuery.maxDeterminizedStates);
+    } else {
+      slicedIntersection = null;
+    }
     return new ConstantScoreWeight(this, boost) {
 
       /** Try to collect terms from the given terms enum and return true iff all
@@ -157,7 +167,15 @@ final class MultiTermQueryConstantScoreWrapper<Q extends MultiTermQuery> extends
           return new WeightOrDocIdSet(weight);
         }
 
-        // Too many terms: go back to the terms we already collected and start building the bit set
+        // Too many terms: intersect slices of the terms dictionary concurrently if possible
+        if (slicedIntersection != null && slicedIntersection.shouldSlice(terms)) {
+          final DocIdSet set = slicedIntersection.intersect(terms, context.reader().maxDoc(), searcher.getExecutor());
+          if (set != null) {
+            return new WeightOrDocIdSet(set);
+          }
+        }
+
+        // Otherwise go back to the terms we already collected and start building the bit set
         DocIdSetBuilder builder = new DocIdSetBuilder(context.reader().maxDoc(), terms);
         if (collectedTerms.isEmpty() == false) {
           TermsEnum termsEnum2 = terms.iterator();
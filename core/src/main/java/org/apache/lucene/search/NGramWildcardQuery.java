@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.codecs.ngram.NGramPostingsFormat;
+import org.apache.lucene.codecs.ngram.NGramTerms;
+import org.apache.lucene.index.FilteredTermsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+
+/**
+ * A {@link WildcardQuery} alternative that leverages the n-grams of terms
+ * that are recorded by {@link NGramPostingsFormat} in order to only check
+ * terms that contain all the {@link NGramPostingsFormat#GRAM_LENGTH}-grams
+ * of the literal parts of the pattern. This makes infix patterns such as
+ * <code>*foo*bar*</code> much faster on fields that have many terms.
+ *
+ * <p>Candidate terms are verified against the automaton of the pattern so
+ * results are always the same as {@link WildcardQuery}. This query falls
+ * back to intersecting the automaton with the terms dictionary on segments
+ * whose field has not been indexed with {@link NGramPostingsFormat}, or if
+ * the pattern doesn't contain {@link NGramPostingsFormat#GRAM_LENGTH}
+ * consecutive literal bytes.
+ *
+ * @lucene.experimental
+ */
+public class NGramWildcardQuery extends MultiTermQuery {
+
+  private final Term term;
+  private final CompiledAutomaton compiled;
+  private final int[] grams; // sorted
+
+  /** Constructs a query for terms matching <code>term</code>. */
+  public NGramWildcardQuery(Term term) {
+    this(term, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+  }
+
+  /**
+   * Constructs a query for terms matching <code>term</code>.
+   * @param maxDeterminizedStates maximum number of states in the resulting
+   *   automata.
+   * @see WildcardQuery#WildcardQuery(Term, int)
+   */
+  public NGramWildcardQuery(Term term, int maxDeterminizedStates) {
+    super(term.field());
+    this.term = term;
+    this.compiled = new CompiledAutomaton(WildcardQuery.toAutomaton(term), null, true, maxDeterminizedStates, false);
+    this.grams = grams(term.text());
+  }
+
+  /** Extract the sorted distinct n-grams of the literal parts of the given wildcard pattern. */
+  static int[] grams(String pattern) {
+    int[] grams = new int[0];
+    int numGrams = 0;
+    final StringBuilder literal = new StringBuilder();
+    for (int i = 0; i <= pattern.length(); ) {
+      final int c = i < pattern.length() ? pattern.codePointAt(i) : -1;
+      int length = c == -1 ? 1 : Character.charCount(c);
+      if (c == -1 || c == WildcardQuery.WILDCARD_STRING || c == WildcardQuery.WILDCARD_CHAR) {
+        // end of a literal run
+        final BytesRef bytes = new BytesRef(literal);
+        final int numLiteralGrams = bytes.length - NGramPostingsFormat.GRAM_LENGTH + 1;
+        if (numLiteralGrams > 0) {
+          grams = ArrayUtil.grow(grams, numGrams + numLiteralGrams);
+          for (int j = 0; j < numLiteralGrams; ++j) {
+            grams[numGrams++] = NGramTerms.gram(bytes.bytes, bytes.offset + j);
+          }
+        }
+        literal.setLength(0);
+      } else if (c == WildcardQuery.WILDCARD_ESCAPE && i + length < pattern.length()) {
+        final int nextChar = pattern.codePointAt(i + length);
+        length += Character.charCount(nextChar);
+        literal.appendCodePoint(nextChar);
+      } else {
+        literal.appendCodePoint(c);
+      }
+      i += length;
+    }
+    Arrays.sort(grams, 0, numGrams);
+    int numDistinctGrams = 0;
+    for (int i = 0; i < numGrams; ++i) {
+      if (i == 0 || grams[i] != grams[i - 1]) {
+        grams[numDistinctGrams++] = grams[i];
+      }
+    }
+    return ArrayUtil.copyOfSubArray(grams, 0, numDistinctGrams);
+  }
+
+  /** Returns the pattern term. */
+  public Term getTerm() {
+    return term;
+  }
+
+  @Override
+  protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
+    if (terms instanceof NGramTerms == false
+        || compiled.type != CompiledAutomaton.AUTOMATON_TYPE.NORMAL
+        || grams.length == 0) {
+      return compiled.getTermsEnum(terms);
+    }
+    final NGramTerms ngramTerms = (NGramTerms) terms;
+    final int[] ords = ngramTerms.intersect(grams);
+    if (ords.length == 0) {
+      return TermsEnum.EMPTY;
+    }
+    return new CandidateTermsEnum(terms.iterator(), ords, ngramTerms.termLookup());
+  }
+
+  /** Seeks to candidate terms that are accepted by the automaton. */
+  private class CandidateTermsEnum extends FilteredTermsEnum {
+
+    private final int[] ords;
+    private final NGramTerms.TermLookup lookup;
+    private int index;
+    private BytesRef candidate;
+
+    CandidateTermsEnum(TermsEnum tenum, int[] ords, NGramTerms.TermLookup lookup) {
+      super(tenum);
+      this.ords = ords;
+      this.lookup = lookup;
+    }
+
+    /**
+     * Move to the next candidate that is accepted by the automaton and is
+     * greater than {@code target}, or greater than or equal to it if
+     * {@code inclusive} is true.
+     */
+    private BytesRef nextCandidate(BytesRef target, boolean inclusive) throws IOException {
+      while (index < ords.length) {
+        final BytesRef term = lookup.term(ords[index++]);
+        if (target != null) {
+          final int cmp = term.compareTo(target);
+          if (cmp < 0 || (cmp == 0 && inclusive == false)) {
+            continue;
+          }
+        }
+        if (compiled.runAutomaton.run(term.bytes, term.offset, term.length)) {
+          return candidate = term;
+        }
+      }
+      return candidate = null;
+    }
+
+    @Override
+    protected BytesRef nextSeekTerm(BytesRef currentTerm) throws IOException {
+      if (candidate != null && (currentTerm == null || candidate.compareTo(currentTerm) > 0)) {
+        // the current candidate was not found, seek to it
+        return candidate;
+      }
+      // seek terms must be greater than the current term
+      return nextCandidate(currentTerm, false);
+    }
+
+    @Override
+    protected AcceptStatus accept(BytesRef term) throws IOException {
+      if (candidate != null && candidate.compareTo(term) < 0) {
+        // terms of the side structure may not exist in the terms dictionary,
+        // eg. if all their documents were deleted when merging
+        nextCandidate(term, true);
+      }
+      if (candidate == null) {
+        return AcceptStatus.END;
+      }
+      return term.equals(candidate) ? AcceptStatus.YES_AND_SEEK : AcceptStatus.NO_AND_SEEK;
+    }
+  }
+
+  @Override
+  public void visit(QueryVisitor visitor) {
+    if (visitor.acceptField(field)) {
+      compiled.visit(visitor, this, field);
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    StringBuilder buffer = new StringBuilder();
+    if (!getField().equals(field)) {
+      buffer.append(getField());
+      buffer.append(":");
+    }
+    buffer.append(term.text());
+    return buffer.toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * super.hashCode() + term.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return super.equals(other) && term.equals(((NGramWildcardQuery) other).term);
+  }
+}
@@ -17,6 +17,8 @@
 package org.apache.lucene.search;
 
 
+import java.util.function.Supplier;
+
 import org.apache.lucene.index.Term;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.AutomatonProvider;
@@ -134,9 +136,20 @@ public class RegexpQuery extends AutomatonQuery {
    */
   public RegexpQuery(Term term, int syntax_flags, int match_flags, AutomatonProvider provider,
       int maxDeterminizedStates) {
-    super(term,
-          new RegExp(term.text(), syntax_flags, match_flags).toAutomaton(
-                       provider, maxDeterminizedStates), maxDeterminizedStates);
+    super(term, getAutomaton(term, syntax_flags, match_flags, provider, maxDeterminizedStates), maxDeterminizedStates);
+  }
+
+  private static AutomatonCache.CachedAutomaton getAutomaton(Term term, int syntax_flags, int match_flags,
+                                                             AutomatonProvider provider, int maxDeterminizedStates) {
+    final Supplier<AutomatonCache.CachedAutomaton> builder = () -> compile(
+        () -> new RegExp(term.text(), syntax_flags, match_flags).toAutomaton(provider, maxDeterminizedStates),
+        maxDeterminizedStates);
+    final AutomatonCache cache = AutomatonCache.getDefaultCache();
+    // automata that depend on a custom provider can't be shared
+    if (cache == null || provider != defaultProvider) {
+      return builder.get();
+    }
+    return cache.getRegexpAutomaton(term.text(), syntax_flags, match_flags, maxDeterminizedStates, builder);
   }
 
   /** Returns the regexp of this query wrapped in a Term. */
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.FutureArrays;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+
+/**
+ * Intersects a {@link CompiledAutomaton} with the terms dictionary of a
+ * segment by splitting the terms into ranges of prefixes and intersecting
+ * every range concurrently. This helps automata that can't take advantage
+ * of the structure of the terms dictionary, like leading wildcards, on
+ * fields that have many terms.
+ *
+ * Split points are found by descending the prefixes of the terms with
+ * {@link TermsEnum#seekCeil}, breadth-first, starting from the common prefix
+ * of the minimum and maximum terms. They are computed for every segment so
+ * that ranges are balanced whatever the distribution of terms of the
+ * segment. Every range is then intersected with the automaton restricted to
+ * this range, so that the terms dictionary can skip blocks that are outside
+ * of the range, and matching documents of all ranges are collected into a
+ * single bit set.
+ *
+ * Automata that have a common prefix are never sliced since the terms
+ * dictionary already seeks to the terms that have this prefix, which are
+ * likely all in the same range anyway.
+ */
+final class SlicedAutomatonIntersection {
+
+  /** Fields that have fewer terms than this are intersected on the calling thread by default. */
+  static final int DEFAULT_MIN_TERMS_TO_SLICE = 1 << 16;
+
+  /** Default number of ranges to intersect concurrently. */
+  static final int DEFAULT_NUM_SLICES = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  // number of prefixes per slice to try to find before computing split points
+  private static final int PREFIXES_PER_SLICE = 4;
+  // never look at more prefixes than this, every prefix requires a seek
+  private static final int MAX_PREFIXES = 1024;
+  // never look at prefixes that are more than this number of bytes longer than the common prefix
+  private static final int MAX_DEPTH = 8;
+  // number of doc IDs that slices buffer before adding them to the shared bit set
+  private static final int BUFFER_SIZE = 1024;
+
+  private final CompiledAutomaton compiled;
+  private final int maxDeterminizedStates;
+  private final int minTermsToSlice;
+  private final int numSlices;
+  private final boolean hasCommonPrefix;
+
+  SlicedAutomatonIntersection(CompiledAutomaton compiled, int maxDeterminizedStates) {
+    this(compiled, maxDeterminizedStates, DEFAULT_MIN_TERMS_TO_SLICE, DEFAULT_NUM_SLICES);
+  }
+
+  SlicedAutomatonIntersection(CompiledAutomaton compiled, int maxDeterminizedStates, int minTermsToSlice, int numSlices) {
+    this.compiled = compiled;
+    this.maxDeterminizedStates = maxDeterminizedStates;
+    this.minTermsToSlice = minTermsToSlice;
+    this.numSlices = numSlices;
+    this.hasCommonPrefix = compiled.type == CompiledAutomaton.AUTOMATON_TYPE.NORMAL
+        && Operations.getCommonPrefixBytesRef(compiled.automaton).length > 0;
+  }
+
+  /**
+   * Return whether the automaton should be intersected with the given terms
+   * using multiple slices.
+   */
+  boolean shouldSlice(Terms terms) throws IOException {
+    return compiled.type == CompiledAutomaton.AUTOMATON_TYPE.NORMAL
+        && hasCommonPrefix == false
+        && numSlices > 1
+        && terms.size() >= minTermsToSlice;
+  }
+
+  /**
+   * Return the automata of the ranges of the given terms, or {@code null} if
+   * terms could not be split or if the automata of ranges would be too
+   * complex to determinize.
+   */
+  private CompiledAutomaton[] sliceAutomata(Terms terms) throws IOException {
+    final List<BytesRef> splitPoints = splitPoints(terms, numSlices);
+    if (splitPoints.isEmpty()) {
+      return null;
+    }
+    final CompiledAutomaton[] automata = new CompiledAutomaton[splitPoints.size() + 1];
+    for (int i = 0; i < automata.length; ++i) {
+      final BytesRef lower = i == 0 ? null : splitPoints.get(i - 1);
+      final BytesRef upper = i == splitPoints.size() ? null : splitPoints.get(i);
+      final Automaton range = Automata.makeBinaryInterval(lower, true, upper, upper == null);
+      try {
+        automata[i] = new CompiledAutomaton(Operations.intersection(compiled.automaton, range),
+            null, true, maxDeterminizedStates, true);
+      } catch (TooComplexToDeterminizeException e) {
+        // the intersection with the range may need more states than the automaton itself
+        return null;
+      }
+    }
+    return automata;
+  }
+
+  /**
+   * Return the documents that contain a term that is accepted by the
+   * automaton, or {@code null} if terms could not be split, in which case
+   * the intersection should be run on the calling thread.
+   */
+  DocIdSet intersect(Terms terms, int maxDoc, Executor executor) throws IOException {
+    final CompiledAutomaton[] automata = sliceAutomata(terms);
+    if (automata == null) {
+      return null;
+    }
+
+    final FixedBitSet bits = new FixedBitSet(maxDoc);
+    final List<FutureTask<Long>> tasks = new ArrayList<>();
+    for (CompiledAutomaton sliceCompiled : automata) {
+      tasks.add(new FutureTask<>(() -> intersect(terms, sliceCompiled, bits)));
+    }
+    for (FutureTask<Long> task : tasks) {
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // the task will run on the calling thread below
+      }
+    }
+    // run tasks that haven't been picked up by the executor yet on the calling
+    // thread, this is a no-op for tasks that are already running or done
+    for (FutureTask<Long> task : tasks) {
+      task.run();
+    }
+
+    long cost = 0;
+    for (FutureTask<Long> task : tasks) {
+      try {
+        cost += task.get();
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+    return new BitDocIdSet(bits, Math.min(cost, maxDoc));
+  }
+
+  /**
+   * Add documents that contain a term of the range of {@code sliceCompiled}
+   * to {@code bits}, which is shared by all slices. Return the sum of the
+   * document frequencies of matching terms.
+   */
+  private static long intersect(Terms terms, CompiledAutomaton sliceCompiled, FixedBitSet bits) throws IOException {
+    final TermsEnum termsEnum = sliceCompiled.getTermsEnum(terms);
+    final int[] buffer = new int[BUFFER_SIZE];
+    int bufferSize = 0;
+    long cost = 0;
+    PostingsEnum docs = null;
+    while (termsEnum.next() != null) {
+      docs = termsEnum.postings(docs, PostingsEnum.NONE);
+      for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+        if (bufferSize == buffer.length) {
+          flush(buffer, bufferSize, bits);
+          bufferSize = 0;
+        }
+        buffer[bufferSize++] = doc;
+        cost++;
+      }
+    }
+    flush(buffer, bufferSize, bits);
+    return cost;
+  }
+
+  private static void flush(int[] buffer, int size, FixedBitSet bits) {
+    // FixedBitSet is not thread-safe, slices add batches of doc IDs under its lock
+    synchronized (bits) {
+      for (int i = 0; i < size; ++i) {
+        bits.set(buffer[i]);
+      }
+    }
+  }
+
+  /**
+   * Compute up to {@code numSlices - 1} terms that split the terms
+   * dictionary into ranges that have about the same number of distinct
+   * prefixes.
+   */
+  static List<BytesRef> splitPoints(Terms terms, int numSlices) throws IOException {
+    final BytesRef min = terms.getMin();
+    final BytesRef max = terms.getMax();
+    if (min == null || max == null || min.equals(max)) {
+      return new ArrayList<>();
+    }
+    final TermsEnum termsEnum = terms.iterator();
+    final int commonPrefixLength = StringHelper.bytesDifference(min, max);
+    List<BytesRef> prefixes = new ArrayList<>();
+    final BytesRef commonPrefix = BytesRef.deepCopyOf(min);
+    commonPrefix.length = commonPrefixLength;
+    prefixes.add(commonPrefix);
+    final int targetNumPrefixes = Math.min(MAX_PREFIXES, numSlices * PREFIXES_PER_SLICE);
+    final BytesRefBuilder seekTerm = new BytesRefBuilder();
+    for (int depth = 0; depth < MAX_DEPTH && prefixes.size() < targetNumPrefixes; ++depth) {
+      final List<BytesRef> longerPrefixes = new ArrayList<>();
+      for (int i = 0; i < prefixes.size(); ++i) {
+        final BytesRef prefix = prefixes.get(i);
+        // prefixes that could not be expanded keep their place
+        final int remaining = prefixes.size() - i - 1;
+        if (longerPrefixes.size() + remaining >= MAX_PREFIXES) {
+          longerPrefixes.add(prefix);
+          continue;
+        }
+        final int numPrefixes = longerPrefixes.size();
+        addLongerPrefixes(termsEnum, prefix, seekTerm, longerPrefixes, MAX_PREFIXES - remaining);
+        if (longerPrefixes.size() == numPrefixes) {
+          longerPrefixes.add(prefix);
+        }
+      }
+      prefixes = longerPrefixes;
+    }
+
+    final List<BytesRef> splitPoints = new ArrayList<>();
+    for (int i = 1; i < numSlices; ++i) {
+      final int index = (int) ((long) i * prefixes.size() / numSlices);
+      if (index == 0) {
+        continue;
+      }
+      final BytesRef splitPoint = prefixes.get(index);
+      if (splitPoints.isEmpty() || splitPoints.get(splitPoints.size() - 1).equals(splitPoint) == false) {
+        splitPoints.add(splitPoint);
+      }
+    }
+    return splitPoints;
+  }
+
+  /** Add all prefixes of existing terms that are one byte longer than {@code prefix}, in order. */
+  private static void addLongerPrefixes(TermsEnum termsEnum, BytesRef prefix, BytesRefBuilder seekTerm,
+                                        List<BytesRef> prefixes, int maxNumPrefixes) throws IOException {
+    for (int b = 0; b < 256 && prefixes.size() < maxNumPrefixes; ) {
+      seekTerm.copyBytes(prefix);
+      seekTerm.append((byte) b);
+      if (termsEnum.seekCeil(seekTerm.get()) == TermsEnum.SeekStatus.END) {
+        return;
+      }
+      final BytesRef term = termsEnum.term();
+      if (term.length <= prefix.length
+          || FutureArrays.equals(term.bytes, term.offset, term.offset + prefix.length,
+              prefix.bytes, prefix.offset, prefix.offset + prefix.length) == false) {
+        return;
+      }
+      final int next = term.bytes[term.offset + prefix.length] & 0xFF;
+      seekTerm.copyBytes(prefix);
+      seekTerm.append((byte) next);
+      prefixes.add(seekTerm.toBytesRef());
+      b = next + 1;
+    }
+  }
+}
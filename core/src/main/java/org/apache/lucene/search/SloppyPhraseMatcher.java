@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 
 import org.apache.lucene.index.Impact;
 import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.similarities.Similarity.SimScorer;
@@ -93,36 +94,7 @@ final class SloppyPhraseMatcher extends PhraseMatcher {
     }
 
     approximation = ConjunctionDISI.intersectIterators(Arrays.stream(postings).map(p -> p.postings).collect(Collectors.toList()));
-    // What would be a good upper bound of the sloppy frequency? A sum of the
-    // sub frequencies would be correct, but it is usually so much higher than
-    // the actual sloppy frequency that it doesn't help skip irrelevant
-    // documents. As a consequence for now, sloppy phrase queries use dummy
-    // impacts:
-    final ImpactsSource impactsSource = new ImpactsSource() {
-      @Override
-      public Impacts getImpacts() throws IOException {
-        return new Impacts() {
-
-          @Override
-          public int numLevels() {
-            return 1;
-          }
-
-          @Override
-          public List<Impact> getImpacts(int level) {
-            return Collections.singletonList(new Impact(Integer.MAX_VALUE, 1L));
-          }
-
-          @Override
-          public int getDocIdUpTo(int level) {
-            return DocIdSetIterator.NO_MORE_DOCS;
-          }
-        };
-      }
-
-      @Override
-      public void advanceShallow(int target) throws IOException {}
-    };
+    final ImpactsSource impactsSource = sumImpacts(Arrays.stream(postings).map(p -> p.impacts).toArray(ImpactsEnum[]::new));
     impactsApproximation = new ImpactsDISI(approximation, impactsSource, scorer);
   }
 
@@ -640,4 +612,149 @@ final class SloppyPhraseMatcher extends PhraseMatcher {
     return tg;
   }
 
+
+  /**
+   * Merge impacts for multiple terms of a sloppy phrase. Every term position
+   * can be at the head of at most one matching phrase and every match
+   * contributes at most {@code 1} to the sloppy frequency, so the sum of the
+   * frequencies of the terms is an upper bound of the sloppy frequency, see
+   * also {@link #maxFreq()}.
+   */
+  static ImpactsSource sumImpacts(ImpactsEnum[] impactsEnums) {
+    // Iteration of block boundaries uses the impacts enum with the lower cost.
+    // This is consistent with ExactPhraseMatcher#mergeImpacts.
+    int tmpLeadIndex = -1;
+    for (int i = 0; i < impactsEnums.length; ++i) {
+      if (tmpLeadIndex == -1 || impactsEnums[i].cost() < impactsEnums[tmpLeadIndex].cost()) {
+        tmpLeadIndex = i;
+      }
+    }
+    final int leadIndex = tmpLeadIndex;
+
+    return new ImpactsSource() {
+
+      @Override
+      public Impacts getImpacts() throws IOException {
+        final Impacts[] impacts = new Impacts[impactsEnums.length];
+        for (int i = 0; i < impactsEnums.length; ++i) {
+          impacts[i] = impactsEnums[i].getImpacts();
+        }
+        final Impacts lead = impacts[leadIndex];
+        return new Impacts() {
+
+          @Override
+          public int numLevels() {
+            // Delegate to the lead
+            return lead.numLevels();
+          }
+
+          @Override
+          public int getDocIdUpTo(int level) {
+            // Delegate to the lead
+            return lead.getDocIdUpTo(level);
+          }
+
+          @Override
+          public List<Impact> getImpacts(int level) {
+            final int docIdUpTo = getDocIdUpTo(level);
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            final List<Impact>[] impactLists = new List[impacts.length];
+            for (int i = 0; i < impacts.length; ++i) {
+              final int impactsLevel = getLevel(impacts[i], docIdUpTo);
+              if (impactsLevel == -1) {
+                // Unlike with exact phrases, a term whose impacts are unknown
+                // makes the sum unbounded.
+                return DUMMY_IMPACTS;
+              }
+              final List<Impact> impactList = impacts[i].getImpacts(impactsLevel);
+              final Impact firstImpact = impactList.get(0);
+              if (firstImpact.freq == Integer.MAX_VALUE && firstImpact.norm == 1L) {
+                // Dummy impacts, the sum is unbounded too.
+                return DUMMY_IMPACTS;
+              }
+              impactLists[i] = impactList;
+            }
+            return sumImpactLists(impactLists);
+          }
+        };
+      }
+
+      @Override
+      public void advanceShallow(int target) throws IOException {
+        for (ImpactsEnum impactsEnum : impactsEnums) {
+          impactsEnum.advanceShallow(target);
+        }
+      }
+    };
+  }
+
+  private static final List<Impact> DUMMY_IMPACTS = Collections.singletonList(new Impact(Integer.MAX_VALUE, 1L));
+
+  /**
+   * Return the minimum level whose impacts are valid up to {@code docIdUpTo},
+   * or {@code -1} if there is no such level.
+   */
+  private static int getLevel(Impacts impacts, int docIdUpTo) {
+    for (int level = 0, numLevels = impacts.numLevels(); level < numLevels; ++level) {
+      if (impacts.getDocIdUpTo(level) >= docIdUpTo) {
+        return level;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Compute impacts whose frequencies are the sum of the frequencies of the
+   * given lists of impacts. A document whose norm is {@code n} and that
+   * contains all terms has, for every term, a frequency that is at most the
+   * frequency of the last impact whose norm is less than or equal to {@code n},
+   * so we walk all norms in increasing order and sum up these frequencies.
+   */
+  static List<Impact> sumImpactLists(List<Impact>[] impactLists) {
+    // number of impacts of each list whose norm is less than or equal to the current norm
+    final int[] upTo = new int[impactLists.length];
+    final List<Impact> mergedImpacts = new ArrayList<>();
+    while (true) {
+      boolean hasMoreNorms = false;
+      long norm = 0;
+      for (int i = 0; i < impactLists.length; ++i) {
+        if (upTo[i] < impactLists[i].size()) {
+          final long nextNorm = impactLists[i].get(upTo[i]).norm;
+          if (hasMoreNorms == false || Long.compareUnsigned(nextNorm, norm) < 0) {
+            norm = nextNorm;
+            hasMoreNorms = true;
+          }
+        }
+      }
+      if (hasMoreNorms == false) {
+        break;
+      }
+
+      long freq = 0;
+      boolean hasAllTerms = true;
+      for (int i = 0; i < impactLists.length; ++i) {
+        final List<Impact> impactList = impactLists[i];
+        while (upTo[i] < impactList.size() && Long.compareUnsigned(impactList.get(upTo[i]).norm, norm) <= 0) {
+          upTo[i]++;
+        }
+        if (upTo[i] == 0) {
+          // no document with this norm contains this term, so it can't match the phrase
+          hasAllTerms = false;
+        } else {
+          freq += impactList.get(upTo[i] - 1).freq;
+        }
+      }
+
+      if (hasAllTerms) {
+        final int cappedFreq = (int) Math.min(freq, Integer.MAX_VALUE);
+        // impacts that are not more competitive than the previous one may be skipped
+        if (mergedImpacts.isEmpty() || mergedImpacts.get(mergedImpacts.size() - 1).freq < cappedFreq) {
+          mergedImpacts.add(new Impact(cappedFreq, norm));
+        }
+      }
+    }
+    assert mergedImpacts.isEmpty() == false;
+    return mergedImpacts;
+  }
+
 }
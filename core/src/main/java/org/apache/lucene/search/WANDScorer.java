@@ -73,7 +73,7 @@ final class WANDScorer extends Scorer {
    * floating-point arithmetic errors. Those are rounded up in order
    * to make sure we do not miss any matches.
    */
-  private static long scaleMaxScore(float maxScore, int scalingFactor) {
+  static long scaleMaxScore(float maxScore, int scalingFactor) {
     assert Float.isNaN(maxScore) == false;
     assert maxScore >= 0;
 
@@ -96,7 +96,7 @@ final class WANDScorer extends Scorer {
    * Scale min competitive scores the same way as max scores but this time
    * by rounding down in order to make sure that we do not miss any matches.
    */
-  private static long scaleMinScore(float minScore, int scalingFactor) {
+  static long scaleMinScore(float minScore, int scalingFactor) {
     assert Float.isNaN(minScore) == false;
     assert minScore >= 0;
 
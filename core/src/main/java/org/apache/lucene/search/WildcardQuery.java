@@ -53,7 +53,7 @@ public class WildcardQuery extends AutomatonQuery {
    * Constructs a query for terms matching <code>term</code>. 
    */
   public WildcardQuery(Term term) {
-    super(term, toAutomaton(term));
+    this(term, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
   }
   
   /**
@@ -64,7 +64,16 @@ public class WildcardQuery extends AutomatonQuery {
    *   space but can process more complex automata.
    */
   public WildcardQuery(Term term, int maxDeterminizedStates) {
-    super(term, toAutomaton(term), maxDeterminizedStates);
+    super(term, getAutomaton(term, maxDeterminizedStates), maxDeterminizedStates);
+  }
+
+  private static AutomatonCache.CachedAutomaton getAutomaton(Term term, int maxDeterminizedStates) {
+    final AutomatonCache cache = AutomatonCache.getDefaultCache();
+    if (cache == null) {
+      return compile(() -> toAutomaton(term), maxDeterminizedStates);
+    }
+    return cache.getWildcardAutomaton(term.text(), maxDeterminizedStates,
+        () -> compile(() -> toAutomaton(term), maxDeterminizedStates));
   }
 
   /**
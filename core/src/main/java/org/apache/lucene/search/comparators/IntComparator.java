@@ -110,6 +110,12 @@ public class IntComparator extends NumericComparator<Integer> {
       IntPoint.encodeDimension(bottom, packedValue, 0);
     }
 
+    @Override
+    protected boolean encodeDocValue(long value, byte[] packedValue) {
+      IntPoint.encodeDimension((int) value, packedValue, 0);
+      return true;
+    }
+
     @Override
     protected void encodeTop(byte[] packedValue) {
       IntPoint.encodeDimension(topValue, packedValue, 0);
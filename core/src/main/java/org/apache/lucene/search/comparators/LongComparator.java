@@ -110,6 +110,12 @@ public class LongComparator extends NumericComparator<Long> {
       LongPoint.encodeDimension(bottom, packedValue, 0);
     }
 
+    @Override
+    protected boolean encodeDocValue(long value, byte[] packedValue) {
+      LongPoint.encodeDimension(value, packedValue, 0);
+      return true;
+    }
+
     @Override
     protected void encodeTop(byte[] packedValue) {
       LongPoint.encodeDimension(topValue, packedValue, 0);
@@ -18,6 +18,7 @@
 package org.apache.lucene.search.comparators;
 
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesStatistics;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.PointValues;
@@ -76,6 +77,8 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
   public abstract class NumericLeafComparator implements LeafFieldComparator {
     protected final NumericDocValues docValues;
     private final PointValues pointValues;
+    // only used if there are no points, to skip entire segments
+    private final DocValuesStatistics docValuesStatistics;
     private final boolean enableSkipping; // if skipping functionality should be enabled on this segment
     private final int maxDoc;
     private final byte[] minValueAsBytes;
@@ -89,8 +92,17 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
     public NumericLeafComparator(LeafReaderContext context) throws IOException {
       this.docValues = getNumericDocValues(context, field);
       this.pointValues = canSkipDocuments ? context.reader().getPointValues(field) : null;
-      if (pointValues != null) {
-        this.enableSkipping = true; // skipping is enabled when points are available
+      DocValuesStatistics docValuesStatistics = null;
+      if (canSkipDocuments && pointValues == null) {
+        docValuesStatistics = context.reader().getDocValuesStatistics(field);
+        if (docValuesStatistics != null && encodeDocValue(docValuesStatistics.getMinValue(), new byte[bytesCount]) == false) {
+          docValuesStatistics = null; // doc values are not ordered like points
+        }
+      }
+      this.docValuesStatistics = docValuesStatistics;
+      if (pointValues != null || docValuesStatistics != null) {
+        // skipping is enabled when points or doc values statistics are available
+        this.enableSkipping = true;
         this.maxDoc = context.reader().maxDoc();
         this.maxValueAsBytes = reverse == false ? new byte[bytesCount] : topValueSet ? new byte[bytesCount] : null;
         this.minValueAsBytes = reverse ? new byte[bytesCount] : topValueSet ? new byte[bytesCount] : null;
@@ -139,8 +151,9 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
     // update its iterator to include possibly only docs that are "stronger" than the current bottom entry
     private void updateCompetitiveIterator() throws IOException {
       if (enableSkipping == false || hitsThresholdReached == false || queueFull == false) return;
-      // if some documents have missing points, check that missing values prohibits optimization
-      if ((pointValues.getDocCount() < maxDoc) && isMissingValueCompetitive()) {
+      // if some documents have missing values, check that missing values prohibits optimization
+      final int docCount = pointValues != null ? pointValues.getDocCount() : docValuesStatistics.getDocCount();
+      if ((docCount < maxDoc) && isMissingValueCompetitive()) {
         return; // we can't filter out documents, as documents with missing values are competitive
       }
 
@@ -214,6 +227,19 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
           return PointValues.Relation.CELL_INSIDE_QUERY;
         }
       };
+      if (pointValues == null) {
+        // only segment-level statistics are available, we can't skip individual documents
+        // but can skip the entire segment if none of its values is competitive
+        final byte[] minPackedValue = new byte[bytesCount];
+        final byte[] maxPackedValue = new byte[bytesCount];
+        encodeDocValue(docValuesStatistics.getMinValue(), minPackedValue);
+        encodeDocValue(docValuesStatistics.getMaxValue(), maxPackedValue);
+        if (visitor.compare(minPackedValue, maxPackedValue) == PointValues.Relation.CELL_OUTSIDE_QUERY) {
+          competitiveIterator = DocIdSetIterator.empty();
+          iteratorCost = 0;
+        }
+        return;
+      }
       final long threshold = iteratorCost >>> 3;
       long estimatedNumberOfMatches = pointValues.estimatePointCount(visitor); // runs in O(log(numPoints))
       if (estimatedNumberOfMatches >= threshold) {
@@ -253,6 +279,16 @@ public abstract class NumericComparator<T extends Number> extends FieldComparato
       };
     }
 
+    /**
+     * Encode a doc value the same way as the points of the field and return
+     * {@code true}, or return {@code false} if doc values are not ordered like
+     * points, in which case {@link DocValuesStatistics} can't be used to skip
+     * segments. The default implementation returns {@code false}.
+     */
+    protected boolean encodeDocValue(long value, byte[] packedValue) {
+      return false;
+    }
+
     protected abstract boolean isMissingValueCompetitive();
 
     protected abstract void encodeBottom(byte[] packedValue);
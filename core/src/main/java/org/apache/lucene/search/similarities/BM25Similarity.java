@@ -184,12 +184,39 @@ public class BM25Similarity extends Similarity {
   public final SimScorer scorer(float boost, CollectionStatistics collectionStats, TermStatistics... termStats) {
     Explanation idf = termStats.length == 1 ? idfExplain(collectionStats, termStats[0]) : idfExplain(collectionStats, termStats);
     float avgdl = avgFieldLength(collectionStats);
+    return new BM25Scorer(boost, k1, b, idf, avgdl, normInverses(avgdl));
+  }
+
+  /** Precomputed inverses of the length normalization factors for a given average field length. */
+  private static final class NormInverses {
+    final float avgdl;
+    final float[] cache;
 
-    float[] cache = new float[256];
-    for (int i = 0; i < cache.length; i++) {
-      cache[i] = 1f / (k1 * ((1 - b) + b * LENGTH_TABLE[i] / avgdl));
+    NormInverses(float avgdl, float[] cache) {
+      this.avgdl = avgdl;
+      this.cache = cache;
+    }
+  }
+
+  // direct-mapped memo of norm inverses keyed by avgdl, so that the term scorers
+  // that a query creates for the same field share a single read-only table. Races
+  // are benign: entries are immutable and a lost update only recomputes a table.
+  private final NormInverses[] normInverses = new NormInverses[16];
+
+  /** Return the inverses of the length normalization factors for the given average field length. */
+  float[] normInverses(float avgdl) {
+    final int bits = Float.floatToIntBits(avgdl);
+    final int slot = (bits ^ (bits >>> 16)) & (normInverses.length - 1);
+    NormInverses inverses = normInverses[slot];
+    if (inverses == null || Float.compare(inverses.avgdl, avgdl) != 0) {
+      float[] cache = new float[256];
+      for (int i = 0; i < cache.length; i++) {
+        cache[i] = 1f / (k1 * ((1 - b) + b * LENGTH_TABLE[i] / avgdl));
+      }
+      inverses = new NormInverses(avgdl, cache);
+      normInverses[slot] = inverses;
     }
-    return new BM25Scorer(boost, k1, b, idf, avgdl, cache);
+    return inverses.cache;
   }
 
   /** Collection statistics for the BM25 model. */
@@ -204,7 +231,7 @@ public class BM25Similarity extends Similarity {
     private final Explanation idf;
     /** The average document length. */
     private final float avgdl;
-    /** precomputed norm[256] with k1 * ((1 - b) + b * dl / avgdl) */
+    /** precomputed inverses of norm[256] with k1 * ((1 - b) + b * dl / avgdl), shared, must not be modified */
     private final float[] cache;
     /** weight (idf * boost) */
     private final float weight;
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
@@ -185,7 +186,7 @@ public class SpanNearQuery extends SpanQuery implements Cloneable {
     for (SpanQuery q : clauses) {
       subWeights.add(q.createWeight(searcher, scoreMode, boost));
     }
-    return new SpanNearWeight(subWeights, searcher, scoreMode.needsScores() ? getTermStates(subWeights) : null, boost);
+    return new SpanNearWeight(subWeights, searcher, scoreMode.needsScores() ? getTermStates(subWeights) : null, scoreMode, boost);
   }
 
   public class SpanNearWeight extends SpanWeight {
@@ -193,7 +194,15 @@ public class SpanNearQuery extends SpanQuery implements Cloneable {
     final List<SpanWeight> subWeights;
 
     public SpanNearWeight(List<SpanWeight> subWeights, IndexSearcher searcher, Map<Term, TermStates> terms, float boost) throws IOException {
-      super(SpanNearQuery.this, searcher, terms, boost);
+      this(subWeights, searcher, terms, terms == null ? ScoreMode.COMPLETE_NO_SCORES : ScoreMode.COMPLETE, boost);
+    }
+
+    /**
+     * Creates a SpanNearWeight for the given scoring mode.
+     */
+    public SpanNearWeight(List<SpanWeight> subWeights, IndexSearcher searcher, Map<Term, TermStates> terms,
+        ScoreMode scoreMode, float boost) throws IOException {
+      super(SpanNearQuery.this, searcher, terms, scoreMode, boost);
       this.subWeights = subWeights;
     }
 
@@ -227,6 +236,23 @@ public class SpanNearQuery extends SpanQuery implements Cloneable {
           : new NearSpansOrdered(slop, subSpans);
     }
 
+    @Override
+    ImpactsSource getImpactsSource(LeafReaderContext context) throws IOException {
+      if (inOrder == false) {
+        // unordered sub spans may overlap, which makes widths negative
+        return null;
+      }
+      // Ordered matches consume a distinct position of the first clause each
+      // and have a non-negative width, so the sloppy frequency is bounded by
+      // the number of matches of the first clause.
+      final SpanWeight first = subWeights.get(0);
+      if (field.equals(first.field) == false) {
+        // eg. FieldMaskingSpanQuery, impacts would refer to the norms of another field
+        return null;
+      }
+      return first.getImpactsSource(context);
+    }
+
     @Override
     public void extractTerms(Set<Term> terms) {
       for (SpanWeight w : subWeights) {
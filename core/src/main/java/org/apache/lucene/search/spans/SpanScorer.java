@@ -20,7 +20,9 @@ package org.apache.lucene.search.spans;
 import java.io.IOException;
 import java.util.Objects;
 
+import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ImpactsDISI;
 import org.apache.lucene.search.LeafSimScorer;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TwoPhaseIterator;
@@ -33,6 +35,9 @@ public class SpanScorer extends Scorer {
 
   protected final Spans spans;
   protected final LeafSimScorer docScorer;
+  /** used to skip non-competitive blocks of documents, may be null */
+  private final ImpactsDISI impactsDisi;
+  private final TwoPhaseIterator twoPhase;
 
   /** accumulated sloppy freq (computed in setFreqCurrentDoc) */
   private float freq;
@@ -40,11 +45,46 @@ public class SpanScorer extends Scorer {
   private int numMatches;
   private int lastScoredDoc = -1; // last doc we called setFreqCurrentDoc() for
 
-  /** Sole constructor. */
+  /** Create a {@link SpanScorer} that doesn't know about the maximum score of its spans. */
   public SpanScorer(SpanWeight weight, Spans spans, LeafSimScorer docScorer) {
+    this(weight, spans, docScorer, null);
+  }
+
+  /**
+   * Create a {@link SpanScorer} that uses the given {@link ImpactsSource} in
+   * order to compute upper bounds of the score and to skip non-competitive
+   * blocks of documents. Frequencies of the impacts must be upper bounds of the
+   * {@link #sloppyFreq() sloppy frequency} of the spans. {@code impactsSource}
+   * is ignored if it is {@code null} or if scores are not needed.
+   */
+  public SpanScorer(SpanWeight weight, Spans spans, LeafSimScorer docScorer, ImpactsSource impactsSource) {
     super(weight);
     this.spans = Objects.requireNonNull(spans);
     this.docScorer = docScorer;
+    if (impactsSource == null || docScorer == null) {
+      impactsDisi = null;
+      twoPhase = null;
+    } else {
+      final TwoPhaseIterator spansTwoPhase = spans.asTwoPhaseIterator();
+      if (spansTwoPhase == null) {
+        impactsDisi = new ImpactsDISI(spans, impactsSource, docScorer.getSimScorer());
+        twoPhase = null;
+      } else {
+        // skip over the approximation so that positions are only checked on competitive blocks
+        impactsDisi = new ImpactsDISI(spansTwoPhase.approximation(), impactsSource, docScorer.getSimScorer());
+        twoPhase = new TwoPhaseIterator(impactsDisi) {
+          @Override
+          public boolean matches() throws IOException {
+            return spansTwoPhase.matches();
+          }
+
+          @Override
+          public float matchCost() {
+            return spansTwoPhase.matchCost();
+          }
+        };
+      }
+    }
   }
 
   /** return the Spans for this Scorer **/
@@ -59,11 +99,19 @@ public class SpanScorer extends Scorer {
 
   @Override
   public DocIdSetIterator iterator() {
+    if (twoPhase != null) {
+      return TwoPhaseIterator.asDocIdSetIterator(twoPhase);
+    } else if (impactsDisi != null) {
+      return impactsDisi;
+    }
     return spans;
   }
 
   @Override
   public TwoPhaseIterator twoPhaseIterator() {
+    if (impactsDisi != null) {
+      return twoPhase;
+    }
     return spans.asTwoPhaseIterator();
   }
 
@@ -134,8 +182,26 @@ public class SpanScorer extends Scorer {
     return scoreCurrentDoc();
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    if (impactsDisi != null) {
+      impactsDisi.setMinCompetitiveScore(minScore);
+    }
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    if (impactsDisi != null) {
+      return impactsDisi.advanceShallow(target);
+    }
+    return super.advanceShallow(target);
+  }
+
   @Override
   public float getMaxScore(int upTo) throws IOException {
+    if (impactsDisi != null) {
+      return impactsDisi.getMaxScore(upTo);
+    }
     return Float.POSITIVE_INFINITY;
   }
 
@@ -23,6 +23,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
@@ -82,7 +85,7 @@ public class SpanTermQuery extends SpanQuery {
     else {
       context = termStates;
     }
-    return new SpanTermWeight(context, searcher, scoreMode.needsScores() ? Collections.singletonMap(term, context) : null, boost);
+    return new SpanTermWeight(context, searcher, scoreMode.needsScores() ? Collections.singletonMap(term, context) : null, scoreMode, boost);
   }
 
   @Override
@@ -97,7 +100,15 @@ public class SpanTermQuery extends SpanQuery {
     final TermStates termStates;
 
     public SpanTermWeight(TermStates termStates, IndexSearcher searcher, Map<Term, TermStates> terms, float boost) throws IOException {
-      super(SpanTermQuery.this, searcher, terms, boost);
+      this(termStates, searcher, terms, terms == null ? ScoreMode.COMPLETE_NO_SCORES : ScoreMode.COMPLETE, boost);
+    }
+
+    /**
+     * Creates a SpanTermWeight for the given scoring mode.
+     */
+    public SpanTermWeight(TermStates termStates, IndexSearcher searcher, Map<Term, TermStates> terms,
+        ScoreMode scoreMode, float boost) throws IOException {
+      super(SpanTermQuery.this, searcher, terms, scoreMode, boost);
       this.termStates = termStates;
       assert termStates != null : "TermStates must not be null";
     }
@@ -141,6 +152,42 @@ public class SpanTermQuery extends SpanQuery {
       float positionsCost = termPositionsCost(termsEnum) * PHRASE_TO_SPAN_TERM_POSITIONS_COST;
       return new TermSpans(getSimScorer(context), postings, term, positionsCost);
     }
+
+    @Override
+    ImpactsSource getImpactsSource(LeafReaderContext context) throws IOException {
+      final TermState state = termStates.get(context);
+      if (state == null) {
+        return null;
+      }
+      final Terms terms = context.reader().terms(term.field());
+      if (terms == null) {
+        return null;
+      }
+      // The impacts enum is only pulled if impacts are actually used, ie. when
+      // scores are computed in TOP_SCORES mode.
+      return new ImpactsSource() {
+        private ImpactsEnum impactsEnum;
+
+        private ImpactsEnum impactsEnum() throws IOException {
+          if (impactsEnum == null) {
+            final TermsEnum termsEnum = terms.iterator();
+            termsEnum.seekExact(term.bytes(), state);
+            impactsEnum = termsEnum.impacts(PostingsEnum.FREQS);
+          }
+          return impactsEnum;
+        }
+
+        @Override
+        public void advanceShallow(int target) throws IOException {
+          impactsEnum().advanceShallow(target);
+        }
+
+        @Override
+        public Impacts getImpacts() throws IOException {
+          return impactsEnum().getImpacts();
+        }
+      };
+    }
   }
 
   /** A guess of
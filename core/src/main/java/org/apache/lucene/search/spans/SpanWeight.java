@@ -23,6 +23,7 @@ import java.util.Comparator;
 import java.util.Locale;
 import java.util.Map;
 
+import org.apache.lucene.index.ImpactsSource;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
@@ -35,6 +36,7 @@ import org.apache.lucene.search.Matches;
 import org.apache.lucene.search.MatchesIterator;
 import org.apache.lucene.search.MatchesUtils;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.Weight;
@@ -82,6 +84,7 @@ public abstract class SpanWeight extends Weight {
   protected final Similarity similarity;
   protected final Similarity.SimScorer simScorer;
   protected final String field;
+  final ScoreMode scoreMode;
 
   /**
    * Create a new SpanWeight
@@ -92,9 +95,24 @@ public abstract class SpanWeight extends Weight {
    * @throws IOException on error
    */
   public SpanWeight(SpanQuery query, IndexSearcher searcher, Map<Term, TermStates> termStates, float boost) throws IOException {
+    this(query, searcher, termStates, termStates == null ? ScoreMode.COMPLETE_NO_SCORES : ScoreMode.COMPLETE, boost);
+  }
+
+  /**
+   * Create a new SpanWeight
+   * @param query the parent query
+   * @param searcher the IndexSearcher to query against
+   * @param termStates a map of terms to {@link TermStates} for use in building the similarity.  May
+   *                     be null if scores are not required
+   * @param scoreMode how scores will be consumed, impacts are only used with {@link ScoreMode#TOP_SCORES}
+   * @throws IOException on error
+   */
+  public SpanWeight(SpanQuery query, IndexSearcher searcher, Map<Term, TermStates> termStates,
+      ScoreMode scoreMode, float boost) throws IOException {
     super(query);
     this.field = query.getField();
     this.similarity = searcher.getSimilarity();
+    this.scoreMode = scoreMode;
     this.simScorer = buildSimWeight(query, searcher, termStates, boost);
   }
 
@@ -138,7 +156,19 @@ public abstract class SpanWeight extends Weight {
       return null;
     }
     final LeafSimScorer docScorer = getSimScorer(context);
-    return new SpanScorer(this, spans, docScorer);
+    // impacts only help skip non-competitive documents, which only happens with TOP_SCORES
+    final ImpactsSource impactsSource = docScorer != null && scoreMode == ScoreMode.TOP_SCORES
+        ? getImpactsSource(context) : null;
+    return new SpanScorer(this, spans, docScorer, impactsSource);
+  }
+
+  /**
+   * Return an {@link ImpactsSource} whose frequencies are upper bounds of the
+   * sloppy frequencies of the spans of this weight on the given segment, or
+   * {@code null} if no such bounds are known, which is the default.
+   */
+  ImpactsSource getImpactsSource(LeafReaderContext context) throws IOException {
+    return null;
   }
 
   /**
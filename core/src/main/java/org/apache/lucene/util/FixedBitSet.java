@@ -176,6 +176,24 @@ public final class FixedBitSet extends BitSet implements Bits, Accountable {
     return (int) BitUtil.pop_array(bits, 0, numWords);
   }
 
+  /**
+   * Returns the number of runs of consecutive set bits in this set. This is
+   * useful to figure out whether a run-length encoding would be more compact
+   * than this bit set.
+   */
+  public int runCount() {
+    // Depends on the ghost bits being clear!
+    int runs = 0;
+    long carry = 0; // whether the last bit of the previous word was set
+    for (int i = 0; i < numWords; ++i) {
+      final long word = bits[i];
+      // a run starts wherever a bit is set and the previous bit is not
+      runs += Long.bitCount(word & ~((word << 1) | carry));
+      carry = word >>> 63;
+    }
+    return runs;
+  }
+
   @Override
   public boolean get(int index) {
     assert index >= 0 && index < numBits: "index=" + index + ", numBits=" + numBits;
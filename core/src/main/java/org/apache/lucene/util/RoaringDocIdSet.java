@@ -29,7 +29,10 @@ import org.apache.lucene.search.DocIdSetIterator;
  * independently. In each block, if less than 2^12 bits are set, then
  * documents are simply stored in a short[]. If more than 2^16-2^12 bits are
  * set, then the inverse of the set is encoded in a simple short[]. Otherwise
- * a {@link FixedBitSet} is used.
+ * a {@link FixedBitSet} is used. Regardless of density, blocks whose documents
+ * form few runs of consecutive doc IDs, which is typical of index-sorted
+ * segments, are stored as a short[] of (first, last) pairs if this is more
+ * compact than the above encodings.
  *
  * @lucene.internal
  */
@@ -72,23 +75,38 @@ public class RoaringDocIdSet extends DocIdSet {
         // Use sparse encoding
         assert denseBuffer == null;
         if (currentBlockCardinality > 0) {
-          sets[currentBlock] = new ShortArrayDocIdSet(ArrayUtil.copyOfSubArray(buffer, 0, currentBlockCardinality));
+          final int numRuns = runCount(buffer, currentBlockCardinality);
+          if (numRuns << 1 < currentBlockCardinality) {
+            // Doc ids are clustered, encode runs
+            sets[currentBlock] = new ShortRunDocIdSet(runs(buffer, currentBlockCardinality, numRuns), currentBlockCardinality);
+          } else {
+            sets[currentBlock] = new ShortArrayDocIdSet(ArrayUtil.copyOfSubArray(buffer, 0, currentBlockCardinality));
+          }
         }
       } else {
         assert denseBuffer != null;
         assert denseBuffer.cardinality() == currentBlockCardinality;
+        final int numRuns = denseBuffer.runCount();
         if (denseBuffer.length() == BLOCK_SIZE && BLOCK_SIZE - currentBlockCardinality < MAX_ARRAY_LENGTH) {
-          // Doc ids are very dense, inverse the encoding
-          final short[] excludedDocs = new short[BLOCK_SIZE - currentBlockCardinality];
-          denseBuffer.flip(0, denseBuffer.length());
-          int excludedDoc = -1;
-          for (int i = 0; i < excludedDocs.length; ++i) {
-            excludedDoc = denseBuffer.nextSetBit(excludedDoc + 1);
-            assert excludedDoc != DocIdSetIterator.NO_MORE_DOCS;
-            excludedDocs[i] = (short) excludedDoc;
+          if (numRuns << 1 < BLOCK_SIZE - currentBlockCardinality) {
+            // Doc ids are very dense but clustered, encode runs
+            sets[currentBlock] = new ShortRunDocIdSet(runs(denseBuffer, numRuns), currentBlockCardinality);
+          } else {
+            // Doc ids are very dense, inverse the encoding
+            final short[] excludedDocs = new short[BLOCK_SIZE - currentBlockCardinality];
+            denseBuffer.flip(0, denseBuffer.length());
+            int excludedDoc = -1;
+            for (int i = 0; i < excludedDocs.length; ++i) {
+              excludedDoc = denseBuffer.nextSetBit(excludedDoc + 1);
+              assert excludedDoc != DocIdSetIterator.NO_MORE_DOCS;
+              excludedDocs[i] = (short) excludedDoc;
+            }
+            assert excludedDoc + 1 == denseBuffer.length() || denseBuffer.nextSetBit(excludedDoc + 1) == DocIdSetIterator.NO_MORE_DOCS;
+            sets[currentBlock] = new NotDocIdSet(BLOCK_SIZE, new ShortArrayDocIdSet(excludedDocs));
           }
-          assert excludedDoc + 1 == denseBuffer.length() || denseBuffer.nextSetBit(excludedDoc + 1) == DocIdSetIterator.NO_MORE_DOCS;
-          sets[currentBlock] = new NotDocIdSet(BLOCK_SIZE, new ShortArrayDocIdSet(excludedDocs));
+        } else if ((long) numRuns << 5 < denseBuffer.length()) {
+          // Encoding runs takes 32 bits per run, less than the fixed bit set
+          sets[currentBlock] = new ShortRunDocIdSet(runs(denseBuffer, numRuns), currentBlockCardinality);
         } else {
           // Neither sparse nor super dense, use a fixed bit set
           sets[currentBlock] = new BitDocIdSet(denseBuffer, currentBlockCardinality);
@@ -101,6 +119,49 @@ public class RoaringDocIdSet extends DocIdSet {
       currentBlockCardinality = 0;
     }
 
+    private static int runCount(short[] docs, int length) {
+      int numRuns = 1;
+      for (int i = 1; i < length; ++i) {
+        if ((docs[i] & 0xFFFF) != (docs[i - 1] & 0xFFFF) + 1) {
+          numRuns++;
+        }
+      }
+      return numRuns;
+    }
+
+    private static short[] runs(short[] docs, int length, int numRuns) {
+      final short[] runs = new short[numRuns << 1];
+      int r = 0;
+      runs[0] = docs[0];
+      for (int i = 1; i < length; ++i) {
+        if ((docs[i] & 0xFFFF) != (docs[i - 1] & 0xFFFF) + 1) {
+          runs[r + 1] = docs[i - 1];
+          r += 2;
+          runs[r] = docs[i];
+        }
+      }
+      runs[r + 1] = docs[length - 1];
+      assert r + 2 == runs.length;
+      return runs;
+    }
+
+    private static short[] runs(FixedBitSet bits, int numRuns) {
+      final short[] runs = new short[numRuns << 1];
+      final int length = bits.length();
+      int r = 0;
+      for (int doc = bits.nextSetBit(0); doc != DocIdSetIterator.NO_MORE_DOCS; ) {
+        int last = doc;
+        while (last + 1 < length && bits.get(last + 1)) {
+          last++;
+        }
+        runs[r++] = (short) doc;
+        runs[r++] = (short) last;
+        doc = last + 1 < length ? bits.nextSetBit(last + 1) : DocIdSetIterator.NO_MORE_DOCS;
+      }
+      assert r == runs.length;
+      return runs;
+    }
+
     /**
      * Add a new doc-id to this builder.
      * NOTE: doc ids must be added in order.
@@ -225,6 +286,100 @@ public class RoaringDocIdSet extends DocIdSet {
 
   }
 
+  /**
+   * {@link DocIdSet} implementation that stores runs of consecutive documents
+   * up to 2^16-1 as (first, last) pairs in a short[].
+   */
+  private static class ShortRunDocIdSet extends DocIdSet {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ShortRunDocIdSet.class);
+
+    private final short[] runs;
+    private final int cardinality;
+
+    private ShortRunDocIdSet(short[] runs, int cardinality) {
+      assert runs.length > 0 && (runs.length & 1) == 0;
+      this.runs = runs;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(runs);
+    }
+
+    @Override
+    public DocIdSetIterator iterator() throws IOException {
+      return new DocIdSetIterator() {
+
+        int run = 0; // this is the index of the current run
+        int last = last(0); // last document of the current run
+        int doc = -1;
+
+        private int first(int run) {
+          return runs[run << 1] & 0xFFFF;
+        }
+
+        private int last(int run) {
+          return runs[(run << 1) | 1] & 0xFFFF;
+        }
+
+        private int moveToRun(int run) {
+          this.run = run;
+          if (run << 1 >= runs.length) {
+            return doc = NO_MORE_DOCS;
+          }
+          last = last(run);
+          return doc = first(run);
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          if (doc == -1) {
+            return doc = first(0);
+          } else if (doc < last) {
+            return ++doc;
+          }
+          return moveToRun(run + 1);
+        }
+
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public long cost() {
+          return cardinality;
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          if (target <= last) {
+            // the target is within the current run
+            return doc = Math.max(target, first(run));
+          }
+          // binary search for the first run whose last document is >= target
+          int lo = run + 1;
+          int hi = (runs.length >>> 1) - 1;
+          while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (last(mid) < target) {
+              lo = mid + 1;
+            } else {
+              hi = mid - 1;
+            }
+          }
+          if (moveToRun(lo) == NO_MORE_DOCS) {
+            return NO_MORE_DOCS;
+          }
+          return doc = Math.max(target, doc);
+        }
+      };
+    }
+
+  }
+
   private final DocIdSet[] docIdSets;
   private final int cardinality;
   private final long ramBytesUsed;
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+
+/**
+ * Utility methods on float vectors.
+ *
+ * @lucene.internal
+ */
+public final class VectorUtil {
+
+  private VectorUtil() {}
+
+  /** Return the dot product of the given vectors, which must have the same dimension. */
+  public static float dotProduct(float[] a, float[] b) {
+    if (a.length != b.length) {
+      throw new IllegalArgumentException("vector dimensions differ: " + a.length + " != " + b.length);
+    }
+    float res = 0f;
+    for (int i = 0; i < a.length; ++i) {
+      res += a[i] * b[i];
+    }
+    return res;
+  }
+
+  /** Return the square of the euclidean distance between the given vectors, which must have the same dimension. */
+  public static float squareDistance(float[] a, float[] b) {
+    if (a.length != b.length) {
+      throw new IllegalArgumentException("vector dimensions differ: " + a.length + " != " + b.length);
+    }
+    float res = 0f;
+    for (int i = 0; i < a.length; ++i) {
+      final float diff = a[i] - b[i];
+      res += diff * diff;
+    }
+    return res;
+  }
+
+  /** Encode the given vector as {@link Float#BYTES} bytes per dimension, in big-endian order. */
+  public static BytesRef encode(float[] vector) {
+    final byte[] bytes = new byte[vector.length * Float.BYTES];
+    for (int i = 0, o = 0; i < vector.length; ++i, o += Float.BYTES) {
+      final int bits = Float.floatToIntBits(vector[i]);
+      bytes[o] = (byte) (bits >>> 24);
+      bytes[o + 1] = (byte) (bits >>> 16);
+      bytes[o + 2] = (byte) (bits >>> 8);
+      bytes[o + 3] = (byte) bits;
+    }
+    return new BytesRef(bytes);
+  }
+
+  /**
+   * Decode a vector that has been encoded with {@link #encode(float[])} into
+   * {@code vector}, whose length must be the dimension of the encoded vector.
+   */
+  public static void decode(BytesRef bytes, float[] vector) {
+    if (bytes.length != vector.length * Float.BYTES) {
+      throw new IllegalArgumentException("Expected " + vector.length * Float.BYTES + " bytes, got " + bytes.length);
+    }
+    decode(bytes.bytes, bytes.offset, vector);
+  }
+
+  /** Decode {@code vector.length} dimensions from {@code bytes} starting at {@code offset}. */
+  public static void decode(byte[] bytes, int offset, float[] vector) {
+    for (int i = 0, o = offset; i < vector.length; ++i, o += Float.BYTES) {
+      final int bits = ((bytes[o] & 0xFF) << 24) | ((bytes[o + 1] & 0xFF) << 16)
+          | ((bytes[o + 2] & 0xFF) << 8) | (bytes[o + 3] & 0xFF);
+      vector[i] = Float.intBitsToFloat(bits);
+    }
+  }
+}
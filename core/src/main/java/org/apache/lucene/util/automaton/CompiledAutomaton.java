@@ -260,11 +260,9 @@ public class CompiledAutomaton implements Accountable {
     sinkState = findSinkState(this.automaton);
   }
 
-  private Transition transition = new Transition();
-  
   //private static final boolean DEBUG = BlockTreeTermsWriter.DEBUG;
 
-  private BytesRef addTail(int state, BytesRefBuilder term, int idx, int leadLabel) {
+  private BytesRef addTail(int state, BytesRefBuilder term, int idx, int leadLabel, Transition transition) {
     //System.out.println("addTail state=" + state + " term=" + term.utf8ToString() + " idx=" + idx + " leadLabel=" + (char) leadLabel);
     //System.out.println(automaton.toDot());
     // Find biggest transition that's < label
@@ -392,6 +390,8 @@ public class CompiledAutomaton implements Accountable {
     }
 
     final List<Integer> stack = new ArrayList<>();
+    // local so that several threads may compute floor terms on the same instance
+    final Transition transition = new Transition();
 
     int idx = 0;
     while (true) {
@@ -452,7 +452,7 @@ public class CompiledAutomaton implements Accountable {
 
         //if (DEBUG) System.out.println("  label=" + (char) label + " idx=" + idx);
 
-        return addTail(state, output, idx, label);
+        return addTail(state, output, idx, label, transition);
         
       } else {
         output.grow(1+idx);
@@ -496,8 +496,7 @@ public class CompiledAutomaton implements Accountable {
         RamUsageEstimator.sizeOfObject(automaton) +
         RamUsageEstimator.sizeOfObject(commonSuffixRef) +
         RamUsageEstimator.sizeOfObject(runAutomaton) +
-        RamUsageEstimator.sizeOfObject(term) +
-        RamUsageEstimator.sizeOfObject(transition);
+        RamUsageEstimator.sizeOfObject(term);
   }
 
 }
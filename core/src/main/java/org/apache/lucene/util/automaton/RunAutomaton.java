@@ -30,8 +30,11 @@
 package org.apache.lucene.util.automaton;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.RamUsageEstimator;
 
 /**
@@ -42,15 +45,37 @@ import org.apache.lucene.util.RamUsageEstimator;
 public abstract class RunAutomaton implements Accountable {
   private static final long BASE_RAM_BYTES = RamUsageEstimator.shallowSizeOfInstance(RunAutomaton.class);
 
+  /**
+   * Automata whose transition table would have more entries than this use
+   * the compact representation.
+   */
+  static final int DEFAULT_MAX_DENSE_TRANSITIONS = 1 << 16;
+
+  /** How many offsets to try to place a row before appending it to the table. */
+  private static final int MAX_PLACEMENT_ATTEMPTS = 64;
+
   final Automaton automaton;
   final int alphabetSize;
   final int size;
   final boolean[] accept;
-  final int[] transitions; // delta(state,c) = transitions[state*points.length +
-                     // getCharClass(c)]
   final int[] points; // char interval start points
+  final int[] pointClasses; // map from char interval to class, equivalent intervals share the same class
+  final int numClasses;
   final int[] classmap; // map from char number to class
-  
+
+  // dense representation, null if the compact representation is used:
+  // delta(state,c) = transitions[state*numClasses + getCharClass(c)]
+  final int[] transitions;
+
+  // compact (row-displacement) representation, null if the dense representation is used:
+  // the transitions of a state that differ from its default transition are
+  // stored in next at offset bases[state], and check records which state
+  // owns every slot so that rows of different states can interleave
+  final int[] defaults;
+  final int[] bases;
+  final int[] check;
+  final int[] next;
+
   /**
    * Constructs a new <code>RunAutomaton</code> from a deterministic
    * <code>Automaton</code>.
@@ -70,26 +95,141 @@ public abstract class RunAutomaton implements Accountable {
    *   while determinizing a
    */
   protected RunAutomaton(Automaton a, int alphabetSize, int maxDeterminizedStates) {
+    this(a, alphabetSize, maxDeterminizedStates, DEFAULT_MAX_DENSE_TRANSITIONS);
+  }
+
+  /**
+   * Constructs a new <code>RunAutomaton</code> from a deterministic
+   * <code>Automaton</code>, which uses a dense transition table if it has
+   * at most {@code maxDenseTransitions} entries and a compact representation
+   * otherwise.
+   */
+  RunAutomaton(Automaton a, int alphabetSize, int maxDeterminizedStates, int maxDenseTransitions) {
     this.alphabetSize = alphabetSize;
     a = Operations.determinize(a, maxDeterminizedStates);
     this.automaton = a;
     points = a.getStartPoints();
     size = Math.max(1,a.getNumStates());
     accept = new boolean[size];
-    transitions = new int[size * points.length];
-    Arrays.fill(transitions, -1);
-    Transition transition = new Transition();
     for (int n=0;n<size;n++) {
       accept[n] = a.isAccept(n);
-      transition.source = n;
-      transition.transitionUpto = -1;
+    }
+
+    /*
+     * Merge char intervals that lead to the same state from every state.
+     */
+    final Transition transition = new Transition();
+    final int[] row = new int[points.length];
+    pointClasses = new int[points.length];
+    int numClasses = Math.min(1, points.length);
+    int[] refinedClasses = new int[points.length];
+    final Map<Long,Integer> refined = new HashMap<>();
+    for (int n = 0; n < size && numClasses < points.length; n++) {
       for (int c = 0; c < points.length; c++) {
-        int dest = a.next(transition, points[c]);
-        assert dest == -1 || dest < size;
-        transitions[n * points.length + c] = dest;
+        row[c] = next(a, transition, n, c == 0, points[c]);
+      }
+      refined.clear();
+      for (int c = 0; c < points.length; c++) {
+        final long key = ((long) pointClasses[c] << 32) | (row[c] & 0xFFFFFFFFL);
+        Integer cls = refined.get(key);
+        if (cls == null) {
+          cls = refined.size();
+          refined.put(key, cls);
+        }
+        refinedClasses[c] = cls;
+      }
+      System.arraycopy(refinedClasses, 0, pointClasses, 0, points.length);
+      numClasses = refined.size();
+    }
+    this.numClasses = numClasses;
+    // classes are numbered in order of first appearance, so the first
+    // interval of every class can be used to compute its transitions
+    final int[] classPoints = new int[numClasses];
+    for (int c = 0, cls = 0; c < points.length; c++) {
+      if (pointClasses[c] == cls) {
+        classPoints[cls++] = points[c];
       }
     }
 
+    if ((long) size * numClasses <= maxDenseTransitions) {
+      transitions = new int[size * numClasses];
+      for (int n=0;n<size;n++) {
+        for (int cls = 0; cls < numClasses; cls++) {
+          int dest = next(a, transition, n, cls == 0, classPoints[cls]);
+          assert dest == -1 || dest < size;
+          transitions[n * numClasses + cls] = dest;
+        }
+      }
+      defaults = bases = check = next = null;
+    } else {
+      transitions = null;
+      defaults = new int[size];
+      bases = new int[size];
+      int[] check = new int[numClasses];
+      Arrays.fill(check, -1);
+      int[] next = new int[numClasses];
+      int tableSize = 0; // number of slots that may be used
+      int firstFree = 0; // all slots before firstFree are used
+      final int[] sortedRow = new int[numClasses];
+      final int[] exceptions = new int[numClasses];
+      for (int n = 0; n < size; n++) {
+        for (int cls = 0; cls < numClasses; cls++) {
+          row[cls] = next(a, transition, n, cls == 0, classPoints[cls]);
+          assert row[cls] == -1 || row[cls] < size;
+        }
+        final int defaultDest = mostFrequent(row, sortedRow, numClasses);
+        defaults[n] = defaultDest;
+        int numExceptions = 0;
+        for (int cls = 0; cls < numClasses; cls++) {
+          if (row[cls] != defaultDest) {
+            exceptions[numExceptions++] = cls;
+          }
+        }
+        if (numExceptions == 0) {
+          // same transition for every char, no need to store a row
+          continue;
+        }
+
+        while (firstFree < tableSize && check[firstFree] != -1) {
+          firstFree++;
+        }
+        final int minException = exceptions[0];
+        int base = -1;
+        for (int b = Math.max(0, firstFree - minException), attempt = 0;
+            attempt < MAX_PLACEMENT_ATTEMPTS && b + minException < tableSize; b++, attempt++) {
+          if (fits(check, b, exceptions, numExceptions)) {
+            base = b;
+            break;
+          }
+        }
+        if (base == -1) {
+          // append, all slots after tableSize are free
+          base = Math.max(0, tableSize - minException);
+        }
+        final int end = base + exceptions[numExceptions - 1] + 1;
+        if (end > check.length) {
+          final int oldLength = check.length;
+          check = ArrayUtil.grow(check, end);
+          Arrays.fill(check, oldLength, check.length, -1);
+          next = ArrayUtil.grow(next, end);
+        }
+        for (int i = 0; i < numExceptions; i++) {
+          final int slot = base + exceptions[i];
+          assert check[slot] == -1;
+          check[slot] = n;
+          next[slot] = row[exceptions[i]];
+        }
+        bases[n] = base;
+        tableSize = Math.max(tableSize, end);
+      }
+      // pad so that base+class never goes out of bounds
+      this.check = new int[tableSize + numClasses];
+      Arrays.fill(this.check, -1);
+      System.arraycopy(check, 0, this.check, 0, Math.min(check.length, tableSize));
+      this.next = new int[tableSize + numClasses];
+      System.arraycopy(next, 0, this.next, 0, Math.min(next.length, tableSize));
+    }
+
     /*
      * Set alphabet table for optimal run performance.
      */
@@ -99,8 +239,45 @@ public abstract class RunAutomaton implements Accountable {
       if (i + 1 < points.length && j == points[i + 1]) {
         i++;
       }
-      classmap[j] = i;
+      classmap[j] = points.length == 0 ? 0 : pointClasses[i];
+    }
+  }
+
+  private static int next(Automaton a, Transition transition, int state, boolean reset, int label) {
+    if (reset) {
+      transition.source = state;
+      transition.transitionUpto = -1;
+    }
+    return a.next(transition, label);
+  }
+
+  private static boolean fits(int[] check, int base, int[] exceptions, int numExceptions) {
+    for (int i = 0; i < numExceptions; i++) {
+      final int slot = base + exceptions[i];
+      if (slot < check.length && check[slot] != -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Return the most frequent value among the first {@code length} values of {@code row}. */
+  private static int mostFrequent(int[] row, int[] scratch, int length) {
+    System.arraycopy(row, 0, scratch, 0, length);
+    Arrays.sort(scratch, 0, length);
+    int best = scratch[0], bestCount = 0;
+    for (int i = 0; i < length; ) {
+      int j = i + 1;
+      while (j < length && scratch[j] == scratch[i]) {
+        j++;
+      }
+      if (j - i > bestCount) {
+        best = scratch[i];
+        bestCount = j - i;
+      }
+      i = j;
     }
+    return best;
   }
   
   /**
@@ -115,7 +292,7 @@ public abstract class RunAutomaton implements Accountable {
       if (accept[i]) b.append(" [accept]:\n");
       else b.append(" [reject]:\n");
       for (int j = 0; j < points.length; j++) {
-        int k = transitions[i * points.length + j];
+        int k = transition(i, pointClasses[j]);
         if (k != -1) {
           int min = points[j];
           int max;
@@ -183,10 +360,18 @@ public abstract class RunAutomaton implements Accountable {
   public final int step(int state, int c) {
     assert c < alphabetSize;
     if (c >= classmap.length) {
-      return transitions[state * points.length + getCharClass(c)];
+      return transition(state, pointClasses[getCharClass(c)]);
     } else {
-      return transitions[state * points.length + classmap[c]];
+      return transition(state, classmap[c]);
+    }
+  }
+
+  private int transition(int state, int cls) {
+    if (transitions != null) {
+      return transitions[state * numClasses + cls];
     }
+    final int slot = bases[state] + cls;
+    return check[slot] == state ? next[slot] : defaults[state];
   }
 
   @Override
@@ -209,7 +394,12 @@ public abstract class RunAutomaton implements Accountable {
     if (size != other.size) return false;
     if (!Arrays.equals(points, other.points)) return false;
     if (!Arrays.equals(accept, other.accept)) return false;
+    if (!Arrays.equals(pointClasses, other.pointClasses)) return false;
     if (!Arrays.equals(transitions, other.transitions)) return false;
+    if (!Arrays.equals(defaults, other.defaults)) return false;
+    if (!Arrays.equals(bases, other.bases)) return false;
+    if (!Arrays.equals(check, other.check)) return false;
+    if (!Arrays.equals(next, other.next)) return false;
     return true;
   }
 
@@ -220,6 +410,11 @@ public abstract class RunAutomaton implements Accountable {
         RamUsageEstimator.sizeOfObject(automaton) +
         RamUsageEstimator.sizeOfObject(classmap) +
         RamUsageEstimator.sizeOfObject(points) +
-        RamUsageEstimator.sizeOfObject(transitions);
+        RamUsageEstimator.sizeOfObject(pointClasses) +
+        RamUsageEstimator.sizeOfObject(transitions) +
+        RamUsageEstimator.sizeOfObject(defaults) +
+        RamUsageEstimator.sizeOfObject(bases) +
+        RamUsageEstimator.sizeOfObject(check) +
+        RamUsageEstimator.sizeOfObject(next);
   }
 }
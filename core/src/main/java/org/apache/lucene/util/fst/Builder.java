@@ -20,14 +20,12 @@ package org.apache.lucene.util.fst;
 import java.io.IOException;
 
 import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.IntsRefBuilder;
 import org.apache.lucene.util.fst.FST.INPUT_TYPE; // javadoc
 
-// TODO: could we somehow stream an FST to disk while we
-// build it?
-
 /**
  * Builds a minimal FST (maps an IntsRef term to an arbitrary
  * output) from pre-sorted terms with outputs.  The FST
@@ -46,6 +44,13 @@ import org.apache.lucene.util.fst.FST.INPUT_TYPE; // javadoc
  * 4.2).  FSTs containing more than 2.1B nodes are also now
  * possible, however they cannot be packed.
  *
+ * <p>By default, the FST and the hash that is used to share suffixes are
+ * kept in memory until {@link #finish()} is called. For very large FSTs,
+ * {@link #Builder(INPUT_TYPE, Outputs, boolean, int, DataOutput, double)}
+ * writes bytes to a {@link DataOutput} as soon as nodes are frozen and
+ * bounds the memory that is used to share suffixes, at the cost of a
+ * possibly larger FST.
+ *
  * @lucene.experimental
  */
 
@@ -76,6 +81,8 @@ public class Builder<T> {
   static final float DIRECT_ADDRESSING_MAX_OVERSIZING_FACTOR = 1.0f;
 
   private final NodeHash<T> dedupHash;
+  // used instead of dedupHash when bytes are streamed
+  private final LRUNodeHash<T> lruDedupHash;
   final FST<T> fst;
   private final T NO_OUTPUT;
 
@@ -181,18 +188,65 @@ public class Builder<T> {
   public Builder(FST.INPUT_TYPE inputType, int minSuffixCount1, int minSuffixCount2, boolean doShareSuffix,
                  boolean doShareNonSingletonNodes, int shareMaxTailLength, Outputs<T> outputs,
                  boolean allowFixedLengthArcs, int bytesPageBits) {
+    this(inputType, minSuffixCount1, minSuffixCount2, doShareSuffix, doShareNonSingletonNodes, shareMaxTailLength,
+        outputs, allowFixedLengthArcs, bytesPageBits, null, 0);
+  }
+
+  /**
+   * Instantiates an FST/FSA builder without any pruning, that writes the
+   * bytes of the FST to {@code dataOut} as soon as nodes are frozen rather
+   * than keeping them in memory. Only the last page of bytes and the nodes
+   * that are used to share suffixes are kept in memory, so that peak memory
+   * usage is bounded regardless of the number of inputs.
+   *
+   * <p>The FST that is returned by {@link #finish()} can't be traversed, its
+   * metadata must be saved with {@link FST#saveMetadata(DataOutput)} and it can
+   * then be loaded with {@link FST#FST(org.apache.lucene.store.DataInput,
+   * org.apache.lucene.store.DataInput, Outputs, FSTStore)}, typically using an
+   * {@link OffHeapFSTStore} on the bytes that have been written to
+   * {@code dataOut}. If {@link #finish()} returns {@code null}, the bytes that
+   * have been written to {@code dataOut} must be ignored.
+   *
+   * @param allowFixedLengthArcs see {@link #Builder(INPUT_TYPE, int, int, boolean, boolean, int, Outputs, boolean, int)}
+   * @param bytesPageBits see {@link #Builder(INPUT_TYPE, int, int, boolean, boolean, int, Outputs, boolean, int)}
+   * @param dataOut where to write the bytes of the FST
+   * @param suffixRAMLimitMB
+   *    Maximum amount of memory to use for sharing suffixes. When exceeded, the
+   *    least recently used suffixes stop being shared, which makes the FST
+   *    larger but still correct. Pass 0 to disable sharing suffixes entirely.
+   */
+  public Builder(FST.INPUT_TYPE inputType, Outputs<T> outputs, boolean allowFixedLengthArcs, int bytesPageBits,
+                 DataOutput dataOut, double suffixRAMLimitMB) {
+    this(inputType, 0, 0, suffixRAMLimitMB > 0, true, Integer.MAX_VALUE, outputs, allowFixedLengthArcs, bytesPageBits,
+        dataOut, suffixRAMLimitMB);
+    if (dataOut == null) {
+      throw new NullPointerException("dataOut must not be null");
+    }
+  }
+
+  private Builder(FST.INPUT_TYPE inputType, int minSuffixCount1, int minSuffixCount2, boolean doShareSuffix,
+                  boolean doShareNonSingletonNodes, int shareMaxTailLength, Outputs<T> outputs,
+                  boolean allowFixedLengthArcs, int bytesPageBits, DataOutput dataOut, double suffixRAMLimitMB) {
+    if (suffixRAMLimitMB < 0 || Double.isNaN(suffixRAMLimitMB)) {
+      throw new IllegalArgumentException("suffixRAMLimitMB must be >= 0, got " + suffixRAMLimitMB);
+    }
     this.minSuffixCount1 = minSuffixCount1;
     this.minSuffixCount2 = minSuffixCount2;
     this.doShareNonSingletonNodes = doShareNonSingletonNodes;
     this.shareMaxTailLength = shareMaxTailLength;
     this.allowFixedLengthArcs = allowFixedLengthArcs;
-    fst = new FST<>(inputType, outputs, bytesPageBits);
+    fst = new FST<>(inputType, outputs, bytesPageBits, dataOut);
     bytes = fst.bytes;
     assert bytes != null;
-    if (doShareSuffix) {
+    if (doShareSuffix == false) {
+      dedupHash = null;
+      lruDedupHash = null;
+    } else if (dataOut == null) {
       dedupHash = new NodeHash<>(fst, bytes.getReverseReader(false));
+      lruDedupHash = null;
     } else {
       dedupHash = null;
+      lruDedupHash = new LRUNodeHash<>(fst, (long) (suffixRAMLimitMB * 1024 * 1024));
     }
     NO_OUTPUT = outputs.getNoOutput();
 
@@ -239,18 +293,21 @@ public class Builder<T> {
   }
 
   public long getMappedStateCount() {
-    return dedupHash == null ? 0 : nodeCount;
+    return dedupHash == null && lruDedupHash == null ? 0 : nodeCount;
   }
 
   private CompiledNode compileNode(UnCompiledNode<T> nodeIn, int tailLength) throws IOException {
     final long node;
     long bytesPosStart = bytes.getPosition();
-    if (dedupHash != null && (doShareNonSingletonNodes || nodeIn.numArcs <= 1) && tailLength <= shareMaxTailLength) {
+    if ((dedupHash != null || lruDedupHash != null)
+        && (doShareNonSingletonNodes || nodeIn.numArcs <= 1) && tailLength <= shareMaxTailLength) {
       if (nodeIn.numArcs == 0) {
         node = fst.addNode(this, nodeIn);
         lastFrozenNode = node;
-      } else {
+      } else if (dedupHash != null) {
         node = dedupHash.add(this, nodeIn);
+      } else {
+        node = lruDedupHash.add(this, nodeIn);
       }
     } else {
       node = fst.addNode(this, nodeIn);
@@ -262,6 +319,10 @@ public class Builder<T> {
       // The FST added a new node:
       assert bytesPosEnd > bytesPosStart;
       lastFrozenNode = node;
+      if (bytes.isSpilling()) {
+        // frozen nodes are never modified or read again
+        bytes.spill(bytesPosEnd);
+      }
     }
 
     nodeIn.clear();
@@ -44,15 +44,27 @@ class BytesStore extends DataOutput implements Accountable {
   private byte[] current;
   private int nextWrite;
 
+  // when not null, blocks that will not be modified anymore are moved to this output
+  private final DataOutput spillOut;
+  private int numSpilledBlocks;
+
   public BytesStore(int blockBits) {
+    this(blockBits, null);
+  }
+
+  /** Create a {@link BytesStore} that moves blocks to {@code spillOut} once
+   *  they are not needed anymore, see {@link #spill(long)}. */
+  BytesStore(int blockBits, DataOutput spillOut) {
     this.blockBits = blockBits;
     blockSize = 1 << blockBits;
     blockMask = blockSize-1;
     nextWrite = blockSize;
+    this.spillOut = spillOut;
   }
 
   /** Pulls bytes from the provided IndexInput.  */
   public BytesStore(DataInput in, long numBytes, int maxBlockSize) throws IOException {
+    this.spillOut = null;
     int blockSize = 2;
     int blockBits = 1;
     while(blockSize < numBytes && blockSize < maxBlockSize) {
@@ -356,17 +368,46 @@ class BytesStore extends DataOutput implements Accountable {
     assert newLen == getPosition();
   }
 
-  public void finish() {
+  public void finish() throws IOException {
     if (current != null) {
       byte[] lastBuffer = new byte[nextWrite];
       System.arraycopy(current, 0, lastBuffer, 0, nextWrite);
       blocks.set(blocks.size()-1, lastBuffer);
       current = null;
     }
+    if (spillOut != null) {
+      spillBlocks(blocks.size());
+    }
+  }
+
+  /** Returns true if bytes get moved to a spill output as they are written,
+   *  in which case they can't be read back from this store. */
+  boolean isSpilling() {
+    return spillOut != null;
+  }
+
+  /** Move all blocks that are entirely before {@code pos} to the spill
+   *  output, except the current block. Callers must never read or write
+   *  bytes before {@code pos} again. */
+  void spill(long pos) throws IOException {
+    assert spillOut != null;
+    assert pos <= getPosition();
+    spillBlocks((int) Math.min(blocks.size() - 1, pos >> blockBits));
+  }
+
+  private void spillBlocks(int upTo) throws IOException {
+    for (; numSpilledBlocks < upTo; ++numSpilledBlocks) {
+      final byte[] block = blocks.get(numSpilledBlocks);
+      spillOut.writeBytes(block, 0, block.length);
+      blocks.set(numSpilledBlocks, null);
+    }
   }
 
   /** Writes all of our bytes to the target {@link DataOutput}. */
   public void writeTo(DataOutput out) throws IOException {
+    if (numSpilledBlocks > 0) {
+      throw new IllegalStateException("bytes have already been written to the spill output");
+    }
     for(byte[] block : blocks) {
       out.writeBytes(block, 0, block.length);
     }
@@ -499,7 +540,9 @@ class BytesStore extends DataOutput implements Accountable {
   public long ramBytesUsed() {
     long size = BASE_RAM_BYTES_USED;
     for (byte[] block : blocks) {
-      size += RamUsageEstimator.sizeOf(block);
+      if (block != null) {
+        size += RamUsageEstimator.sizeOf(block);
+      }
     }
     return size;
   }
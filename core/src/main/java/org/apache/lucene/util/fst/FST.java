@@ -395,10 +395,15 @@ public final class FST<T> implements Accountable {
 
   // make a new empty FST, for building; Builder invokes this
   FST(INPUT_TYPE inputType, Outputs<T> outputs, int bytesPageBits) {
+    this(inputType, outputs, bytesPageBits, null);
+  }
+
+  // make a new empty FST whose bytes get written to dataOut as they are frozen; Builder invokes this
+  FST(INPUT_TYPE inputType, Outputs<T> outputs, int bytesPageBits, DataOutput dataOut) {
     this.inputType = inputType;
     this.outputs = outputs;
     fstStore = null;
-    bytes = new BytesStore(bytesPageBits);
+    bytes = new BytesStore(bytesPageBits, dataOut);
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
     bytes.writeByte((byte) 0);
@@ -503,6 +508,37 @@ public final class FST<T> implements Accountable {
   }
 
   public void save(DataOutput metaOut, DataOutput out) throws IOException {
+    if (bytes != null && bytes.isSpilling()) {
+      throw new IllegalStateException("bytes of this FST have been streamed while building it, call saveMetadata instead");
+    }
+    writeHeader(metaOut);
+    if (bytes != null) {
+      metaOut.writeVLong(bytes.getPosition());
+      bytes.writeTo(out);
+    } else {
+      assert fstStore != null;
+      fstStore.writeTo(out);
+    }
+  }
+
+  /**
+   * Save the metadata of this FST, but not its bytes. This is typically
+   * used with FSTs that have been built with
+   * {@link Builder#Builder(INPUT_TYPE, Outputs, boolean, int, DataOutput, double)},
+   * whose bytes have already been written while building them. Such FSTs
+   * can then be loaded with {@link #FST(DataInput, DataInput, Outputs, FSTStore)}
+   * by passing the metadata and an input that is positioned on the first byte
+   * that was written to the data output.
+   */
+  public void saveMetadata(DataOutput metaOut) throws IOException {
+    if (bytes == null) {
+      throw new IllegalStateException("only FSTs that have been built can save their metadata separately");
+    }
+    writeHeader(metaOut);
+    metaOut.writeVLong(bytes.getPosition());
+  }
+
+  private void writeHeader(DataOutput metaOut) throws IOException {
     if (startNode == -1) {
       throw new IllegalStateException("call finish first");
     }
@@ -545,14 +581,6 @@ public final class FST<T> implements Accountable {
     }
     metaOut.writeByte(t);
     metaOut.writeVLong(startNode);
-    if (bytes != null) {
-      long numBytes = bytes.getPosition();
-      metaOut.writeVLong(numBytes);
-      bytes.writeTo(out);
-    } else {
-      assert fstStore != null;
-      fstStore.writeTo(out);
-    }
   }
   
   /**
@@ -1443,6 +1471,8 @@ public final class FST<T> implements Accountable {
   public BytesReader getBytesReader() {
     if (this.fstStore != null) {
       return this.fstStore.getReverseBytesReader();
+    } else if (bytes.isSpilling()) {
+      throw new IllegalStateException("bytes of this FST have been streamed while building it, load it from the data output to read it");
     } else {
       return bytes.getReverseReader();
     }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.fst;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.RamUsageEstimator;
+
+// Used to dedup states with bounded memory: unlike NodeHash, frozen nodes
+// are never read back from the FST, so that its bytes may be streamed, and
+// the least recently used nodes are evicted once the RAM limit is exceeded
+final class LRUNodeHash<T> {
+
+  // LinkedHashMap entry + boxed Long value
+  private static final long ENTRY_RAM_BYTES_USED = 2 * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+      + 5 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + Integer.BYTES + Long.BYTES;
+
+  private final FST<T> fst;
+  private final long maxRamBytesUsed;
+  private final Map<NodeKey<T>, Long> nodes = new LinkedHashMap<>(16, 0.75f, true);
+  private long ramBytesUsed;
+
+  LRUNodeHash(FST<T> fst, long maxRamBytesUsed) {
+    this.fst = fst;
+    this.maxRamBytesUsed = maxRamBytesUsed;
+  }
+
+  long add(Builder<T> builder, Builder.UnCompiledNode<T> nodeIn) throws IOException {
+    final NodeKey<T> key = new NodeKey<>(nodeIn, fst.outputs);
+    final Long existing = nodes.get(key);
+    if (existing != null) {
+      // same node is already here
+      return existing;
+    }
+    final long node = fst.addNode(builder, nodeIn);
+    nodes.put(key, node);
+    ramBytesUsed += key.ramBytesUsed + ENTRY_RAM_BYTES_USED;
+    for (Iterator<NodeKey<T>> it = nodes.keySet().iterator(); ramBytesUsed > maxRamBytesUsed && it.hasNext(); ) {
+      ramBytesUsed -= it.next().ramBytesUsed + ENTRY_RAM_BYTES_USED;
+      it.remove();
+    }
+    return node;
+  }
+
+  /** Number of nodes that are currently tracked for dedup. */
+  int size() {
+    return nodes.size();
+  }
+
+  /** Return the estimated memory usage of this hash. */
+  long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  // copy of the arcs of an unfrozen node
+  private static final class NodeKey<T> {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(NodeKey.class);
+
+    final int[] labels;
+    final long[] targets;
+    final Object[] outputs; // output and next final output of every arc
+    final boolean[] finals;
+    final int hashCode;
+    final long ramBytesUsed;
+
+    NodeKey(Builder.UnCompiledNode<T> node, Outputs<T> fstOutputs) {
+      final int numArcs = node.numArcs;
+      labels = new int[numArcs];
+      targets = new long[numArcs];
+      outputs = new Object[numArcs << 1];
+      finals = new boolean[numArcs];
+      final int PRIME = 31;
+      int h = 0;
+      long outputsRamBytesUsed = 0;
+      for (int i = 0; i < numArcs; ++i) {
+        final Builder.Arc<T> arc = node.arcs[i];
+        labels[i] = arc.label;
+        targets[i] = ((Builder.CompiledNode) arc.target).node;
+        outputs[i << 1] = arc.output;
+        outputs[(i << 1) | 1] = arc.nextFinalOutput;
+        finals[i] = arc.isFinal;
+        h = PRIME * h + arc.label;
+        h = PRIME * h + Long.hashCode(targets[i]);
+        h = PRIME * h + arc.output.hashCode();
+        h = PRIME * h + arc.nextFinalOutput.hashCode();
+        if (arc.isFinal) {
+          h += 17;
+        }
+        outputsRamBytesUsed += fstOutputs.ramBytesUsed(arc.output) + fstOutputs.ramBytesUsed(arc.nextFinalOutput);
+      }
+      hashCode = h;
+      ramBytesUsed = BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(labels) + RamUsageEstimator.sizeOf(targets)
+          + RamUsageEstimator.shallowSizeOf(outputs) + RamUsageEstimator.sizeOf(finals) + outputsRamBytesUsed;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof NodeKey == false) {
+        return false;
+      }
+      final NodeKey<?> other = (NodeKey<?>) obj;
+      return hashCode == other.hashCode
+          && Arrays.equals(labels, other.labels)
+          && Arrays.equals(targets, other.targets)
+          && Arrays.equals(finals, other.finals)
+          && Arrays.equals(outputs, other.outputs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
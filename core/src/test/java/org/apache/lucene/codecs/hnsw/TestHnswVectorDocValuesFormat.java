@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.hnsw;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.KnnVectorField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.BaseDocValuesFormatTestCase;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.VectorUtil;
+
+public class TestHnswVectorDocValuesFormat extends BaseDocValuesFormatTestCase {
+  private final Codec codec = TestUtil.alwaysDocValuesFormat(new HnswVectorDocValuesFormat());
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new HnswVectorDocValuesFormat(1, 10));
+    expectThrows(IllegalArgumentException.class, () -> new HnswVectorDocValuesFormat(8, 0));
+  }
+
+  private static float[] randomVector(int dimension) {
+    float[] vector = new float[dimension];
+    double norm = 0;
+    for (int i = 0; i < dimension; ++i) {
+      vector[i] = random().nextFloat() * 2 - 1;
+      norm += vector[i] * vector[i];
+    }
+    // normalize so that dot products are valid similarities
+    norm = Math.sqrt(norm);
+    for (int i = 0; i < dimension; ++i) {
+      vector[i] /= norm;
+    }
+    return vector;
+  }
+
+  public void testIteration() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    final int numDocs = atLeast(100);
+    final int dimension = TestUtil.nextInt(random(), 1, 8);
+    float[][] vectors = new float[numDocs][];
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(3) != 0) {
+        vectors[i] = randomVector(dimension);
+        doc.add(new KnnVectorField("vector", vectors[i]));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      LeafReader leafReader = getOnlyLeafReader(reader);
+      BinaryDocValues values = leafReader.getBinaryDocValues("vector");
+      assertTrue(values instanceof HnswVectorValues);
+      assertEquals(dimension, ((HnswVectorValues) values).dimension());
+      assertEquals(VectorSimilarityFunction.EUCLIDEAN, ((HnswVectorValues) values).similarityFunction());
+      float[] vector = new float[dimension];
+      for (int i = 0; i < numDocs; ++i) {
+        if (vectors[i] != null) {
+          assertEquals(i, values.nextDoc());
+          VectorUtil.decode(values.binaryValue(), vector);
+          assertArrayEquals(vectors[i], vector, 0f);
+        }
+      }
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, values.nextDoc());
+
+      values = leafReader.getBinaryDocValues("vector");
+      for (int i = 0; i < numDocs; i += TestUtil.nextInt(random(), 1, 5)) {
+        assertEquals(vectors[i] != null, values.advanceExact(i));
+        if (vectors[i] != null) {
+          VectorUtil.decode(values.binaryValue(), vector);
+          assertArrayEquals(vectors[i], vector, 0f);
+        }
+      }
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testSearch() throws IOException {
+    doTestSearch(VectorSimilarityFunction.EUCLIDEAN);
+    doTestSearch(VectorSimilarityFunction.DOT_PRODUCT);
+  }
+
+  private void doTestSearch(VectorSimilarityFunction similarityFunction) throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig().setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(500);
+    final int dimension = TestUtil.nextInt(random(), 2, 16);
+    float[][] vectors = new float[numDocs][];
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.YES));
+      if (random().nextInt(10) != 0) {
+        vectors[i] = randomVector(dimension);
+        doc.add(new KnnVectorField("vector", vectors[i], similarityFunction));
+      }
+      w.addDocument(doc);
+    }
+    for (int i = 0; i < numDocs; i += TestUtil.nextInt(random(), 5, 20)) {
+      w.deleteDocuments(new Term("id", Integer.toString(i)));
+    }
+    // segments get merged into a single one, whose graph gets rebuilt
+    w.forceMerge(1);
+
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      LeafReader leafReader = getOnlyLeafReader(reader);
+      Bits liveDocs = leafReader.getLiveDocs();
+      final int k = 10;
+      final int numQueries = 20;
+      int matches = 0;
+      for (int q = 0; q < numQueries; ++q) {
+        float[] target = randomVector(dimension);
+        HnswVectorValues values = (HnswVectorValues) leafReader.getBinaryDocValues("vector");
+        TopDocs topDocs = values.search(target, k, 50, liveDocs);
+        assertEquals(k, topDocs.scoreDocs.length);
+        Set<Integer> actual = new HashSet<>();
+        float previousScore = Float.POSITIVE_INFINITY;
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+          assertTrue(liveDocs == null || liveDocs.get(scoreDoc.doc));
+          assertTrue(scoreDoc.score <= previousScore);
+          previousScore = scoreDoc.score;
+          assertEquals(similarityFunction.compare(target, vectors[Integer.parseInt(leafReader.document(scoreDoc.doc).get("id"))]),
+              scoreDoc.score, 0f);
+          actual.add(scoreDoc.doc);
+        }
+        for (int doc : bruteForce(leafReader, target, similarityFunction, k)) {
+          if (actual.contains(doc)) {
+            matches++;
+          }
+        }
+      }
+      // the search is approximate
+      assertTrue("recall=" + matches / (double) (k * numQueries), matches >= 0.9 * k * numQueries);
+    }
+    w.close();
+    dir.close();
+  }
+
+  private static int[] bruteForce(LeafReader reader, float[] target, VectorSimilarityFunction similarityFunction, int k) throws IOException {
+    BinaryDocValues values = reader.getBinaryDocValues("vector");
+    Bits liveDocs = reader.getLiveDocs();
+    float[] vector = new float[target.length];
+    ScoreDoc[] scoreDocs = new ScoreDoc[reader.maxDoc()];
+    int numScoreDocs = 0;
+    for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+      if (liveDocs == null || liveDocs.get(doc)) {
+        VectorUtil.decode(values.binaryValue(), vector);
+        scoreDocs[numScoreDocs++] = new ScoreDoc(doc, similarityFunction.compare(target, vector));
+      }
+    }
+    Arrays.sort(scoreDocs, 0, numScoreDocs, (a, b) -> Float.compare(b.score, a.score));
+    int[] docs = new int[Math.min(k, numScoreDocs)];
+    for (int i = 0; i < docs.length; ++i) {
+      docs[i] = scoreDocs[i].doc;
+    }
+    return docs;
+  }
+
+  public void testSearchIllegalArguments() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    Document doc = new Document();
+    doc.add(new KnnVectorField("vector", new float[] { 1, 2, 3 }));
+    w.addDocument(doc);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      HnswVectorValues values = (HnswVectorValues) getOnlyLeafReader(reader).getBinaryDocValues("vector");
+      expectThrows(IllegalArgumentException.class, () -> values.search(new float[] { 1, 2 }, 1, 0, null));
+      expectThrows(IllegalArgumentException.class, () -> values.search(new float[] { 1, 2, 3 }, 0, 0, null));
+      expectThrows(IllegalArgumentException.class, () -> values.search(new float[] { 1, 2, 3 }, 1, -1, null));
+      TopDocs topDocs = values.search(new float[] { 1, 2, 3 }, 10, 0, null);
+      assertEquals(1, topDocs.scoreDocs.length);
+      assertEquals(0, topDocs.scoreDocs[0].doc);
+      assertEquals(1f, topDocs.scoreDocs[0].score, 0f);
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testWrongVectorLength() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    Document doc = new Document();
+    doc.add(new KnnVectorField("vector", new float[] { 1, 2, 3 }));
+    w.addDocument(doc);
+    // a plain binary value on a vector field
+    Document doc2 = new Document();
+    doc2.add(new BinaryDocValuesField("vector", new BytesRef(new byte[5])));
+    w.addDocument(doc2);
+    expectThrows(IllegalArgumentException.class, w::commit);
+    w.rollback();
+    dir.close();
+  }
+}
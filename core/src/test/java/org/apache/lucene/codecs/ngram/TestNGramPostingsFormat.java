@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.ngram;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.index.AutomatonTermsEnum;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.RegExp;
+
+public class TestNGramPostingsFormat extends BasePostingsFormatTestCase {
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new NGramPostingsFormat());
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  private static int gram(String s) {
+    BytesRef bytes = new BytesRef(s);
+    assertEquals(NGramPostingsFormat.GRAM_LENGTH, bytes.length);
+    return NGramTerms.gram(bytes.bytes, bytes.offset);
+  }
+
+  public void testCandidates() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    for (String value : new String[] { "foobar", "barfoo", "foo", "oof", "bazbar" }) {
+      Document doc = new Document();
+      doc.add(new StringField("f", value, Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      Terms terms = getOnlyLeafReader(reader).terms("f");
+      assertTrue(terms instanceof NGramTerms);
+      NGramTerms ngramTerms = (NGramTerms) terms;
+      NGramTerms.TermLookup lookup = ngramTerms.termLookup();
+      Set<String> candidates = new HashSet<>();
+      for (int ord : ngramTerms.intersect(new int[] { gram("foo"), gram("bar") })) {
+        candidates.add(lookup.term(ord).utf8ToString());
+      }
+      assertEquals(new HashSet<>(Arrays.asList("barfoo", "foobar")), candidates);
+      assertEquals(0, ngramTerms.intersect(new int[] { gram("xyz") }).length);
+
+      // methods that FilterTerms doesn't forward use the delegate format
+      assertEquals(new BytesRef("barfoo"), terms.getMin());
+      assertEquals(new BytesRef("oof"), terms.getMax());
+      CompiledAutomaton compiled = new CompiledAutomaton(new RegExp("ba.*").toAutomaton());
+      assertFalse(terms.intersect(compiled, null) instanceof AutomatonTermsEnum);
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testManyTerms() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    final int numDocs = atLeast(2000);
+    Set<String> withFoo = new HashSet<>();
+    for (int i = 0; i < numDocs; ++i) {
+      String value = TestUtil.randomSimpleString(random(), 3, 12);
+      Document doc = new Document();
+      doc.add(new StringField("f", value, Store.NO));
+      w.addDocument(doc);
+      if (value.contains("foo")) {
+        withFoo.add(value);
+      }
+    }
+    w.forceMerge(1);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      NGramTerms terms = (NGramTerms) getOnlyLeafReader(reader).terms("f");
+      NGramTerms.TermLookup lookup = terms.termLookup();
+      Set<String> candidates = new HashSet<>();
+      int previousOrd = -1;
+      for (int ord : terms.intersect(new int[] { gram("foo") })) {
+        assertTrue(ord > previousOrd);
+        previousOrd = ord;
+        candidates.add(lookup.term(ord).utf8ToString());
+      }
+      assertEquals(withFoo, candidates);
+      getOnlyLeafReader(reader).checkIntegrity();
+    }
+    w.close();
+    // temporary files of the offline sort are removed
+    for (String file : dir.listAll()) {
+      assertFalse(file, file.endsWith(".tmp"));
+    }
+    dir.close();
+  }
+}
@@ -18,7 +18,9 @@ package org.apache.lucene.document;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.document.Field.Store;
@@ -30,19 +32,24 @@ import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CheckHits;
+import org.apache.lucene.search.DisjunctionSumScorer;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MaxScoreScorer;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryUtils;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity.SimScorer;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestFeatureField extends LuceneTestCase {
 
@@ -231,6 +238,150 @@ public class TestFeatureField extends LuceneTestCase {
     dir.close();
   }
 
+  public void testLinearVectorQuery() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, newIndexWriterConfig()
+        .setMergePolicy(newLogMergePolicy(random().nextBoolean())));
+    Document doc = new Document();
+    doc.add(new FeatureField("features", "a", 10));
+    doc.add(new FeatureField("features", "b", 1f / 4));
+    writer.addDocument(doc);
+
+    doc = new Document();
+    doc.add(new FeatureField("features", "b", 2));
+    doc.add(new FeatureField("features", "c", 3));
+    writer.addDocument(doc);
+
+    writer.addDocument(new Document()); // gap
+
+    doc = new Document();
+    doc.add(new FeatureField("features", "c", 5));
+    writer.addDocument(doc);
+
+    writer.forceMerge(1);
+    DirectoryReader reader = writer.getReader();
+    writer.close();
+
+    IndexSearcher searcher = new IndexSearcher(reader);
+    LeafReaderContext context = reader.leaves().get(0);
+
+    Map<String, Float> weights = new HashMap<>();
+    weights.put("a", 2f);
+    weights.put("b", 4f);
+    weights.put("c", .5f);
+    weights.put("d", 1f); // missing feature
+    Query q = FeatureField.newLinearVectorQuery("features", weights);
+    Weight w = q.createWeight(searcher, ScoreMode.COMPLETE, 3);
+    Scorer s = w.scorer(context);
+    // impacts can't help skip when all matches are needed
+    assertTrue(s instanceof DisjunctionSumScorer);
+
+    assertEquals(0, s.iterator().nextDoc());
+    assertEquals(3 * (2 * 10 + 4 * 0.25f), s.score(), 1e-5f);
+
+    assertEquals(1, s.iterator().nextDoc());
+    assertEquals(3 * (4 * 2 + .5f * 3), s.score(), 1e-5f);
+
+    assertEquals(3, s.iterator().nextDoc());
+    assertEquals(3 * (.5f * 5), s.score(), 1e-5f);
+
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, s.iterator().nextDoc());
+
+    assertTrue(q.createWeight(searcher, ScoreMode.TOP_SCORES, 3).scorer(context) instanceof MaxScoreScorer);
+    s = q.createWeight(searcher, ScoreMode.COMPLETE_NO_SCORES, 3).scorer(context);
+    assertTrue(s instanceof DisjunctionSumScorer);
+    assertEquals(0, s.iterator().nextDoc());
+    assertEquals(1, s.iterator().nextDoc());
+    assertEquals(3, s.iterator().nextDoc());
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, s.iterator().nextDoc());
+
+    QueryUtils.check(random(), q, searcher);
+    assertNull(FeatureField.newLinearVectorQuery("features", Collections.singletonMap("d", 1f))
+        .createWeight(searcher, ScoreMode.COMPLETE, 1).scorer(context));
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testLinearVectorQueryIllegalArguments() {
+    expectThrows(IllegalArgumentException.class,
+        () -> FeatureField.newLinearVectorQuery("features", Collections.emptyMap()));
+    expectThrows(IllegalArgumentException.class,
+        () -> FeatureField.newLinearVectorQuery("features", Collections.singletonMap("a", 0f)));
+    expectThrows(IllegalArgumentException.class,
+        () -> FeatureField.newLinearVectorQuery("features", Collections.singletonMap("a", 65f)));
+  }
+
+  public void testLinearVectorQueryEquals() {
+    Map<String, Float> weights1 = new HashMap<>();
+    weights1.put("a", 2f);
+    weights1.put("b", 3f);
+    Map<String, Float> weights2 = new HashMap<>(weights1);
+    weights2.put("b", 4f);
+    QueryUtils.checkEqual(FeatureField.newLinearVectorQuery("features", weights1),
+        FeatureField.newLinearVectorQuery("features", new HashMap<>(weights1)));
+    QueryUtils.checkUnequal(FeatureField.newLinearVectorQuery("features", weights1),
+        FeatureField.newLinearVectorQuery("features", weights2));
+    QueryUtils.checkUnequal(FeatureField.newLinearVectorQuery("features", weights1),
+        FeatureField.newLinearVectorQuery("other_features", weights1));
+  }
+
+  public void testRandomLinearVectorQuery() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, newIndexWriterConfig());
+    final int numFeatures = TestUtil.nextInt(random(), 2, 50);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      final int numDocFeatures = random().nextInt(5);
+      Set<Integer> docFeatures = new HashSet<>();
+      for (int j = 0; j < numDocFeatures; ++j) {
+        docFeatures.add(random().nextInt(numFeatures));
+      }
+      for (int feature : docFeatures) {
+        doc.add(new FeatureField("features", "f" + feature, 1 + random().nextFloat() * 100));
+      }
+      writer.addDocument(doc);
+    }
+    IndexReader reader = writer.getReader();
+    writer.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    for (int iter = 0; iter < 10; ++iter) {
+      Map<String, Float> weights = new HashMap<>();
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      final int numQueryFeatures = TestUtil.nextInt(random(), 1, numFeatures);
+      for (int i = 0; i < numQueryFeatures; ++i) {
+        final String feature = "f" + random().nextInt(numFeatures);
+        final float weight = 0.1f + random().nextFloat();
+        if (weights.containsKey(feature) == false) {
+          weights.put(feature, weight);
+          builder.add(FeatureField.newLinearQuery("features", feature, weight), Occur.SHOULD);
+        }
+      }
+      Query query = FeatureField.newLinearVectorQuery("features", weights);
+      CheckHits.checkTopScores(random(), query, searcher);
+
+      TopScoreDocCollector collector1 = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE); // COMPLETE
+      TopScoreDocCollector collector2 = TopScoreDocCollector.create(10, null, 1); // TOP_SCORES
+      TopScoreDocCollector collector3 = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE); // COMPLETE
+      searcher.search(builder.build(), collector1);
+      searcher.search(query, collector2);
+      searcher.search(query, collector3);
+      TopDocs expected = collector1.topDocs();
+      for (TopDocs actual : new TopDocs[] { collector2.topDocs(), collector3.topDocs() }) {
+        assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+        for (int i = 0; i < expected.scoreDocs.length; ++i) {
+          assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, expected.scoreDocs[i].score * 1e-5f);
+        }
+      }
+      assertEquals(collector1.getTotalHits(), collector3.getTotalHits());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
   public void testLogSimScorer() {
     doTestSimScorer(new FeatureField.LogFunction(4.5f).scorer(3f));
   }
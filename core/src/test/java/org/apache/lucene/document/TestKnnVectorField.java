@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.document;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.codecs.hnsw.HnswVectorDocValuesFormat;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryUtils;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestKnnVectorField extends LuceneTestCase {
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorField("f", new float[0]));
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorField("f", new float[KnnVectorField.MAX_DIMENSIONS + 1]));
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorField("f", new float[] { 1, Float.NaN }));
+    expectThrows(IllegalArgumentException.class, () -> new KnnVectorField("f", new float[] { Float.POSITIVE_INFINITY }));
+    expectThrows(IllegalArgumentException.class,
+        () -> new KnnVectorField("f", new float[] { 1, 1 }, VectorSimilarityFunction.DOT_PRODUCT));
+    expectThrows(IllegalArgumentException.class,
+        () -> new KnnVectorField("f", new float[] { 0.5f, 0 }, VectorSimilarityFunction.DOT_PRODUCT));
+    expectThrows(IllegalArgumentException.class, () -> KnnVectorField.newKnnQuery("f", new float[] { 1 }, 0));
+    expectThrows(IllegalArgumentException.class, () -> KnnVectorField.newKnnQuery("f", new float[] { 1 }, 1, -1));
+    expectThrows(IllegalArgumentException.class, () -> KnnVectorField.newKnnQuery("f", new float[] { Float.NaN }, 1));
+  }
+
+  public void testVectorValue() {
+    float[] vector = new float[] { 1, -2.5f, 0, 3e10f };
+    KnnVectorField field = new KnnVectorField("f", vector, VectorSimilarityFunction.EUCLIDEAN);
+    assertArrayEquals(vector, field.vectorValue(), 0f);
+    assertEquals("4", field.fieldType().getAttributes().get(KnnVectorField.DIMENSION_ATTRIBUTE));
+    assertEquals("EUCLIDEAN", field.fieldType().getAttributes().get(KnnVectorField.SIMILARITY_ATTRIBUTE));
+
+    vector = new float[] { 0.6f, 0, -0.8f };
+    field = new KnnVectorField("f", vector, VectorSimilarityFunction.DOT_PRODUCT);
+    assertArrayEquals(vector, field.vectorValue(), 0f);
+    assertEquals("DOT_PRODUCT", field.fieldType().getAttributes().get(KnnVectorField.SIMILARITY_ATTRIBUTE));
+  }
+
+  public void testDotProductScoresAreNonNegative() {
+    float[] v1 = new float[] { 0.6f, 0.8f };
+    float[] v2 = new float[] { -0.6f, -0.8f };
+    assertEquals(1f, VectorSimilarityFunction.DOT_PRODUCT.compare(v1, v1), 1e-6f);
+    assertEquals(0f, VectorSimilarityFunction.DOT_PRODUCT.compare(v1, v2), 1e-6f);
+    // query vectors are not checked, scores are clamped
+    float[] target = new float[] { -3, -4 };
+    assertEquals(0f, VectorSimilarityFunction.DOT_PRODUCT.compare(target, v1), 0f);
+    for (int i = 0; i < 100; ++i) {
+      float[] vector = randomUnitVector(2);
+      assertTrue(VectorSimilarityFunction.DOT_PRODUCT.compare(randomVector(2), vector) >= 0);
+      assertTrue(VectorSimilarityFunction.DOT_PRODUCT.compare(vector, v2) >= 0);
+    }
+  }
+
+  public void testEquals() {
+    Query q1 = KnnVectorField.newKnnQuery("f", new float[] { 1, 2 }, 10);
+    QueryUtils.checkEqual(q1, KnnVectorField.newKnnQuery("f", new float[] { 1, 2 }, 10));
+    QueryUtils.checkUnequal(q1, KnnVectorField.newKnnQuery("g", new float[] { 1, 2 }, 10));
+    QueryUtils.checkUnequal(q1, KnnVectorField.newKnnQuery("f", new float[] { 1, 3 }, 10));
+    QueryUtils.checkUnequal(q1, KnnVectorField.newKnnQuery("f", new float[] { 1, 2 }, 5));
+    QueryUtils.checkUnequal(q1, KnnVectorField.newKnnQuery("f", new float[] { 1, 2 }, 10, 0));
+  }
+
+  private static float[] randomVector(int dimension) {
+    float[] vector = new float[dimension];
+    for (int i = 0; i < dimension; ++i) {
+      vector[i] = random().nextFloat();
+    }
+    return vector;
+  }
+
+  private static float[] randomUnitVector(int dimension) {
+    float[] vector;
+    double length;
+    do {
+      vector = new float[dimension];
+      double squareLength = 0;
+      for (int i = 0; i < dimension; ++i) {
+        vector[i] = random().nextFloat() * 2 - 1;
+        squareLength += vector[i] * vector[i];
+      }
+      length = Math.sqrt(squareLength);
+    } while (length == 0);
+    for (int i = 0; i < dimension; ++i) {
+      vector[i] /= length;
+    }
+    return vector;
+  }
+
+  /** Index random vectors and return them by doc ID. */
+  private static float[][] indexVectors(RandomIndexWriter w, int numDocs, int dimension,
+                                        VectorSimilarityFunction similarityFunction) throws IOException {
+    float[][] vectors = new float[numDocs][];
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.YES));
+      if (random().nextInt(5) != 0) {
+        vectors[i] = similarityFunction == VectorSimilarityFunction.DOT_PRODUCT
+            ? randomUnitVector(dimension) : randomVector(dimension);
+        doc.add(new KnnVectorField("vector", vectors[i], similarityFunction));
+      }
+      w.addDocument(doc);
+    }
+    for (int i = 0; i < numDocs; i += TestUtil.nextInt(random(), 5, 20)) {
+      w.deleteDocuments(new Term("id", Integer.toString(i)));
+      vectors[i] = null;
+    }
+    return vectors;
+  }
+
+  /** Return the IDs of the {@code k} nearest neighbors of {@code target}. */
+  private static Set<String> bruteForce(float[][] vectors, float[] target, VectorSimilarityFunction similarityFunction, int k) {
+    Integer[] ids = new Integer[vectors.length];
+    int numIds = 0;
+    for (int i = 0; i < vectors.length; ++i) {
+      if (vectors[i] != null) {
+        ids[numIds++] = i;
+      }
+    }
+    Arrays.sort(ids, 0, numIds,
+        (a, b) -> Float.compare(similarityFunction.compare(target, vectors[b]), similarityFunction.compare(target, vectors[a])));
+    Set<String> topIds = new HashSet<>();
+    for (int i = 0; i < Math.min(k, numIds); ++i) {
+      topIds.add(Integer.toString(ids[i]));
+    }
+    return topIds;
+  }
+
+  public void testExhaustiveQuery() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int dimension = TestUtil.nextInt(random(), 1, 8);
+    final VectorSimilarityFunction similarityFunction = random().nextBoolean()
+        ? VectorSimilarityFunction.EUCLIDEAN : VectorSimilarityFunction.DOT_PRODUCT;
+    float[][] vectors = indexVectors(w, atLeast(100), dimension, similarityFunction);
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    for (int iter = 0; iter < 10; ++iter) {
+      final int k = TestUtil.nextInt(random(), 1, 20);
+      final float[] target = randomVector(dimension);
+      TopDocs topDocs = searcher.search(KnnVectorField.newKnnQuery("vector", target, k), k);
+      // without a graph, results are exact
+      Set<String> ids = new HashSet<>();
+      for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+        String id = searcher.doc(scoreDoc.doc).get("id");
+        assertEquals(similarityFunction.compare(target, vectors[Integer.parseInt(id)]), scoreDoc.score, 0f);
+        ids.add(id);
+      }
+      assertEquals(bruteForce(vectors, target, similarityFunction, k), ids);
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testHnswQuery() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig().setCodec(TestUtil.alwaysDocValuesFormat(new HnswVectorDocValuesFormat()));
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int dimension = TestUtil.nextInt(random(), 2, 8);
+    float[][] vectors = indexVectors(w, atLeast(500), dimension, VectorSimilarityFunction.EUCLIDEAN);
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    final int k = 10;
+    final int numQueries = 20;
+    int matches = 0;
+    for (int iter = 0; iter < numQueries; ++iter) {
+      final float[] target = randomVector(dimension);
+      Query query = KnnVectorField.newKnnQuery("vector", target, k);
+      TopDocs topDocs = searcher.search(query, k);
+      assertEquals(k, topDocs.scoreDocs.length);
+      Set<String> expected = bruteForce(vectors, target, VectorSimilarityFunction.EUCLIDEAN, k);
+      for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+        String id = searcher.doc(scoreDoc.doc).get("id");
+        assertEquals(VectorSimilarityFunction.EUCLIDEAN.compare(target, vectors[Integer.parseInt(id)]), scoreDoc.score, 0f);
+        Explanation explanation = searcher.explain(query, scoreDoc.doc);
+        assertTrue(explanation.isMatch());
+        assertEquals(scoreDoc.score, explanation.getValue().floatValue(), 0f);
+        if (expected.contains(id)) {
+          matches++;
+        }
+      }
+    }
+    // the search is approximate
+    assertTrue("recall=" + matches / (double) (k * numQueries), matches >= 0.9 * k * numQueries);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testRewrittenAgainstOtherReader() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    Document doc = new Document();
+    doc.add(new KnnVectorField("vector", new float[] { 1, 2 }));
+    w.addDocument(doc);
+    DirectoryReader reader1 = DirectoryReader.open(w);
+    w.addDocument(doc);
+    DirectoryReader reader2 = DirectoryReader.open(w);
+    w.close();
+
+    Query rewritten = new IndexSearcher(reader1).rewrite(KnnVectorField.newKnnQuery("vector", new float[] { 1, 1 }, 1));
+    expectThrows(IllegalStateException.class, () -> new IndexSearcher(reader2).search(rewritten, 1));
+
+    reader1.close();
+    reader2.close();
+    dir.close();
+  }
+
+  public void testWrongDimension() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new KnnVectorField("vector", new float[] { 1, 2 }));
+    doc.add(new StringField("other", "value", Store.NO));
+    w.addDocument(doc);
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    expectThrows(IllegalArgumentException.class, () -> searcher.search(KnnVectorField.newKnnQuery("vector", new float[] { 1 }, 1), 1));
+    expectThrows(IllegalArgumentException.class, () -> searcher.search(KnnVectorField.newKnnQuery("other", new float[] { 1 }, 1), 1));
+    assertEquals(0, searcher.count(KnnVectorField.newKnnQuery("missing", new float[] { 1 }, 1)));
+
+    reader.close();
+    dir.close();
+  }
+}
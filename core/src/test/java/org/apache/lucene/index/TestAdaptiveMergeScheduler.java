@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestAdaptiveMergeScheduler extends LuceneTestCase {
+
+  private static class MutableLoad implements AdaptiveMergeScheduler.LoadSignal {
+    volatile double load;
+
+    @Override
+    public double getLoad() {
+      return load;
+    }
+  }
+
+  public void testCapacity() {
+    MutableLoad signal = new MutableLoad();
+    AdaptiveMergeScheduler cms = new AdaptiveMergeScheduler(signal);
+    cms.setMaxMergesAndThreads(8, 4);
+    cms.setIORateRange(10, 1000);
+    assertEquals(1, cms.getMergeCapacity(), 0);
+    assertEquals(4, cms.getActiveThreadCount());
+    assertEquals(1000, cms.getTargetMBPerSec(), 0.001);
+    assertTrue(Double.isNaN(cms.getLoad()));
+
+    // overloaded: back off quickly
+    signal.load = 1.5;
+    cms.update();
+    assertEquals(1.5, cms.getLoad(), 0);
+    assertEquals(0.5, cms.getMergeCapacity(), 0);
+    assertEquals(2, cms.getActiveThreadCount());
+    assertEquals(100, cms.getTargetMBPerSec(), 0.001);
+    for (int i = 0; i < 20; ++i) {
+      cms.update();
+    }
+    assertTrue(cms.getMergeCapacity() > 0);
+    assertEquals(1, cms.getActiveThreadCount());
+    assertTrue(cms.getTargetMBPerSec() < 11);
+
+    // invalid loads are ignored
+    final double capacity = cms.getMergeCapacity();
+    signal.load = Double.NaN;
+    cms.update();
+    signal.load = -1;
+    cms.update();
+    assertEquals(capacity, cms.getMergeCapacity(), 0);
+    assertEquals(1.5, cms.getLoad(), 0);
+
+    // headroom: speed up proportionally
+    signal.load = 0.6;
+    cms.update();
+    assertEquals(capacity + 0.1, cms.getMergeCapacity(), 1e-9);
+    signal.load = 0;
+    for (int i = 0; i < 4; ++i) {
+      cms.update();
+    }
+    assertEquals(1, cms.getMergeCapacity(), 0);
+    assertEquals(4, cms.getActiveThreadCount());
+    assertEquals(1000, cms.getTargetMBPerSec(), 0.001);
+
+    // a load of exactly 1 keeps the capacity as-is
+    signal.load = 1;
+    cms.update();
+    assertEquals(1, cms.getMergeCapacity(), 0);
+    cms.close();
+  }
+
+  public void testIndexing() throws IOException {
+    final AtomicInteger numUpdates = new AtomicInteger();
+    final AdaptiveMergeScheduler[] holder = new AdaptiveMergeScheduler[1];
+    AdaptiveMergeScheduler cms = new AdaptiveMergeScheduler(() -> {
+      numUpdates.incrementAndGet();
+      for (AdaptiveMergeScheduler.MergeStats stats : holder[0].getMergeStats()) {
+        assertTrue(stats.toString(), stats.getProgress() >= 0 && stats.getProgress() <= 1);
+        assertTrue(stats.toString(), stats.getThroughputMBPerSec() >= 0);
+        assertTrue(stats.toString(), stats.getBytesWritten() >= 0);
+      }
+      return random().nextDouble() * 2;
+    });
+    holder[0] = cms;
+    cms.setUpdateIntervalMS(1);
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMergeScheduler(cms)
+        .setMergePolicy(newLogMergePolicy(2))
+        .setMaxBufferedDocs(2 + random().nextInt(10));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      doc.add(new TextField("body", "some text " + random().nextInt(1000), Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+    assertTrue(cms.getMergeStats().isEmpty());
+    assertTrue(cms.getMergeCapacity() > 0 && cms.getMergeCapacity() <= 1);
+
+    try (DirectoryReader reader = DirectoryReader.open(dir)) {
+      assertEquals(numDocs, reader.numDocs());
+      assertEquals(1, reader.leaves().size());
+    }
+    dir.close();
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new AdaptiveMergeScheduler(null));
+    AdaptiveMergeScheduler cms = new AdaptiveMergeScheduler(() -> 0);
+    expectThrows(IllegalArgumentException.class, () -> cms.setUpdateIntervalMS(0));
+    expectThrows(IllegalArgumentException.class, () -> cms.setIORateRange(0, 10));
+    expectThrows(IllegalArgumentException.class, () -> cms.setIORateRange(Double.NaN, 10));
+    expectThrows(IllegalArgumentException.class, () -> cms.setIORateRange(20, 10));
+    cms.close();
+  }
+}
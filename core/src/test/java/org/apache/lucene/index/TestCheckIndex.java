@@ -17,9 +17,21 @@
 package org.apache.lucene.index;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.junit.Test;
 
 public class TestCheckIndex extends BaseTestCheckIndex {
@@ -56,4 +68,77 @@ public class TestCheckIndex extends BaseTestCheckIndex {
   public void testObtainsLock() throws IOException {
     testObtainsLock(directory);
   }
+
+  @Test
+  public void testExecutor() throws Exception {
+    indexRandomDocs(directory);
+    ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestCheckIndex"));
+    try (CheckIndex checker = new CheckIndex(directory)) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+      checker.setInfoStream(new PrintStream(bos, false, IOUtils.UTF_8));
+      CheckIndex.Status serial = checker.checkIndex();
+      assertTrue(bos.toString(IOUtils.UTF_8), serial.clean);
+
+      bos.reset();
+      CheckIndex.Status concurrent = checker.checkIndex(null, executor);
+      assertTrue(bos.toString(IOUtils.UTF_8), concurrent.clean);
+      assertEquals(serial.segmentInfos.size(), concurrent.segmentInfos.size());
+      for (int i = 0; i < serial.segmentInfos.size(); ++i) {
+        CheckIndex.Status.SegmentInfoStatus expected = serial.segmentInfos.get(i);
+        CheckIndex.Status.SegmentInfoStatus actual = concurrent.segmentInfos.get(i);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.maxDoc, actual.maxDoc);
+        assertEquals(expected.termIndexStatus.termCount, actual.termIndexStatus.termCount);
+        assertEquals(expected.termIndexStatus.totFreq, actual.termIndexStatus.totFreq);
+        assertEquals(expected.storedFieldStatus.totFields, actual.storedFieldStatus.totFields);
+        assertEquals(expected.pointsStatus.totalValuePoints, actual.pointsStatus.totalValuePoints);
+        assertEquals(expected.docValuesStatus.totalNumericFields, actual.docValuesStatus.totalNumericFields);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSampled() throws IOException {
+    indexRandomDocs(directory);
+    try (CheckIndex checker = new CheckIndex(directory)) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+      checker.setInfoStream(new PrintStream(bos, false, IOUtils.UTF_8));
+      checker.setSampleRate(0.1);
+      checker.setSampleSeed(random().nextLong());
+      CheckIndex.Status status = checker.checkIndex();
+      assertTrue(bos.toString(IOUtils.UTF_8), status.clean);
+    }
+  }
+
+  @Test
+  public void testIllegalSampleRate() throws IOException {
+    try (CheckIndex checker = new CheckIndex(directory)) {
+      expectThrows(IllegalArgumentException.class, () -> checker.setSampleRate(0));
+      expectThrows(IllegalArgumentException.class, () -> checker.setSampleRate(-0.5));
+      expectThrows(IllegalArgumentException.class, () -> checker.setSampleRate(1.5));
+      expectThrows(IllegalArgumentException.class, () -> checker.setSampleRate(Double.NaN));
+      checker.setSampleRate(1);
+      assertEquals(1, checker.getSampleRate(), 0);
+    }
+  }
+
+  private void indexRandomDocs(Directory dir) throws IOException {
+    IndexWriterConfig iwc = newIndexWriterConfig().setMaxBufferedDocs(10);
+    try (IndexWriter writer = new IndexWriter(dir, iwc)) {
+      final int numDocs = atLeast(200);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+        doc.add(new TextField("body", "value" + random().nextInt(50) + " common", Field.Store.NO));
+        doc.add(new IntPoint("point", random().nextInt(1000)));
+        doc.add(new NumericDocValuesField("dv", i));
+        writer.addDocument(doc);
+        if (random().nextInt(20) == 0) {
+          writer.deleteDocuments(new Term("id", Integer.toString(random().nextInt(i + 1))));
+        }
+      }
+    }
+  }
 }
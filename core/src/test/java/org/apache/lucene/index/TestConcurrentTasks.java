@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+
+public class TestConcurrentTasks extends LuceneTestCase {
+
+  private static List<FutureTask<Integer>> newTasks(int numTasks) {
+    List<FutureTask<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < numTasks; ++i) {
+      final int value = i;
+      tasks.add(new FutureTask<>(() -> value));
+    }
+    return tasks;
+  }
+
+  public void testInvokeAll() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestConcurrentTasks"));
+    try {
+      final int numTasks = TestUtil.nextInt(random(), 1, 20);
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < numTasks; ++i) {
+        expected.add(i);
+      }
+      assertEquals(expected, ConcurrentTasks.invokeAll(newTasks(numTasks), executor));
+      // the calling thread runs tasks if there is no executor or if it rejects tasks
+      assertEquals(expected, ConcurrentTasks.invokeAll(newTasks(numTasks), null));
+      assertEquals(expected, ConcurrentTasks.invokeAll(newTasks(numTasks), r -> { throw new RejectedExecutionException(); }));
+    } finally {
+      TestUtil.shutdownExecutorService(executor);
+    }
+  }
+
+  public void testFailures() {
+    List<Boolean> ran = new ArrayList<>(Arrays.asList(false, false, false));
+    List<FutureTask<Void>> tasks = Arrays.asList(
+        new FutureTask<>(() -> { ran.set(0, true); throw new IOException("first"); }),
+        new FutureTask<>(() -> { ran.set(1, true); return null; }),
+        new FutureTask<>(() -> { ran.set(2, true); throw new IllegalStateException("second"); }));
+    IOException e = expectThrows(IOException.class, () -> ConcurrentTasks.invokeAll(tasks, null));
+    assertEquals("first", e.getMessage());
+    assertEquals(1, e.getSuppressed().length);
+    assertEquals("second", e.getSuppressed()[0].getMessage());
+    // all tasks ran despite the failure of the first one
+    assertEquals(Arrays.asList(true, true, true), ran);
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestDocValuesPatches extends LuceneTestCase {
+
+  private static Document doc(int id) {
+    Document doc = new Document();
+    doc.add(new StringField("id", Integer.toString(id), Store.NO));
+    return doc;
+  }
+
+  private static long[] patchedGens(DirectoryReader reader, String field) {
+    SegmentReader segmentReader = (SegmentReader) reader.leaves().get(0).reader();
+    return DocValuesPatches.read(segmentReader.getSegmentInfo().info, segmentReader.getFieldInfos().fieldInfo(field));
+  }
+
+  public void testPatchesAndCompaction() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMaxDocValuesPatches(2)
+        // the random codec may change how it writes fields across generations, which disables patches
+        .setCodec(TestUtil.getDefaultCodec())
+        .setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 10; ++i) {
+      Document doc = doc(i);
+      doc.add(new NumericDocValuesField("f", i));
+      w.addDocument(doc);
+    }
+    w.commit();
+    // another segment, so that the binary field exists in the index but not in the first segment
+    Document other = doc(10);
+    other.add(new BinaryDocValuesField("b", new BytesRef("baz")));
+    w.addDocument(other);
+    w.commit();
+
+    w.updateNumericDocValue(new Term("id", "3"), "f", 30);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      long[] gens = patchedGens(reader, "f");
+      assertNotNull(gens);
+      assertEquals(1, gens.length);
+      assertEquals(-1, gens[0]);
+      // statistics only describe the patch
+      assertNull(reader.leaves().get(0).reader().getDocValuesStatistics("f"));
+      NumericDocValues values = MultiDocValues.getNumericValues(reader, "f");
+      for (int i = 0; i < 10; ++i) {
+        assertEquals(i, values.nextDoc());
+        assertEquals(i == 3 ? 30 : i, values.longValue());
+      }
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, values.nextDoc());
+    }
+
+    w.updateNumericDocValue(new Term("id", "5"), "f", 50);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertEquals(2, patchedGens(reader, "f").length);
+      NumericDocValues values = MultiDocValues.getNumericValues(reader, "f");
+      assertTrue(values.advanceExact(3));
+      assertEquals(30, values.longValue());
+      assertTrue(values.advanceExact(4));
+      assertEquals(4, values.longValue());
+      assertTrue(values.advanceExact(5));
+      assertEquals(50, values.longValue());
+    }
+
+    // the field has 2 patches already, this rewrites the full column
+    w.updateNumericDocValue(new Term("id", "3"), "f", 300);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertNull(patchedGens(reader, "f"));
+      NumericDocValues values = MultiDocValues.getNumericValues(reader, "f");
+      for (int i = 0; i < 10; ++i) {
+        assertEquals(i, values.nextDoc());
+        assertEquals(i == 3 ? 300 : i == 5 ? 50 : i, values.longValue());
+      }
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, values.nextDoc());
+    }
+
+    // resetting a value rewrites the full column
+    w.updateDocValues(new Term("id", "4"), new NumericDocValuesField("f", null));
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertNull(patchedGens(reader, "f"));
+      NumericDocValues values = MultiDocValues.getNumericValues(reader, "f");
+      assertFalse(values.advanceExact(4));
+      assertTrue(values.advanceExact(5));
+      assertEquals(50, values.longValue());
+    }
+
+    // a new field is written in full
+    w.updateBinaryDocValue(new Term("id", "7"), "b", new BytesRef("foo"));
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertNull(patchedGens(reader, "b"));
+    }
+    w.updateBinaryDocValue(new Term("id", "2"), "b", new BytesRef("bar"));
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      long[] gens = patchedGens(reader, "b");
+      assertNotNull(gens);
+      assertEquals(1, gens.length);
+      BinaryDocValues values = MultiDocValues.getBinaryValues(reader, "b");
+      assertEquals(2, values.nextDoc());
+      assertEquals(new BytesRef("bar"), values.binaryValue());
+      assertEquals(7, values.nextDoc());
+      assertEquals(new BytesRef("foo"), values.binaryValue());
+      assertEquals(10, values.nextDoc());
+      assertEquals(new BytesRef("baz"), values.binaryValue());
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, values.nextDoc());
+    }
+
+    w.close();
+    dir.close();
+  }
+
+  public void testRandom() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMaxDocValuesPatches(TestUtil.nextInt(random(), 1, 5));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(100);
+    final Map<Integer, Long> numericValues = new HashMap<>();
+    final Map<Integer, BytesRef> binaryValues = new HashMap<>();
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = doc(i);
+      if (random().nextBoolean()) {
+        long value = random().nextLong();
+        doc.add(new NumericDocValuesField("n", value));
+        numericValues.put(i, value);
+      }
+      if (random().nextBoolean()) {
+        BytesRef value = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+        doc.add(new BinaryDocValuesField("b", value));
+        binaryValues.put(i, value);
+      }
+      w.addDocument(doc);
+      if (random().nextInt(20) == 0) {
+        w.flush();
+      }
+    }
+
+    DirectoryReader reader = DirectoryReader.open(w);
+    final int iters = atLeast(20);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int numUpdates = TestUtil.nextInt(random(), 1, 10);
+      for (int i = 0; i < numUpdates; ++i) {
+        final int id = random().nextInt(numDocs);
+        final Term term = new Term("id", Integer.toString(id));
+        if (random().nextBoolean()) {
+          if (random().nextInt(10) == 0) {
+            w.updateDocValues(term, new NumericDocValuesField("n", null));
+            numericValues.remove(id);
+          } else {
+            long value = random().nextLong();
+            w.updateNumericDocValue(term, "n", value);
+            numericValues.put(id, value);
+          }
+        } else {
+          BytesRef value = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+          w.updateBinaryDocValue(term, "b", value);
+          binaryValues.put(id, value);
+        }
+      }
+      switch (random().nextInt(10)) {
+        case 0:
+          w.commit();
+          break;
+        case 1:
+          w.commit();
+          w.forceMerge(TestUtil.nextInt(random(), 1, 3));
+          break;
+        default:
+          break;
+      }
+      DirectoryReader newReader = DirectoryReader.openIfChanged(reader, w);
+      if (newReader != null) {
+        reader.close();
+        reader = newReader;
+      }
+      assertValues(reader, numericValues, binaryValues);
+    }
+    reader.close();
+
+    w.commit();
+    w.close();
+    try (DirectoryReader committed = DirectoryReader.open(dir)) {
+      assertValues(committed, numericValues, binaryValues);
+      for (LeafReaderContext ctx : committed.leaves()) {
+        CheckIndex.testDocValues((CodecReader) ctx.reader(), null, true);
+      }
+    }
+    dir.close();
+  }
+
+  private static void assertValues(DirectoryReader reader, Map<Integer, Long> numericValues,
+                                   Map<Integer, BytesRef> binaryValues) throws IOException {
+    for (LeafReaderContext ctx : reader.leaves()) {
+      LeafReader leaf = ctx.reader();
+      // resolve ids through the terms dictionary, docs get reordered by merges
+      TermsEnum terms = leaf.terms("id").iterator();
+      NumericDocValues numeric = leaf.getNumericDocValues("n");
+      BinaryDocValues binary = leaf.getBinaryDocValues("b");
+      int[] ids = new int[leaf.maxDoc()];
+      for (BytesRef term = terms.next(); term != null; term = terms.next()) {
+        PostingsEnum postings = terms.postings(null, PostingsEnum.NONE);
+        ids[postings.nextDoc()] = Integer.parseInt(term.utf8ToString());
+      }
+      int numericCount = 0;
+      int binaryCount = 0;
+      for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+        final Long expectedNumeric = numericValues.get(ids[doc]);
+        if (expectedNumeric == null) {
+          assertTrue(numeric == null || numeric.advanceExact(doc) == false);
+        } else {
+          assertTrue(numeric.advanceExact(doc));
+          assertEquals(expectedNumeric.longValue(), numeric.longValue());
+          numericCount++;
+        }
+        final BytesRef expectedBinary = binaryValues.get(ids[doc]);
+        if (expectedBinary == null) {
+          assertTrue(binary == null || binary.advanceExact(doc) == false);
+        } else {
+          assertTrue(binary.advanceExact(doc));
+          assertEquals(expectedBinary, binary.binaryValue());
+          binaryCount++;
+        }
+      }
+      // iterate values too
+      int count = 0;
+      for (numeric = leaf.getNumericDocValues("n"); numeric != null && numeric.nextDoc() != DocIdSetIterator.NO_MORE_DOCS; ) {
+        count++;
+      }
+      assertEquals(numericCount, count);
+      count = 0;
+      for (binary = leaf.getBinaryDocValues("b"); binary != null && binary.nextDoc() != DocIdSetIterator.NO_MORE_DOCS; ) {
+        count++;
+      }
+      assertEquals(binaryCount, count);
+    }
+  }
+}
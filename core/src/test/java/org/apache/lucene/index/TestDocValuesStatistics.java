@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestDocValuesStatistics extends LuceneTestCase {
+
+  private static IndexWriterConfig newConfig() {
+    // statistics are only recorded by the default doc values format
+    return newIndexWriterConfig().setCodec(TestUtil.getDefaultCodec()).setMergePolicy(newLogMergePolicy());
+  }
+
+  public void testNumeric() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newConfig());
+    final int numDocs = atLeast(100);
+    long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+    int docCount = 0;
+    Set<Long> distinctValues = new HashSet<>();
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(10) != 0) {
+        final long value = random().nextInt(50) - 25;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        docCount++;
+        distinctValues.add(value);
+        doc.add(new NumericDocValuesField("f", value));
+      }
+      doc.add(new SortedDocValuesField("s", new BytesRef("foo")));
+      w.addDocument(doc);
+      if (random().nextInt(20) == 0) {
+        w.flush();
+      }
+    }
+    w.forceMerge(1);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      LeafReader leaf = getOnlyLeafReader(reader);
+      DocValuesStatistics stats = leaf.getDocValuesStatistics("f");
+      if (docCount == 0) {
+        assertNull(stats);
+      } else {
+        assertNotNull(stats);
+        assertEquals(min, stats.getMinValue());
+        assertEquals(max, stats.getMaxValue());
+        assertEquals(docCount, stats.getDocCount());
+        assertEquals(docCount, stats.getValueCount());
+        // exact for small numbers of distinct values
+        assertEquals(distinctValues.size(), stats.getDistinctValueCount());
+      }
+      // not a numeric field
+      assertNull(leaf.getDocValuesStatistics("s"));
+      // no such field
+      assertNull(leaf.getDocValuesStatistics("missing"));
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testSortedNumeric() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newConfig());
+    Document doc = new Document();
+    doc.add(new SortedNumericDocValuesField("f", 3));
+    doc.add(new SortedNumericDocValuesField("f", -7));
+    w.addDocument(doc);
+    doc = new Document();
+    doc.add(new SortedNumericDocValuesField("f", 3));
+    w.addDocument(doc);
+    w.addDocument(new Document());
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      DocValuesStatistics stats = getOnlyLeafReader(reader).getDocValuesStatistics("f");
+      assertEquals(-7, stats.getMinValue());
+      assertEquals(3, stats.getMaxValue());
+      assertEquals(3, stats.getValueCount());
+      assertEquals(2, stats.getDocCount());
+      assertEquals(2, stats.getDistinctValueCount());
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testDocValuesUpdates() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newConfig());
+    for (int i = 0; i < 10; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      doc.add(new NumericDocValuesField("f", i));
+      w.addDocument(doc);
+    }
+    w.commit();
+    w.updateNumericDocValue(new Term("id", "0"), "f", 100);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      DocValuesStatistics stats = getOnlyLeafReader(reader).getDocValuesStatistics("f");
+      assertEquals(1, stats.getMinValue());
+      assertEquals(100, stats.getMaxValue());
+      assertEquals(10, stats.getDocCount());
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new DocValuesStatistics(0, 1, 1, 0, 1));
+    expectThrows(IllegalArgumentException.class, () -> new DocValuesStatistics(2, 1, 1, 1, 1));
+    expectThrows(IllegalArgumentException.class, () -> new DocValuesStatistics(0, 1, 1, 2, 1));
+  }
+}
@@ -21,7 +21,11 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.*;
 import org.apache.lucene.document.Document;
@@ -30,9 +34,11 @@ import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestIndexWriterCommit extends LuceneTestCase {
@@ -372,6 +378,75 @@ public class TestIndexWriterCommit extends LuceneTestCase {
     dir.close();
   }
 
+  public void testCommitAsync() throws Throwable {
+    doTestCommitAsync(null);
+  }
+
+  public void testCommitAsyncWithExecutor() throws Throwable {
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 3),
+        new NamedThreadFactory("TestIndexWriterCommit"));
+    try {
+      doTestCommitAsync(executor);
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+
+  private void doTestCommitAsync(ExecutorService executor) throws Throwable {
+    final int numThreads = TestUtil.nextInt(random(), 2, 5);
+    final Directory dir = newDirectory();
+    final IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random()))
+        .setCommitExecutor(executor)
+        // merges would make commits below non-empty
+        .setMergePolicy(NoMergePolicy.INSTANCE));
+    w.commit();
+    final AtomicBoolean failed = new AtomicBoolean();
+    final AtomicInteger commits = new AtomicInteger();
+    final int numDocsPerThread = atLeast(20);
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final int finalI = i;
+      threads[i] = new Thread(() -> {
+        try {
+          for (int j = 0; j < numDocsPerThread; j++) {
+            final String s = finalI + "_" + j;
+            Document doc = new Document();
+            doc.add(newStringField("f", s, Field.Store.NO));
+            w.addDocument(doc);
+            if (w.commitAsync().get() != -1) {
+              commits.incrementAndGet();
+            }
+            // the document must be durable once the future completes
+            try (DirectoryReader r = DirectoryReader.open(dir)) {
+              assertEquals("term=f:" + s + "; r=" + r, 1, r.docFreq(new Term("f", s)));
+            }
+          }
+        } catch (Throwable t) {
+          failed.set(true);
+          throw new RuntimeException(t);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertFalse(failed.get());
+    assertTrue(commits.get() > 0);
+    assertTrue(commits.get() <= numThreads * numDocsPerThread);
+    try (DirectoryReader r = DirectoryReader.open(dir)) {
+      assertEquals(numThreads * numDocsPerThread, r.numDocs());
+    }
+
+    // nothing to commit
+    assertEquals(-1L, w.commitAsync().get().longValue());
+    w.close();
+    // commits on a closed writer fail
+    expectThrows(AlreadyClosedException.class, w::commitAsync);
+    dir.close();
+  }
+
   // LUCENE-1044: test writer.commit() when ac=false
   public void testForceCommit() throws IOException {
     Directory dir = newDirectory();
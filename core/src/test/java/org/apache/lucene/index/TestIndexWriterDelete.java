@@ -22,10 +22,13 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,6 +40,7 @@ import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
@@ -48,6 +52,7 @@ import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 import org.junit.Ignore;
 
@@ -1445,4 +1450,73 @@ public class TestIndexWriterDelete extends LuceneTestCase {
     w.close();
     dir.close();
   }
+
+  public void testApplyDeletesExecutor() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestApplyDeletes"));
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setApplyDeletesExecutor(executor)
+        .setMergePolicy(NoMergePolicy.INSTANCE)
+        .setMaxBufferedDocs(TestUtil.nextInt(random(), 5, 20));
+    assertSame(executor, iwc.getApplyDeletesExecutor());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numIds = atLeast(100);
+    // -1 if deleted, else the expected version
+    final long[] versions = new long[numIds];
+    final long[] dvValues = new long[numIds];
+    Arrays.fill(versions, -1);
+    final int numOps = atLeast(1000);
+    for (int i = 0; i < numOps; ++i) {
+      final int id = random().nextInt(numIds);
+      final String idString = Integer.toString(id);
+      final int op = random().nextInt(20);
+      if (op == 0) {
+        w.deleteDocuments(new Term("id", idString));
+        versions[id] = -1;
+      } else if (op == 1) {
+        w.deleteDocuments(IntPoint.newExactQuery("int_id", id));
+        versions[id] = -1;
+      } else if (op == 2 && versions[id] != -1) {
+        w.updateNumericDocValue(new Term("id", idString), "dv", i);
+        dvValues[id] = i;
+      } else {
+        Document doc = new Document();
+        doc.add(new StringField("id", idString, Field.Store.NO));
+        doc.add(new IntPoint("int_id", id));
+        doc.add(new StoredField("version", i));
+        doc.add(new NumericDocValuesField("dv", i));
+        w.updateDocument(new Term("id", idString), doc);
+        versions[id] = i;
+        dvValues[id] = i;
+      }
+      if (random().nextInt(100) == 0) {
+        DirectoryReader.open(w).close();
+      }
+    }
+
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      IndexSearcher searcher = newSearcher(reader);
+      int expectedNumDocs = 0;
+      for (int id = 0; id < numIds; ++id) {
+        ScoreDoc[] hits = searcher.search(new TermQuery(new Term("id", Integer.toString(id))), 2).scoreDocs;
+        if (versions[id] == -1) {
+          assertEquals(0, hits.length);
+        } else {
+          expectedNumDocs++;
+          assertEquals(1, hits.length);
+          assertEquals(versions[id], searcher.doc(hits[0].doc).getField("version").numericValue().longValue());
+          LeafReaderContext leaf = reader.leaves().get(ReaderUtil.subIndex(hits[0].doc, reader.leaves()));
+          NumericDocValues dv = leaf.reader().getNumericDocValues("dv");
+          assertTrue(dv.advanceExact(hits[0].doc - leaf.docBase));
+          assertEquals(dvValues[id], dv.longValue());
+        }
+      }
+      assertEquals(expectedNumDocs, reader.numDocs());
+    }
+
+    w.close();
+    dir.close();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
 }
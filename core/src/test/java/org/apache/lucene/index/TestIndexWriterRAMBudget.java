@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIndexWriterRAMBudget extends LuceneTestCase {
+
+  private static IndexWriterConfig newConfig(IndexWriterRAMBudget budget) {
+    // only flush by RAM according to the shared budget
+    return new IndexWriterConfig(new MockAnalyzer(random()))
+        .setMaxBufferedDocs(1_000_000)
+        .setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+        .setMergePolicy(NoMergePolicy.INSTANCE)
+        .setRAMBudget(budget);
+  }
+
+  private static Document newDoc(int id) {
+    Document doc = new Document();
+    doc.add(new StringField("id", Integer.toString(id), Store.YES));
+    doc.add(new TextField("body", TestUtil.randomSimpleString(random(), 50, 200) + " " + id, Store.NO));
+    return doc;
+  }
+
+  public void testFlushLargestWriter() throws IOException {
+    final IndexWriterRAMBudget budget = new IndexWriterRAMBudget(0.5);
+    final long limit = (long) (budget.getRAMBudgetMB() * 1024 * 1024);
+    final int numWriters = 2 + random().nextInt(3);
+    final Directory[] dirs = new Directory[numWriters];
+    final IndexWriter[] writers = new IndexWriter[numWriters];
+    for (int i = 0; i < numWriters; ++i) {
+      dirs[i] = newDirectory();
+      writers[i] = new IndexWriter(dirs[i], newConfig(budget));
+    }
+    assertEquals(numWriters, budget.getNumWriters());
+
+    // the first writer gets a head start so that it is the largest one, then goes idle
+    IndexWriter idle = writers[0];
+    int id = 0;
+    while (idle.ramBytesUsed() < limit * 3 / 4) {
+      idle.addDocument(newDoc(id++));
+    }
+    assertEquals(0, idle.getFlushCount());
+
+    // other writers index until the budget forces them to flush the idle writer
+    for (int i = 0; i < 2000 && idle.getFlushCount() == 0; ++i) {
+      writers[1 + random().nextInt(numWriters - 1)].addDocument(newDoc(id++));
+      assertTrue(budget.ramBytesUsed() + " > " + limit, budget.ramBytesUsed() <= 2 * limit);
+    }
+    assertTrue(idle.getFlushCount() > 0);
+    assertEquals(0, idle.ramBytesUsed());
+
+    for (int i = 0; i < 1000; ++i) {
+      writers[random().nextInt(numWriters)].addDocument(newDoc(id++));
+      assertTrue(budget.ramBytesUsed() + " > " + limit, budget.ramBytesUsed() <= 2 * limit);
+    }
+    long total = 0;
+    for (IndexWriter writer : writers) {
+      total += writer.ramBytesUsed();
+    }
+    assertTrue(total + " > " + limit, total <= limit + limit / 2);
+
+    int numDocs = 0;
+    for (IndexWriter writer : writers) {
+      writer.commit();
+      numDocs += writer.getDocStats().numDocs;
+    }
+    assertEquals(id, numDocs);
+
+    // closed writers don't count against the budget anymore
+    writers[0].addDocument(newDoc(id++));
+    writers[0].close();
+    assertEquals(numWriters - 1, budget.getNumWriters());
+    writers[1].rollback();
+    assertEquals(numWriters - 2, budget.getNumWriters());
+    IOUtils.close(writers);
+    assertEquals(0, budget.getNumWriters());
+    assertEquals(0, budget.ramBytesUsed());
+    IOUtils.close(dirs);
+  }
+
+  public void testLargestWriterFlushesItself() throws IOException {
+    final IndexWriterRAMBudget budget = new IndexWriterRAMBudget(1);
+    final long limit = (long) (budget.getRAMBudgetMB() * 1024 * 1024);
+    Directory smallDir = newDirectory();
+    Directory largeDir = newDirectory();
+    IndexWriter small = new IndexWriter(smallDir, newConfig(budget));
+    IndexWriter large = new IndexWriter(largeDir, newConfig(budget));
+    small.addDocument(newDoc(0));
+    large.addDocument(newDoc(1));
+    final IndexWriterRAMBudget.Member smallMember = small.docWriter.flushControl.ramBudgetMember;
+    final IndexWriterRAMBudget.Member largeMember = large.docWriter.flushControl.ramBudgetMember;
+
+    // the large writer exceeds the budget on its own but its flush policy could
+    // not mark a buffer flush pending, eg. because all buffers are checked out
+    largeMember.update(limit, 0);
+    budget.maybeFlush(largeMember);
+    // flushing the small writer would only produce a tiny segment
+    assertEquals(0, small.getFlushCount());
+    assertEquals(0, large.getFlushCount());
+
+    // indexing threads of the small writer help flush the large writer
+    budget.maybeFlush(smallMember);
+    assertEquals(0, small.getFlushCount());
+    assertEquals(1, large.getFlushCount());
+
+    IOUtils.close(small, large, smallDir, largeDir);
+  }
+
+  public void testConcurrentIndexing() throws Exception {
+    final IndexWriterRAMBudget budget = new IndexWriterRAMBudget(0.5 + random().nextDouble());
+    final int numWriters = 2 + random().nextInt(3);
+    final Directory[] dirs = new Directory[numWriters];
+    final IndexWriter[] writers = new IndexWriter[numWriters];
+    for (int i = 0; i < numWriters; ++i) {
+      dirs[i] = newDirectory();
+      writers[i] = new IndexWriter(dirs[i], newConfig(budget));
+    }
+    final int numThreads = 2 + random().nextInt(4);
+    final int numDocsPerThread = atLeast(500);
+    final AtomicLong ids = new AtomicLong();
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t) {
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < numDocsPerThread; ++i) {
+            final int id = (int) ids.getAndIncrement();
+            IndexWriter writer = writers[random().nextInt(numWriters)];
+            if (random().nextInt(10) == 0) {
+              writer.deleteDocuments(new Term("id", Integer.toString(random().nextInt(id + 1))));
+            } else {
+              writer.updateDocument(new Term("id", Integer.toString(id)), newDoc(id));
+            }
+          }
+        } catch (Exception e) {
+          throw new AssertionError(e);
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    int flushCount = 0;
+    for (IndexWriter writer : writers) {
+      flushCount += writer.getFlushCount();
+    }
+    assertTrue(flushCount > 0);
+    IOUtils.close(writers);
+    assertEquals(0, budget.getNumWriters());
+    assertEquals(0, budget.ramBytesUsed());
+    IOUtils.close(dirs);
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new IndexWriterRAMBudget(0));
+    expectThrows(IllegalArgumentException.class, () -> new IndexWriterRAMBudget(-1));
+    expectThrows(IllegalArgumentException.class, () -> new IndexWriterRAMBudget(Double.NaN));
+    IndexWriterRAMBudget budget = new IndexWriterRAMBudget(16);
+    budget.setRAMBudgetMB(32);
+    assertEquals(32, budget.getRAMBudgetMB(), 0d);
+    expectThrows(IllegalArgumentException.class, () -> budget.setRAMBudgetMB(0));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestMergeOnRefreshMergePolicy extends LuceneTestCase {
+
+  private static void addSegment(IndexWriter w, int numDocs) throws IOException {
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.YES));
+      w.addDocument(doc);
+    }
+    w.flush();
+  }
+
+  public void testMergeOnGetReader() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMergePolicy(new MergeOnRefreshMergePolicy(NoMergePolicy.INSTANCE))
+        .setMaxFullFlushMergeWaitMillis(Long.MAX_VALUE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numSegments = atLeast(3);
+    for (int i = 0; i < numSegments; ++i) {
+      addSegment(w, 1 + random().nextInt(10));
+    }
+    int numDocs = w.getDocStats().numDocs;
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertEquals(1, reader.leaves().size());
+      assertEquals(numDocs, reader.numDocs());
+    }
+
+    addSegment(w, 5);
+    // commits only merge if they flush changes
+    for (int i = 0; i < 5; ++i) {
+      w.addDocument(new Document());
+    }
+    w.commit();
+    try (DirectoryReader reader = DirectoryReader.open(dir)) {
+      assertEquals(1, reader.leaves().size());
+      assertEquals(numDocs + 10, reader.numDocs());
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testOnlyMergeSmallSegments() throws IOException {
+    Directory dir = newDirectory();
+    MergeOnRefreshMergePolicy mp = new MergeOnRefreshMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMergePolicy(mp)
+        .setMaxFullFlushMergeWaitMillis(Long.MAX_VALUE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    // no small segments: nothing gets merged
+    mp.setMaxSegmentSizeMB(0);
+    addSegment(w, 10);
+    addSegment(w, 10);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertEquals(2, reader.leaves().size());
+    }
+    mp.setMaxSegmentSizeMB(MergeOnRefreshMergePolicy.DEFAULT_MAX_SEGMENT_SIZE_MB);
+    addSegment(w, 10);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      assertEquals(1, reader.leaves().size());
+      assertEquals(30, reader.numDocs());
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testIllegalArguments() {
+    MergeOnRefreshMergePolicy mp = new MergeOnRefreshMergePolicy(NoMergePolicy.INSTANCE);
+    expectThrows(IllegalArgumentException.class, () -> mp.setMaxSegmentSizeMB(-1));
+    assertEquals(MergeOnRefreshMergePolicy.DEFAULT_MAX_SEGMENT_SIZE_MB, mp.getMaxSegmentSizeMB(), 0d);
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestOperationLog extends LuceneTestCase {
+
+  private static void index(IndexWriter w, OperationLog log, String id, String value) throws IOException {
+    Document doc = new Document();
+    doc.add(new StringField("id", id, Store.YES));
+    doc.add(new StringField("value", value, Store.YES));
+    final long seqNo = w.updateDocument(new Term("id", id), doc);
+    log.add(seqNo, new BytesRef(id + "=" + value));
+  }
+
+  private static Map<String,String> replay(OperationLog log, long fromGeneration) throws IOException {
+    final Map<String,String> ops = new HashMap<>();
+    log.replay(fromGeneration, (seqNo, op) -> {
+      final String[] parts = op.utf8ToString().split("=");
+      ops.put(parts[0], parts[1]);
+    });
+    return ops;
+  }
+
+  public void testReplayAfterCrash() throws IOException {
+    Path path = createTempDir();
+    Directory dir = newDirectory();
+    IndexWriter crashed = new IndexWriter(dir, newIndexWriterConfig());
+    crashed.setLiveCommitData(Collections.singletonMap("foo", "bar").entrySet());
+    OperationLog log = new OperationLog(path);
+
+    final Map<String,String> expected = new HashMap<>();
+    final int numCommits = atLeast(3);
+    for (int i = 0; i < numCommits; ++i) {
+      final int numDocs = atLeast(10);
+      for (int j = 0; j < numDocs; ++j) {
+        final String id = Integer.toString(random().nextInt(50));
+        final String value = Integer.toString(random().nextInt(1000));
+        index(crashed, log, id, value);
+        expected.put(id, value);
+      }
+      log.commit(crashed);
+    }
+    // operations after the last commit are only durable in the log
+    final Map<String,String> uncommitted = new HashMap<>();
+    final int numDocs = atLeast(10);
+    for (int j = 0; j < numDocs; ++j) {
+      final String id = Integer.toString(random().nextInt(50));
+      final String value = Integer.toString(random().nextInt(1000));
+      index(crashed, log, id, value);
+      expected.put(id, value);
+      uncommitted.put(id, value);
+    }
+    log.sync();
+    // crash
+    crashed.rollback();
+    log.close();
+
+    // only the current generation is left
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    try (OperationLog reopened = new OperationLog(path)) {
+      final Map<String,String> userData = new HashMap<>();
+      for (Map.Entry<String,String> entry : w.getLiveCommitData()) {
+        userData.put(entry.getKey(), entry.getValue());
+      }
+      assertEquals("bar", userData.get("foo"));
+      final long generation = OperationLog.getGeneration(userData);
+      assertEquals(numCommits, generation);
+      assertEquals(numCommits + 1, reopened.getGeneration());
+      assertEquals(uncommitted, replay(reopened, 0));
+      assertEquals(uncommitted, replay(reopened, generation));
+      assertEquals(Collections.emptyMap(), replay(reopened, generation + 1));
+
+      reopened.replay(generation, (seqNo, op) -> {
+        final String[] parts = op.utf8ToString().split("=");
+        index(w, reopened, parts[0], parts[1]);
+      });
+      reopened.commit(w);
+      // the replayed generation is now in the index
+      assertEquals(Collections.emptyMap(), replay(reopened, 0));
+    }
+
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      IndexSearcher searcher = newSearcher(reader);
+      assertEquals(expected.size(), reader.numDocs());
+      for (Map.Entry<String,String> entry : expected.entrySet()) {
+        TopDocs hits = searcher.search(new TermQuery(new Term("id", entry.getKey())), 1);
+        assertEquals(1, hits.totalHits.value);
+        assertEquals(entry.getValue(), searcher.doc(hits.scoreDocs[0].doc).get("value"));
+      }
+    }
+    w.close();
+    dir.close();
+  }
+
+  private static List<Long> replaySeqNos(OperationLog log, long fromGeneration) throws IOException {
+    final List<Long> seqNos = new ArrayList<>();
+    log.replay(fromGeneration, (seqNo, op) -> {
+      assertEquals("op" + seqNo, op.utf8ToString());
+      seqNos.add(seqNo);
+    });
+    return seqNos;
+  }
+
+  private static List<Long> seqNos(long from, long to) {
+    final List<Long> seqNos = new ArrayList<>();
+    for (long seqNo = from; seqNo <= to; ++seqNo) {
+      seqNos.add(seqNo);
+    }
+    return seqNos;
+  }
+
+  /**
+   * Simulate a crash: return a copy of the files of the log as they are while
+   * it is still open, then close the log.
+   */
+  private static Path crash(OperationLog log, Path path) throws IOException {
+    Path copy = createTempDir();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, OperationLog.FILE_PREFIX + "*")) {
+      for (Path file : stream) {
+        Files.copy(file, copy.resolve(file.getFileName()));
+      }
+    }
+    log.close();
+    return copy;
+  }
+
+  /**
+   * Add operations 1 to 10 to a log in the given directory, sync after the
+   * first 5 ones, crash and return the crashed directory.
+   */
+  private static Path crashWithUnsyncedOperations(Path path) throws IOException {
+    OperationLog log = new OperationLog(path);
+    for (long seqNo = 1; seqNo <= 10; ++seqNo) {
+      log.add(seqNo, new BytesRef("op" + seqNo));
+      if (seqNo == 5) {
+        log.sync();
+      }
+    }
+    return crash(log, path);
+  }
+
+  private static long recordLength(long seqNo) {
+    return OperationLog.RECORD_OVERHEAD + ("op" + seqNo).length();
+  }
+
+  private static long syncedLength() {
+    long length = OperationLog.HEADER_LENGTH;
+    for (long seqNo = 1; seqNo <= 5; ++seqNo) {
+      length += recordLength(seqNo);
+    }
+    return length;
+  }
+
+  public void testTruncatedTail() throws IOException {
+    Path path = crashWithUnsyncedOperations(createTempDir());
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+    final long size = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(size - 3);
+    }
+    try (OperationLog log = new OperationLog(path)) {
+      // the torn operation got truncated on open, unsynced operations that made it to disk are kept
+      assertEquals(size - recordLength(10), Files.size(file));
+      assertEquals(seqNos(1, 9), replaySeqNos(log, 0));
+      log.deleteGenerationsBefore(log.getGeneration());
+      assertFalse(Files.exists(file));
+      assertFalse(Files.exists(path.resolve(OperationLog.FILE_PREFIX + "0" + OperationLog.SYNC_MARKER_SUFFIX)));
+      assertEquals(Collections.emptyList(), replaySeqNos(log, 0));
+      expectThrows(IllegalArgumentException.class, () -> log.deleteGenerationsBefore(log.getGeneration() + 1));
+    }
+  }
+
+  public void testTornChecksum() throws IOException {
+    Path path = crashWithUnsyncedOperations(createTempDir());
+    // the last operation has the right length but its bytes didn't all make it to disk
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+    flipByte(file, Files.size(file) - Integer.BYTES - 1);
+    try (OperationLog log = new OperationLog(path)) {
+      assertEquals(seqNos(1, 9), replaySeqNos(log, 0));
+    }
+  }
+
+  public void testZeroFilledTail() throws IOException {
+    Path path = crashWithUnsyncedOperations(createTempDir());
+    // the file system extended the file but the unsynced pages were never written
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+    final long size = Files.size(file);
+    final long start = syncedLength() + random().nextInt((int) recordLength(6));
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      final ByteBuffer zeros = ByteBuffer.allocate((int) (size - start));
+      while (zeros.hasRemaining()) {
+        channel.write(zeros, start + zeros.position());
+      }
+    }
+    try (OperationLog log = new OperationLog(path)) {
+      assertEquals(syncedLength(), Files.size(file));
+      assertEquals(seqNos(1, 5), replaySeqNos(log, 0));
+    }
+  }
+
+  public void testGarbledTail() throws IOException {
+    Path path = crashWithUnsyncedOperations(createTempDir());
+    // random bytes over several unsynced operations
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+    final long size = Files.size(file);
+    final long start = syncedLength() + random().nextInt((int) recordLength(6));
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      final byte[] garbage = new byte[(int) (size - start)];
+      random().nextBytes(garbage);
+      final ByteBuffer buffer = ByteBuffer.wrap(garbage);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, start + buffer.position());
+      }
+    }
+    try (OperationLog log = new OperationLog(path)) {
+      assertEquals(syncedLength(), Files.size(file));
+      assertEquals(seqNos(1, 5), replaySeqNos(log, 0));
+    }
+  }
+
+  public void testCorruptionIsNotATornTail() throws IOException {
+    for (boolean lastOperation : new boolean[] { false, true }) {
+      Path path = createTempDir();
+      try (OperationLog log = new OperationLog(path)) {
+        for (long seqNo = 1; seqNo <= 10; ++seqNo) {
+          log.add(seqNo, new BytesRef("op" + seqNo));
+        }
+      }
+      // corrupt the payload of an operation that has been synced
+      Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+      final long size = Files.size(file);
+      flipByte(file, lastOperation
+          ? size - Integer.BYTES - 1
+          : OperationLog.HEADER_LENGTH + Integer.BYTES + Long.BYTES);
+      expectThrows(CorruptIndexException.class, () -> new OperationLog(path));
+      // nothing got truncated
+      assertEquals(size, Files.size(file));
+    }
+
+    // data that has been synced must not be truncated either
+    Path path = crashWithUnsyncedOperations(createTempDir());
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(syncedLength() - 1);
+    }
+    expectThrows(CorruptIndexException.class, () -> new OperationLog(path));
+  }
+
+  public void testDoubleCrash() throws IOException {
+    Path path = crashWithUnsyncedOperations(createTempDir());
+    // first crash in the middle of adding an operation
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "0");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1 - random().nextInt(OperationLog.RECORD_OVERHEAD));
+    }
+    OperationLog log = new OperationLog(path);
+    assertEquals(seqNos(1, 9), replaySeqNos(log, 0));
+    // the replayed operations get re-applied, then the process crashes again before committing
+    for (long seqNo = 11; seqNo <= 15; ++seqNo) {
+      log.add(seqNo, new BytesRef("op" + seqNo));
+    }
+    log.sync();
+    path = crash(log, path);
+    // the first generation is not the last one anymore but it must still be readable
+    try (OperationLog reopened = new OperationLog(path)) {
+      final List<Long> expected = seqNos(1, 9);
+      expected.addAll(seqNos(11, 15));
+      assertEquals(expected, replaySeqNos(reopened, 0));
+    }
+  }
+
+  public void testCrashAfterCreatingGeneration() throws IOException {
+    Path path = createTempDir();
+    OperationLog log = new OperationLog(path);
+    log.add(1, new BytesRef("op1"));
+    log.rollGeneration();
+    path = crash(log, path);
+    // the header of the last generation didn't make it to disk
+    Path file = path.resolve(OperationLog.FILE_PREFIX + "1");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      if (random().nextBoolean()) {
+        channel.truncate(random().nextInt(OperationLog.HEADER_LENGTH));
+      } else {
+        channel.write(ByteBuffer.allocate(OperationLog.HEADER_LENGTH), 0);
+      }
+    }
+    try (OperationLog reopened = new OperationLog(path)) {
+      assertFalse(Files.exists(file));
+      assertEquals(2, reopened.getGeneration());
+      assertEquals(seqNos(1, 1), replaySeqNos(reopened, 0));
+    }
+  }
+
+  private static void flipByte(Path file, long position) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final ByteBuffer b = ByteBuffer.allocate(1);
+      channel.read(b, position);
+      b.flip();
+      b.put(0, (byte) (b.get(0) ^ 0x01));
+      channel.write(b, position);
+    }
+  }
+
+  public void testConcurrentSyncs() throws Exception {
+    Path path = createTempDir();
+    OperationLog log = new OperationLog(path);
+    final int numThreads = 2 + random().nextInt(4);
+    final int numOps = atLeast(50);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t) {
+      final int thread = t;
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < numOps; ++i) {
+            log.add(thread * numOps + i, new BytesRef(Integer.toString(thread)));
+            if (random().nextBoolean()) {
+              log.sync();
+            }
+          }
+        } catch (Exception e) {
+          throw new AssertionError(e);
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    log.close();
+    expectThrows(AlreadyClosedException.class, () -> log.add(0, new BytesRef()));
+    expectThrows(AlreadyClosedException.class, log::sync);
+
+    try (OperationLog reopened = new OperationLog(path)) {
+      final int[] counts = new int[numThreads];
+      reopened.replay(0, (seqNo, op) -> {
+        final int thread = Integer.parseInt(op.utf8ToString());
+        assertEquals(thread, seqNo / numOps);
+        counts[thread]++;
+      });
+      for (int count : counts) {
+        assertEquals(numOps, count);
+      }
+    }
+    assertTrue(Files.exists(path.resolve(OperationLog.FILE_PREFIX + "0")));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestReplication extends LuceneTestCase {
+
+  private static ReplicationCheckpoint serialize(ReplicationCheckpoint checkpoint) throws IOException {
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    checkpoint.writeTo(out);
+    ByteBuffersDataInput in = out.toDataInput();
+    ReplicationCheckpoint copy = ReplicationCheckpoint.readFrom(in);
+    assertEquals(0, in.size() - in.position());
+    assertEquals(checkpoint.getVersion(), copy.getVersion());
+    assertEquals(checkpoint.getFiles(), copy.getFiles());
+    return copy;
+  }
+
+  public void testReplicate() throws IOException {
+    Directory primaryDir = newDirectory();
+    Directory replicaDir = newDirectory();
+    IndexWriter writer = new IndexWriter(primaryDir, newIndexWriterConfig());
+    ReplicationSource source = new ReplicationSource(writer);
+    ReplicationTarget target = new ReplicationTarget(replicaDir);
+    AtomicInteger copiedFiles = new AtomicInteger();
+    ReplicationTarget.FileTransport directoryTransport = ReplicationTarget.directoryTransport(primaryDir);
+    ReplicationTarget.FileTransport transport = (fileName, out) -> {
+      copiedFiles.incrementAndGet();
+      directoryTransport.copyFile(fileName, out);
+    };
+
+    ReplicationCheckpoint checkpoint = null;
+    ReplicationCheckpoint replicaCheckpoint = null;
+    DirectoryReader replicaReader = null;
+    final int numIters = atLeast(5);
+    for (int iter = 0; iter < numIters; ++iter) {
+      final int numDocs = atLeast(10);
+      for (int i = 0; i < numDocs; ++i) {
+        String id = Integer.toString(random().nextInt(100));
+        if (random().nextInt(5) == 0) {
+          writer.deleteDocuments(new Term("id", id));
+        } else {
+          Document doc = new Document();
+          doc.add(new StringField("id", id, Store.YES));
+          doc.add(new StringField("iter", Integer.toString(iter), Store.YES));
+          writer.updateDocument(new Term("id", id), doc);
+        }
+      }
+      ReplicationCheckpoint newCheckpoint = source.publish();
+      ReplicationCheckpoint newReplicaCheckpoint = serialize(newCheckpoint);
+      final int numMissingFiles = target.missingFiles(newReplicaCheckpoint).size();
+      copiedFiles.set(0);
+      DirectoryReader newReplicaReader = target.open(newReplicaCheckpoint, transport, replicaReader);
+      assertEquals(numMissingFiles, copiedFiles.get());
+      assertEquals(Collections.emptyMap(), target.missingFiles(newReplicaCheckpoint));
+      assertEquals(newCheckpoint.getVersion(), newReplicaReader.getVersion());
+
+      if (checkpoint != null) {
+        source.release(checkpoint);
+        replicaReader.close();
+        target.deleteUnusedFiles(Collections.singleton(newReplicaCheckpoint));
+        Set<String> files = newReplicaCheckpoint.getFiles().keySet();
+        for (String file : replicaDir.listAll()) {
+          assertTrue(file, files.contains(file));
+        }
+      }
+      checkpoint = newCheckpoint;
+      replicaCheckpoint = newReplicaCheckpoint;
+      replicaReader = newReplicaReader;
+
+      try (DirectoryReader primaryReader = DirectoryReader.open(writer)) {
+        assertEquals(primaryReader.numDocs(), replicaReader.numDocs());
+        IndexSearcher primarySearcher = newSearcher(primaryReader);
+        IndexSearcher replicaSearcher = newSearcher(replicaReader);
+        for (int id = 0; id < 100; ++id) {
+          TermQuery query = new TermQuery(new Term("id", Integer.toString(id)));
+          assertEquals(primarySearcher.count(query), replicaSearcher.count(query));
+        }
+      }
+    }
+
+    // files of published checkpoints are protected from deletion
+    writer.forceMerge(1);
+    writer.commit();
+    final ReplicationCheckpoint lastCheckpoint = checkpoint;
+    for (String file : lastCheckpoint.getFiles().keySet()) {
+      try (IndexInput in = source.openInput(lastCheckpoint, file)) {
+        assertEquals(lastCheckpoint.getFiles().get(file).getLength(), in.length());
+      }
+    }
+    expectThrows(IllegalArgumentException.class, () -> source.openInput(lastCheckpoint, "foo"));
+    source.release(lastCheckpoint);
+    // only checkpoints that have been published by the source can be released
+    final ReplicationCheckpoint lastReplicaCheckpoint = replicaCheckpoint;
+    expectThrows(IllegalArgumentException.class, () -> source.release(lastReplicaCheckpoint));
+    expectThrows(IllegalArgumentException.class, () -> source.release(lastCheckpoint));
+
+    IOUtils.close(replicaReader, source, writer, primaryDir, replicaDir);
+  }
+
+  public void testCorruptedCopy() throws IOException {
+    Directory primaryDir = newDirectory();
+    Directory replicaDir = newDirectory();
+    IndexWriter writer = new IndexWriter(primaryDir, newIndexWriterConfig());
+    Document doc = new Document();
+    doc.add(new StringField("id", "1", Store.YES));
+    writer.addDocument(doc);
+    ReplicationSource source = new ReplicationSource(writer);
+    ReplicationCheckpoint checkpoint = source.publish();
+    ReplicationTarget target = new ReplicationTarget(replicaDir);
+
+    String corruptedFile = checkpoint.getFiles().keySet().iterator().next();
+    ReplicationTarget.FileTransport transport = (fileName, out) -> {
+      try (IndexInput in = primaryDir.openInput(fileName, IOContext.READONCE)) {
+        if (fileName.equals(corruptedFile)) {
+          out.writeByte((byte) ~in.readByte());
+        }
+        out.copyBytes(in, in.length() - in.getFilePointer());
+      }
+    };
+    expectThrows(CorruptIndexException.class, () -> target.open(checkpoint, transport, null));
+    assertTrue(target.missingFiles(checkpoint).containsKey(corruptedFile));
+    for (String file : replicaDir.listAll()) {
+      assertTrue(file, checkpoint.getFiles().containsKey(file));
+    }
+
+    try (DirectoryReader reader = target.open(checkpoint, ReplicationTarget.directoryTransport(primaryDir), null)) {
+      assertEquals(1, reader.numDocs());
+    }
+    source.release(checkpoint);
+    IOUtils.close(source, writer, primaryDir, replicaDir);
+  }
+}
@@ -30,8 +30,10 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestSoftDeletesDirectoryReaderWrapper extends LuceneTestCase {
 
@@ -248,4 +250,58 @@ public class TestSoftDeletesDirectoryReaderWrapper extends LuceneTestCase {
     assertEquals(1, leafCalled.get());
     IOUtils.close(reader, writer, dir);
   }
+
+  public void testIncrementalSoftDeletes() throws IOException {
+    Directory dir = newDirectory();
+    String softDeletesField = "soft_delete";
+    IndexWriterConfig indexWriterConfig = newIndexWriterConfig()
+        .setSoftDeletesField(softDeletesField)
+        .setMaxDocValuesPatches(TestUtil.nextInt(random(), 1, 5))
+        .setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, indexWriterConfig);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      writer.addDocument(doc);
+      if (random().nextInt(30) == 0) {
+        writer.commit();
+      }
+    }
+    writer.commit();
+    DirectoryReader reader = new SoftDeletesDirectoryReaderWrapper(DirectoryReader.open(dir), softDeletesField);
+    final int numIters = atLeast(10);
+    for (int iter = 0; iter < numIters; ++iter) {
+      final int numOps = TestUtil.nextInt(random(), 1, 10);
+      for (int i = 0; i < numOps; ++i) {
+        Term id = new Term("id", Integer.toString(random().nextInt(numDocs)));
+        if (random().nextInt(4) == 0) {
+          writer.deleteDocuments(id);
+        } else {
+          writer.updateDocValues(id, new NumericDocValuesField(softDeletesField, 1));
+        }
+      }
+      writer.commit();
+      DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+      if (newReader != null) { // null if all operations were no-ops
+        reader.close();
+        reader = newReader;
+      }
+      try (DirectoryReader expected = new SoftDeletesDirectoryReaderWrapper(DirectoryReader.open(dir), softDeletesField)) {
+        assertEquals(expected.numDocs(), reader.numDocs());
+        assertEquals(expected.leaves().size(), reader.leaves().size());
+        for (int i = 0; i < expected.leaves().size(); ++i) {
+          LeafReader expectedLeaf = expected.leaves().get(i).reader();
+          LeafReader leaf = reader.leaves().get(i).reader();
+          assertEquals(expectedLeaf.numDocs(), leaf.numDocs());
+          Bits expectedLiveDocs = expectedLeaf.getLiveDocs();
+          Bits liveDocs = leaf.getLiveDocs();
+          for (int doc = 0; doc < expectedLeaf.maxDoc(); ++doc) {
+            assertEquals(expectedLiveDocs == null || expectedLiveDocs.get(doc), liveDocs == null || liveDocs.get(doc));
+          }
+        }
+      }
+    }
+    IOUtils.close(reader, writer, dir);
+  }
 }
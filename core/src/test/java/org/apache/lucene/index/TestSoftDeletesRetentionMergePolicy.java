@@ -48,6 +48,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOSupplier;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 
@@ -705,6 +706,50 @@ public class TestSoftDeletesRetentionMergePolicy extends LuceneTestCase {
     IOUtils.close(writer, dir);
   }
 
+  public void testCacheNumDeletesToMerge() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig config = newIndexWriterConfig().setSoftDeletesField("soft_deletes")
+        .setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, config);
+    for (int i = 0; i < 10; ++i) {
+      Document d = new Document();
+      d.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      writer.addDocument(d);
+    }
+    for (int i = 0; i < 5; ++i) {
+      writer.updateDocValues(new Term("id", Integer.toString(i)), new NumericDocValuesField("soft_deletes", 1));
+    }
+    writer.commit();
+    writer.close();
+
+    AtomicInteger retainedId = new AtomicInteger(0);
+    SoftDeletesRetentionMergePolicy policy = new SoftDeletesRetentionMergePolicy("soft_deletes",
+        () -> new TermQuery(new Term("id", Integer.toString(retainedId.get()))), NoMergePolicy.INSTANCE);
+    try (DirectoryReader reader = new SoftDeletesDirectoryReaderWrapper(DirectoryReader.open(dir), "soft_deletes")) {
+      SegmentCommitInfo info = SegmentInfos.readLatestCommit(dir).info(0);
+      assertEquals(1, reader.leaves().size());
+      AtomicInteger readerCalls = new AtomicInteger();
+      IOSupplier<CodecReader> readerSupplier = () -> {
+        readerCalls.incrementAndGet();
+        return (CodecReader) reader.leaves().get(0).reader();
+      };
+      final int delCount = info.getDelCount() + info.getSoftDelCount();
+      assertEquals(4, policy.numDeletesToMerge(info, delCount, readerSupplier));
+      assertEquals(1, readerCalls.get());
+      // cached
+      assertEquals(4, policy.numDeletesToMerge(info, delCount, readerSupplier));
+      assertEquals(1, readerCalls.get());
+      // the retention query changed
+      retainedId.set(7);
+      assertEquals(5, policy.numDeletesToMerge(info, delCount, readerSupplier));
+      assertEquals(2, readerCalls.get());
+      // new deletes
+      assertEquals(5, policy.numDeletesToMerge(info, delCount + 1, readerSupplier));
+      assertEquals(3, readerCalls.get());
+    }
+    dir.close();
+  }
+
   static void doUpdate(Term doc, IndexWriter writer, Field... fields) throws IOException {
     long seqId = -1;
     do { // retry if we just committing a merge
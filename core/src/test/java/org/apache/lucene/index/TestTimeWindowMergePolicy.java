@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestTimeWindowMergePolicy extends LuceneTestCase {
+
+  public void testMergesWithinWindows() throws IOException {
+    final long windowSize = 1000;
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMergePolicy(new TimeWindowMergePolicy(newLogMergePolicy(2), "timestamp", windowSize))
+        .setMergeScheduler(new SerialMergeScheduler());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numWindows = atLeast(3);
+    for (int window = 0; window < numWindows; ++window) {
+      final int numSegments = atLeast(3);
+      for (int i = 0; i < numSegments; ++i) {
+        final int numDocs = 1 + random().nextInt(5);
+        for (int j = 0; j < numDocs; ++j) {
+          Document doc = new Document();
+          doc.add(new LongPoint("timestamp", window * windowSize + random().nextInt((int) windowSize)));
+          w.addDocument(doc);
+        }
+        w.flush();
+      }
+    }
+    // a segment without timestamps
+    Document doc = new Document();
+    doc.add(new StringField("id", "1", Store.NO));
+    w.addDocument(doc);
+    w.forceMerge(1);
+
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      // one segment per window, plus the one without timestamps
+      assertEquals(numWindows + 1, reader.leaves().size());
+      Set<Long> windows = new HashSet<>();
+      for (LeafReaderContext ctx : reader.leaves()) {
+        PointValues values = ctx.reader().getPointValues("timestamp");
+        if (values == null) {
+          continue;
+        }
+        final long min = LongPoint.decodeDimension(values.getMinPackedValue(), 0);
+        final long max = LongPoint.decodeDimension(values.getMaxPackedValue(), 0);
+        assertEquals(min / windowSize, max / windowSize);
+        assertTrue(windows.add(max / windowSize));
+      }
+      assertEquals(numWindows, windows.size());
+    }
+
+    w.close();
+    dir.close();
+  }
+
+  public void testIllegalArguments() throws IOException {
+    expectThrows(IllegalArgumentException.class, () -> new TimeWindowMergePolicy("timestamp", 0));
+
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setMergePolicy(new TimeWindowMergePolicy(newLogMergePolicy(2), "point", 10))
+        .setMergeScheduler(new SerialMergeScheduler());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    Document doc = new Document();
+    doc.add(new LongPoint("point", 1L, 2L));
+    w.addDocument(doc);
+    expectThrows(IllegalArgumentException.class, () -> {
+      w.flush();
+      w.addDocument(doc);
+      w.forceMerge(1);
+    });
+    w.rollback();
+    dir.close();
+  }
+}
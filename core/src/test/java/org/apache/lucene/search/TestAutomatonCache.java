@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.AutomatonProvider;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.RegExp;
+
+public class TestAutomatonCache extends LuceneTestCase {
+
+  private AutomatonCache defaultCache;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    defaultCache = AutomatonCache.getDefaultCache();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    AutomatonCache.setDefaultCache(defaultCache);
+    super.tearDown();
+  }
+
+  public void testFuzzy() {
+    AutomatonCache cache = new AutomatonCache(100, Long.MAX_VALUE);
+    AutomatonCache.setDefaultCache(cache);
+    CompiledAutomaton a1 = new FuzzyQuery(new Term("f", "lucene"), 2, 1, 50, true).getAutomata();
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    // different field, same automaton
+    CompiledAutomaton a2 = new FuzzyQuery(new Term("g", "lucene"), 2, 1, 10, true).getAutomata();
+    assertSame(a1, a2);
+    assertEquals(1, cache.getHitCount());
+    // different parameters
+    new FuzzyQuery(new Term("f", "lucene"), 2, 1, 50, false).getAutomata();
+    new FuzzyQuery(new Term("f", "lucene"), 1, 1, 50, true).getAutomata();
+    new FuzzyQuery(new Term("f", "lucene"), 2, 2, 50, true).getAutomata();
+    assertEquals(1, cache.getHitCount());
+    assertEquals(4, cache.getMissCount());
+    assertEquals(4, cache.getCacheSize());
+
+    AutomatonCache.setDefaultCache(null);
+    CompiledAutomaton uncached = new FuzzyQuery(new Term("f", "lucene"), 2, 1, 50, true).getAutomata();
+    assertEquals(uncached, a1);
+  }
+
+  public void testRegexp() {
+    AutomatonCache cache = new AutomatonCache(100, Long.MAX_VALUE);
+    AutomatonCache.setDefaultCache(cache);
+    RegexpQuery q1 = new RegexpQuery(new Term("f", "[a-c]+d?"));
+    RegexpQuery q2 = new RegexpQuery(new Term("g", "[a-c]+d?"));
+    assertSame(q1.getAutomaton(), q2.getAutomaton());
+    assertSame(q1.compiled, q2.compiled);
+    assertFalse(q1.equals(q2));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    // different flags
+    new RegexpQuery(new Term("f", "[a-c]+d?"), RegExp.NONE);
+    new RegexpQuery(new Term("f", "[a-c]+d?"), RegExp.ALL, RegExp.ASCII_CASE_INSENSITIVE, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+    assertEquals(3, cache.getMissCount());
+
+    // custom providers are never cached
+    AutomatonProvider provider = name -> Automata.makeString(name);
+    new RegexpQuery(new Term("f", "<foo>"), RegExp.ALL, provider, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+    new RegexpQuery(new Term("f", "<foo>"), RegExp.ALL, provider, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+
+    AutomatonCache.setDefaultCache(null);
+    assertEquals(new RegexpQuery(new Term("f", "[a-c]+d?")), q1);
+  }
+
+  public void testWildcard() {
+    AutomatonCache cache = new AutomatonCache(100, Long.MAX_VALUE);
+    AutomatonCache.setDefaultCache(cache);
+    WildcardQuery q1 = new WildcardQuery(new Term("f", "lu*e?e"));
+    WildcardQuery q2 = new WildcardQuery(new Term("f", "lu*e?e"));
+    assertSame(q1.compiled, q2.compiled);
+    assertEquals(q1, q2);
+    // regexps and wildcards don't share entries
+    new RegexpQuery(new Term("f", "lu*e?e"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  public void testEviction() {
+    AutomatonCache cache = new AutomatonCache(2, Long.MAX_VALUE);
+    AutomatonCache.setDefaultCache(cache);
+    new WildcardQuery(new Term("f", "a*"));
+    new WildcardQuery(new Term("f", "b*"));
+    new WildcardQuery(new Term("f", "a*")); // a* is now the most recently used entry
+    new WildcardQuery(new Term("f", "c*")); // evicts b*
+    assertEquals(2, cache.getCacheSize());
+    assertEquals(1, cache.getEvictionCount());
+    new WildcardQuery(new Term("f", "a*"));
+    assertEquals(2, cache.getHitCount());
+    new WildcardQuery(new Term("f", "b*"));
+    assertEquals(4, cache.getMissCount());
+
+    cache.clear();
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.ramBytesUsed());
+  }
+
+  public void testRamBytesUsed() {
+    AutomatonCache cache = new AutomatonCache(100, Long.MAX_VALUE);
+    AutomatonCache.setDefaultCache(cache);
+    assertEquals(0, cache.ramBytesUsed());
+    WildcardQuery q = new WildcardQuery(new Term("f", "lu*e?e"));
+    final long ramBytesUsed = cache.ramBytesUsed();
+    assertTrue(ramBytesUsed > q.getAutomaton().ramBytesUsed() + q.compiled.ramBytesUsed());
+
+    // entries that are larger than the cache are not cached
+    cache = new AutomatonCache(100, ramBytesUsed - 1);
+    AutomatonCache.setDefaultCache(cache);
+    new WildcardQuery(new Term("f", "lu*e?e"));
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.ramBytesUsed());
+
+    // the cache evicts entries to stay under its RAM budget
+    cache = new AutomatonCache(100, ramBytesUsed);
+    AutomatonCache.setDefaultCache(cache);
+    new WildcardQuery(new Term("f", "lu*e?e"));
+    new WildcardQuery(new Term("f", "lu*e?f"));
+    assertEquals(1, cache.getCacheSize());
+    assertTrue(cache.ramBytesUsed() <= ramBytesUsed);
+  }
+
+  public void testRamBytesUsedOfQueries() {
+    AutomatonCache.setDefaultCache(null);
+    final long uncachedRamBytesUsed = new WildcardQuery(new Term("f", "lu*e?e")).ramBytesUsed();
+    AutomatonCache cache = new AutomatonCache(100, Long.MAX_VALUE);
+    AutomatonCache.setDefaultCache(cache);
+    WildcardQuery q1 = new WildcardQuery(new Term("f", "lu*e?e"));
+    WildcardQuery q2 = new WildcardQuery(new Term("g", "lu*e?e"));
+    // shared automata are only accounted for by the cache
+    assertTrue(q1.ramBytesUsed() < q1.getAutomaton().ramBytesUsed());
+    assertEquals(q1.ramBytesUsed(), q2.ramBytesUsed());
+    assertTrue(uncachedRamBytesUsed > q1.getAutomaton().ramBytesUsed() + q1.compiled.ramBytesUsed());
+  }
+
+  public void testConcurrentFuzzyQueries() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      // small alphabet so that many terms are within a few edits of each other
+      doc.add(new StringField("f", TestUtil.randomSimpleStringRange(random(), 'a', 'd', 8), Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setQueryCache(null);
+
+    final int numQueries = 20;
+    final String[] terms = new String[numQueries];
+    final TopDocs[] expected = new TopDocs[numQueries];
+    AutomatonCache.setDefaultCache(null);
+    for (int i = 0; i < numQueries; ++i) {
+      terms[i] = TestUtil.randomSimpleStringRange(random(), 'a', 'd', 8);
+      // a small number of expansions makes the enum reduce the number of edits
+      // while iterating, which seeks to the floor term of the current term
+      expected[i] = searcher.search(new FuzzyQuery(new Term("f", terms[i]), 2, 0, 5, false), 10);
+    }
+
+    AutomatonCache.setDefaultCache(new AutomatonCache(100, Long.MAX_VALUE));
+    final int numThreads = 2 + random().nextInt(4);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t) {
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+          for (int iter = 0; iter < 10; ++iter) {
+            for (int i = 0; i < numQueries; ++i) {
+              final Query query = new FuzzyQuery(new Term("f", terms[i]), 2, 0, 5, false);
+              CheckHits.checkEqual(query, expected[i].scoreDocs, searcher.search(query, 10).scoreDocs);
+            }
+          }
+        } catch (InterruptedException | IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testDisabled() {
+    AutomatonCache.setDefaultCache(new AutomatonCache(0, 0));
+    WildcardQuery q1 = new WildcardQuery(new Term("f", "lu*e?e"));
+    WildcardQuery q2 = new WildcardQuery(new Term("f", "lu*e?e"));
+    assertNotSame(q1.compiled, q2.compiled);
+    assertEquals(0, AutomatonCache.getDefaultCache().getCacheSize());
+
+    AutomatonCache.setDefaultCache(null);
+    BytesRef term = new BytesRef("lucene");
+    WildcardQuery q = new WildcardQuery(new Term("f", "lu*e?e"));
+    assertTrue(q.compiled.runAutomaton.run(term.bytes, term.offset, term.length));
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new AutomatonCache(-1, 0));
+    expectThrows(IllegalArgumentException.class, () -> new AutomatonCache(0, -1));
+  }
+}
@@ -25,7 +25,10 @@ import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
@@ -47,11 +50,36 @@ public class TestDocValuesQueries extends LuceneTestCase {
     doTestDuelPointRangeNumericRangeQuery(false, 1);
   }
 
+  public void testDuelPointRangeSortedNumericRangeQueryIndexSort() throws IOException {
+    doTestDuelPointRangeNumericRangeQuery(true, 1, true);
+  }
+
+  public void testDuelPointRangeNumericRangeQueryIndexSort() throws IOException {
+    doTestDuelPointRangeNumericRangeQuery(false, 1, true);
+  }
+
   private void doTestDuelPointRangeNumericRangeQuery(boolean sortedNumeric, int maxValuesPerDoc) throws IOException {
+    doTestDuelPointRangeNumericRangeQuery(sortedNumeric, maxValuesPerDoc, false);
+  }
+
+  private void doTestDuelPointRangeNumericRangeQuery(boolean sortedNumeric, int maxValuesPerDoc, boolean indexSort) throws IOException {
     final int iters = atLeast(10);
     for (int iter = 0; iter < iters; ++iter) {
       Directory dir = newDirectory();
-      RandomIndexWriter iw = new RandomIndexWriter(random(), dir);
+      IndexWriterConfig iwc = newIndexWriterConfig();
+      if (indexSort) {
+        final SortField sortField;
+        if (sortedNumeric) {
+          sortField = new SortedNumericSortField("dv", SortField.Type.LONG, random().nextBoolean());
+        } else {
+          sortField = new SortField("dv", SortField.Type.LONG, random().nextBoolean());
+        }
+        if (random().nextBoolean()) {
+          sortField.setMissingValue(TestUtil.nextLong(random(), -100, 10000));
+        }
+        iwc.setIndexSort(new Sort(sortField));
+      }
+      RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwc);
       final int numDocs = atLeast(100);
       for (int i = 0; i < numDocs; ++i) {
         Document doc = new Document();
@@ -159,6 +187,40 @@ public class TestDocValuesQueries extends LuceneTestCase {
     }
   }
 
+  public void testIndexSortUsesBinarySearch() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig()
+        .setIndexSort(new Sort(new SortField("dv", SortField.Type.LONG)));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("dv", random().nextInt(1000)));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = newSearcher(reader, false);
+
+    final long min = random().nextInt(1000);
+    final long max = min + random().nextInt(100);
+    final Query query = NumericDocValuesField.newSlowRangeQuery("dv", min, max);
+    final Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+    final Scorer scorer = weight.scorer(searcher.getIndexReader().leaves().get(0));
+    final int count = searcher.count(query);
+    if (count == 0) {
+      assertTrue(scorer == null || scorer.iterator().nextDoc() == DocIdSetIterator.NO_MORE_DOCS);
+    } else {
+      // no need to verify values, and the cost is exact
+      assertNull(scorer.twoPhaseIterator());
+      assertEquals(count, scorer.iterator().cost());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
   public void testDuelPointRangeSortedSetRangeQuery() throws IOException {
     doTestDuelPointRangeSortedRangeQuery(true, 1);
   }
@@ -29,9 +29,11 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 import java.io.IOException;
 
@@ -501,4 +503,42 @@ public class TestFieldSortOptimizationSkipping extends LuceneTestCase {
   }
 
 
+
+  public void testLongSortOptimizationWithDocValuesStatistics() throws IOException {
+    final Directory dir = newDirectory();
+    // no points, segments are skipped based on doc values statistics that the default codec records
+    final IndexWriterConfig config = new IndexWriterConfig().setCodec(TestUtil.getDefaultCodec()).setMergePolicy(NoMergePolicy.INSTANCE);
+    final IndexWriter writer = new IndexWriter(dir, config);
+    final int numSegments = 3;
+    final int numDocsPerSegment = 50;
+    for (int s = 0; s < numSegments; ++s) {
+      for (int i = 0; i < numDocsPerSegment; ++i) {
+        final Document doc = new Document();
+        doc.add(new NumericDocValuesField("my_field", s * 1000 + i));
+        writer.addDocument(doc);
+      }
+      writer.flush();
+    }
+    final IndexReader reader = DirectoryReader.open(writer);
+    writer.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+    final SortField sortField = new SortField("my_field", SortField.Type.LONG);
+    sortField.setCanUsePoints();
+    final int numHits = 3;
+    final TopFieldCollector collector = TopFieldCollector.create(new Sort(sortField), numHits, null, numHits);
+    searcher.search(new MatchAllDocsQuery(), collector);
+    TopDocs topDocs = collector.topDocs();
+    assertEquals(numHits, topDocs.scoreDocs.length);
+    for (int i = 0; i < numHits; i++) {
+      FieldDoc fieldDoc = (FieldDoc) topDocs.scoreDocs[i];
+      assertEquals(i, ((Long) fieldDoc.fields[0]).intValue());
+    }
+    // only the first segment has competitive values
+    assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, topDocs.totalHits.relation);
+    assertEquals(numDocsPerSegment, topDocs.totalHits.value);
+
+    reader.close();
+    dir.close();
+  }
+
 }
@@ -27,6 +27,8 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
@@ -153,4 +155,106 @@ public class TestIndexOrDocValuesQuery extends LuceneTestCase {
     dir.close();
   }
 
+  /** Wraps a query and fails if any scorer gets created for it. */
+  private static class NoScorerQuery extends Query {
+
+    private final Query in;
+
+    NoScorerQuery(Query in) {
+      this.in = in;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+      return new FilterWeight(in.createWeight(searcher, scoreMode, boost)) {
+        @Override
+        public Scorer scorer(LeafReaderContext context) throws IOException {
+          throw new AssertionError("scorer of " + in + " should not be created");
+        }
+
+        @Override
+        public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+          throw new AssertionError("scorer of " + in + " should not be created");
+        }
+
+        @Override
+        public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+          throw new AssertionError("scorer of " + in + " should not be created");
+        }
+      };
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      in.visit(visitor);
+    }
+
+    @Override
+    public String toString(String field) {
+      return "NoScorerQuery(" + in.toString(field) + ")";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return sameClassAs(other) && in.equals(((NoScorerQuery) other).in);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * classHash() + in.hashCode();
+    }
+  }
+
+  public void testBulkScorerOnlyUsesDocValuesOnSortedSegments() throws IOException {
+    for (boolean indexSort : new boolean[] { false, true }) {
+      Directory dir = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig();
+      if (indexSort) {
+        iwc.setIndexSort(new Sort(new SortField("f", SortField.Type.LONG)));
+      }
+      IndexWriter w = new IndexWriter(dir, iwc);
+      final int numDocs = atLeast(100);
+      for (int i = 0; i < numDocs; ++i) {
+        Document doc = new Document();
+        final long value = random().nextInt(100);
+        doc.add(new LongPoint("f", value));
+        doc.add(new NumericDocValuesField("f", value));
+        w.addDocument(doc);
+      }
+      w.forceMerge(1);
+      IndexReader reader = DirectoryReader.open(w);
+      IndexSearcher searcher = newSearcher(reader, false);
+      searcher.setQueryCache(null);
+
+      final Query pointQuery = LongPoint.newRangeQuery("f", 10, 50);
+      final Query dvQuery = NumericDocValuesField.newSlowRangeQuery("f", 10, 50);
+      final int expected = searcher.count(pointQuery);
+      final Query query;
+      if (indexSort) {
+        // matches are found with a binary search over doc values, the index is not used
+        query = new IndexOrDocValuesQuery(new NoScorerQuery(pointQuery), dvQuery);
+      } else {
+        // doc values are not even pulled
+        query = new IndexOrDocValuesQuery(pointQuery, new NoScorerQuery(dvQuery));
+      }
+      final Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+      final BulkScorer bulkScorer = weight.bulkScorer(reader.leaves().get(0));
+      final int[] count = new int[1];
+      bulkScorer.score(new LeafCollector() {
+        @Override
+        public void setScorer(Scorable scorer) {}
+
+        @Override
+        public void collect(int doc) {
+          count[0]++;
+        }
+      }, null);
+      assertEquals(expected, count[0]);
+
+      reader.close();
+      w.close();
+      dir.close();
+    }
+  }
+
 }
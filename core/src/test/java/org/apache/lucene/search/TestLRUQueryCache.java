@@ -63,6 +63,7 @@ import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.RamUsageTester;
+import org.apache.lucene.util.RoaringDocIdSet;
 import org.apache.lucene.util.TestUtil;
 
 import static org.apache.lucene.util.RamUsageEstimator.HASHTABLE_RAM_BYTES_PER_ENTRY;
@@ -1783,4 +1784,55 @@ public class TestLRUQueryCache extends LuceneTestCase {
     reader.close();
     dir.close();
   }
+
+  public void testCacheClusteredFiltersAsRuns() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numTenants = TestUtil.nextInt(random(), 2, 5);
+    final int docsPerTenant = TestUtil.nextInt(random(), 500, 1000);
+    List<Document> docs = new ArrayList<>();
+    for (int tenant = 0; tenant < numTenants; ++tenant) {
+      for (int i = 0; i < docsPerTenant; ++i) {
+        Document doc = new Document();
+        doc.add(new StringField("tenant", Integer.toString(tenant), Store.NO));
+        docs.add(doc);
+      }
+    }
+    // add all docs at once so that tenants are contiguous in a single segment
+    w.addDocuments(docs);
+    w.close();
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(1, reader.leaves().size());
+
+    final List<DocIdSet> cached = new ArrayList<>();
+    final LRUQueryCache queryCache = new LRUQueryCache(1000, 10000000, context -> true, Float.POSITIVE_INFINITY) {
+      @Override
+      protected DocIdSet cacheImpl(BulkScorer scorer, int maxDoc) throws IOException {
+        DocIdSet set = super.cacheImpl(scorer, maxDoc);
+        cached.add(set);
+        return set;
+      }
+    };
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(ALWAYS_CACHE);
+
+    final Query query = new ConstantScoreQuery(new TermQuery(new Term("tenant", "1")));
+    TotalHitCountCollector collector = new TotalHitCountCollector();
+    searcher.search(query, collector);
+    assertEquals(docsPerTenant, collector.getTotalHits());
+    assertEquals(1, cached.size());
+    assertTrue(cached.get(0) instanceof RoaringDocIdSet);
+    assertEquals(docsPerTenant, ((RoaringDocIdSet) cached.get(0)).cardinality());
+    assertTrue(cached.get(0).ramBytesUsed() < reader.maxDoc() / 8);
+    // served from the cache
+    collector = new TotalHitCountCollector();
+    searcher.search(query, collector);
+    assertEquals(docsPerTenant, collector.getTotalHits());
+    assertEquals(1, cached.size());
+
+    reader.close();
+    dir.close();
+  }
 }
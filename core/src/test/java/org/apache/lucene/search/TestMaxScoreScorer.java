@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestMaxScoreScorer extends LuceneTestCase {
+
+  private Query maybeWrap(Query query) {
+    if (random().nextBoolean()) {
+      query = new BlockScoreQueryWrapper(query, TestUtil.nextInt(random(), 2, 8));
+      query = new AssertingQuery(random(), query);
+    }
+    return query;
+  }
+
+  public void testScorerSelection() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    final int numTerms = Boolean2ScorerSupplier.MIN_CLAUSES_FOR_MAX_SCORE;
+    for (int i = 0; i < 2 * numTerms; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", Integer.toString(i % numTerms), Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    for (int i = 0; i < numTerms - 1; ++i) {
+      builder.add(new TermQuery(new Term("foo", Integer.toString(i))), Occur.SHOULD);
+    }
+    Query query = builder.build();
+    Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.TOP_SCORES, 1);
+    assertTrue(weight.scorer(reader.leaves().get(0)) instanceof WANDScorer);
+
+    builder.add(new TermQuery(new Term("foo", Integer.toString(numTerms - 1))), Occur.SHOULD);
+    query = builder.build();
+    weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.TOP_SCORES, 1);
+    assertTrue(weight.scorer(reader.leaves().get(0)) instanceof MaxScoreScorer);
+    weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE, 1);
+    assertFalse(weight.scorer(reader.leaves().get(0)) instanceof MaxScoreScorer);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testBasics() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(newLogMergePolicy()));
+    for (String[] values : new String[][] { { "A", "B" }, { "A" }, { "C" }, { "A", "B", "C" }, { "B" } }) {
+      Document doc = new Document();
+      for (String value : values) {
+        doc.add(new StringField("foo", value, Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    // clauses that never produce a competitive score, so that the disjunction
+    // has enough clauses to be run with MaxScore
+    final int numPaddingClauses = Boolean2ScorerSupplier.MIN_CLAUSES_FOR_MAX_SCORE - 3;
+    for (int i = 0; i < numPaddingClauses; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", "P" + i, Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    BooleanQuery.Builder builder = new BooleanQuery.Builder()
+        .add(new BoostQuery(new ConstantScoreQuery(new TermQuery(new Term("foo", "A"))), 2), Occur.SHOULD)
+        .add(new ConstantScoreQuery(new TermQuery(new Term("foo", "B"))), Occur.SHOULD)
+        .add(new BoostQuery(new ConstantScoreQuery(new TermQuery(new Term("foo", "C"))), 3), Occur.SHOULD);
+    for (int i = 0; i < numPaddingClauses; ++i) {
+      builder.add(new BoostQuery(new ConstantScoreQuery(new TermQuery(new Term("foo", "P" + i))), 0), Occur.SHOULD);
+    }
+    Query query = builder.build();
+
+    Scorer scorer = searcher
+        .createWeight(searcher.rewrite(query), ScoreMode.TOP_SCORES, 1)
+        .scorer(searcher.getIndexReader().leaves().get(0));
+    assertTrue(scorer instanceof MaxScoreScorer);
+
+    TwoPhaseIterator twoPhase = scorer.twoPhaseIterator();
+    DocIdSetIterator approximation = twoPhase.approximation();
+    assertEquals(0, approximation.nextDoc());
+    assertTrue(twoPhase.matches());
+    assertEquals(2 + 1, scorer.score(), 0);
+
+    // only docs whose score is >= 4 are competitive: A and C are essential
+    scorer.setMinCompetitiveScore(4);
+    assertEquals(2, approximation.nextDoc());
+    assertFalse(twoPhase.matches()); // score is 3
+    assertEquals(3, approximation.nextDoc());
+    assertTrue(twoPhase.matches());
+    assertEquals(2 + 1 + 3, scorer.score(), 0);
+
+    // B and padding clauses can never be competitive on their own
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, approximation.nextDoc());
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testRandom() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      int numValues = random().nextInt(1 << random().nextInt(6));
+      int start = random().nextInt(50);
+      for (int j = 0; j < numValues; ++j) {
+        doc.add(new StringField("foo", Integer.toString(start + j), Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    for (int iter = 0; iter < 100; ++iter) {
+      int start = random().nextInt(50);
+      // both below and above the number of clauses that enables MaxScore
+      int numClauses = TestUtil.nextInt(random(), 2, 2 * Boolean2ScorerSupplier.MIN_CLAUSES_FOR_MAX_SCORE);
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      for (int i = 0; i < numClauses; ++i) {
+        builder.add(maybeWrap(new TermQuery(new Term("foo", Integer.toString(start + i)))), Occur.SHOULD);
+      }
+      Query query = builder.build();
+
+      CheckHits.checkTopScores(random(), query, searcher);
+
+      int filterTerm = random().nextInt(60);
+      Query filteredQuery = new BooleanQuery.Builder()
+          .add(query, Occur.MUST)
+          .add(new TermQuery(new Term("foo", Integer.toString(filterTerm))), Occur.FILTER)
+          .build();
+
+      CheckHits.checkTopScores(random(), filteredQuery, searcher);
+    }
+    reader.close();
+    dir.close();
+  }
+}
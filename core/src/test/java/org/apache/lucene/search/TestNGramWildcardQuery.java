@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.ngram.NGramPostingsFormat;
+import org.apache.lucene.codecs.ngram.NGramTerms;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestNGramWildcardQuery extends LuceneTestCase {
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new NGramPostingsFormat());
+
+  public void testGrams() {
+    assertArrayEquals(new int[0], NGramWildcardQuery.grams("*ab*c?d*"));
+    assertArrayEquals(new int[] { gram("abc") }, NGramWildcardQuery.grams("*abc*"));
+    assertArrayEquals(new int[] { gram("abc"), gram("bcd") }, NGramWildcardQuery.grams("*abcd?bcd"));
+    // escaped wildcards are literals
+    assertArrayEquals(new int[] { gram("*bc"), gram("a*b") }, NGramWildcardQuery.grams("a\\*bc*"));
+  }
+
+  private static int gram(String s) {
+    BytesRef bytes = new BytesRef(s);
+    assertEquals(NGramPostingsFormat.GRAM_LENGTH, bytes.length);
+    return NGramTerms.gram(bytes.bytes, bytes.offset);
+  }
+
+  public void testCount() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    for (String value : new String[] { "foobar", "barfoo", "foo", "oof", "bazbar" }) {
+      Document doc = new Document();
+      doc.add(new StringField("f", value, Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      IndexSearcher searcher = newSearcher(reader);
+      assertEquals(1, searcher.count(new NGramWildcardQuery(new Term("f", "*foo?*"))));
+      assertEquals(1, searcher.count(new NGramWildcardQuery(new Term("f", "*foo*bar*"))));
+      assertEquals(3, searcher.count(new NGramWildcardQuery(new Term("f", "*bar*"))));
+      assertEquals(0, searcher.count(new NGramWildcardQuery(new Term("f", "*xyz*"))));
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testCandidatesWithoutPostings() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setCodec(codec));
+    for (String value : new String[] { "aaa_xyz", "aab_xyz", "aac_xyz" }) {
+      Document doc = new Document();
+      doc.add(new StringField("f", value, Store.NO));
+      w.addDocument(doc);
+    }
+    w.commit();
+    // the merged segment still has n-grams for terms whose documents are all deleted
+    w.deleteDocuments(new Term("f", "aaa_xyz"));
+    w.forceMerge(1);
+    try (DirectoryReader reader = DirectoryReader.open(w)) {
+      IndexSearcher searcher = newSearcher(reader);
+      assertEquals(2, searcher.count(new NGramWildcardQuery(new Term("f", "*_xyz"))));
+      assertEquals(2, searcher.count(new NGramWildcardQuery(new Term("f", "aa*xyz"))));
+      assertEquals(1, searcher.count(new NGramWildcardQuery(new Term("f", "*ac_xyz"))));
+    }
+    w.close();
+    dir.close();
+  }
+
+  public void testDuelWithWildcardQuery() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig();
+    // some segments are not indexed with n-grams
+    if (random().nextBoolean()) {
+      iwc.setCodec(codec);
+    }
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      final int numValues = random().nextInt(3);
+      for (int j = 0; j < numValues; ++j) {
+        doc.add(new StringField("f", TestUtil.randomSimpleStringRange(random(), 'a', 'e', 8), Store.NO));
+      }
+      w.addDocument(doc);
+      if (rarely()) {
+        w.commit();
+      }
+    }
+    for (int i = 0; i < numDocs / 10; ++i) {
+      w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(numDocs))));
+    }
+    w.close();
+    iwc = newIndexWriterConfig().setCodec(codec);
+    w = new IndexWriter(dir, iwc);
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    try (IndexReader reader = DirectoryReader.open(w)) {
+      IndexSearcher searcher = new IndexSearcher(reader);
+      final int iters = atLeast(50);
+      for (int iter = 0; iter < iters; ++iter) {
+        final String pattern = randomPattern();
+        Query expected = new WildcardQuery(new Term("f", pattern));
+        Query actual = new NGramWildcardQuery(new Term("f", pattern));
+        assertEquals(pattern, searcher.count(expected), searcher.count(actual));
+      }
+      for (LeafReaderContext ctx : reader.leaves()) {
+        ctx.reader().checkIntegrity();
+      }
+    }
+    w.close();
+    dir.close();
+  }
+
+  private static String randomPattern() {
+    StringBuilder pattern = new StringBuilder();
+    final int length = 1 + random().nextInt(8);
+    for (int i = 0; i < length; ++i) {
+      switch (random().nextInt(8)) {
+        case 0:
+          pattern.append('*');
+          break;
+        case 1:
+          pattern.append('?');
+          break;
+        default:
+          pattern.append((char) ('a' + random().nextInt(5)));
+          break;
+      }
+    }
+    return pattern.toString();
+  }
+
+  public void testEqualsHashCode() {
+    Query q1 = new NGramWildcardQuery(new Term("f", "*foo*"));
+    Query q2 = new NGramWildcardQuery(new Term("f", "*foo*"));
+    Query q3 = new NGramWildcardQuery(new Term("f", "*bar*"));
+    assertEquals(q1, q2);
+    assertEquals(q1.hashCode(), q2.hashCode());
+    assertFalse(q1.equals(q3));
+    assertFalse(q1.equals(new WildcardQuery(new Term("f", "*foo*"))));
+    assertEquals("f:*foo*", q1.toString());
+  }
+}
@@ -931,6 +931,101 @@ public class TestPhraseQuery extends LuceneTestCase {
         mergedImpacts.getImpacts());
   }
 
+  public void testSumImpacts() throws IOException {
+    DummyImpactsEnum impacts1 = new DummyImpactsEnum(1000);
+    DummyImpactsEnum impacts2 = new DummyImpactsEnum(2000);
+    ImpactsSource summedImpacts = SloppyPhraseMatcher.sumImpacts(new ImpactsEnum[] { impacts1, impacts2 });
+
+    impacts1.reset(
+        new Impact[][] {
+          new Impact[] { new Impact(3, 10), new Impact(5, 12), new Impact(8, 13) },
+          new Impact[] { new Impact(3, 10), new Impact(5, 11), new Impact(8, 13),  new Impact(12, 14) }
+        },
+        new int[] {
+            110,
+            945
+        });
+
+    // Sum with empty impacts: unbounded
+    impacts2.reset(
+        new Impact[0][],
+        new int[0]);
+    assertEquals(
+        new Impact[][] {
+          new Impact[] { new Impact(Integer.MAX_VALUE, 1) },
+          new Impact[] { new Impact(Integer.MAX_VALUE, 1) }
+        },
+        new int[] {
+            110,
+            945
+        },
+        summedImpacts.getImpacts());
+
+    // Sum with dummy impacts: unbounded
+    impacts2.reset(
+        new Impact[][] {
+          new Impact[] { new Impact(Integer.MAX_VALUE, 1) }
+        },
+        new int[] {
+            5000
+        });
+    assertEquals(
+        new Impact[][] {
+          new Impact[] { new Impact(Integer.MAX_VALUE, 1) },
+          new Impact[] { new Impact(Integer.MAX_VALUE, 1) }
+        },
+        new int[] {
+            110,
+            945
+        },
+        summedImpacts.getImpacts());
+
+    // Norms that only one of the terms has can't match the phrase
+    impacts2.reset(
+        new Impact[][] {
+          new Impact[] { new Impact(2, 10), new Impact(6, 13) },
+          new Impact[] { new Impact(3, 9), new Impact(5, 11), new Impact(7, 13) }
+        },
+        new int[] {
+            150,
+            1000
+        });
+    assertEquals(
+        new Impact[][] {
+          new Impact[] { new Impact(5, 10), new Impact(7, 12), new Impact(14, 13) },
+          new Impact[] { new Impact(6, 10), new Impact(10, 11), new Impact(15, 13), new Impact(19, 14) }
+        },
+        new int[] {
+            110,
+            945
+        },
+        summedImpacts.getImpacts());
+
+    // Make sure negative norms are treated as unsigned
+    impacts1.reset(
+        new Impact[][] {
+          new Impact[] { new Impact(3, 10), new Impact(5, -10) }
+        },
+        new int[] {
+            110
+        });
+    impacts2.reset(
+        new Impact[][] {
+          new Impact[] { new Impact(2, -20) }
+        },
+        new int[] {
+            150
+        });
+    assertEquals(
+        new Impact[][] {
+          new Impact[] { new Impact(5, -20), new Impact(7, -10) }
+        },
+        new int[] {
+            110
+        },
+        summedImpacts.getImpacts());
+  }
+
   private static void assertEquals(Impact[][] impacts, int[] docIdUpTo, Impacts actual) {
     assertEquals(impacts.length, actual.numLevels());
     for (int i = 0; i < impacts.length; ++i) {
@@ -1029,6 +1124,14 @@ public class TestPhraseQuery extends LuceneTestCase {
   }
 
   public void testRandomTopDocs() throws IOException {
+    doTestRandomTopDocs(false);
+  }
+
+  public void testRandomSloppyTopDocs() throws IOException {
+    doTestRandomTopDocs(true);
+  }
+
+  private void doTestRandomTopDocs(boolean sloppy) throws IOException {
     Directory dir = newDirectory();
     IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
     int numDocs = TEST_NIGHTLY ? atLeast(128 * 8 * 8 * 3) : atLeast(100); // at night, make sure some terms have skip data
@@ -1047,7 +1150,9 @@ public class TestPhraseQuery extends LuceneTestCase {
 
     for (String firstTerm : new String[] {"a", "b", "c"}) {
       for (String secondTerm : new String[] {"a", "b", "c"}) {
-        Query query = new PhraseQuery("foo", new BytesRef(firstTerm), new BytesRef(secondTerm));
+        Query query = sloppy
+            ? new PhraseQuery(TestUtil.nextInt(random(), 1, 3), "foo", new BytesRef(firstTerm), new BytesRef(secondTerm))
+            : new PhraseQuery("foo", new BytesRef(firstTerm), new BytesRef(secondTerm));
 
         TopScoreDocCollector collector1 = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE); // COMPLETE
         TopScoreDocCollector collector2 = TopScoreDocCollector.create(10, null, 10); // TOP_SCORES
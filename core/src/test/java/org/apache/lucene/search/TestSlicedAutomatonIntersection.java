@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.automaton.RegExp;
+
+public class TestSlicedAutomatonIntersection extends LuceneTestCase {
+
+  private static Directory newIndex(int numDocs) throws IOException {
+    return newIndex(numDocs, true);
+  }
+
+  private static Directory newIndex(int numDocs, boolean forceMerge) throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("url", "http://" + TestUtil.randomSimpleString(random(), 1, 10) + ".com/"
+          + TestUtil.randomSimpleString(random(), 0, 5), Store.NO));
+      w.addDocument(doc);
+    }
+    if (forceMerge) {
+      w.forceMerge(1);
+    }
+    w.close();
+    return dir;
+  }
+
+  public void testSplitPoints() throws IOException {
+    Directory dir = newIndex(atLeast(200));
+    try (IndexReader reader = DirectoryReader.open(dir)) {
+      Terms terms = getOnlyLeafReader(reader).terms("url");
+      final int numSlices = TestUtil.nextInt(random(), 2, 10);
+      List<BytesRef> splitPoints = SlicedAutomatonIntersection.splitPoints(terms, numSlices);
+      assertFalse(splitPoints.isEmpty());
+      assertTrue(splitPoints.size() < numSlices);
+      BytesRef previous = terms.getMin();
+      for (BytesRef splitPoint : splitPoints) {
+        assertTrue(previous.compareTo(splitPoint) < 0);
+        assertTrue(splitPoint.compareTo(terms.getMax()) <= 0);
+        // split points are longer than the common prefix of all terms
+        assertTrue(splitPoint.utf8ToString().startsWith("http://"));
+        assertTrue(splitPoint.length > "http://".length());
+        previous = splitPoint;
+      }
+    }
+    dir.close();
+  }
+
+  public void testSingleTerm() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new StringField("url", "http://lucene.apache.org/", Store.NO));
+    w.addDocument(doc);
+    w.forceMerge(1);
+    try (IndexReader reader = w.getReader()) {
+      Terms terms = getOnlyLeafReader(reader).terms("url");
+      assertTrue(SlicedAutomatonIntersection.splitPoints(terms, 4).isEmpty());
+    }
+    w.close();
+    dir.close();
+  }
+
+  private static void assertSameMatches(IndexSearcher expected, IndexSearcher actual, Query query) throws IOException {
+    assertEquals(query.toString(), expected.count(query), actual.count(query));
+  }
+
+  private static void assertSameDocs(AutomatonQuery query, IndexReader reader, Executor executor) throws IOException {
+    final int numSlices = TestUtil.nextInt(random(), 2, 8);
+    // shared by all segments, like in MultiTermQueryConstantScoreWrapper, but split per segment
+    final SlicedAutomatonIntersection sliced = new SlicedAutomatonIntersection(query.compiled, query.maxDeterminizedStates, 0, numSlices);
+    for (LeafReaderContext context : reader.leaves()) {
+      final Terms terms = context.reader().terms("url");
+      assertTrue(sliced.shouldSlice(terms));
+      final DocIdSet actual = sliced.intersect(terms, context.reader().maxDoc(), executor);
+      final FixedBitSet expected = new FixedBitSet(context.reader().maxDoc());
+      final TermsEnum termsEnum = query.compiled.getTermsEnum(terms);
+      PostingsEnum postings = null;
+      while (termsEnum.next() != null) {
+        postings = termsEnum.postings(postings, PostingsEnum.NONE);
+        expected.or(postings);
+      }
+      if (actual == null) {
+        // terms could not be split
+        continue;
+      }
+      final FixedBitSet actualBits = new FixedBitSet(context.reader().maxDoc());
+      final DocIdSetIterator iterator = actual.iterator();
+      if (iterator != null) {
+        actualBits.or(iterator);
+      }
+      assertEquals(query.toString(), expected, actualBits);
+    }
+  }
+
+  public void testMultipleSegments() throws Exception {
+    Directory dir = newIndex(atLeast(300), false);
+    ExecutorService service = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestSlicedAutomatonIntersection"));
+    try (IndexReader reader = DirectoryReader.open(dir)) {
+      Executor[] executors = new Executor[] {
+          service,
+          // runs all tasks on the calling thread
+          r -> { throw new RejectedExecutionException(); },
+      };
+      for (Executor executor : executors) {
+        assertSameDocs(new WildcardQuery(new Term("url", "*a*")), reader, executor);
+        assertSameDocs(new WildcardQuery(new Term("url", "*.com/b?")), reader, executor);
+        assertSameDocs(new RegexpQuery(new Term("url", ".*[abc]{2}.*"), RegExp.NONE), reader, executor);
+        assertSameDocs(new RegexpQuery(new Term("url", ".*[def]{2}.*"), RegExp.NONE, 1000), reader, executor);
+      }
+    } finally {
+      TestUtil.shutdownExecutorService(service);
+    }
+    dir.close();
+  }
+
+  public void testCommonPrefix() throws IOException {
+    Directory dir = newIndex(atLeast(50));
+    try (IndexReader reader = DirectoryReader.open(dir)) {
+      Terms terms = getOnlyLeafReader(reader).terms("url");
+      for (AutomatonQuery query : new AutomatonQuery[] {
+          new WildcardQuery(new Term("url", "http://c*")),
+          new PrefixQuery(new Term("url", "http://")),
+          TermRangeQuery.newStringRange("url", "http://b", "http://m", true, false) }) {
+        // the terms dictionary already seeks to the common prefix
+        assertFalse(query.toString(), new SlicedAutomatonIntersection(query.compiled, query.maxDeterminizedStates, 0, 4)
+            .shouldSlice(terms));
+      }
+      AutomatonQuery query = new WildcardQuery(new Term("url", "*.com/*"));
+      assertTrue(new SlicedAutomatonIntersection(query.compiled, query.maxDeterminizedStates, 0, 4).shouldSlice(terms));
+    }
+    dir.close();
+  }
+
+  public void testTooComplexToDeterminize() throws IOException {
+    Directory dir = newIndex(atLeast(50));
+    try (IndexReader reader = DirectoryReader.open(dir)) {
+      LeafReader leafReader = getOnlyLeafReader(reader);
+      Terms terms = leafReader.terms("url");
+      AutomatonQuery query = new RegexpQuery(new Term("url", ".*[abc]{2}.*"), RegExp.NONE);
+      // ranges can't be determinized with so few states, so terms are intersected on the calling thread
+      SlicedAutomatonIntersection sliced = new SlicedAutomatonIntersection(query.compiled, 1, 0, 4);
+      assertTrue(sliced.shouldSlice(terms));
+      assertNull(sliced.intersect(terms, leafReader.maxDoc(), Runnable::run));
+    }
+    dir.close();
+  }
+
+  public void testSameMatches() throws Exception {
+    Directory dir = newIndex(atLeast(300));
+    ExecutorService service = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestSlicedAutomatonIntersection"));
+    try (IndexReader reader = DirectoryReader.open(dir)) {
+      IndexSearcher expected = new IndexSearcher(reader);
+      expected.setQueryCache(null);
+      IndexSearcher[] searchers = new IndexSearcher[] {
+          new IndexSearcher(reader, service),
+          // runs all tasks on the calling thread
+          new IndexSearcher(reader, r -> { throw new RejectedExecutionException(); }),
+      };
+      for (IndexSearcher actual : searchers) {
+        actual.setQueryCache(null);
+        assertSameMatches(expected, actual, new WildcardQuery(new Term("url", "*a*")));
+        assertSameMatches(expected, actual, new WildcardQuery(new Term("url", "*.com/b?")));
+        assertSameMatches(expected, actual, new WildcardQuery(new Term("url", "http://c*")));
+        assertSameMatches(expected, actual, new RegexpQuery(new Term("url", ".*[abc]{2}.*"), RegExp.NONE));
+        assertSameMatches(expected, actual, new PrefixQuery(new Term("url", "http://")));
+        assertSameMatches(expected, actual, TermRangeQuery.newStringRange("url", "http://b", "http://m", true, false));
+      }
+    } finally {
+      TestUtil.shutdownExecutorService(service);
+    }
+    dir.close();
+  }
+}
@@ -19,6 +19,12 @@ package org.apache.lucene.search.similarities;
 
 import java.util.Random;
 
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.SmallFloat;
+import org.apache.lucene.util.TestUtil;
+
 public class TestBM25Similarity extends BaseSimilarityTestCase {
   
   public void testIllegalK1() {
@@ -60,6 +66,31 @@ public class TestBM25Similarity extends BaseSimilarityTestCase {
     assertTrue(expected.getMessage().contains("illegal b value"));
   }
 
+  public void testSharedNormInverses() {
+    BM25Similarity sim = new BM25Similarity();
+    TermStatistics termStats = new TermStatistics(new BytesRef("foo"), 10, 20);
+    CollectionStatistics stats1 = new CollectionStatistics("field", 100, 100, 1000, 1000);
+    CollectionStatistics stats2 = new CollectionStatistics("field", 100, 100, 2000, 2000);
+    final long norm = SmallFloat.intToByte4(15);
+
+    // scorers for the same average field length share their table
+    assertSame(sim.normInverses(10f), sim.normInverses(10f));
+    float score1 = sim.scorer(1f, stats1, termStats).score(2f, norm);
+    assertEquals(score1, sim.scorer(1f, stats1, termStats).score(2f, norm), 0f);
+    // a change of the average field length must not reuse stale factors
+    float score2 = sim.scorer(1f, stats2, termStats).score(2f, norm);
+    assertEquals(new BM25Similarity().scorer(1f, stats2, termStats).score(2f, norm), score2, 0f);
+    assertTrue(score2 > score1);
+
+    // many average lengths, which collide on slots of the memo
+    for (int i = 0; i < 1000; ++i) {
+      final int sumTotalTermFreq = TestUtil.nextInt(random(), 100, 100_000);
+      CollectionStatistics stats = new CollectionStatistics("field", 100, 100, sumTotalTermFreq, sumTotalTermFreq);
+      assertEquals(new BM25Similarity().scorer(1f, stats, termStats).score(2f, norm),
+          sim.scorer(1f, stats, termStats).score(2f, norm), 0f);
+    }
+  }
+
   @Override
   protected Similarity getSimilarity(Random random) {
     // term frequency normalization parameter k1
@@ -18,15 +18,31 @@ package org.apache.lucene.search.spans;
 
 
 import java.io.IOException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterDirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.CheckHits;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryUtils;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
 
@@ -90,4 +106,125 @@ public class TestSpanNearQuery extends LuceneTestCase {
     });
 
   }
+
+  public void testRandomTopDocs() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    int numDocs = TEST_NIGHTLY ? atLeast(128 * 8 * 8 * 3) : atLeast(500); // at night, make sure some terms have skip data
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      int numTerms = random().nextInt(1 << random().nextInt(5));
+      String text = IntStream.range(0, numTerms)
+          .mapToObj(index -> random().nextBoolean() ? "a" : random().nextBoolean() ? "b" : "c")
+          .collect(Collectors.joining(" "));
+      doc.add(new TextField("foo", text, Field.Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    for (String firstTerm : new String[] {"a", "b", "c"}) {
+      SpanQuery first = new SpanTermQuery(new Term("foo", firstTerm));
+      CheckHits.checkTopScores(random(), first, searcher);
+      for (String secondTerm : new String[] {"a", "b", "c"}) {
+        SpanQuery second = new SpanTermQuery(new Term("foo", secondTerm));
+        for (boolean inOrder : new boolean[] {true, false}) {
+          SpanQuery near = new SpanNearQuery(new SpanQuery[] {first, second}, random().nextInt(3), inOrder);
+          CheckHits.checkTopScores(random(), near, searcher);
+          Query nested = new SpanNearQuery(new SpanQuery[] {near, new SpanTermQuery(new Term("foo", "b"))}, random().nextInt(3), true);
+          CheckHits.checkTopScores(random(), nested, searcher);
+        }
+      }
+    }
+    reader.close();
+    dir.close();
+  }
+
+  /** A reader whose terms fail when impacts are pulled. */
+  private static class NoImpactsDirectoryReader extends FilterDirectoryReader {
+
+    NoImpactsDirectoryReader(DirectoryReader in) throws IOException {
+      super(in, new SubReaderWrapper() {
+        @Override
+        public LeafReader wrap(LeafReader reader) {
+          return new FilterLeafReader(reader) {
+            @Override
+            public Terms terms(String field) throws IOException {
+              final Terms terms = super.terms(field);
+              return terms == null ? null : new FilterTerms(terms) {
+                @Override
+                public TermsEnum iterator() throws IOException {
+                  return new FilterTermsEnum(super.iterator()) {
+                    @Override
+                    public ImpactsEnum impacts(int flags) throws IOException {
+                      throw new UnsupportedOperationException("impacts");
+                    }
+                  };
+                }
+              };
+            }
+
+            @Override
+            public CacheHelper getCoreCacheHelper() {
+              return null;
+            }
+
+            @Override
+            public CacheHelper getReaderCacheHelper() {
+              return null;
+            }
+          };
+        }
+      });
+    }
+
+    @Override
+    protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) throws IOException {
+      return new NoImpactsDirectoryReader(in);
+    }
+
+    @Override
+    public CacheHelper getReaderCacheHelper() {
+      return null;
+    }
+  }
+
+  public void testCompleteScoreModeDoesNotUseImpacts() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig());
+    final int numDocs = atLeast(50);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 2 == 0 ? "a b c" : "a c b", Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = new NoImpactsDirectoryReader(DirectoryReader.open(w));
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+
+    SpanQuery a = new SpanTermQuery(new Term("foo", "a"));
+    SpanQuery b = new SpanTermQuery(new Term("foo", "b"));
+    SpanQuery near = new SpanNearQuery(new SpanQuery[] {a, b}, 1, true);
+    for (SpanQuery query : new SpanQuery[] {a, near}) {
+      TopScoreDocCollector collector = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE); // COMPLETE
+      searcher.search(query, collector);
+      assertEquals(numDocs, collector.topDocs().totalHits.value);
+
+      // spans are not wrapped and max scores are not computed from impacts
+      SpanScorer scorer = (SpanScorer) searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE, 1)
+          .scorer(reader.leaves().get(0));
+      assertSame(scorer.getSpans(), scorer.iterator());
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, scorer.advanceShallow(0));
+      assertEquals(Float.POSITIVE_INFINITY, scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS), 0f);
+
+      // impacts are only used to skip non-competitive documents
+      expectThrows(UnsupportedOperationException.class,
+          () -> searcher.search(query, TopScoreDocCollector.create(1, null, 1))); // TOP_SCORES
+    }
+    reader.close();
+    dir.close();
+  }
 }
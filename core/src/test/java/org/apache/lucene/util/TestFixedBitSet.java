@@ -494,6 +494,34 @@ public class TestFixedBitSet extends BaseBitSetTestCase<FixedBitSet> {
     assertEquals(bitSet1.cardinality(), andNotCount);
   }
 
+  public void testRunCount() {
+    Random random = random();
+    int numBits = TestUtil.nextInt(random, 1, 2000);
+    FixedBitSet fixedBitSet = new FixedBitSet(numBits);
+    int expected = 0;
+    boolean previous = false;
+    for (int i = 0; i < numBits; ++i) {
+      final boolean set = random.nextInt(10) < (previous ? 8 : 1);
+      if (set) {
+        fixedBitSet.set(i);
+        if (previous == false) {
+          expected++;
+        }
+      }
+      previous = set;
+    }
+    assertEquals(expected, fixedBitSet.runCount());
+
+    fixedBitSet = new FixedBitSet(200);
+    assertEquals(0, fixedBitSet.runCount());
+    fixedBitSet.set(63, 65);
+    assertEquals(1, fixedBitSet.runCount());
+    fixedBitSet.set(0, 200);
+    assertEquals(1, fixedBitSet.runCount());
+    fixedBitSet.clear(64);
+    assertEquals(2, fixedBitSet.runCount());
+  }
+
   public void testCopyOf() {
     Random random = random();
     int numBits = TestUtil.nextInt(random, 1000, 2000);
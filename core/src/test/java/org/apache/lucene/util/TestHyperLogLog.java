@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+
+public class TestHyperLogLog extends LuceneTestCase {
+
+  public void testEmpty() {
+    assertEquals(0, new HyperLogLog(HyperLogLog.MIN_PRECISION).cardinality());
+  }
+
+  public void testIllegalPrecision() {
+    expectThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MIN_PRECISION - 1));
+    expectThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+  }
+
+  public void testDuplicates() {
+    HyperLogLog hll = new HyperLogLog(12);
+    final int numValues = atLeast(10);
+    for (int iter = 0; iter < 10; ++iter) {
+      for (int i = 0; i < numValues; ++i) {
+        hll.add(i);
+      }
+    }
+    assertEquals(numValues, hll.cardinality(), 1);
+  }
+
+  public void testAccuracy() {
+    final int precision = TestUtil.nextInt(random(), 10, 14);
+    HyperLogLog hll = new HyperLogLog(precision);
+    final int numValues = TestUtil.nextInt(random(), 1, 200000);
+    final long start = random().nextLong();
+    for (int i = 0; i < numValues; ++i) {
+      hll.add(start + i * 7L);
+    }
+    // 1.04 / sqrt(2^precision) is the standard error, allow for 5 of them
+    final double maxError = 5 * 1.04 / Math.sqrt(1 << precision);
+    assertEquals(numValues, hll.cardinality(), Math.max(1, numValues * maxError));
+  }
+
+  public void testMerge() {
+    HyperLogLog hll1 = new HyperLogLog(12);
+    HyperLogLog hll2 = new HyperLogLog(12);
+    HyperLogLog union = new HyperLogLog(12);
+    final int numValues = atLeast(1000);
+    for (int i = 0; i < numValues; ++i) {
+      final long value = random().nextInt(numValues);
+      (random().nextBoolean() ? hll1 : hll2).add(value);
+      union.add(value);
+    }
+    hll1.merge(hll2);
+    assertEquals(union.cardinality(), hll1.cardinality());
+    expectThrows(IllegalArgumentException.class, () -> hll1.merge(new HyperLogLog(10)));
+  }
+}
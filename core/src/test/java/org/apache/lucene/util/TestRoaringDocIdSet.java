@@ -20,6 +20,8 @@ package org.apache.lucene.util;
 import java.io.IOException;
 import java.util.BitSet;
 
+import org.apache.lucene.search.DocIdSetIterator;
+
 public class TestRoaringDocIdSet extends BaseDocIdSetTestCase<RoaringDocIdSet> {
 
   @Override
@@ -38,4 +40,24 @@ public class TestRoaringDocIdSet extends BaseDocIdSetTestCase<RoaringDocIdSet> {
     assertEquals(ds1.cardinality(), ds2.cardinality());
   }
 
+  public void testClustered() throws IOException {
+    final int numBits = TestUtil.nextInt(random(), 100, 1 << 20);
+    final BitSet bs = new BitSet(numBits);
+    for (int doc = random().nextInt(1000); doc < numBits; ) {
+      final int runLength = TestUtil.nextInt(random(), 1, 10000);
+      bs.set(doc, Math.min(numBits, doc + runLength));
+      doc += runLength + TestUtil.nextInt(random(), 1, 10000);
+    }
+    final RoaringDocIdSet set = copyOf(bs, numBits);
+    assertEquals(numBits, bs, set);
+    // runs are much more compact than bit sets or arrays of doc IDs
+    assertTrue(set.ramBytesUsed() < numBits / 8 + 1024);
+
+    // advancing within a run does not skip documents
+    final DocIdSetIterator it = set.iterator();
+    for (int doc = bs.nextSetBit(0); doc != -1; doc = bs.nextSetBit(doc + TestUtil.nextInt(random(), 1, 100))) {
+      assertEquals(doc, it.advance(Math.max(doc, it.docID() + 1)));
+    }
+  }
+
 }
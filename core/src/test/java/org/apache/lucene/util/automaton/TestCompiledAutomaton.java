@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
@@ -103,6 +104,56 @@ public class TestCompiledAutomaton extends LuceneTestCase {
     testTerms(numTerms * 100, terms.toArray(new String[terms.size()]));
   }
 
+  public void testConcurrentFloor() throws Exception {
+    final int numTerms = atLeast(100);
+    final Set<String> termSet = new HashSet<>();
+    while (termSet.size() != numTerms) {
+      termSet.add(TestUtil.randomSimpleString(random(), 1, 10));
+    }
+    final String[] terms = termSet.toArray(new String[0]);
+    final CompiledAutomaton c = build(Operations.DEFAULT_MAX_DETERMINIZED_STATES, terms);
+    final BytesRef[] termBytes = new BytesRef[terms.length];
+    for (int i = 0; i < terms.length; i++) {
+      termBytes[i] = new BytesRef(terms[i]);
+    }
+    Arrays.sort(termBytes);
+    final int numInputs = 1000;
+    final BytesRef[] inputs = new BytesRef[numInputs];
+    final BytesRef[] expected = new BytesRef[numInputs];
+    for (int i = 0; i < numInputs; i++) {
+      inputs[i] = new BytesRef(TestUtil.randomSimpleString(random(), 1, 10));
+      expected[i] = c.floor(inputs[i], new BytesRefBuilder());
+      if (expected[i] != null) {
+        expected[i] = BytesRef.deepCopyOf(expected[i]);
+      }
+    }
+
+    // the same instance is shared by all threads, eg. when cached
+    final int numThreads = 2 + random().nextInt(4);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t) {
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        final BytesRefBuilder output = new BytesRefBuilder();
+        for (int iter = 0; iter < 20; ++iter) {
+          for (int i = 0; i < numInputs; i++) {
+            assertEquals(expected[i], c.floor(inputs[i], output));
+          }
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
   private String randomString() {
     // return _TestUtil.randomSimpleString(random);
     return TestUtil.randomRealisticUnicodeString(random());
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.automaton;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestRunAutomaton extends LuceneTestCase {
+
+  private static RunAutomaton newRunAutomaton(Automaton a, int alphabetSize, int maxDenseTransitions) {
+    return new RunAutomaton(a, alphabetSize, Operations.DEFAULT_MAX_DETERMINIZED_STATES, maxDenseTransitions) {};
+  }
+
+  private static void assertSameTransitions(RunAutomaton expected, RunAutomaton actual) {
+    assertEquals(expected.getSize(), actual.getSize());
+    final int[] points = expected.getCharIntervals();
+    for (int state = 0; state < expected.getSize(); state++) {
+      assertEquals(expected.isAccept(state), actual.isAccept(state));
+      for (int point : points) {
+        assertEquals(expected.automaton.step(state, point), actual.step(state, point));
+        if (point > 0) {
+          assertEquals(expected.automaton.step(state, point - 1), actual.step(state, point - 1));
+        }
+      }
+      final int c = random().nextInt(expected.alphabetSize);
+      assertEquals(expected.automaton.step(state, c), actual.step(state, c));
+    }
+  }
+
+  public void testDenseAndCompactRandom() {
+    final int iters = atLeast(20);
+    for (int iter = 0; iter < iters; iter++) {
+      Automaton a = AutomatonTestUtil.randomAutomaton(random());
+      final int alphabetSize = random().nextBoolean() ? 256 : Character.MAX_CODE_POINT + 1;
+      if (alphabetSize == 256) {
+        a = new UTF32ToUTF8().convert(a);
+      }
+      RunAutomaton dense = newRunAutomaton(a, alphabetSize, Integer.MAX_VALUE);
+      RunAutomaton compact = newRunAutomaton(a, alphabetSize, 0);
+      assertNotNull(dense.transitions);
+      assertNull(compact.transitions);
+      assertSameTransitions(dense, dense);
+      assertSameTransitions(dense, compact);
+    }
+  }
+
+  public void testMergeEquivalentClasses() {
+    ByteRunAutomaton ra = new ByteRunAutomaton(new RegExp("[aceg]").toAutomaton());
+    // 9 intervals, but only 2 classes: one for [aceg] and one for all other bytes
+    assertEquals(9, ra.getCharIntervals().length);
+    assertEquals(2, ra.numClasses);
+    for (char c : new char[] {'a', 'c', 'e', 'g'}) {
+      assertTrue(ra.run(new byte[] {(byte) c}, 0, 1));
+    }
+    for (char c : new char[] {'b', 'd', 'f', 'h', 0, 255}) {
+      assertFalse(ra.run(new byte[] {(byte) c}, 0, 1));
+    }
+  }
+
+  public void testCompactUsesLessMemory() {
+    List<BytesRef> terms = new ArrayList<>();
+    final int numTerms = atLeast(500);
+    for (int i = 0; i < numTerms; i++) {
+      terms.add(new BytesRef(TestUtil.randomSimpleString(random(), 5, 15)));
+    }
+    terms.sort(null);
+    Automaton a = Automata.makeStringUnion(terms);
+    RunAutomaton dense = newRunAutomaton(a, 256, Integer.MAX_VALUE);
+    RunAutomaton compact = newRunAutomaton(a, 256, 0);
+    assertTrue(compact.ramBytesUsed() < dense.ramBytesUsed());
+    for (BytesRef term : terms) {
+      int state = 0;
+      for (int i = 0; i < term.length && state != -1; i++) {
+        final int c = term.bytes[term.offset + i] & 0xFF;
+        state = compact.step(state, c);
+      }
+      assertTrue(state != -1 && compact.isAccept(state));
+    }
+    assertSameTransitions(dense, compact);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.fst;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestFSTStreaming extends LuceneTestCase {
+
+  private static List<BytesRef> randomTerms(int numTerms) {
+    Set<BytesRef> terms = new TreeSet<>();
+    while (terms.size() < numTerms) {
+      terms.add(new BytesRef(TestUtil.randomSimpleString(random(), 1, 12)));
+    }
+    return new ArrayList<>(terms);
+  }
+
+  private static FST<Long> buildOnHeap(List<BytesRef> terms) throws IOException {
+    Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+    IntsRefBuilder scratch = new IntsRefBuilder();
+    long ord = 0;
+    for (BytesRef term : terms) {
+      builder.add(Util.toIntsRef(term, scratch), ord++);
+    }
+    return builder.finish();
+  }
+
+  /** Build an FST by streaming its bytes to a file, and return the number of bytes of the FST. */
+  private static long buildStreaming(Directory dir, List<BytesRef> terms, boolean allowFixedLengthArcs, double suffixRAMLimitMB) throws IOException {
+    try (IndexOutput metaOut = dir.createOutput("fst.meta", IOContext.DEFAULT);
+        IndexOutput dataOut = dir.createOutput("fst.data", IOContext.DEFAULT)) {
+      Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton(),
+          allowFixedLengthArcs, TestUtil.nextInt(random(), 4, 15), dataOut, suffixRAMLimitMB);
+      IntsRefBuilder scratch = new IntsRefBuilder();
+      long ord = 0;
+      for (BytesRef term : terms) {
+        builder.add(Util.toIntsRef(term, scratch), ord++);
+      }
+      FST<Long> fst = builder.finish();
+      expectThrows(IllegalStateException.class, fst::getBytesReader);
+      expectThrows(IllegalStateException.class, () -> fst.save(new ByteBuffersDataOutput(), new ByteBuffersDataOutput()));
+      fst.saveMetadata(metaOut);
+      return dataOut.getFilePointer();
+    }
+  }
+
+  /** Load the FST that has been written by {@link #buildStreaming} and check its content. */
+  private static void assertStreamedFST(Directory dir, List<BytesRef> terms) throws IOException {
+    try (IndexInput metaIn = dir.openInput("fst.meta", IOContext.DEFAULT);
+        IndexInput dataIn = dir.openInput("fst.data", IOContext.DEFAULT)) {
+      assertFST(terms, new FST<>(metaIn, dataIn, PositiveIntOutputs.getSingleton(), new OffHeapFSTStore()));
+    }
+  }
+
+  private static void assertFST(List<BytesRef> terms, FST<Long> fst) throws IOException {
+    long ord = 0;
+    for (BytesRef term : terms) {
+      assertEquals(Long.valueOf(ord++), Util.get(fst, term));
+    }
+    BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(fst);
+    ord = 0;
+    for (BytesRefFSTEnum.InputOutput<Long> io = fstEnum.next(); io != null; io = fstEnum.next()) {
+      assertEquals(terms.get((int) ord), io.input);
+      assertEquals(Long.valueOf(ord++), io.output);
+    }
+    assertEquals(terms.size(), ord);
+  }
+
+  public void testSameAsOnHeap() throws IOException {
+    List<BytesRef> terms = randomTerms(atLeast(1000));
+    FST<Long> onHeap = buildOnHeap(terms);
+    assertFST(terms, onHeap);
+    try (Directory dir = newDirectory()) {
+      final long numBytes = buildStreaming(dir, terms, true, 1024);
+      assertStreamedFST(dir, terms);
+      // all suffixes are shared, like with the on-heap node hash
+      assertEquals(onHeap.bytes.getPosition(), numBytes);
+    }
+  }
+
+  public void testBoundedSuffixSharing() throws IOException {
+    List<BytesRef> terms = randomTerms(atLeast(1000));
+    final boolean allowFixedLengthArcs = random().nextBoolean();
+    try (Directory dir = newDirectory()) {
+      // tiny limit: only few suffixes are shared
+      buildStreaming(dir, terms, allowFixedLengthArcs, 0.001);
+      assertStreamedFST(dir, terms);
+    }
+    try (Directory dir = newDirectory()) {
+      // no suffix sharing at all
+      buildStreaming(dir, terms, allowFixedLengthArcs, 0);
+      assertStreamedFST(dir, terms);
+    }
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () ->
+        new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton(), true, 15, new ByteBuffersDataOutput(), -1));
+    expectThrows(NullPointerException.class, () ->
+        new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton(), true, 15, null, 1));
+  }
+}